@@ -26,17 +26,18 @@
 package org.forester.application;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
-import org.forester.io.parsers.FastaParser;
+import org.forester.io.parsers.IteratingFastaParser;
 import org.forester.io.writers.SequenceWriter;
-import org.forester.io.writers.SequenceWriter.SEQ_FORMAT;
 import org.forester.sequence.BasicSequence;
 import org.forester.sequence.MolecularSequence;
 import org.forester.util.CommandLineArguments;
@@ -94,16 +95,27 @@ public final class check_fasta {
         }
         else {
             try {
-                final List<MolecularSequence> seqs = FastaParser.parse( new FileInputStream( infile ) );
-                final Map<String, Short> names = new HashMap<String, Short>();
-                int duplicates = 0;
-                for( final MolecularSequence seq : seqs ) {
-                    if ( procSeq( infile.toString(), names, seq ) ) {
-                        ++duplicates;
-                    }
+                // The sequences are read twice (instead of being kept in
+                // memory): to find out whether there are duplicates, and to
+                // rename and write them.
+                final Set<String> ids = new HashSet<String>();
+                boolean duplicates = false;
+                IteratingFastaParser p = new IteratingFastaParser( infile );
+                while ( p.hasNext() && !duplicates ) {
+                    duplicates = !ids.add( p.next().getIdentifier() );
                 }
-                if ( duplicates > 0 ) {
-                    SequenceWriter.writeSeqs( seqs, outfile, SEQ_FORMAT.FASTA, 60 );
+                p.close();
+                if ( duplicates ) {
+                    final Map<String, Short> names = new HashMap<String, Short>();
+                    p = new IteratingFastaParser( infile );
+                    final Writer w = ForesterUtil.createBufferedWriter( outfile );
+                    while ( p.hasNext() ) {
+                        final MolecularSequence seq = p.next();
+                        procSeq( infile.toString(), names, seq );
+                        SequenceWriter.toFasta( seq, w, 60 );
+                        w.write( ForesterUtil.LINE_SEPARATOR );
+                    }
+                    w.close();
                 }
             }
             catch ( final IOException e ) {
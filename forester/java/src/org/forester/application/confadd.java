@@ -33,13 +33,19 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.forester.io.parsers.IteratingPhylogenyParser;
+import org.forester.io.parsers.PhylogenyParser;
+import org.forester.io.parsers.nhx.NHXParser;
+import org.forester.io.parsers.nhx.ParallelNHXParser;
 import org.forester.io.parsers.util.ParserUtils;
 import org.forester.io.writers.PhylogenyWriter;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyNode;
+import org.forester.phylogeny.data.Confidence;
 import org.forester.phylogeny.factories.ParserBasedPhylogenyFactory;
 import org.forester.phylogeny.factories.PhylogenyFactory;
 import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
+import org.forester.tools.ConfidenceAccumulator;
 import org.forester.tools.ConfidenceAssessor;
 import org.forester.util.CommandLineArguments;
 import org.forester.util.ForesterUtil;
@@ -52,6 +58,7 @@ public class confadd {
     final static private String LAST_OPTION      = "l";
     final static private String STRICT_OPTION    = "s";
     final static private String NORMALIZE_OPTION = "n";
+    final static private String THREADS_OPTION   = "t";
     final static private String PRG_NAME         = "confadd";
     final static private String PRG_VERSION      = "1.01";
     final static private String PRG_DATE         = "2010.10.26";
@@ -96,6 +103,7 @@ public class confadd {
         allowed_options.add( LAST_OPTION );
         allowed_options.add( STRICT_OPTION );
         allowed_options.add( NORMALIZE_OPTION );
+        allowed_options.add( THREADS_OPTION );
         final String dissallowed_options = cla.validateAllowedOptionsAsString( allowed_options );
         if ( dissallowed_options.length() > 0 ) {
             ForesterUtil.fatalError( PRG_NAME, "unknown option(s): " + dissallowed_options );
@@ -120,6 +128,7 @@ public class confadd {
         int first = 0;
         int last = 0;
         double norm = 0;
+        int number_of_threads = 1;
         try {
             if ( cla.isOptionSet( STRICT_OPTION ) ) {
                 if ( cla.isOptionHasAValue( STRICT_OPTION ) ) {
@@ -136,6 +145,9 @@ public class confadd {
             if ( cla.isOptionSet( NORMALIZE_OPTION ) ) {
                 norm = cla.getOptionValueAsDouble( NORMALIZE_OPTION );
             }
+            if ( cla.isOptionSet( THREADS_OPTION ) ) {
+                number_of_threads = cla.getOptionValueAsInt( THREADS_OPTION );
+            }
         }
         catch ( final Exception e ) {
             ForesterUtil.fatalError( PRG_NAME, "error in command line: " + e.getLocalizedMessage() );
@@ -148,8 +160,10 @@ public class confadd {
         if ( norm < 0 ) {
             ForesterUtil.fatalError( PRG_NAME, "illegal value for normalizer [" + norm + "]" );
         }
+        if ( number_of_threads < 1 ) {
+            ForesterUtil.fatalError( PRG_NAME, "attempt to set number of threads to: " + number_of_threads );
+        }
         Phylogeny[] targets = null;
-        Phylogeny[] evaluators = null;
         final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
         try {
             targets = factory.create( target_file, ParserUtils.createParserDependingOnFileType( target_file, true ) );
@@ -163,6 +177,7 @@ public class confadd {
         for( final Phylogeny target : targets ) {
             try {
                 checkUniquenessOfExternalNodes( target, "target " + counter );
+                checkAbsenceOfConfidenceType( target, confidence_type, "target " + counter );
             }
             catch ( final IllegalArgumentException e ) {
                 ForesterUtil.fatalError( PRG_NAME, e.getLocalizedMessage() );
@@ -175,54 +190,84 @@ public class confadd {
         else {
             ForesterUtil.programMessage( PRG_NAME, "read in a total of " + targets.length + " targets" );
         }
-        try {
-            evaluators = factory.create( evaluators_file,
-                                         ParserUtils.createParserDependingOnFileType( evaluators_file, true ) );
+        if ( ( last != 0 ) && ( last <= first ) ) {
+            ForesterUtil.fatalError( PRG_NAME, "illegal value for first or last evaluator topology to use [" + first
+                                     + ", " + last + "]" );
         }
-        catch ( final IOException e ) {
-            ForesterUtil.fatalError( PRG_NAME, "failed to read evaluator topologies from [" + evaluators_file + "]: "
-                    + e.getLocalizedMessage() );
+        ForesterUtil.programMessage( PRG_NAME, "first topology to use: " + first );
+        if ( last == 0 ) {
+            ForesterUtil.programMessage( PRG_NAME, "last topology to use : last topology in file" );
         }
-        counter = 0;
-        for( final Phylogeny evaluator : evaluators ) {
-            try {
-                checkUniquenessOfExternalNodes( evaluator, "evaluator " + counter );
+        else {
+            ForesterUtil.programMessage( PRG_NAME, "last topology to use : " + last );
+        }
+        ForesterUtil.programMessage( PRG_NAME, "strict: " + strict );
+        if ( number_of_threads > 1 ) {
+            ForesterUtil.programMessage( PRG_NAME, "threads for parsing of evaluators: " + number_of_threads );
+        }
+        final List<ConfidenceAccumulator> accumulators = new ArrayList<ConfidenceAccumulator>();
+        int used = 0;
+        try {
+            for( final Phylogeny target : targets ) {
+                accumulators.add( new ConfidenceAccumulator( target, strict ) );
             }
-            catch ( final IllegalArgumentException e ) {
-                ForesterUtil.fatalError( PRG_NAME, e.getLocalizedMessage() );
+            final PhylogenyParser parser = ParserUtils.createParserDependingOnFileType( evaluators_file, true );
+            if ( ( parser instanceof NHXParser ) && ( number_of_threads > 1 ) ) {
+                // Evaluators are parsed in parallel, but counted in order.
+                final ParallelNHXParser parallel_parser = new ParallelNHXParser( ( NHXParser ) parser,
+                                                                                 number_of_threads );
+                try {
+                    parallel_parser.setSource( evaluators_file );
+                    used = ConfidenceAssessor.accumulate( parallel_parser, accumulators, first, last );
+                }
+                finally {
+                    parallel_parser.close();
+                }
+            }
+            else if ( parser instanceof IteratingPhylogenyParser ) {
+                // Evaluators are read and counted one at a time.
+                final IteratingPhylogenyParser iterating_parser = ( IteratingPhylogenyParser ) parser;
+                iterating_parser.setSource( evaluators_file );
+                used = ConfidenceAssessor.accumulate( iterating_parser, accumulators, first, last );
+            }
+            else {
+                final Phylogeny[] evaluators = factory.create( evaluators_file, parser );
+                ForesterUtil.programMessage( PRG_NAME, "read in a total of " + evaluators.length
+                        + " evaluator topologies" );
+                for( int i = first; i < evaluators.length; ++i ) {
+                    if ( ( last != 0 ) && ( i > last ) ) {
+                        break;
+                    }
+                    for( final ConfidenceAccumulator accumulator : accumulators ) {
+                        accumulator.add( evaluators[ i ] );
+                    }
+                    ++used;
+                }
+                if ( ( used < 1 ) || ( last >= evaluators.length ) ) {
+                    ForesterUtil.fatalError( PRG_NAME, "illegal value for first or last evaluator topology to use ["
+                            + first + ", " + last + "]" );
+                }
             }
-            counter++;
         }
-        ForesterUtil.programMessage( PRG_NAME, "read in a total of " + evaluators.length + " evaluator topologies" );
-        System.gc();
-        if ( last == 0 ) {
-            last = evaluators.length - 1;
+        catch ( final IOException e ) {
+            ForesterUtil.fatalError( PRG_NAME, "failed to read evaluator topologies from [" + evaluators_file + "]: "
+                    + e.getLocalizedMessage() );
         }
-        if ( ( last >= evaluators.length ) || ( last <= first ) ) {
-            ForesterUtil.fatalError( PRG_NAME, "illegal value for first or last evaluator topology to use [" + first
-                                     + ", " + last + "]" );
+        catch ( final IllegalArgumentException e ) {
+            ForesterUtil.fatalError( PRG_NAME, e.getLocalizedMessage() );
         }
+        ForesterUtil.programMessage( PRG_NAME, "sum of topologies used as evaluators: " + used );
         double value = 1;
         if ( norm > 0 ) {
-            value = norm / ( ( 1 + last ) - first );
-        }
-        ForesterUtil.programMessage( PRG_NAME, "first topology to use: " + first );
-        String is_last = "";
-        if ( last == ( evaluators.length - 1 ) ) {
-            is_last = " (corresponds to last topology in file)";
-        }
-        ForesterUtil.programMessage( PRG_NAME, "last topology to use : " + last + is_last );
-        ForesterUtil.programMessage( PRG_NAME, "sum of topologies used as evaluators: " + ( ( last - first ) + 1 ) );
-        if ( norm > 0 ) {
+            value = norm / used;
             ForesterUtil.programMessage( PRG_NAME, "normalizer: " + norm + " (" + ForesterUtil.round( value, 6 ) + ")" );
         }
         else {
             ForesterUtil.programMessage( PRG_NAME, "normalizer: n/a" );
         }
-        ForesterUtil.programMessage( PRG_NAME, "strict: " + strict );
-        for( final Phylogeny target : targets ) {
+        for( final ConfidenceAccumulator accumulator : accumulators ) {
             try {
-                ConfidenceAssessor.evaluate( confidence_type, evaluators, target, strict, value, first, last );
+                accumulator.apply( confidence_type, value );
             }
             catch ( final IllegalArgumentException e ) {
                 ForesterUtil.fatalError( PRG_NAME, e.getLocalizedMessage() );
@@ -255,9 +300,24 @@ public class confadd {
         System.out.println( " -" + FIRST_OPTION + "=<i>: first evaluator topology to use (0-based) [default: 0]" );
         System.out.println( " -" + LAST_OPTION
                             + "=<i>: last evaluator topology to use (0-based) [default: use all until final topology]" );
+        System.out.println( " -" + THREADS_OPTION
+                            + "=<i>: number of threads for parsing of (NH/NHX) evaluator topologies [default: 1]" );
         System.out.println();
     }
 
+    private static void checkAbsenceOfConfidenceType( final Phylogeny phy,
+                                                      final String confidence_type,
+                                                      final String msg ) throws IllegalArgumentException {
+        for( final PhylogenyNodeIterator it = phy.iteratorPostorder(); it.hasNext(); ) {
+            for( final Confidence confidence : it.next().getBranchData().getConfidences() ) {
+                if ( confidence.getType().equals( confidence_type ) ) {
+                    throw new IllegalArgumentException( "confidence [" + confidence_type + "] is already present in "
+                            + msg );
+                }
+            }
+        }
+    }
+
     private static void checkUniquenessOfExternalNodes( final Phylogeny phy, final String msg )
             throws IllegalArgumentException {
         final Set<PhylogenyNode> ext_nodes = new HashSet<PhylogenyNode>( phy.getNumberOfExternalNodes() );
@@ -26,16 +26,15 @@
 package org.forester.application;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import org.forester.io.parsers.FastaParser;
+import org.forester.io.parsers.FastaIndex;
+import org.forester.io.parsers.IndexedFastaReader;
 import org.forester.io.parsers.PhylogenyParser;
 import org.forester.io.parsers.util.ParserUtils;
 import org.forester.io.writers.PhylogenyWriter;
@@ -45,7 +44,6 @@ import org.forester.phylogeny.PhylogenyMethods.DESCENDANT_SORT_PRIORITY;
 import org.forester.phylogeny.data.Identifier;
 import org.forester.phylogeny.factories.ParserBasedPhylogenyFactory;
 import org.forester.phylogeny.factories.PhylogenyFactory;
-import org.forester.sequence.MolecularSequence;
 import org.forester.tools.PhylogenyDecorator;
 import org.forester.tools.PhylogenyDecorator.FIELD;
 import org.forester.util.BasicTable;
@@ -274,6 +272,7 @@ public final class decorator {
                                      + "] [" + e.getMessage() + "]" );
         }
         Map<String, String> map = null;
+        IndexedFastaReader fasta_reader = null;
         if ( !advanced_table ) {
             if ( field != FIELD.MOL_SEQ ) {
                 BasicTable<String> mapping_table = null;
@@ -318,7 +317,8 @@ public final class decorator {
                 }
             }
             else {
-                map = readFastaFileIntoMap( mapping_infile, verbose );
+                fasta_reader = openFastaFile( mapping_infile, verbose );
+                map = fasta_reader.asMap();
             }
         }
         if ( !ForesterUtil.isEmpty( tree_name ) || !ForesterUtil.isEmpty( tree_id )
@@ -376,6 +376,14 @@ public final class decorator {
         catch ( final Exception e ) {
             ForesterUtil.fatalError( decorator.PRG_NAME, e.getLocalizedMessage() );
         }
+        if ( fasta_reader != null ) {
+            try {
+                fasta_reader.close();
+            }
+            catch ( final IOException e ) {
+                ForesterUtil.fatalError( decorator.PRG_NAME, e.getMessage() );
+            }
+        }
         if ( midpoint_root || order_tree ) {
             for( final Phylogeny phy : phylogenies ) {
                 if ( midpoint_root ) {
@@ -398,38 +406,28 @@ public final class decorator {
         ForesterUtil.programMessage( PRG_NAME, "OK." );
     }
 
-    private static Map<String, String> readFastaFileIntoMap( final File mapping_infile, final boolean verbose ) {
-        List<MolecularSequence> seqs = null;
+    // The sequences are read from the fasta file when needed (via its index),
+    // instead of all being loaded at once.
+    private static IndexedFastaReader openFastaFile( final File mapping_infile, final boolean verbose ) {
+        IndexedFastaReader reader = null;
         try {
-            seqs = FastaParser.parse( new FileInputStream( mapping_infile ) );
+            reader = new IndexedFastaReader( mapping_infile );
         }
         catch ( final IOException e ) {
             ForesterUtil.fatalError( decorator.PRG_NAME, "failed to read fasta-file from [" + mapping_infile + "] ["
                     + e.getMessage() + "]" );
         }
-        if ( ForesterUtil.isEmpty( seqs ) ) {
+        final FastaIndex index = reader.getIndex();
+        if ( index.getNumberOfSequences() < 1 ) {
             ForesterUtil.fatalError( decorator.PRG_NAME, "fasta-file [" + mapping_infile
                                      + "] is devoid of fasta-formatted sequences" );
         }
-        final Map<String, String> map = new HashMap<String, String>();
-        for( final MolecularSequence seq : seqs ) {
-            if ( ForesterUtil.isEmpty( seq.getIdentifier() ) ) {
-                ForesterUtil.fatalError( decorator.PRG_NAME, "fasta-file [" + mapping_infile
-                                         + "] contains sequence with empty identifier" );
-            }
-            if ( map.containsKey( seq.getIdentifier() ) ) {
-                ForesterUtil.fatalError( decorator.PRG_NAME, "sequence identifier [" + seq.getIdentifier()
-                                         + "] is not unique" );
-            }
-            if ( seq.getLength() < 1 ) {
-                ForesterUtil.fatalError( decorator.PRG_NAME, "sequence [" + seq.getIdentifier() + "] is empty" );
-            }
-            map.put( seq.getIdentifier(), seq.getMolecularSequenceAsString() );
-            if ( verbose ) {
-                System.out.println( seq.getIdentifier() + " => " + seq.getMolecularSequenceAsString() );
+        if ( verbose ) {
+            for( int i = 0; i < index.getNumberOfSequences(); ++i ) {
+                System.out.println( index.getIdentifiers().get( i ) + " => " + index.getLength( i ) + " residues" );
             }
         }
-        return map;
+        return reader;
     }
 
     private static void argumentsError() {
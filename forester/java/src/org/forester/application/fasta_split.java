@@ -27,28 +27,30 @@
 
 package org.forester.application;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.Writer;
 import java.util.HashMap;
-import java.util.List;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.forester.io.parsers.FastaParser;
+import org.forester.io.parsers.IteratingFastaParser;
 import org.forester.io.writers.SequenceWriter;
-import org.forester.io.writers.SequenceWriter.SEQ_FORMAT;
 import org.forester.sequence.MolecularSequence;
 import org.forester.util.CommandLineArguments;
 import org.forester.util.ForesterUtil;
 
 public final class fasta_split {
 
-    final static private String PRG_NAME    = "fasta_split";
-    final static private String PRG_VERSION = "1.01";
-    final static private String PRG_DATE    = "170718";
+    final static private int    MAX_OPEN_WRITERS = 100;
+    final static private String PRG_DATE         = "170718";
+    final static private String PRG_NAME         = "fasta_split";
+    final static private String PRG_VERSION      = "1.01";
 
     public static void main( final String args[] ) {
         ForesterUtil.printProgramInformation( fasta_split.PRG_NAME, fasta_split.PRG_VERSION, fasta_split.PRG_DATE );
@@ -83,57 +85,68 @@ public final class fasta_split {
         if ( !outdir.isDirectory() ) {
             ForesterUtil.fatalError( PRG_NAME, outdir + " is not a directory" );
         }
-        List<MolecularSequence> seqs = null;
+        // The sequences are read twice (instead of being kept in memory): to
+        // count them by key, and to write them.
+        final Map<String, Integer> counts = new HashMap<String, Integer>();
+        int seqs_read = 0;
         try {
-            seqs = FastaParser.parse( new FileInputStream( infile ) );
+            final IteratingFastaParser p = new IteratingFastaParser( infile );
+            while ( p.hasNext() ) {
+                final String key = determineKey( pa, p.next(), pattern_str );
+                counts.put( key, counts.containsKey( key ) ? counts.get( key ) + 1 : 1 );
+                ++seqs_read;
+            }
         }
         catch ( final IOException e ) {
             ForesterUtil.fatalError( PRG_NAME, e.getMessage() );
         }
-        if ( ( seqs == null ) || seqs.isEmpty() ) {
+        if ( seqs_read < 1 ) {
             ForesterUtil.fatalError( PRG_NAME, infile + " appears empty" );
         }
-        System.out.println( "Read " + seqs.size() + " sequences" );
-        final Map<String, List<MolecularSequence>> output = new HashMap<String, List<MolecularSequence>>();
-        for( final MolecularSequence seq : seqs ) {
-            final Matcher m = pa.matcher( seq.getIdentifier() );
-            if ( m.find() ) {
-                final String key = m.group( 1 );
-                if ( !output.containsKey( key ) ) {
-                    output.put( key, new ArrayList<MolecularSequence>() );
-                }
-                output.get( key ).add( seq );
-            }
-            else {
-                System.out.println( "warning: " + pattern_str + " not found in sequence \"" + seq.getIdentifier()
-                        + "\"" );
-                final String key = "unknown";
-                if ( !output.containsKey( key ) ) {
-                    output.put( key, new ArrayList<MolecularSequence>() );
-                }
-                output.get( key ).add( seq );
-            }
-        }
+        System.out.println( "Read " + seqs_read + " sequences" );
+        final Map<String, File> outfiles = new HashMap<String, File>();
         int c = 0;
-        int seqs_written = 0;
-        for( final Map.Entry<String, List<MolecularSequence>> entry : output.entrySet() ) {
+        for( final Map.Entry<String, Integer> entry : counts.entrySet() ) {
             String s = entry.getKey().trim();
             s = s.replaceAll( "[\\./\\*\\s]+", "_" );
             s = s.replaceAll( "\\(", "~" );
             s = s.replaceAll( "\\)", "~" );
             final File of = new File( outdir.getAbsolutePath().toString() + "/" + s + ".fasta" );
-            if ( of.exists() ) {
+            if ( of.exists() || outfiles.containsValue( of ) ) {
                 ForesterUtil.fatalError( PRG_NAME, of + " already exists" );
             }
-            System.out.println( ++c + ": writing " + of + " [" + entry.getValue().size() + " seqs]" );
-            
-            try {
-                SequenceWriter.writeSeqs( entry.getValue(), of, SEQ_FORMAT.FASTA, 60 );
+            System.out.println( ++c + ": writing " + of + " [" + entry.getValue() + " seqs]" );
+            outfiles.put( entry.getKey(), of );
+        }
+        int seqs_written = 0;
+        // At most MAX_OPEN_WRITERS files are open at a time, the least
+        // recently used one is closed (and reopened for appending if needed).
+        final Map<File, Writer> writers = new LinkedHashMap<File, Writer>( 16, 0.75f, true );
+        try {
+            final IteratingFastaParser p = new IteratingFastaParser( infile );
+            while ( p.hasNext() ) {
+                final MolecularSequence seq = p.next();
+                final File of = outfiles.get( determineKey( pa, seq, null ) );
+                Writer w = writers.get( of );
+                if ( w == null ) {
+                    if ( writers.size() >= MAX_OPEN_WRITERS ) {
+                        final Iterator<Writer> it = writers.values().iterator();
+                        it.next().close();
+                        it.remove();
+                    }
+                    w = new BufferedWriter( new FileWriter( of, true ) );
+                    writers.put( of, w );
+                }
+                SequenceWriter.toFasta( seq, w, 60 );
+                w.write( ForesterUtil.LINE_SEPARATOR );
+                ++seqs_written;
             }
-            catch ( final IOException e ) {
-                ForesterUtil.fatalError( PRG_NAME, e.getMessage() );
+            for( final Writer w : writers.values() ) {
+                w.close();
             }
-            seqs_written += entry.getValue().size();
+        }
+        catch ( final IOException e ) {
+            ForesterUtil.fatalError( PRG_NAME, e.getMessage() );
         }
         System.out.println( "Wrote " + seqs_written + " sequences" );
     }
@@ -148,4 +161,16 @@ public final class fasta_split {
         System.out.println();
         System.exit( -1 );
     }
+
+    private static String determineKey( final Pattern pa, final MolecularSequence seq, final String pattern_str ) {
+        final Matcher m = pa.matcher( seq.getIdentifier() );
+        if ( m.find() ) {
+            return m.group( 1 );
+        }
+        if ( pattern_str != null ) {
+            System.out.println( "warning: " + pattern_str + " not found in sequence \"" + seq.getIdentifier()
+                    + "\"" );
+        }
+        return "unknown";
+    }
 }
@@ -25,9 +25,12 @@
 
 package org.forester.application;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -325,19 +328,24 @@ public final class gsdi {
         if ( ForesterUtil.isWritableFile( out_file ) != null ) {
             ForesterUtil.fatalError( gsdi.PRG_NAME, ForesterUtil.isWritableFile( out_file ) );
         }
-        Phylogeny gene_trees[] = null;
-        try {
-            final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
-            gene_trees = factory.create( gene_tree_file, PhyloXmlParser.createPhyloXmlParserXsdValidating() );
-        }
-        catch ( final IOException e ) {
-            fatalError( "error",
-                        "failed to read gene tree from [" + gene_tree_file + "]: " + e.getMessage(),
-                        log_writer );
-        }
+        // Gene trees are read, analyzed, and written one at a time.
+        final PhyloXmlParser parser = PhyloXmlParser.createPhyloXmlParserXsdValidating();
+        parser.setSource( gene_tree_file );
+        final PhylogenyWriter writer = new PhylogenyWriter();
+        Writer out_writer = null;
         int counter = 0;
-        final List<Phylogeny> out_trees = new ArrayList<Phylogeny>();
-        for( final Phylogeny gene_tree : gene_trees ) {
+        int read = 0;
+        while ( parser.hasNext() ) {
+            Phylogeny gene_tree = null;
+            try {
+                gene_tree = parser.next();
+            }
+            catch ( final IOException e ) {
+                fatalError( "error",
+                            "failed to read gene tree from [" + gene_tree_file + "]: " + e.getMessage(),
+                            log_writer );
+            }
+            ++read;
             if ( !gene_tree.isEmpty() && gene_tree.getNumberOfExternalNodes() > 1 ) {
                 Phylogeny species_tree = null;
                 try {
@@ -378,7 +386,7 @@ public final class gsdi {
                 log_writer.print( gene_tree_file.getName() );
                 log_writer.print( "\t" );
                 log_writer.print( ( ForesterUtil.isEmpty( gene_tree.getName() ) ? "" : gene_tree.getName() ) );
-                if ( gene_trees.length > 1 ) {
+                if ( ( read > 1 ) || parser.hasNext() ) {
                     log_writer.print( ( ForesterUtil.isEmpty( gene_tree.getName() ) ? Integer.toString( counter )
                             : ( ":" + Integer.toString( counter ) ) ) );
                 }
@@ -411,14 +419,26 @@ public final class gsdi {
                     e.printStackTrace();
                     fatalError( "unexpected error", e.toString(), log_writer );
                 }
+                final Phylogeny out_tree;
                 if ( base_algorithm == ALGORITHM.GSDIR ) {
-                    final Phylogeny gt = ( ( GSDIR ) gsdii ).getMinDuplicationsSumGeneTree();
-                    gt.setRerootable( false );
-                    out_trees.add( gt );
+                    out_tree = ( ( GSDIR ) gsdii ).getMinDuplicationsSumGeneTree();
                 }
                 else {
-                    gene_tree.setRerootable( false );
-                    out_trees.add( gene_tree );
+                    out_tree = gene_tree;
+                }
+                out_tree.setRerootable( false );
+                try {
+                    if ( out_writer == null ) {
+                        out_writer = new BufferedWriter( new PrintWriter( out_file, ForesterConstants.UTF_8 ) );
+                        PhylogenyWriter.writePhyloXmlStart( out_writer );
+                    }
+                    writer.toPhyloXMLNoPhyloXmlSource( out_writer, out_tree, 0 );
+                    out_writer.write( ForesterUtil.LINE_SEPARATOR );
+                }
+                catch ( final IOException e ) {
+                    ForesterUtil
+                            .fatalError( PRG_NAME,
+                                         "Failed to write to [" + out_file.getCanonicalPath() + "]: " + e.getMessage() );
                 }
                 log_writer.print( gene_tree.getNumberOfExternalNodes() + "\t" );
                 log_writer.print( gsdii.getSpeciationsSum() + "\t" );
@@ -441,10 +461,11 @@ public final class gsdi {
                 ++counter;
             }
         }
-        if ( counter > 0 ) {
+        if ( out_writer != null ) {
             try {
-                final PhylogenyWriter writer = new PhylogenyWriter();
-                writer.toPhyloXML( out_file, out_trees, 0, ForesterUtil.LINE_SEPARATOR );
+                PhylogenyWriter.writePhyloXmlEnd( out_writer );
+                out_writer.flush();
+                out_writer.close();
             }
             catch ( final IOException e ) {
                 ForesterUtil
@@ -33,6 +33,7 @@ import org.forester.io.parsers.FastaParser;
 import org.forester.io.parsers.GeneralMsaParser;
 import org.forester.msa.Msa;
 import org.forester.msa.MsaMethods;
+import org.forester.sequence.MolecularSequence.TYPE;
 import org.forester.util.BasicDescriptiveStatistics;
 import org.forester.util.CommandLineArguments;
 import org.forester.util.DescriptiveStatistics;
@@ -80,7 +81,7 @@ public class mcc {
             Msa msa = null;
             final InputStream is = new FileInputStream( in );
             if ( FastaParser.isLikelyFasta( in ) ) {
-                msa = FastaParser.parseMsa( is );
+                msa = FastaParser.parseCompactMsa( is, TYPE.AA );
             }
             else {
                 msa = GeneralMsaParser.parseMsa( is );
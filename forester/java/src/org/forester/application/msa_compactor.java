@@ -77,6 +77,7 @@ public class msa_compactor {
     final static private String       OUTPUT_REMOVED_SEQS_OPTION             = "ro";
     final static private String       MAFFT_OPTIONS                          = "mo";
     final static private String       PERFORM_PHYLOGENETIC_INFERENCE         = "t";
+    final static private String       NJ_THREADS_OPTION                      = "nt";
     //
     final static private String       PATH_TO_MAFFT_OPTION                   = "mafft";
     final static private String       DO_NOT_NORMALIZE_FOR_EFF_LENGTH_OPTION = "nn";
@@ -115,6 +116,7 @@ public class msa_compactor {
             File removed_seqs_out_base = null;
             String mafft_options = "--auto";
             boolean perform_phylogenetic_inference = false;
+            int nj_threads = 1;
             final List<String> allowed_options = new ArrayList<String>();
             allowed_options.add( REMOVE_WORST_OFFENDERS_OPTION );
             allowed_options.add( AV_GAPINESS_OPTION );
@@ -131,6 +133,7 @@ public class msa_compactor {
             allowed_options.add( OUTPUT_REMOVED_SEQS_OPTION );
             allowed_options.add( MAFFT_OPTIONS );
             allowed_options.add( PERFORM_PHYLOGENETIC_INFERENCE );
+            allowed_options.add( NJ_THREADS_OPTION );
             allowed_options.add( INFO_ONLY_OPTION );
             final String dissallowed_options = cla.validateAllowedOptionsAsString( allowed_options );
             if ( dissallowed_options.length() > 0 ) {
@@ -279,6 +282,12 @@ public class msa_compactor {
             if ( cla.isOptionSet( PERFORM_PHYLOGENETIC_INFERENCE ) ) {
                 perform_phylogenetic_inference = true;
             }
+            if ( cla.isOptionSet( NJ_THREADS_OPTION ) ) {
+                nj_threads = cla.getOptionValueAsInt( NJ_THREADS_OPTION );
+                if ( nj_threads < 1 ) {
+                    ForesterUtil.fatalError( PRG_NAME, "number of threads is out of range: " + nj_threads );
+                }
+            }
             if ( chart_only ) {
                 if ( ( out != null ) || ( removed_seqs_out_base != null ) ) {
                     ForesterUtil
@@ -357,6 +366,9 @@ public class msa_compactor {
                     System.out.println( "MAFFT options                        : " + mafft_options );
                 }
                 System.out.println( "Simple tree (Kimura distances, NJ)   : " + perform_phylogenetic_inference );
+                if ( nj_threads > 1 ) {
+                    System.out.println( "Threads for distances and NJ         : " + nj_threads );
+                }
             }
             System.out.println();
             final int initial_number_of_seqs = msa.getNumberOfSequences();
@@ -372,6 +384,7 @@ public class msa_compactor {
             }
             else {
                 mc.setPeformPhylogenticInference( perform_phylogenetic_inference );
+                mc.setNumberOfThreadsForNJ( nj_threads );
                 if ( removed_seqs_out_base != null ) {
                     mc.setRemovedSeqsOutBase( removed_seqs_out_base );
                 }
@@ -503,6 +516,8 @@ public class msa_compactor {
                             + "=<decimal>  maximal allowed gap ratio per column (for deleting of columms) (0.0-1.0)" );
         System.out.println( "   -" + PERFORM_PHYLOGENETIC_INFERENCE
                             + "             to calculate a simple phylogenetic tree (Kimura distances, NJ)" );
+        System.out.println( "   -" + NJ_THREADS_OPTION
+                            + "=<integer>  number of threads for distance calculation and NJ (default: 1)" );
         System.out.println( "   -" + DO_NOT_NORMALIZE_FOR_EFF_LENGTH_OPTION
                             + "            to normalize gap-contributions with MSA length, instead of individual effective sequence lenghts" );
        
@@ -32,9 +32,12 @@ import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
-import org.forester.evoinference.distance.NeighborJoining;
+import org.forester.evoinference.distance.NeighborJoiningF;
+import org.forester.evoinference.distance.NeighborJoiningP;
+import org.forester.evoinference.distance.NeighborJoiningRapid;
 import org.forester.evoinference.matrix.distance.BasicSymmetricalDistanceMatrix;
 import org.forester.evoinference.matrix.distance.DistanceMatrix;
+import org.forester.evoinference.matrix.distance.PackedSymmetricalDistanceMatrix;
 import org.forester.io.parsers.SymmetricalDistanceMatrixParser;
 import org.forester.io.writers.PhylogenyWriter;
 import org.forester.phylogeny.Phylogeny;
@@ -47,6 +50,8 @@ public class nj {
     final static private String HELP_OPTION_2         = "h";
     final static private String VERBOSE_OPTION        = "v";
     final static private String UPPER_TRIANGLE_OPTION = "u";
+    final static private String THREADS_OPTION        = "t";
+    final static private String RAPID_OPTION          = "r";
     final static private String PRG_NAME              = "nj";
     final static private String PRG_VERSION           = "0.0.1";
     final static private String PRG_DATE              = "2008.03.04";
@@ -60,6 +65,8 @@ public class nj {
         allowed_options.add( HELP_OPTION_2 );
         allowed_options.add( VERBOSE_OPTION );
         allowed_options.add( UPPER_TRIANGLE_OPTION );
+        allowed_options.add( THREADS_OPTION );
+        allowed_options.add( RAPID_OPTION );
         if ( ( args.length < 2 ) ) {
             printHelp();
             System.exit( -1 );
@@ -87,6 +94,25 @@ public class nj {
         if ( cla.isOptionSet( UPPER_TRIANGLE_OPTION ) ) {
             upper_triangle = true;
         }
+        int threads = 1;
+        if ( cla.isOptionSet( THREADS_OPTION ) ) {
+            try {
+                threads = cla.getOptionValueAsInt( THREADS_OPTION );
+            }
+            catch ( final IOException e ) {
+                ForesterUtil.fatalError( PRG_NAME, "no acceptable value for number of threads: " + e.getMessage() );
+            }
+            if ( threads < 1 ) {
+                ForesterUtil.fatalError( PRG_NAME, "number of threads is out of range: " + threads );
+            }
+        }
+        boolean rapid = false;
+        if ( cla.isOptionSet( RAPID_OPTION ) ) {
+            if ( threads > 1 ) {
+                ForesterUtil.fatalError( PRG_NAME, "rapid neighbor joining cannot be combined with multiple threads" );
+            }
+            rapid = true;
+        }
         final File infile = cla.getFile( 0 );
         final File outfile = cla.getFile( 1 );
         final String error1 = ForesterUtil.isReadableFile( infile );
@@ -107,6 +133,10 @@ public class nj {
         else {
             parser.setInputMatrixType( SymmetricalDistanceMatrixParser.InputMatrixType.LOWER_TRIANGLE );
         }
+        if ( !rapid ) {
+            // NeighborJoiningF and NeighborJoiningP work on packed matrices.
+            parser.setPacked( true );
+        }
         DistanceMatrix[] matrices = null;
         try {
             matrices = parser.parse( infile );
@@ -119,10 +149,25 @@ public class nj {
                     + matrices[ 0 ].getSize() );
         }
         final List<Phylogeny> ps = new ArrayList<Phylogeny>();
-        final NeighborJoining nj = NeighborJoining.createInstance( verbose, 6 );
         final long start_time = new Date().getTime();
-        for( final DistanceMatrix matrix : matrices ) {
-            ps.add( nj.execute( ( BasicSymmetricalDistanceMatrix ) matrix ) );
+        if ( rapid ) {
+            final NeighborJoiningRapid nj = NeighborJoiningRapid.createInstance( verbose, 6 );
+            for( final DistanceMatrix matrix : matrices ) {
+                ps.add( nj.execute( ( BasicSymmetricalDistanceMatrix ) matrix ) );
+            }
+        }
+        else if ( threads > 1 ) {
+            final NeighborJoiningP nj = NeighborJoiningP.createInstance( verbose, 6, threads );
+            for( final DistanceMatrix matrix : matrices ) {
+                ps.add( nj.execute( ( PackedSymmetricalDistanceMatrix ) matrix ) );
+            }
+        }
+        else {
+            // Same arithmetic as NeighborJoiningP, so the tree does not depend on the number of threads.
+            final NeighborJoiningF nj = NeighborJoiningF.createInstance( verbose, 6 );
+            for( final DistanceMatrix matrix : matrices ) {
+                ps.add( nj.execute( ( PackedSymmetricalDistanceMatrix ) matrix ) );
+            }
         }
         final long end_time = new Date().getTime();
         final PhylogenyWriter w = new PhylogenyWriter();
@@ -147,6 +192,8 @@ public class nj {
         System.out.println( " Options: " );
         System.out.println( VERBOSE_OPTION + ": verbose on" );
         System.out.println( UPPER_TRIANGLE_OPTION + ": upper triangle option on (lower triangle is default)" );
+        System.out.println( RAPID_OPTION + ": rapid neighbor joining (bounded search for joins)" );
+        System.out.println( THREADS_OPTION + "=<n>: number of threads for parallel neighbor joining (default: 1)" );
         System.out.println();
     }
 }
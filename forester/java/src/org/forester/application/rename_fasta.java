@@ -31,9 +31,9 @@
 package org.forester.application;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -41,9 +41,8 @@ import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.forester.io.parsers.FastaParser;
+import org.forester.io.parsers.IteratingFastaParser;
 import org.forester.io.writers.SequenceWriter;
-import org.forester.io.writers.SequenceWriter.SEQ_FORMAT;
 import org.forester.sequence.BasicSequence;
 import org.forester.sequence.MolecularSequence;
 import org.forester.util.CommandLineArguments;
@@ -57,16 +56,18 @@ public final class rename_fasta {
         try {
             final File infile = new File( args[ 0 ] );
             final File outfile = new File( args[ 1 ] );
-            List<MolecularSequence> seqs;
-            seqs = FastaParser.parse( new FileInputStream( infile ) );
-            for( MolecularSequence seq : seqs ) {
-                BasicSequence bseq = ( BasicSequence ) seq;
+            final IteratingFastaParser p = new IteratingFastaParser( infile );
+            final Writer w = ForesterUtil.createBufferedWriter( outfile );
+            while ( p.hasNext() ) {
+                final BasicSequence bseq = ( BasicSequence ) p.next();
                 final int i = bseq.getIdentifier().lastIndexOf( '_' );
                 if ( i > 0 ) {
                     bseq.setIdentifier( bseq.getIdentifier().substring( i + 1 ) );
                 }
+                SequenceWriter.toFasta( bseq, w, 60 );
+                w.write( ForesterUtil.LINE_SEPARATOR );
             }
-            SequenceWriter.writeSeqs( seqs, outfile, SEQ_FORMAT.FASTA, 60 );
+            w.close();
         }
         catch ( FileNotFoundException e ) {
             e.printStackTrace();
@@ -58,6 +58,7 @@ public class rio {
     final static private String MAPPINGS_SUFFIX_OPTION         = "ms";
     final static private String CONSENSUS_TREES_DIR_OPTION     = "co";
     final static private String CONSENSUS_TREES_SUFFIX_OPTION  = "cos";
+    final static private String THREADS_OPTION                 = "t";
     final static private String MAPPINGS_SUFFIX_DEFAULT        = ".nim";
     final static private String CONSENSUS_TREE_SUFFIX_DEFAULT  = ".xml";
     final static private String ORTHOLOG_GROUPS_CUTOFF_OPTION  = "c";
@@ -82,7 +83,7 @@ public class rio {
         if ( cla.isOptionSet( HELP_OPTION_1 ) || cla.isOptionSet( HELP_OPTION_2 ) || ( args.length == 0 ) ) {
             printHelp();
         }
-        if ( ( args.length < 3 ) || ( args.length > 11 ) || ( cla.getNumberOfNames() < 3 ) ) {
+        if ( ( args.length < 3 ) || ( args.length > 12 ) || ( cla.getNumberOfNames() < 3 ) ) {
             System.out.println();
             System.out.println( "error: incorrect number of arguments" );
             System.out.println();
@@ -100,6 +101,7 @@ public class rio {
         allowed_options.add( MAPPINGS_SUFFIX_OPTION );
         allowed_options.add( CONSENSUS_TREES_DIR_OPTION );
         allowed_options.add( CONSENSUS_TREES_SUFFIX_OPTION );
+        allowed_options.add( THREADS_OPTION );
         final String dissallowed_options = cla.validateAllowedOptionsAsString( allowed_options );
         if ( dissallowed_options.length() > 0 ) {
             ForesterUtil.fatalError( "unknown option(s): " + dissallowed_options );
@@ -269,6 +271,21 @@ public class rio {
                 ForesterUtil.fatalError( "attempt to set ortholog groups cutoff to: " + ortholog_group_cutoff );
             }
         }
+        int number_of_threads = 1;
+        if ( cla.isOptionSet( THREADS_OPTION ) ) {
+            if ( !cla.isOptionHasAValue( THREADS_OPTION ) ) {
+                ForesterUtil.fatalError( "no value for -" + THREADS_OPTION );
+            }
+            try {
+                number_of_threads = cla.getOptionValueAsInt( THREADS_OPTION );
+            }
+            catch ( final IOException e ) {
+                ForesterUtil.fatalError( "could not parse integer for -" + THREADS_OPTION + " option" );
+            }
+            if ( number_of_threads < 1 ) {
+                ForesterUtil.fatalError( "attempt to set number of threads to: " + number_of_threads );
+            }
+        }
         if ( !use_dir ) {
             ForesterUtil.fatalErrorIfFileNotReadable( gene_trees_file );
         }
@@ -418,6 +435,9 @@ public class rio {
         if ( gt_last != RIO.DEFAULT_RANGE ) {
             System.out.println( "Last gene tree to analyze           :\t" + gt_last );
         }
+        if ( number_of_threads > 1 ) {
+            System.out.println( "Number of threads                   :\t" + number_of_threads );
+        }
         String rerooting_str = "";
         switch ( rerooting ) {
             case BY_ALGORITHM: {
@@ -656,7 +676,8 @@ public class rio {
                                              perform_gsdir_on_best_tree,
                                              outdir,
                                              best_trees_indir,
-                                             best_trees_suffix );
+                                             best_trees_suffix,
+                                             number_of_threads );
                 }
                 catch ( IOException e ) {
                     ForesterUtil.fatalError( PRG_NAME, e.getLocalizedMessage() );
@@ -692,7 +713,8 @@ public class rio {
                                      false,
                                      null,
                                      null,
-                                     null );
+                                     null,
+                                     number_of_threads );
         }
         if ( !use_dir ) {
             time = System.currentTimeMillis() - time;
@@ -725,6 +747,8 @@ public class rio {
         System.out.println( "  -" + GT_LAST + "=<last>      : last gene tree to analyze (0-based index)" );
         System.out.println( "  -" + ORTHOLOG_GROUPS_CUTOFF_OPTION
                 + "=<cutoff>    : cutoff value for ortholog groups (default: " + ORTHOLOG_GROUPS_CUTOFF_DEFAULT + ")" );
+        System.out.println( "  -" + THREADS_OPTION
+                + "=<threads>   : number of threads for analyzing Newick/Nexus gene trees (default: 1)" );
         System.out.println( "  -" + REROOTING_OPT
                 + "=<re-rooting>: re-rooting method for gene trees, possible values or 'none', 'midpoint'," );
         System.out.println( "                   or 'outgroup' (default: by minizming duplications)" );
@@ -27,7 +27,7 @@ package org.forester.application;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.List;
+import java.util.Map;
 
 import org.forester.io.parsers.PhylogenyParser;
 import org.forester.io.parsers.nhx.NHXParser;
@@ -41,6 +41,7 @@ import org.forester.phylogeny.data.PhylogenyDataUtil;
 import org.forester.phylogeny.factories.ParserBasedPhylogenyFactory;
 import org.forester.phylogeny.factories.PhylogenyFactory;
 import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
+import org.forester.tools.SplitIndex;
 
 public final class support_transfer {
 
@@ -154,23 +155,20 @@ public final class support_transfer {
      *            the Phylogeny to copy the support values to
      */
     public final static void transferSupportValues( final Phylogeny from, final Phylogeny to ) {
-        to: for( final PhylogenyNodeIterator it_to = to.iteratorPostorder(); it_to.hasNext(); ) {
-            final PhylogenyNode node_to = it_to.next();
+        final Map<String, Integer> leaf_index = SplitIndex.createLeafIndex( to );
+        final SplitIndex to_splits = new SplitIndex( to, leaf_index, false, false );
+        final SplitIndex from_splits = new SplitIndex( from, leaf_index, false, false );
+        for( int i = 0; i < to_splits.getNumberOfNodes(); ++i ) {
+            final PhylogenyNode node_to = to_splits.getNode( i );
             if ( !node_to.isExternal() ) {
-                final List<String> ext_children_to = node_to.getAllExternalDescendantsNames();
-                for( final PhylogenyNodeIterator it_from = from.iteratorPostorder(); it_from.hasNext(); ) {
-                    final PhylogenyNode node_from = it_from.next();
-                    final List<String> ext_children_from = node_from.getAllExternalDescendantsNames();
-                    if ( ( ext_children_from.size() == ext_children_to.size() )
-                            && ext_children_from.containsAll( ext_children_to ) ) {
-                        PhylogenyMethods.setBootstrapConfidence( node_to,
-                                                                 PhylogenyMethods.getConfidenceValue( node_from ) );
-                        continue to;
-                    }
+                final int j = from_splits.find( to_splits, i );
+                if ( j < 0 ) {
+                    final String message = "Attempt to transfer support values from nonidentical topologies";
+                    throw new IllegalArgumentException( message );
                 }
-                final String message = "Attempt to transfer support values from nonidentical topologies";
-                throw new IllegalArgumentException( message );
+                PhylogenyMethods.setBootstrapConfidence( node_to,
+                                                         PhylogenyMethods.getConfidenceValue( from_splits.getNode( j ) ) );
             }
         }
     }
-}
\ No newline at end of file
+}
@@ -58,7 +58,6 @@ import org.forester.protein.Protein;
 import org.forester.species.BasicSpecies;
 import org.forester.species.Species;
 import org.forester.surfacing.BasicDomainSimilarityCalculator;
-import org.forester.surfacing.BasicGenomeWideCombinableDomains;
 import org.forester.surfacing.CombinationsBasedPairwiseDomainSimilarityCalculator;
 import org.forester.surfacing.DomainCountsBasedPairwiseSimilarityCalculator;
 import org.forester.surfacing.DomainLengthsTable;
@@ -68,6 +67,7 @@ import org.forester.surfacing.DomainSimilarity.DomainSimilarityScoring;
 import org.forester.surfacing.DomainSimilarity.PRINT_OPTION;
 import org.forester.surfacing.DomainSimilarityCalculator;
 import org.forester.surfacing.DomainSimilarityCalculator.Detailedness;
+import org.forester.surfacing.GenomeIngester;
 import org.forester.surfacing.GenomeWideCombinableDomains;
 import org.forester.surfacing.GenomeWideCombinableDomains.GenomeWideCombinableDomainsSortOrder;
 import org.forester.surfacing.MappingResults;
@@ -244,6 +244,7 @@ public class surfacing {
     private static final String                                     OUTPUT_DOMAIN_COMBINATIONS_LOST_MORE_THAN_ONCE_ANALYSIS_SUFFIX                = "_fitch_dc_losses_counts";
     private static final String                                     DOMAIN_LENGTHS_ANALYSIS_SUFFIX                                                = "_domain_lengths_analysis";
     private static final String                                     PERFORM_DOMAIN_LENGTH_ANALYSIS_OPTION                                         = "dla";
+    private static final String                                     THREADS_OPTION                                                                = "threads";
     public static final String                                      ALL_PFAMS_ENCOUNTERED_SUFFIX                                                  = "_all_encountered_pfams";
     public static final String                                      ALL_PFAMS_ENCOUNTERED_WITH_GO_ANNOTATION_SUFFIX                               = "_all_encountered_pfams_with_go_annotation";
     public static final String                                      ENCOUNTERED_PFAMS_SUMMARY_SUFFIX                                              = "_encountered_pfams_summary";
@@ -354,6 +355,7 @@ public class surfacing {
         allowed_options.add( USE_LAST_IN_FITCH_OPTION );
         allowed_options.add( PERFORM_DC_FITCH );
         allowed_options.add( PERFORM_DOMAIN_LENGTH_ANALYSIS_OPTION );
+        allowed_options.add( THREADS_OPTION );
         boolean ignore_dufs = surfacing.IGNORE_DUFS_DEFAULT;
         boolean ignore_combination_with_same = surfacing.IGNORE_COMBINATION_WITH_SAME_DEFAULLT;
         double fs_e_value_max = surfacing.MAX_E_VALUE_DEFAULT;
@@ -424,6 +426,19 @@ public class surfacing {
                 ForesterUtil.fatalError( surfacing.PRG_NAME, "no acceptable value for maximal allowed domain overlap" );
             }
         }
+        int number_of_threads = Runtime.getRuntime().availableProcessors();
+        if ( cla.isOptionSet( surfacing.THREADS_OPTION ) ) {
+            try {
+                number_of_threads = cla.getOptionValueAsInt( surfacing.THREADS_OPTION );
+            }
+            catch ( final Exception e ) {
+                ForesterUtil.fatalError( surfacing.PRG_NAME, "no acceptable value for number of threads" );
+            }
+            if ( number_of_threads < 1 ) {
+                ForesterUtil.fatalError( surfacing.PRG_NAME, "number of threads is out of range: "
+                        + number_of_threads );
+            }
+        }
         boolean no_engulfing_overlaps = false;
         if ( cla.isOptionSet( surfacing.NO_ENGULFING_OVERLAP_OPTION ) ) {
             no_engulfing_overlaps = true;
@@ -1533,16 +1548,11 @@ public class surfacing {
         // Main loop:
         final SortedMap<String, Set<String>> distinct_domain_architecutures_per_genome = new TreeMap<>();
         final SortedMap<String, Integer> distinct_domain_architecuture_counts = new TreeMap<>();
+        // Parsers for all genomes; parsing (and reduction to genome wide
+        // combinable domains) runs concurrently, results are processed
+        // below in input order.
+        final List<HmmscanPerDomainTableParser> parsers = new ArrayList<>( number_of_genomes );
         for( int i = 0; i < number_of_genomes; ++i ) {
-            System.out.println();
-            System.out.println( ( i + 1 ) + "/" + number_of_genomes );
-            SurfacingUtil.log( ( i + 1 ) + "/" + number_of_genomes, log_writer );
-            System.out.println( "Processing                                     : " + input_file_properties[ i ][ 1 ]
-                    + " [" + input_file_properties[ i ][ 0 ] + "]" );
-            SurfacingUtil.log(
-                               "Genome                                         : " + input_file_properties[ i ][ 1 ]
-                                       + " [" + input_file_properties[ i ][ 0 ] + "]",
-                               log_writer );
             HmmscanPerDomainTableParser parser = null;
             INDIVIDUAL_SCORE_CUTOFF ind_score_cutoff = INDIVIDUAL_SCORE_CUTOFF.NONE;
             if ( individual_score_cutoffs != null ) {
@@ -1592,9 +1602,28 @@ public class surfacing {
             if ( individual_score_cutoffs != null ) {
                 parser.setIndividualScoreCutoffs( individual_score_cutoffs );
             }
-            List<Protein> protein_list = null;
+            parsers.add( parser );
+        }
+        final GenomeIngester ingester = new GenomeIngester( parsers,
+                                                            !da_analysis,
+                                                            ignore_combination_with_same,
+                                                            domain_id_to_go_ids_map,
+                                                            dc_type,
+                                                            perform_dc_regain_proteins_stats,
+                                                            number_of_threads );
+        for( int i = 0; i < number_of_genomes; ++i ) {
+            System.out.println();
+            System.out.println( ( i + 1 ) + "/" + number_of_genomes );
+            SurfacingUtil.log( ( i + 1 ) + "/" + number_of_genomes, log_writer );
+            System.out.println( "Processing                                     : " + input_file_properties[ i ][ 1 ]
+                    + " [" + input_file_properties[ i ][ 0 ] + "]" );
+            SurfacingUtil.log(
+                               "Genome                                         : " + input_file_properties[ i ][ 1 ]
+                                       + " [" + input_file_properties[ i ][ 0 ] + "]",
+                               log_writer );
+            GenomeIngester.IngestedGenome ingested_genome = null;
             try {
-                protein_list = parser.parse();
+                ingested_genome = ingester.next();
             }
             catch ( final IOException e ) {
                 ForesterUtil.fatalError( surfacing.PRG_NAME, e.getMessage() );
@@ -1602,6 +1631,8 @@ public class surfacing {
             catch ( final Exception e ) {
                 ForesterUtil.unexpectedFatalError( surfacing.PRG_NAME, e.getMessage(), e );
             }
+            final HmmscanPerDomainTableParser parser = ingested_genome.getParser();
+            final List<Protein> protein_list = ingested_genome.getProteins();
             if ( VERBOSE ) {
                 System.out.println( "Domains ignored due to negative domain filter: " );
                 ForesterUtil.printCountingMap( parser.getDomainsIgnoredDueToNegativeDomainFilterCountsMap() );
@@ -1737,14 +1768,8 @@ public class surfacing {
                 domain_lengths_table.addLengths( protein_list );
             }
             if ( !da_analysis ) {
-                gwcd_list.add( BasicGenomeWideCombinableDomains
-                        .createInstance( protein_list,
-                                         ignore_combination_with_same,
-                                         new BasicSpecies( input_file_properties[ i ][ 1 ] ),
-                                         domain_id_to_go_ids_map,
-                                         dc_type,
-                                         protein_length_stats_by_dc,
-                                         domain_number_stats_by_dc ) );
+                gwcd_list.add( ingested_genome.getGenomeWideCombinableDomains() );
+                ingested_genome.addDcStatisticsTo( protein_length_stats_by_dc, domain_number_stats_by_dc );
                 if ( gwcd_list.get( i ).getSize() > 0 ) {
                     if ( output_binary_domain_combinationsfor_counts ) {
                         SurfacingUtil
@@ -2331,6 +2356,8 @@ public class surfacing {
         System.out.println( PERFORM_DC_REGAIN_PROTEINS_STATS_OPTION + ": to perform DC regain protein statistics" );
         System.out.println( DA_ANALYSIS_OPTION + ": to perform DA analysis" );
         System.out.println( PERFORM_DOMAIN_LENGTH_ANALYSIS_OPTION + ": to perform domain length analysis" );
+        System.out.println( THREADS_OPTION
+                + "=<n>: number of genomes to parse concurrently (default: number of available processors)" );
         System.out.println();
         System.out.println();
         System.out
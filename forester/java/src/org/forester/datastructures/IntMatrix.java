@@ -24,6 +24,30 @@ public final class IntMatrix {
         }
     }
 
+    /**
+     * Adds the values of matrix m, which needs to have the same labels as
+     * this matrix, to this matrix.
+     *
+     * @param m
+     */
+    final public void add( final IntMatrix m ) {
+        if ( m.size() != size() ) {
+            throw new IllegalArgumentException( "attempt to add matrix of size " + m.size() + " to matrix of size "
+                    + size() );
+        }
+        for( int x = 0; x < size(); ++x ) {
+            if ( ( getLabel( x ) != null ) && !getLabel( x ).equals( m.getLabel( x ) ) ) {
+                throw new IllegalArgumentException( "attempt to add matrix with different labels: " + m.getLabel( x )
+                        + " vs " + getLabel( x ) );
+            }
+            final int[] row = _data[ x ];
+            final int[] m_row = m._data[ x ];
+            for( int y = 0; y < row.length; ++y ) {
+                row[ y ] += m_row[ y ];
+            }
+        }
+    }
+
     final public int get( final int x, final int y ) {
         return _data[ x ][ y ];
     }
@@ -29,32 +29,55 @@ package org.forester.evoinference;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 import org.forester.evoinference.distance.NeighborJoining;
 import org.forester.evoinference.distance.NeighborJoiningF;
+import org.forester.evoinference.distance.NeighborJoiningP;
 import org.forester.evoinference.distance.NeighborJoiningR;
+import org.forester.evoinference.distance.NeighborJoiningRapid;
 import org.forester.evoinference.distance.PairwiseDistanceCalculator;
+import org.forester.evoinference.distance.PairwiseDistanceCalculator.PWD_DISTANCE_METHOD;
+import org.forester.evoinference.distance.PairwiseDistanceCalculatorP;
 import org.forester.evoinference.distance.Sarray;
 import org.forester.evoinference.distance.Sset;
 import org.forester.evoinference.matrix.character.BasicCharacterStateMatrix;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix.BinaryStates;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix.GainLossStates;
+import org.forester.evoinference.matrix.character.IntCharacterStateMatrix;
+import org.forester.evoinference.matrix.character.PackedBinaryStateMatrix;
 import org.forester.evoinference.matrix.distance.BasicSymmetricalDistanceMatrix;
 import org.forester.evoinference.matrix.distance.DistanceMatrix;
+import org.forester.evoinference.matrix.distance.PackedSymmetricalDistanceMatrix;
 import org.forester.evoinference.parsimony.DolloParsimony;
 import org.forester.evoinference.parsimony.FitchParsimony;
+import org.forester.evoinference.parsimony.IntSankoffParsimony;
+import org.forester.evoinference.parsimony.PackedDolloParsimony;
+import org.forester.evoinference.parsimony.PackedFitchParsimony;
+import org.forester.evoinference.tools.BootstrapResampler;
+import org.forester.evoinference.tools.NeighborJoiningBootstrap;
 import org.forester.io.parsers.GeneralMsaParser;
 import org.forester.io.parsers.SymmetricalDistanceMatrixParser;
 import org.forester.io.parsers.nhx.NHXParser;
+import org.forester.msa.BasicMsa;
 import org.forester.msa.Msa;
+import org.forester.msa.ResampleableMsa;
 import org.forester.phylogeny.Phylogeny;
+import org.forester.phylogeny.PhylogenyMethods;
+import org.forester.phylogeny.PhylogenyNode;
 import org.forester.phylogeny.factories.ParserBasedPhylogenyFactory;
 import org.forester.phylogeny.factories.PhylogenyFactory;
+import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
+import org.forester.sequence.BasicSequence;
+import org.forester.sequence.MolecularSequence;
+import org.forester.tools.ConfidenceAssessor;
 import org.forester.util.ForesterUtil;
 
 public class TestPhylogenyReconstruction {
@@ -109,6 +132,12 @@ public class TestPhylogenyReconstruction {
             return false;
         }
         System.out.println( "OK." );
+        System.out.print( "  Packed symmetrical distance matrix: " );
+        if ( !testPackedSymmetricalDistanceMatrix( test_dir ) ) {
+            System.out.println( "failed." );
+            return false;
+        }
+        System.out.println( "OK." );
         System.out.print( "  Basic character state matrix: " );
         if ( !testBasicCharacterStateMatrix() ) {
             System.out.println( "failed." );
@@ -139,6 +168,24 @@ public class TestPhylogenyReconstruction {
             return false;
         }
         System.out.println( "OK." );
+        System.out.print( "  Neighbor Joining (parallel): " );
+        if ( !testNeighborJoiningP() ) {
+            System.out.println( "failed." );
+            return false;
+        }
+        System.out.println( "OK." );
+        System.out.print( "  Neighbor Joining (rapid): " );
+        if ( !testNeighborJoiningRapid() ) {
+            System.out.println( "failed." );
+            return false;
+        }
+        System.out.println( "OK." );
+        System.out.print( "  Neighbor Joining bootstrap: " );
+        if ( !testNeighborJoiningBootstrap( test_dir ) ) {
+            System.out.println( "failed." );
+            return false;
+        }
+        System.out.println( "OK." );
         System.out.print( "  Dollo Parsimony: " );
         if ( !testDolloParsimony() ) {
             System.out.println( "failed." );
@@ -157,6 +204,18 @@ public class TestPhylogenyReconstruction {
             return false;
         }
         System.out.println( "OK." );
+        System.out.print( "  Packed Fitch and Dollo parsimony: " );
+        if ( !testPackedParsimony() ) {
+            System.out.println( "failed." );
+            return false;
+        }
+        System.out.println( "OK." );
+        System.out.print( "  Int Sankoff parsimony: " );
+        if ( !testIntSankoffParsimony() ) {
+            System.out.println( "failed." );
+            return false;
+        }
+        System.out.println( "OK." );
         return true;
     }
 
@@ -435,6 +494,137 @@ public class TestPhylogenyReconstruction {
         return true;
     }
 
+    private static boolean testPackedSymmetricalDistanceMatrix( final File test_dir ) {
+        try {
+            final PackedSymmetricalDistanceMatrix matrix_0 = new PackedSymmetricalDistanceMatrix( 4 );
+            matrix_0.setIdentifier( 0, "A" );
+            matrix_0.setIdentifier( 1, "B" );
+            matrix_0.setIdentifier( 2, "C" );
+            matrix_0.setIdentifier( 3, "D" );
+            matrix_0.setValue( 1, 0, 1.5 );
+            matrix_0.setValue( 0, 2, 2.0 );
+            matrix_0.setValue( 3, 0, 3.0 );
+            matrix_0.setValue( 1, 2, 4.0 );
+            matrix_0.setValue( 3, 1, 5.0 );
+            matrix_0.setValue( 2, 3, 6.0 );
+            if ( matrix_0.getSize() != 4 ) {
+                return false;
+            }
+            if ( matrix_0.getNumberOfValues() != 6 ) {
+                return false;
+            }
+            if ( !isEqual( matrix_0.getValue( 0, 0 ), 0.0 ) ) {
+                return false;
+            }
+            if ( !isEqual( matrix_0.getValue( 0, 1 ), 1.5 ) ) {
+                return false;
+            }
+            if ( !isEqual( matrix_0.getValue( 1, 0 ), 1.5 ) ) {
+                return false;
+            }
+            if ( !isEqual( matrix_0.getValue( 2, 0 ), 2 ) ) {
+                return false;
+            }
+            if ( !isEqual( matrix_0.getValue( 0, 3 ), 3 ) ) {
+                return false;
+            }
+            if ( !isEqual( matrix_0.getValue( 2, 1 ), 4 ) ) {
+                return false;
+            }
+            if ( !isEqual( matrix_0.getValue( 1, 3 ), 5 ) ) {
+                return false;
+            }
+            if ( !isEqual( matrix_0.getValue( 3, 2 ), 6 ) ) {
+                return false;
+            }
+            if ( matrix_0.getIndex( "C" ) != 2 ) {
+                return false;
+            }
+            final BasicSymmetricalDistanceMatrix basic_0 = new BasicSymmetricalDistanceMatrix( 4 );
+            basic_0.setIdentifier( 0, "A" );
+            basic_0.setIdentifier( 1, "B" );
+            basic_0.setIdentifier( 2, "C" );
+            basic_0.setIdentifier( 3, "D" );
+            basic_0.setRow( "1.5", 1 );
+            basic_0.setRow( "2 4", 2 );
+            basic_0.setRow( "3 5 6", 3 );
+            if ( !matrix_0.toString().equals( basic_0.toString() ) ) {
+                return false;
+            }
+            // Memory-mapped:
+            final File f = File.createTempFile( "forester_packed_matrix", ".bin" );
+            f.deleteOnExit();
+            final int size = 60;
+            final PackedSymmetricalDistanceMatrix mapped = new PackedSymmetricalDistanceMatrix( size, f );
+            if ( !mapped.isMemoryMapped() ) {
+                return false;
+            }
+            if ( f.length() != ( mapped.getNumberOfValues() * 4 ) ) {
+                return false;
+            }
+            final BasicSymmetricalDistanceMatrix basic_1 = new BasicSymmetricalDistanceMatrix( size );
+            mapped.randomize( 11 );
+            basic_1.randomize( 11 );
+            for( int i = 0; i < size; ++i ) {
+                mapped.setIdentifier( i, "s" + i );
+                basic_1.setIdentifier( i, "s" + i );
+                for( int j = 0; j < size; ++j ) {
+                    if ( mapped.getValue( i, j ) != ( float ) basic_1.getValue( i, j ) ) {
+                        return false;
+                    }
+                }
+            }
+            final Phylogeny p_mapped = NeighborJoiningF.createInstance( false, 6 ).execute( mapped );
+            final Phylogeny p_basic = NeighborJoiningF.createInstance( false, 6 ).execute( basic_1 );
+            if ( !p_mapped.toNewHampshire().equals( p_basic.toNewHampshire() ) ) {
+                return false;
+            }
+            // Pairwise distances:
+            final Msa msa0 = GeneralMsaParser.parseMsa( new FileInputStream( test_dir + ForesterUtil.FILE_SEPARATOR
+                    + "bcl.aln" ) );
+            final BasicSymmetricalDistanceMatrix pwd0 = PairwiseDistanceCalculator.calcKimuraDistances( msa0 );
+            final PackedSymmetricalDistanceMatrix pwd1 = PairwiseDistanceCalculator
+                    .calcKimuraDistances( msa0, new PackedSymmetricalDistanceMatrix( msa0.getNumberOfSequences() ) );
+            for( int i = 0; i < pwd0.getSize(); ++i ) {
+                if ( !pwd0.getIdentifier( i ).equals( pwd1.getIdentifier( i ) ) ) {
+                    return false;
+                }
+                for( int j = 0; j < pwd0.getSize(); ++j ) {
+                    if ( pwd1.getValue( i, j ) != ( float ) pwd0.getValue( i, j ) ) {
+                        return false;
+                    }
+                }
+            }
+            final Phylogeny p_pwd1 = NeighborJoiningP.createInstance( false, 6, 2 ).execute( pwd1 );
+            final Phylogeny p_pwd0 = NeighborJoiningF.createInstance( false, 6 ).execute( pwd0 );
+            if ( !p_pwd1.toNewHampshire().equals( p_pwd0.toNewHampshire() ) ) {
+                return false;
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isIdentical( final DistanceMatrix d0, final DistanceMatrix d1 ) {
+        if ( d0.getSize() != d1.getSize() ) {
+            return false;
+        }
+        for( int i = 0; i < d0.getSize(); ++i ) {
+            if ( !d0.getIdentifier( i ).equals( d1.getIdentifier( i ) ) ) {
+                return false;
+            }
+            for( int j = 0; j < d0.getSize(); ++j ) {
+                if ( d0.getValue( i, j ) != d1.getValue( i, j ) ) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     private static boolean testDistanceCalculationMethods( final File test_dir ) {
         try {
             final Msa msa0 = GeneralMsaParser.parseMsa( new FileInputStream( test_dir + ForesterUtil.FILE_SEPARATOR
@@ -448,6 +638,49 @@ public class TestPhylogenyReconstruction {
                     return false;
                 }
             }
+            final PairwiseDistanceCalculatorP pdc0 = PairwiseDistanceCalculatorP.createInstance( msa0, 3 );
+            if ( !isIdentical( pwd0, pdc0.calcKimuraDistances() ) ) {
+                return false;
+            }
+            if ( !isIdentical( PairwiseDistanceCalculator.calcPoissonDistances( msa0 ), pdc0.calcPoissonDistances() ) ) {
+                return false;
+            }
+            if ( !isIdentical( PairwiseDistanceCalculator.calcFractionalDissimilarities( msa0 ),
+                               pdc0.calcFractionalDissimilarities() ) ) {
+                return false;
+            }
+            final List<MolecularSequence> seqs = new ArrayList<MolecularSequence>();
+            seqs.add( BasicSequence.createDnaSequence( "a", "ACGTACGTACGTACGTACGTA-" ) );
+            seqs.add( BasicSequence.createDnaSequence( "b", "ACGTACGTACGTACGTACGTA-" ) );
+            seqs.add( BasicSequence.createDnaSequence( "c", "ACGTACGTACGTACGTACGTAC" ) );
+            seqs.add( BasicSequence.createDnaSequence( "d", "NNNNNNNNNNNNNNNNNNNNNN" ) );
+            seqs.add( BasicSequence.createDnaSequence( "e", "CAACGTTGCAACGTTGCAACGT" ) );
+            seqs.add( BasicSequence.createDnaSequence( "f", "GGACGTNNNNACGTACGTACGA" ) );
+            final Msa msa1 = BasicMsa.createInstance( seqs );
+            final PairwiseDistanceCalculatorP pdc1 = PairwiseDistanceCalculatorP.createInstance( msa1, 2 );
+            if ( !isIdentical( PairwiseDistanceCalculator.calcKimuraDistances( msa1 ), pdc1.calcKimuraDistances() ) ) {
+                return false;
+            }
+            if ( !isIdentical( PairwiseDistanceCalculator.calcPoissonDistances( msa1 ), pdc1.calcPoissonDistances() ) ) {
+                return false;
+            }
+            if ( !isIdentical( PairwiseDistanceCalculator.calcFractionalDissimilarities( msa1 ),
+                               pdc1.calcFractionalDissimilarities() ) ) {
+                return false;
+            }
+            if ( pdc1.calcKimuraDistances().getValue( 0, 1 ) != 0 ) {
+                return false;
+            }
+            if ( pdc1.calcKimuraDistances().getValue( 0, 3 ) != PairwiseDistanceCalculator.DEFAULT_VALUE_FOR_TOO_LARGE_DISTANCE_FOR_KIMURA_FORMULA ) {
+                return false;
+            }
+            final PackedSymmetricalDistanceMatrix pwd2 = PairwiseDistanceCalculatorP.createInstance( msa1, 2 )
+                    .calcKimuraDistances( new PackedSymmetricalDistanceMatrix( msa1.getNumberOfSequences() ) );
+            final PackedSymmetricalDistanceMatrix pwd3 = PairwiseDistanceCalculator
+                    .calcKimuraDistances( msa1, new PackedSymmetricalDistanceMatrix( msa1.getNumberOfSequences() ) );
+            if ( !isIdentical( pwd3, pwd2 ) ) {
+                return false;
+            }
         }
         catch ( final Exception e ) {
             e.printStackTrace( System.out );
@@ -1953,6 +2186,333 @@ public class TestPhylogenyReconstruction {
         return true;
     }
 
+    private static boolean testIntSankoffParsimony() {
+        try {
+            final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
+            final Phylogeny p1 = factory.create( "((A,B)AB,(C,D)CD)ABCD", new NHXParser() )[ 0 ];
+            p1.setRooted( true );
+            final IntCharacterStateMatrix m1 = new IntCharacterStateMatrix( 4, 2 );
+            final String[] names = { "A", "B", "C", "D" };
+            final int[][] states = { { 0, 0 }, { 1, IntCharacterStateMatrix.UNKNOWN }, { 1, 2 }, { 2, 2 } };
+            for( int i = 0; i < 4; ++i ) {
+                m1.setIdentifier( i, names[ i ] );
+                for( int c = 0; c < 2; ++c ) {
+                    m1.setIntState( i, c, states[ i ][ c ] );
+                }
+            }
+            m1.setCharacter( 0, "c0" );
+            m1.setCharacter( 1, "c1" );
+            final IntSankoffParsimony ordered = new IntSankoffParsimony( new int[][] { { 0, 1, 2 }, { 1, 0, 1 },
+                    { 2, 1, 0 } } );
+            ordered.setReturnInternalStates( true );
+            ordered.execute( p1, m1, 2 );
+            // c0: all internal nodes in state 1 (cost 2); c1: all states are
+            // optimal at the root (cost 2), the first one is used.
+            if ( ( ordered.getCost() != 4 ) || ( ordered.getTotalChanges() != 3 ) ) {
+                return false;
+            }
+            final IntCharacterStateMatrix i1 = ordered.getInternalStatesMatrix();
+            if ( ( i1.getNumberOfIdentifiers() != 3 ) || !i1.getIdentifier( 0 ).equals( "AB" )
+                    || !i1.getIdentifier( 2 ).equals( "ABCD" ) ) {
+                return false;
+            }
+            final int[] c1_states = { 0, 2, 0 };
+            for( int i = 0; i < 3; ++i ) {
+                if ( ( i1.getIntState( i, 0 ) != 1 ) || ( i1.getIntState( i, 1 ) != c1_states[ i ] ) ) {
+                    return false;
+                }
+            }
+            final Phylogeny p2 = factory.create( "(A,B)AB", new NHXParser() )[ 0 ];
+            p2.setRooted( true );
+            final IntCharacterStateMatrix m2 = new IntCharacterStateMatrix( 2, 1 );
+            m2.setIdentifier( 0, "A" );
+            m2.setIdentifier( 1, "B" );
+            m2.setCharacter( 0, "c0" );
+            m2.setIntState( 0, 0, 0 );
+            m2.setIntState( 1, 0, 2 );
+            final int[][] unit = { { 0, 1, 1 }, { 1, 0, 1 }, { 1, 1, 0 } };
+            final IntSankoffParsimony first = new IntSankoffParsimony( unit );
+            first.setReturnInternalStates( true );
+            first.execute( p2, m2 );
+            final IntSankoffParsimony last = new IntSankoffParsimony( unit );
+            last.setReturnInternalStates( true );
+            last.setUseLast( true );
+            last.execute( p2, m2 );
+            if ( ( first.getCost() != 1 ) || ( last.getCost() != 1 )
+                    || ( first.getInternalStatesMatrix().getIntState( 0, 0 ) != 0 )
+                    || ( last.getInternalStatesMatrix().getIntState( 0, 0 ) != 2 ) ) {
+                return false;
+            }
+            try {
+                m2.setIntState( 0, 0, 3 );
+                first.execute( p2, m2 );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // expected
+            }
+            try {
+                m2.setIntState( 0, 0, -2 );
+                first.execute( p2, m2 );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // expected
+            }
+            try {
+                new IntSankoffParsimony( new int[][] { { 0, -1 }, { 1, 0 } } );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // expected
+            }
+            // With unit costs on binary trees, Sankoff and Fitch costs are the same.
+            final Random r = new Random( 7 );
+            for( int t = 0; t < 20; ++t ) {
+                final int number_of_leaves = 1 + r.nextInt( 30 );
+                final int number_of_states = 2 + r.nextInt( 4 );
+                final int number_of_characters = 1 + r.nextInt( 300 );
+                final int[] leaf_counter = { 0 };
+                final Phylogeny p = factory.create( createRandomNewick( r, number_of_leaves, leaf_counter, true ) + ";",
+                                                    new NHXParser() )[ 0 ];
+                p.setRooted( true );
+                final IntCharacterStateMatrix m = new IntCharacterStateMatrix( number_of_leaves, number_of_characters );
+                final CharacterStateMatrix<Integer> b = new BasicCharacterStateMatrix<Integer>( number_of_leaves,
+                                                                                                number_of_characters );
+                for( int i = 0; i < number_of_leaves; ++i ) {
+                    m.setIdentifier( i, "l" + i );
+                    b.setIdentifier( i, "l" + i );
+                }
+                for( int c = 0; c < number_of_characters; ++c ) {
+                    m.setCharacter( c, "c" + c );
+                    b.setCharacter( c, "c" + c );
+                    for( int i = 0; i < number_of_leaves; ++i ) {
+                        final int state = r.nextInt( number_of_states );
+                        m.setIntState( i, c, state );
+                        b.setState( i, c, state );
+                    }
+                }
+                final int[][] costs = new int[ number_of_states ][ number_of_states ];
+                for( int i = 0; i < number_of_states; ++i ) {
+                    for( int j = 0; j < number_of_states; ++j ) {
+                        costs[ i ][ j ] = i == j ? 0 : 1;
+                    }
+                }
+                final FitchParsimony<Integer> fitch = new FitchParsimony<Integer>();
+                fitch.execute( p, b );
+                final IntSankoffParsimony sankoff = new IntSankoffParsimony( costs );
+                sankoff.execute( p, m, 1 );
+                if ( ( sankoff.getCost() != fitch.getCost() ) || ( sankoff.getTotalChanges() != fitch.getCost() ) ) {
+                    return false;
+                }
+                // Results do not depend on the number of threads, randomized
+                // or not.
+                for( int i = 0; i < number_of_states; ++i ) {
+                    for( int j = 0; j < number_of_states; ++j ) {
+                        costs[ i ][ j ] = r.nextInt( 4 );
+                    }
+                }
+                for( int mode = 0; mode < 3; ++mode ) {
+                    final IntSankoffParsimony s1 = new IntSankoffParsimony( costs );
+                    final IntSankoffParsimony s4 = new IntSankoffParsimony( costs );
+                    if ( mode == 1 ) {
+                        s1.setUseLast( true );
+                        s4.setUseLast( true );
+                    }
+                    else if ( mode == 2 ) {
+                        s1.setRandomize( true );
+                        s1.setRandomNumberSeed( t );
+                        s4.setRandomize( true );
+                        s4.setRandomNumberSeed( t );
+                    }
+                    s1.setReturnInternalStates( true );
+                    s4.setReturnInternalStates( true );
+                    s1.execute( p, m, 1 );
+                    s4.execute( p, m, 4 );
+                    if ( ( s1.getCost() != s4.getCost() ) || ( s1.getTotalChanges() != s4.getTotalChanges() )
+                            || !isEqual( s1.getInternalStatesMatrix(), s4.getInternalStatesMatrix() ) ) {
+                        return false;
+                    }
+                }
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean testPackedParsimony() {
+        try {
+            final Random r = new Random( 42 );
+            final PackedBinaryStateMatrix m0 = new PackedBinaryStateMatrix( 3, 70 );
+            m0.setState( 1, 0, BinaryStates.PRESENT );
+            m0.setState( 1, 63, BinaryStates.PRESENT );
+            m0.setState( 1, 64, BinaryStates.PRESENT );
+            m0.setState( 2, 69, BinaryStates.PRESENT );
+            m0.setState( 1, 64, BinaryStates.ABSENT );
+            if ( ( m0.getNumberOfWords() != 2 ) || ( m0.getWord( 1, 0 ) != ( 1L | ( 1L << 63 ) ) )
+                    || ( m0.getWord( 1, 1 ) != 0 ) || ( m0.getWord( 2, 1 ) != ( 1L << 5 ) ) ) {
+                return false;
+            }
+            if ( ( m0.getState( 2, 69 ) != BinaryStates.PRESENT ) || ( m0.getState( 0, 69 ) != BinaryStates.ABSENT ) ) {
+                return false;
+            }
+            m0.setWord( 0, 1, -1L );
+            if ( ( m0.getWord( 0, 1 ) != 63 ) || ( m0.getWordMask( 1 ) != 63 ) || ( m0.getWordMask( 0 ) != -1L ) ) {
+                return false;
+            }
+            try {
+                m0.setState( 0, 0, BinaryStates.UNKNOWN );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // expected
+            }
+            final CharacterStateMatrix<BinaryStates> p0 = m0.pivot().pivot();
+            for( int i = 0; i < 3; ++i ) {
+                for( int c = 0; c < 70; ++c ) {
+                    if ( ( p0.getState( i, c ) != m0.getState( i, c ) )
+                            || ( m0.copy().getState( i, c ) != m0.getState( i, c ) ) ) {
+                        return false;
+                    }
+                }
+            }
+            final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
+            final int[] numbers_of_characters = { 1, 17, 63, 64, 65, 200 };
+            for( int t = 0; t < 30; ++t ) {
+                final int number_of_leaves = 1 + r.nextInt( 40 );
+                final int[] leaf_counter = { 0 };
+                final String nh = createRandomNewick( r, number_of_leaves, leaf_counter, t % 3 == 0 ) + ";";
+                final Phylogeny p = factory.create( nh, new NHXParser() )[ 0 ];
+                p.setRooted( true );
+                final int number_of_characters = numbers_of_characters[ t % numbers_of_characters.length ];
+                final CharacterStateMatrix<BinaryStates> m = new BasicCharacterStateMatrix<BinaryStates>( number_of_leaves,
+                                                                                                          number_of_characters );
+                for( int i = 0; i < number_of_leaves; ++i ) {
+                    m.setIdentifier( i, "l" + ( number_of_leaves - 1 - i ) );
+                }
+                final int density = r.nextInt( 10 );
+                for( int c = 0; c < number_of_characters; ++c ) {
+                    m.setCharacter( c, "c" + c );
+                    for( int i = 0; i < number_of_leaves; ++i ) {
+                        m.setState( i, c, r.nextInt( 10 ) < density ? BinaryStates.PRESENT : BinaryStates.ABSENT );
+                    }
+                }
+                final PackedBinaryStateMatrix pm = PackedBinaryStateMatrix.createInstance( m );
+                final DolloParsimony dollo = DolloParsimony.createInstance();
+                dollo.setReturnGainLossMatrix( true );
+                dollo.setReturnInternalStates( true );
+                dollo.execute( p, m );
+                final PackedDolloParsimony packed_dollo = PackedDolloParsimony.createInstance();
+                packed_dollo.setReturnGainLossMatrix( true );
+                packed_dollo.setReturnInternalStates( true );
+                packed_dollo.execute( p, pm );
+                if ( ( dollo.getCost() != packed_dollo.getCost() )
+                        || ( dollo.getTotalGains() != packed_dollo.getTotalGains() )
+                        || ( dollo.getTotalLosses() != packed_dollo.getTotalLosses() )
+                        || ( dollo.getTotalUnchanged() != packed_dollo.getTotalUnchanged() ) ) {
+                    return false;
+                }
+                if ( !isEqual( dollo.getGainLossMatrix(), packed_dollo.getGainLossMatrix() )
+                        || !isEqual( dollo.getInternalStatesMatrix(), packed_dollo.getInternalStatesMatrix() ) ) {
+                    return false;
+                }
+                for( int mode = 0; mode < 4; ++mode ) {
+                    final FitchParsimony<BinaryStates> fitch = new FitchParsimony<BinaryStates>();
+                    final PackedFitchParsimony packed_fitch = new PackedFitchParsimony();
+                    if ( mode == 1 ) {
+                        fitch.setUseLast( true );
+                        packed_fitch.setUseLast( true );
+                    }
+                    else if ( mode > 1 ) {
+                        fitch.setRandomize( true );
+                        fitch.setRandomNumberSeed( t + mode );
+                        packed_fitch.setRandomize( true );
+                        packed_fitch.setRandomNumberSeed( t + mode );
+                    }
+                    fitch.setReturnGainLossMatrix( true );
+                    fitch.setReturnInternalStates( true );
+                    packed_fitch.setReturnGainLossMatrix( true );
+                    packed_fitch.setReturnInternalStates( true );
+                    fitch.execute( p, m );
+                    packed_fitch.execute( p, pm );
+                    if ( ( fitch.getCost() != packed_fitch.getCost() )
+                            || ( fitch.getTotalGains() != packed_fitch.getTotalGains() )
+                            || ( fitch.getTotalLosses() != packed_fitch.getTotalLosses() )
+                            || ( fitch.getTotalUnchanged() != packed_fitch.getTotalUnchanged() ) ) {
+                        return false;
+                    }
+                    if ( !isEqual( fitch.getGainLossMatrix(), packed_fitch.getGainLossMatrix() )
+                            || !isEqual( fitch.getInternalStatesMatrix(), packed_fitch.getInternalStatesMatrix() ) ) {
+                        return false;
+                    }
+                }
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static String createRandomNewick( final Random r,
+                                              final int number_of_leaves,
+                                              final int[] leaf_counter,
+                                              final boolean binary ) {
+        if ( number_of_leaves == 1 ) {
+            return "l" + leaf_counter[ 0 ]++;
+        }
+        final int number_of_children = binary ? 2 : 2 + r.nextInt( Math.min( 3, number_of_leaves - 1 ) );
+        final StringBuilder sb = new StringBuilder( "(" );
+        int remaining = number_of_leaves;
+        for( int i = 0; i < number_of_children; ++i ) {
+            final int n = i == ( number_of_children - 1 ) ? remaining : 1 + r
+                    .nextInt( remaining - ( number_of_children - 1 - i ) );
+            remaining -= n;
+            if ( i > 0 ) {
+                sb.append( "," );
+            }
+            sb.append( createRandomNewick( r, n, leaf_counter, binary ) );
+        }
+        sb.append( ")" );
+        return sb.toString();
+    }
+
+    private static <S> boolean isEqual( final CharacterStateMatrix<S> m1, final CharacterStateMatrix<S> m2 ) {
+        if ( ( m1.getNumberOfIdentifiers() != m2.getNumberOfIdentifiers() )
+                || ( m1.getNumberOfCharacters() != m2.getNumberOfCharacters() ) ) {
+            return false;
+        }
+        for( int c = 0; c < m1.getNumberOfCharacters(); ++c ) {
+            if ( !m1.getCharacter( c ).equals( m2.getCharacter( c ) ) ) {
+                return false;
+            }
+        }
+        for( int i = 0; i < m1.getNumberOfIdentifiers(); ++i ) {
+            if ( !m1.getIdentifier( i ).equals( m2.getIdentifier( i ) ) ) {
+                return false;
+            }
+            for( int c = 0; c < m1.getNumberOfCharacters(); ++c ) {
+                if ( m1.getState( i, c ) != m2.getState( i, c ) ) {
+                    return false;
+                }
+            }
+        }
+        final StringWriter w1 = new StringWriter();
+        final StringWriter w2 = new StringWriter();
+        try {
+            m1.toWriter( w1 );
+            m2.toWriter( w2 );
+        }
+        catch ( final IOException e ) {
+            return false;
+        }
+        return w1.toString().equals( w2.toString() );
+    }
+
     private static boolean testNeighborJoining( final boolean verbose ) {
         try {
             NeighborJoining nj = NeighborJoining.createInstance();
@@ -2530,6 +3090,241 @@ public class TestPhylogenyReconstruction {
         return true;
     }
 
+    private static boolean testNeighborJoiningP() {
+        try {
+            final NeighborJoiningP nj0 = NeighborJoiningP.createInstance( 2 );
+            final BasicSymmetricalDistanceMatrix m0 = new BasicSymmetricalDistanceMatrix( 4 );
+            m0.setIdentifier( 0, "A" );
+            m0.setIdentifier( 1, "B" );
+            m0.setIdentifier( 2, "C" );
+            m0.setIdentifier( 3, "D" );
+            m0.setRow( "5 ", 1 );
+            m0.setRow( "3 6 ", 2 );
+            m0.setRow( "7.5 10.5 5.5", 3 );
+            final Phylogeny p0 = nj0.execute( m0 );
+            p0.reRoot( p0.getNode( "D" ) );
+            if ( isUnequal( p0.getNode( "A" ).getDistanceToParent(), 1 ) ) {
+                return false;
+            }
+            if ( isUnequal( p0.getNode( "B" ).getDistanceToParent(), 4 ) ) {
+                return false;
+            }
+            if ( isUnequal( p0.getNode( "C" ).getDistanceToParent(), 0.5 ) ) {
+                return false;
+            }
+            if ( isUnequal( p0.getNode( "D" ).getDistanceToParent(), 2.5 ) ) {
+                return false;
+            }
+            if ( isUnequal( p0.getNode( "A" ).getParent().getDistanceToParent(), 1.5 ) ) {
+                return false;
+            }
+            if ( isUnequal( p0.getNode( "A" ).getParent().getParent().getDistanceToParent(), 2.5 ) ) {
+                return false;
+            }
+            // Large enough for the parallel code path to be used:
+            for( final int size : new int[] { 300, 777 } ) {
+                final BasicSymmetricalDistanceMatrix mf = new BasicSymmetricalDistanceMatrix( size );
+                final BasicSymmetricalDistanceMatrix mp = new BasicSymmetricalDistanceMatrix( size );
+                mf.randomize( size );
+                mp.randomize( size );
+                for( int i = 0; i < size; ++i ) {
+                    mf.setIdentifier( i, "s" + i );
+                    mp.setIdentifier( i, "s" + i );
+                }
+                final Phylogeny pf = NeighborJoiningF.createInstance( false, 6 ).execute( mf );
+                final Phylogeny pp = NeighborJoiningP.createInstance( false, 6, 4 ).execute( mp );
+                if ( !pf.toNewHampshire().equals( pp.toNewHampshire() ) ) {
+                    return false;
+                }
+            }
+            // As in nj with t=1 and t=4: packed matrices parsed from text, with
+            // near-tied minimal Q-values (distances differ by 1.0E-6 at most).
+            final String l = ForesterUtil.getLineSeparator();
+            final Random r = new Random( 42 );
+            final int size = 300;
+            final StringBuilder source = new StringBuilder();
+            source.append( " " + size + l );
+            for( int i = 0; i < size; ++i ) {
+                source.append( "s" + i );
+                for( int j = 0; j < i; ++j ) {
+                    source.append( " 1.00000" + r.nextInt( 2 ) );
+                }
+                source.append( " 0" + l );
+            }
+            final SymmetricalDistanceMatrixParser parser = SymmetricalDistanceMatrixParser.createInstance();
+            parser.setPacked( true );
+            final DistanceMatrix m1 = parser.parse( source.toString() )[ 0 ];
+            final DistanceMatrix m4 = parser.parse( source.toString() )[ 0 ];
+            final Phylogeny p1 = NeighborJoiningF.createInstance( false, 6 )
+                    .execute( ( PackedSymmetricalDistanceMatrix ) m1 );
+            final Phylogeny p4 = NeighborJoiningP.createInstance( false, 6, 4 )
+                    .execute( ( PackedSymmetricalDistanceMatrix ) m4 );
+            if ( !p1.toNewHampshire().equals( p4.toNewHampshire() ) ) {
+                return false;
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean testNeighborJoiningBootstrap( final File test_dir ) {
+        try {
+            final Msa msa = GeneralMsaParser.parseMsa( new FileInputStream( test_dir + ForesterUtil.FILE_SEPARATOR
+                    + "bcl.aln" ) );
+            final NeighborJoiningBootstrap b1 = NeighborJoiningBootstrap
+                    .createInstance( msa, PWD_DISTANCE_METHOD.KIMURA_DISTANCE, 1 );
+            final NeighborJoiningBootstrap b3 = NeighborJoiningBootstrap
+                    .createInstance( msa, PWD_DISTANCE_METHOD.KIMURA_DISTANCE, 3 );
+            final Phylogeny t1 = b1.inferPhylogeny();
+            final Phylogeny t3 = b3.inferPhylogeny();
+            final Phylogeny t0 = b1.inferPhylogeny();
+            if ( !t1.toNewHampshire().equals( t3.toNewHampshire() ) ) {
+                return false;
+            }
+            b1.execute( "bootstrap", t1, 12, 42 );
+            b3.execute( "bootstrap", t3, 12, 42 );
+            // Same replicates, wired by hand:
+            final Random r = new Random( 42 );
+            final Phylogeny[] evaluators = new Phylogeny[ 12 ];
+            final ResampleableMsa resampleable_msa = new ResampleableMsa( ( BasicMsa ) msa );
+            for( int i = 0; i < evaluators.length; ++i ) {
+                resampleable_msa.resample( BootstrapResampler.createResampledColumnPositions( msa.getLength(),
+                                                                                              r.nextLong() ) );
+                evaluators[ i ] = NeighborJoiningF.createInstance( false, 5 ).execute( PairwiseDistanceCalculator
+                        .calcKimuraDistances( resampleable_msa ) );
+            }
+            ConfidenceAssessor.evaluate( "bootstrap", evaluators, t0, true, 1 );
+            final PhylogenyNodeIterator it0 = t0.iteratorPreorder();
+            final PhylogenyNodeIterator it1 = t1.iteratorPreorder();
+            final PhylogenyNodeIterator it3 = t3.iteratorPreorder();
+            boolean support = false;
+            while ( it0.hasNext() ) {
+                final PhylogenyNode n0 = it0.next();
+                final PhylogenyNode n1 = it1.next();
+                final PhylogenyNode n3 = it3.next();
+                if ( ( n0.getBranchData().getNumberOfConfidences() != n1.getBranchData().getNumberOfConfidences() )
+                        || ( n0.getBranchData().getNumberOfConfidences() != n3.getBranchData()
+                                .getNumberOfConfidences() ) ) {
+                    return false;
+                }
+                if ( n0.getBranchData().isHasConfidences() ) {
+                    final double c0 = n0.getBranchData().getConfidence( 0 ).getValue();
+                    if ( ( c0 != n1.getBranchData().getConfidence( 0 ).getValue() )
+                            || ( c0 != n3.getBranchData().getConfidence( 0 ).getValue() ) ) {
+                        return false;
+                    }
+                    if ( c0 > 0 ) {
+                        support = true;
+                    }
+                }
+            }
+            if ( !support ) {
+                return false;
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean testNeighborJoiningRapid() {
+        try {
+            final NeighborJoiningRapid nj0 = NeighborJoiningRapid.createInstance();
+            final BasicSymmetricalDistanceMatrix m0 = new BasicSymmetricalDistanceMatrix( 4 );
+            m0.setIdentifier( 0, "A" );
+            m0.setIdentifier( 1, "B" );
+            m0.setIdentifier( 2, "C" );
+            m0.setIdentifier( 3, "D" );
+            m0.setRow( "5 ", 1 );
+            m0.setRow( "3 6 ", 2 );
+            m0.setRow( "7.5 10.5 5.5", 3 );
+            final Phylogeny p0 = nj0.execute( m0 );
+            p0.reRoot( p0.getNode( "D" ) );
+            if ( isUnequal( p0.getNode( "A" ).getDistanceToParent(), 1 ) ) {
+                return false;
+            }
+            if ( isUnequal( p0.getNode( "B" ).getDistanceToParent(), 4 ) ) {
+                return false;
+            }
+            if ( isUnequal( p0.getNode( "C" ).getDistanceToParent(), 0.5 ) ) {
+                return false;
+            }
+            if ( isUnequal( p0.getNode( "D" ).getDistanceToParent(), 2.5 ) ) {
+                return false;
+            }
+            if ( isUnequal( p0.getNode( "A" ).getParent().getDistanceToParent(), 1.5 ) ) {
+                return false;
+            }
+            if ( isUnequal( p0.getNode( "A" ).getParent().getParent().getDistanceToParent(), 2.5 ) ) {
+                return false;
+            }
+            final BasicSymmetricalDistanceMatrix m1 = new BasicSymmetricalDistanceMatrix( 6 );
+            m1.setRow( "5", 1 );
+            m1.setRow( "4 7", 2 );
+            m1.setRow( "7 10 7", 3 );
+            m1.setRow( "6 9 6 5", 4 );
+            m1.setRow( "8 11 8 9 8", 5 );
+            m1.setIdentifier( 0, "A" );
+            m1.setIdentifier( 1, "B" );
+            m1.setIdentifier( 2, "C" );
+            m1.setIdentifier( 3, "D" );
+            m1.setIdentifier( 4, "E" );
+            m1.setIdentifier( 5, "F" );
+            final Phylogeny p1 = NeighborJoiningRapid.createInstance().execute( m1 );
+            p1.reRoot( p1.getNode( "F" ) );
+            if ( isUnequal( p1.getNode( "A" ).getDistanceToParent(), 1 ) ) {
+                return false;
+            }
+            if ( isUnequal( p1.getNode( "B" ).getDistanceToParent(), 4 ) ) {
+                return false;
+            }
+            if ( isUnequal( p1.getNode( "C" ).getDistanceToParent(), 2 ) ) {
+                return false;
+            }
+            if ( isUnequal( p1.getNode( "D" ).getDistanceToParent(), 3 ) ) {
+                return false;
+            }
+            if ( isUnequal( p1.getNode( "E" ).getDistanceToParent(), 2 ) ) {
+                return false;
+            }
+            if ( isUnequal( p1.getNode( "F" ).getDistanceToParent(), 2.5 ) ) {
+                return false;
+            }
+            // Patristic distances have to be the same as the ones from the
+            // tree inferred by the (exhaustive) NeighborJoining.
+            final int size = 120;
+            final BasicSymmetricalDistanceMatrix mr = new BasicSymmetricalDistanceMatrix( size );
+            final BasicSymmetricalDistanceMatrix mn = new BasicSymmetricalDistanceMatrix( size );
+            mr.randomize( 42 );
+            mn.randomize( 42 );
+            for( int i = 0; i < size; ++i ) {
+                mr.setIdentifier( i, "s" + i );
+                mn.setIdentifier( i, "s" + i );
+            }
+            final Phylogeny pr = NeighborJoiningRapid.createInstance().execute( mr );
+            final Phylogeny pn = NeighborJoining.createInstance().execute( mn );
+            for( int i = 0; i < size; ++i ) {
+                for( int j = 0; j < i; ++j ) {
+                    final double dr = PhylogenyMethods.calculateDistance( pr.getNode( "s" + i ), pr.getNode( "s" + j ) );
+                    final double dn = PhylogenyMethods.calculateDistance( pn.getNode( "s" + i ), pn.getNode( "s" + j ) );
+                    if ( Math.abs( dr - dn ) > 1E-6 ) {
+                        return false;
+                    }
+                }
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
     private static boolean testNeighborJoiningR() {
         try {
             final NeighborJoiningR nj0 = NeighborJoiningR.createInstance();
@@ -30,22 +30,24 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.forester.evoinference.matrix.distance.BasicSymmetricalDistanceMatrix;
+import org.forester.evoinference.matrix.distance.DistanceMatrix;
+import org.forester.evoinference.matrix.distance.PackedSymmetricalDistanceMatrix;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyNode;
 import org.forester.util.ForesterUtil;
 
 public final class NeighborJoiningF {
 
-    private BasicSymmetricalDistanceMatrix _d;
-    private float[][]                      _d_values;
-    private final DecimalFormat            _df;
-    private PhylogenyNode[]                _external_nodes;
-    private int[]                          _mappings;
-    private int                            _n;
-    private float[]                        _r;
-    private final boolean                  _verbose;
-    private int                            _min_i;
-    private int                            _min_j;
+    private DistanceMatrix                  _d;
+    private PackedSymmetricalDistanceMatrix _d_values;
+    private final DecimalFormat             _df;
+    private PhylogenyNode[]                 _external_nodes;
+    private int[]                           _mappings;
+    private int                             _n;
+    private float[]                         _r;
+    private final boolean                   _verbose;
+    private int                             _min_i;
+    private int                             _min_j;
 
     private NeighborJoiningF() {
         _verbose = false;
@@ -64,6 +66,16 @@ public final class NeighborJoiningF {
     }
 
     public final Phylogeny execute( final BasicSymmetricalDistanceMatrix distance ) {
+        return execute( PackedSymmetricalDistanceMatrix.createInstance( distance ) );
+    }
+
+    /**
+     * Infers a phylogeny working directly on the given (heap or memory-mapped)
+     * packed distance matrix, without copying it.
+     * The values of the matrix will be changed.
+     *
+     */
+    public final Phylogeny execute( final PackedSymmetricalDistanceMatrix distance ) {
         reset( distance );
         final Phylogeny phylogeny = new Phylogeny();
         while ( _n > 2 ) {
@@ -74,7 +86,7 @@ public final class NeighborJoiningF {
             final int otu2 = _min_j;
             // It is a condition that otu1 < otu2.
             final PhylogenyNode node = new PhylogenyNode();
-            final float d = _d_values[ _mappings[ otu1 ] ][ _mappings[ otu2 ] ];
+            final float d = _d_values.getValueAsFloat( _mappings[ otu1 ], _mappings[ otu2 ] );
             final float d1 = ( d / 2 ) + ( ( _r[ otu1 ] - _r[ otu2 ] ) / ( 2 * ( _n - 2 ) ) );
             final float d2 = d - d1;
             if ( _df == null ) {
@@ -96,7 +108,7 @@ public final class NeighborJoiningF {
             updateMappings( otu2 );
             --_n;
         }
-        final double d = _d_values[ _mappings[ 0 ] ][ _mappings[ 1 ] ] / 2;
+        final double d = _d_values.getValueAsFloat( _mappings[ 0 ], _mappings[ 1 ] ) / 2;
         if ( _df == null ) {
             getExternalPhylogenyNode( 0 ).setDistanceToParent( d );
             getExternalPhylogenyNode( 1 ).setDistanceToParent( d );
@@ -133,22 +145,8 @@ public final class NeighborJoiningF {
                 continue;
             }
             final int m_i = _mappings[ i ];
-            if ( otu1 < i ) {
-                if ( otu2 > i ) {
-                    _d_values[ m_otu1 ][ m_i ] = ( ( _d_values[ m_otu1 ][ m_i ] + _d_values[ m_i ][ m_otu2 ] ) - d ) / 2;
-                }
-                else {
-                    _d_values[ m_otu1 ][ m_i ] = ( ( _d_values[ m_otu1 ][ m_i ] + _d_values[ m_otu2 ][ m_i ] ) - d ) / 2;
-                }
-            }
-            else {
-                if ( otu2 > i ) {
-                    _d_values[ m_i ][ m_otu1 ] = ( ( _d_values[ m_i ][ m_otu1 ] + _d_values[ m_i ][ m_otu2 ] ) - d ) / 2;
-                }
-                else {
-                    _d_values[ m_i ][ m_otu1 ] = ( ( _d_values[ m_i ][ m_otu1 ] + _d_values[ m_otu2 ][ m_i ] ) - d ) / 2;
-                }
-            }
+            _d_values.setValueAsFloat( m_otu1, m_i, ( ( _d_values.getValueAsFloat( m_otu1, m_i ) + _d_values
+                    .getValueAsFloat( m_otu2, m_i ) ) - d ) / 2 );
         }
     }
 
@@ -157,15 +155,12 @@ public final class NeighborJoiningF {
         for( int i = 0; i < _n; ++i ) {
             d = 0;
             final int m_i = _mappings[ i ];
-            for( int n = 0; n < _n; ++n ) {
-                if ( i != n ) {
-                    if ( i > n ) {
-                        d += _d_values[ _mappings[ n ] ][ m_i ];
-                    }
-                    else {
-                        d += _d_values[ m_i ][ _mappings[ n ] ];
-                    }
-                }
+            final long row_i = _d_values.getRowStart( m_i );
+            for( int n = 0; n < i; ++n ) {
+                d += _d_values.getValueAt( row_i + _mappings[ n ] );
+            }
+            for( int n = i + 1; n < _n; ++n ) {
+                d += _d_values.getValueAt( _d_values.getRowStart( _mappings[ n ] ) + m_i );
             }
             _r[ i ] = d;
         }
@@ -212,18 +207,13 @@ public final class NeighborJoiningF {
                                 .getName() ) + ")";
     }
 
-    // only the values in the lower triangle are used.
-    private final void reset( final BasicSymmetricalDistanceMatrix distances ) {
+    // !matrix values will be changed!
+    private final void reset( final PackedSymmetricalDistanceMatrix distances ) {
         _n = distances.getSize();
         _d = distances;
         _r = new float[ _n ];
         _mappings = new int[ _n ];
-        _d_values = new float[ distances.getSize() ][ distances.getSize() ];
-        for( int i = 0; i < distances.getSize(); ++i ) {
-            for( int j = 0; j < distances.getSize(); ++j ) {
-                _d_values[ i ][ j ] = ( float ) distances.getValue( i, j );
-            }
-        }
+        _d_values = distances;
         initExternalNodes();
     }
 
@@ -235,9 +225,9 @@ public final class NeighborJoiningF {
         _min_j = -1;
         for( int j = 1; j < _n; ++j ) {
             final float r_j = _r[ j ];
-            final int m_j = _mappings[ j ];
+            final long row_j = _d_values.getRowStart( _mappings[ j ] );
             for( int i = 0; i < j; ++i ) {
-                final float m = _d_values[ _mappings[ i ] ][ m_j ] - ( ( _r[ i ] + r_j ) / n_minus_2 );
+                final float m = _d_values.getValueAt( row_j + _mappings[ i ] ) - ( ( _r[ i ] + r_j ) / n_minus_2 );
                 if ( m < min ) {
                     min = m;
                     _min_i = i;
@@ -0,0 +1,449 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.evoinference.distance;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import org.forester.evoinference.matrix.distance.BasicSymmetricalDistanceMatrix;
+import org.forester.evoinference.matrix.distance.DistanceMatrix;
+import org.forester.evoinference.matrix.distance.PackedSymmetricalDistanceMatrix;
+import org.forester.phylogeny.Phylogeny;
+import org.forester.phylogeny.PhylogenyNode;
+import org.forester.util.ForesterUtil;
+
+/*
+ * Parallel (fork-join) version of NeighborJoiningF.
+ *
+ * Net divergences, the search for the minimal Q-value and the
+ * distance updates after each join are split over row ranges.
+ * Arithmetic and tie-breaking (the first minimal value found
+ * when scanning j, then i, in ascending order) are the same as in
+ * NeighborJoiningF, therefore both produce identical trees.
+ *
+ */
+public final class NeighborJoiningP {
+
+    // Below this number of remaining OTUs, the sequential code path is used.
+    private final static int                PARALLEL_THRESHOLD = 256;
+    // Minimal number of rows processed by one task.
+    private final static int                ROWS_PER_TASK      = 64;
+    private DistanceMatrix                  _d;
+    private PackedSymmetricalDistanceMatrix _d_values;
+    private final DecimalFormat             _df;
+    private PhylogenyNode[]                 _external_nodes;
+    private int[]                           _mappings;
+    private int                             _n;
+    private float[]                         _r;
+    private final boolean                   _verbose;
+    private int                             _min_i;
+    private int                             _min_j;
+    private final int                       _number_of_threads;
+    private ForkJoinPool                    _pool;
+
+    private NeighborJoiningP( final int number_of_threads ) {
+        _verbose = false;
+        _df = null;
+        _number_of_threads = checkNumberOfThreads( number_of_threads );
+    }
+
+    private NeighborJoiningP( final boolean verbose,
+                              final int maximum_fraction_digits_for_distances,
+                              final int number_of_threads ) {
+        if ( ( maximum_fraction_digits_for_distances < 1 ) || ( maximum_fraction_digits_for_distances > 9 ) ) {
+            throw new IllegalArgumentException( "maximum fraction digits for distances is out of range: "
+                    + maximum_fraction_digits_for_distances );
+        }
+        _verbose = verbose;
+        _df = new DecimalFormat();
+        _df.setMaximumFractionDigits( maximum_fraction_digits_for_distances );
+        _df.setRoundingMode( RoundingMode.HALF_UP );
+        _number_of_threads = checkNumberOfThreads( number_of_threads );
+    }
+
+    public final Phylogeny execute( final BasicSymmetricalDistanceMatrix distance ) {
+        return execute( PackedSymmetricalDistanceMatrix.createInstance( distance ) );
+    }
+
+    /**
+     * Infers a phylogeny working directly on the given (heap or memory-mapped)
+     * packed distance matrix, without copying it.
+     * The values of the matrix will be changed.
+     *
+     */
+    public final Phylogeny execute( final PackedSymmetricalDistanceMatrix distance ) {
+        reset( distance );
+        if ( _n < PARALLEL_THRESHOLD ) {
+            return executeJoins();
+        }
+        _pool = new ForkJoinPool( _number_of_threads );
+        try {
+            return executeJoins();
+        }
+        finally {
+            _pool.shutdown();
+            _pool = null;
+        }
+    }
+
+    public final List<Phylogeny> execute( final List<BasicSymmetricalDistanceMatrix> distances_list ) {
+        final List<Phylogeny> pl = new ArrayList<Phylogeny>();
+        for( final BasicSymmetricalDistanceMatrix distances : distances_list ) {
+            pl.add( execute( distances ) );
+        }
+        return pl;
+    }
+
+    public final int getNumberOfThreads() {
+        return _number_of_threads;
+    }
+
+    private final Phylogeny executeJoins() {
+        final Phylogeny phylogeny = new Phylogeny();
+        while ( _n > 2 ) {
+            // Calculates the minimal distance.
+            // If more than one minimal distances, always the first found is used
+            updateM();
+            final int otu1 = _min_i;
+            final int otu2 = _min_j;
+            // It is a condition that otu1 < otu2.
+            final PhylogenyNode node = new PhylogenyNode();
+            final float d = _d_values.getValueAsFloat( _mappings[ otu1 ], _mappings[ otu2 ] );
+            final float d1 = ( d / 2 ) + ( ( _r[ otu1 ] - _r[ otu2 ] ) / ( 2 * ( _n - 2 ) ) );
+            final float d2 = d - d1;
+            if ( _df == null ) {
+                getExternalPhylogenyNode( otu1 ).setDistanceToParent( d1 );
+                getExternalPhylogenyNode( otu2 ).setDistanceToParent( d2 );
+            }
+            else {
+                // yes, yes, slow but only grows with n (and not n^2 or worse)...
+                getExternalPhylogenyNode( otu1 ).setDistanceToParent( Double.parseDouble( _df.format( d1 ) ) );
+                getExternalPhylogenyNode( otu2 ).setDistanceToParent( Double.parseDouble( _df.format( d2 ) ) );
+            }
+            node.addAsChild( getExternalPhylogenyNode( otu1 ) );
+            node.addAsChild( getExternalPhylogenyNode( otu2 ) );
+            if ( _verbose ) {
+                printProgress( otu1, otu2 );
+            }
+            calculateDistancesFromNewNode( otu1, otu2, d );
+            _external_nodes[ _mappings[ otu1 ] ] = node;
+            updateMappings( otu2 );
+            --_n;
+        }
+        final double d = _d_values.getValueAsFloat( _mappings[ 0 ], _mappings[ 1 ] ) / 2;
+        if ( _df == null ) {
+            getExternalPhylogenyNode( 0 ).setDistanceToParent( d );
+            getExternalPhylogenyNode( 1 ).setDistanceToParent( d );
+        }
+        else {
+            final double dd = Double.parseDouble( _df.format( d ) );
+            getExternalPhylogenyNode( 0 ).setDistanceToParent( dd );
+            getExternalPhylogenyNode( 1 ).setDistanceToParent( dd );
+        }
+        final PhylogenyNode root = new PhylogenyNode();
+        root.addAsChild( getExternalPhylogenyNode( 0 ) );
+        root.addAsChild( getExternalPhylogenyNode( 1 ) );
+        if ( _verbose ) {
+            printProgress( 0, 1 );
+        }
+        phylogeny.setRoot( root );
+        phylogeny.setRooted( false );
+        _d_values = null;
+        return phylogeny;
+    }
+
+    private final void calculateDistancesFromNewNode( final int otu1, final int otu2, final float d ) {
+        if ( _n < PARALLEL_THRESHOLD ) {
+            calculateDistancesFromNewNode( otu1, otu2, d, 0, _n );
+        }
+        else {
+            _pool.invoke( new DistancesFromNewNodeTask( otu1, otu2, d, 0, _n ) );
+        }
+    }
+
+    // Each i writes to a different cell and only reads from
+    // cells of otu2, which are not written, so rows can be
+    // updated independently.
+    private final void calculateDistancesFromNewNode( final int otu1,
+                                                      final int otu2,
+                                                      final float d,
+                                                      final int from,
+                                                      final int to ) {
+        final int m_otu1 = _mappings[ otu1 ];
+        final int m_otu2 = _mappings[ otu2 ];
+        for( int i = from; i < to; ++i ) {
+            if ( ( i == otu1 ) || ( i == otu2 ) ) {
+                continue;
+            }
+            final int m_i = _mappings[ i ];
+            _d_values.setValueAsFloat( m_otu1, m_i, ( ( _d_values.getValueAsFloat( m_otu1, m_i ) + _d_values
+                    .getValueAsFloat( m_otu2, m_i ) ) - d ) / 2 );
+        }
+    }
+
+    private final void calculateNetDivergences() {
+        if ( _n < PARALLEL_THRESHOLD ) {
+            calculateNetDivergences( 0, _n );
+        }
+        else {
+            _pool.invoke( new NetDivergencesTask( 0, _n ) );
+        }
+    }
+
+    private final void calculateNetDivergences( final int from, final int to ) {
+        float d;
+        for( int i = from; i < to; ++i ) {
+            d = 0;
+            final int m_i = _mappings[ i ];
+            final long row_i = _d_values.getRowStart( m_i );
+            for( int n = 0; n < i; ++n ) {
+                d += _d_values.getValueAt( row_i + _mappings[ n ] );
+            }
+            for( int n = i + 1; n < _n; ++n ) {
+                d += _d_values.getValueAt( _d_values.getRowStart( _mappings[ n ] ) + m_i );
+            }
+            _r[ i ] = d;
+        }
+    }
+
+    // Scans rows j in [from, to) in the same order as the sequential version,
+    // keeping the first minimum found.
+    private final QMin findMinQ( final int from, final int to ) {
+        final int n_minus_2 = _n - 2;
+        float min = Float.MAX_VALUE;
+        int min_i = -1;
+        int min_j = -1;
+        for( int j = ( from < 1 ? 1 : from ); j < to; ++j ) {
+            final float r_j = _r[ j ];
+            final long row_j = _d_values.getRowStart( _mappings[ j ] );
+            for( int i = 0; i < j; ++i ) {
+                final float m = _d_values.getValueAt( row_j + _mappings[ i ] ) - ( ( _r[ i ] + r_j ) / n_minus_2 );
+                if ( m < min ) {
+                    min = m;
+                    min_i = i;
+                    min_j = j;
+                }
+            }
+        }
+        return new QMin( min, min_i, min_j );
+    }
+
+    private final PhylogenyNode getExternalPhylogenyNode( final int i ) {
+        return _external_nodes[ _mappings[ i ] ];
+    }
+
+    private final void initExternalNodes() {
+        _external_nodes = new PhylogenyNode[ _n ];
+        String id;
+        for( int i = 0; i < _n; ++i ) {
+            _external_nodes[ i ] = new PhylogenyNode();
+            id = _d.getIdentifier( i );
+            if ( id != null ) {
+                _external_nodes[ i ].setName( id );
+            }
+            else {
+                _external_nodes[ i ].setName( Integer.toString( i ) );
+            }
+            _mappings[ i ] = i;
+        }
+    }
+
+    private final void printProgress( final int otu1, final int otu2 ) {
+        System.out.println( "Node " + printProgressNodeToString( getExternalPhylogenyNode( otu1 ) ) + " joins "
+                + ( printProgressNodeToString( getExternalPhylogenyNode( otu2 ) ) ) );
+    }
+
+    private final String printProgressNodeToString( final PhylogenyNode n ) {
+        if ( n.isExternal() ) {
+            if ( ForesterUtil.isEmpty( n.getName() ) ) {
+                return Long.toString( n.getId() );
+            }
+            return n.getName();
+        }
+        return n.getId()
+                + " ("
+                + ( ForesterUtil.isEmpty( n.getChildNode1().getName() ) ? n.getChildNode1().getId() : n.getChildNode1()
+                        .getName() )
+                        + "+"
+                        + ( ForesterUtil.isEmpty( n.getChildNode2().getName() ) ? n.getChildNode2().getId() : n.getChildNode2()
+                                .getName() ) + ")";
+    }
+
+    // !matrix values will be changed!
+    private final void reset( final PackedSymmetricalDistanceMatrix distances ) {
+        _n = distances.getSize();
+        _d = distances;
+        _r = new float[ _n ];
+        _mappings = new int[ _n ];
+        _d_values = distances;
+        initExternalNodes();
+    }
+
+    private final void updateM() {
+        calculateNetDivergences();
+        final QMin q;
+        if ( _n < PARALLEL_THRESHOLD ) {
+            q = findMinQ( 0, _n );
+        }
+        else {
+            q = _pool.invoke( new MinQTask( 0, _n ) );
+        }
+        _min_i = q._i;
+        _min_j = q._j;
+    }
+
+    // otu2 will, in effect, be "deleted" from the matrix.
+    private final void updateMappings( final int otu2 ) {
+        for( int i = otu2; i < ( _mappings.length - 1 ); ++i ) {
+            _mappings[ i ] = _mappings[ i + 1 ];
+        }
+    }
+
+    public final static NeighborJoiningP createInstance() {
+        return new NeighborJoiningP( Runtime.getRuntime().availableProcessors() );
+    }
+
+    public final static NeighborJoiningP createInstance( final boolean verbose,
+                                                         final int maximum_fraction_digits_for_distances ) {
+        return new NeighborJoiningP( verbose,
+                                     maximum_fraction_digits_for_distances,
+                                     Runtime.getRuntime().availableProcessors() );
+    }
+
+    public final static NeighborJoiningP createInstance( final boolean verbose,
+                                                         final int maximum_fraction_digits_for_distances,
+                                                         final int number_of_threads ) {
+        return new NeighborJoiningP( verbose, maximum_fraction_digits_for_distances, number_of_threads );
+    }
+
+    public final static NeighborJoiningP createInstance( final int number_of_threads ) {
+        return new NeighborJoiningP( number_of_threads );
+    }
+
+    private final static int checkNumberOfThreads( final int number_of_threads ) {
+        if ( number_of_threads < 1 ) {
+            throw new IllegalArgumentException( "number of threads is out of range: " + number_of_threads );
+        }
+        return number_of_threads;
+    }
+
+    private final class DistancesFromNewNodeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final int         _otu1;
+        private final int         _otu2;
+        private final float       _dist;
+        private final int         _from;
+        private final int         _to;
+
+        DistancesFromNewNodeTask( final int otu1, final int otu2, final float d, final int from, final int to ) {
+            _otu1 = otu1;
+            _otu2 = otu2;
+            _dist = d;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected final void compute() {
+            if ( ( _to - _from ) <= ( ROWS_PER_TASK * 16 ) ) {
+                calculateDistancesFromNewNode( _otu1, _otu2, _dist, _from, _to );
+            }
+            else {
+                final int mid = ( _from + _to ) >>> 1;
+                invokeAll( new DistancesFromNewNodeTask( _otu1, _otu2, _dist, _from, mid ),
+                           new DistancesFromNewNodeTask( _otu1, _otu2, _dist, mid, _to ) );
+            }
+        }
+    }
+
+    private final class MinQTask extends RecursiveTask<QMin> {
+
+        private static final long serialVersionUID = 1L;
+        private final int         _from;
+        private final int         _to;
+
+        MinQTask( final int from, final int to ) {
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected final QMin compute() {
+            if ( ( _to - _from ) <= ROWS_PER_TASK ) {
+                return findMinQ( _from, _to );
+            }
+            final int mid = ( _from + _to ) >>> 1;
+            final MinQTask lower = new MinQTask( _from, mid );
+            final MinQTask upper = new MinQTask( mid, _to );
+            upper.fork();
+            final QMin l = lower.compute();
+            final QMin u = upper.join();
+            // Ties go to the lower rows, which are scanned first sequentially.
+            return u._m < l._m ? u : l;
+        }
+    }
+
+    private final class NetDivergencesTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+        private final int         _from;
+        private final int         _to;
+
+        NetDivergencesTask( final int from, final int to ) {
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected final void compute() {
+            if ( ( _to - _from ) <= ROWS_PER_TASK ) {
+                calculateNetDivergences( _from, _to );
+            }
+            else {
+                final int mid = ( _from + _to ) >>> 1;
+                invokeAll( new NetDivergencesTask( _from, mid ), new NetDivergencesTask( mid, _to ) );
+            }
+        }
+    }
+
+    private final static class QMin {
+
+        final float _m;
+        final int   _i;
+        final int   _j;
+
+        QMin( final float m, final int i, final int j ) {
+            _m = m;
+            _i = i;
+            _j = j;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.evoinference.distance;
+
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.forester.evoinference.matrix.distance.BasicSymmetricalDistanceMatrix;
+import org.forester.phylogeny.Phylogeny;
+import org.forester.phylogeny.PhylogenyNode;
+import org.forester.util.ForesterUtil;
+
+/*
+ * Neighbor joining with bounded search for the minimal Q-value,
+ * following "Rapid Neighbour-Joining" (Simonsen, Mailund, Pedersen, 2008).
+ *
+ * Each row of the distance matrix is kept sorted by distance, as
+ * primitive long keys (a lower bound of the distance as sortable float bits
+ * in the upper half, the cluster id in the lower half). Rows are scanned in
+ * increasing order of distance and the scan of a row stops as soon as
+ * its remaining entries cannot beat the current minimal Q-value given the
+ * largest net divergence. Q-values themselves are always calculated from the
+ * (unscaled) double distances.
+ *
+ * Distances are stored in a lower triangular matrix, indexed by slot.
+ * A new node re-uses the slot of the first of the two joined nodes,
+ * but gets a new cluster id, so that stale entries in sorted rows can
+ * be recognized (and skipped) lazily.
+ *
+ */
+public final class NeighborJoiningRapid {
+
+    private final DecimalFormat _df;
+    private final boolean       _verbose;
+    // Lower triangular distance matrix: _d[i][j] with j < i.
+    private double[][]          _d;
+    private PhylogenyNode[]     _nodes;
+    // Cluster id of the node in each slot.
+    private int[]               _id_of_slot;
+    // Slot of each cluster id, -1 once the cluster has been joined.
+    private int[]               _slot_of_id;
+    // Slots of the currently active nodes, in ascending order of creation.
+    private int[]               _active;
+    private int                 _n;
+    private int                 _next_id;
+    // Net divergences, indexed by slot.
+    private double[]            _u;
+    private double              _u_max;
+    // Sorted rows, indexed by slot.
+    private long[][]            _s;
+    private int[]               _s_length;
+    private int                 _n_at_last_compaction;
+    private int                 _min_slot_i;
+    private int                 _min_slot_j;
+
+    private NeighborJoiningRapid() {
+        _verbose = false;
+        _df = null;
+    }
+
+    private NeighborJoiningRapid( final boolean verbose, final int maximum_fraction_digits_for_distances ) {
+        if ( ( maximum_fraction_digits_for_distances < 1 ) || ( maximum_fraction_digits_for_distances > 9 ) ) {
+            throw new IllegalArgumentException( "maximum fraction digits for distances is out of range: "
+                    + maximum_fraction_digits_for_distances );
+        }
+        _verbose = verbose;
+        _df = new DecimalFormat();
+        _df.setMaximumFractionDigits( maximum_fraction_digits_for_distances );
+        _df.setRoundingMode( RoundingMode.HALF_UP );
+    }
+
+    public final Phylogeny execute( final BasicSymmetricalDistanceMatrix distance ) {
+        reset( distance );
+        final Phylogeny phylogeny = new Phylogeny();
+        while ( _n > 2 ) {
+            updateM();
+            final int slot1 = _min_slot_i;
+            final int slot2 = _min_slot_j;
+            final double d = getDvalue( slot1, slot2 );
+            final double d1 = ( d / 2 ) + ( ( _u[ slot1 ] - _u[ slot2 ] ) / ( 2 * ( _n - 2 ) ) );
+            final double d2 = d - d1;
+            setDistanceToParent( _nodes[ slot1 ], d1 );
+            setDistanceToParent( _nodes[ slot2 ], d2 );
+            final PhylogenyNode node = new PhylogenyNode();
+            node.addAsChild( _nodes[ slot1 ] );
+            node.addAsChild( _nodes[ slot2 ] );
+            if ( _verbose ) {
+                printProgress( slot1, slot2 );
+            }
+            join( slot1, slot2, d );
+            _nodes[ slot1 ] = node;
+            _nodes[ slot2 ] = null;
+            if ( _n <= ( _n_at_last_compaction / 2 ) ) {
+                compact();
+            }
+        }
+        final int slot1 = _active[ 0 ];
+        final int slot2 = _active[ 1 ];
+        final double d = getDvalue( slot1, slot2 ) / 2;
+        setDistanceToParent( _nodes[ slot1 ], d );
+        setDistanceToParent( _nodes[ slot2 ], d );
+        final PhylogenyNode root = new PhylogenyNode();
+        root.addAsChild( _nodes[ slot1 ] );
+        root.addAsChild( _nodes[ slot2 ] );
+        if ( _verbose ) {
+            printProgress( slot1, slot2 );
+        }
+        phylogeny.setRoot( root );
+        phylogeny.setRooted( false );
+        _d = null;
+        _s = null;
+        return phylogeny;
+    }
+
+    public final List<Phylogeny> execute( final List<BasicSymmetricalDistanceMatrix> distances_list ) {
+        final List<Phylogeny> pl = new ArrayList<Phylogeny>();
+        for( final BasicSymmetricalDistanceMatrix distances : distances_list ) {
+            pl.add( execute( distances ) );
+        }
+        return pl;
+    }
+
+    private final void calculateUmax() {
+        _u_max = -Double.MAX_VALUE;
+        for( int a = 0; a < _n; ++a ) {
+            final double u = _u[ _active[ a ] ];
+            if ( u > _u_max ) {
+                _u_max = u;
+            }
+        }
+    }
+
+    // Removes entries of joined clusters from all sorted rows.
+    private final void compact() {
+        for( int a = 0; a < _n; ++a ) {
+            final int slot = _active[ a ];
+            final long[] row = _s[ slot ];
+            int c = 0;
+            for( int x = 0; x < _s_length[ slot ]; ++x ) {
+                if ( _slot_of_id[ ( int ) row[ x ] ] >= 0 ) {
+                    row[ c++ ] = row[ x ];
+                }
+            }
+            _s[ slot ] = Arrays.copyOf( row, c );
+            _s_length[ slot ] = c;
+        }
+        _n_at_last_compaction = _n;
+    }
+
+    private final long[] createSortedRow( final int slot, final int number_of_older_active ) {
+        final long[] row = new long[ number_of_older_active ];
+        for( int a = 0; a < number_of_older_active; ++a ) {
+            final int other = _active[ a ];
+            row[ a ] = toKey( getDvalue( slot, other ), _id_of_slot[ other ] );
+        }
+        Arrays.sort( row );
+        return row;
+    }
+
+    private final double getDvalue( final int slot_i, final int slot_j ) {
+        if ( slot_i > slot_j ) {
+            return _d[ slot_i ][ slot_j ];
+        }
+        return _d[ slot_j ][ slot_i ];
+    }
+
+    // Replaces the node in slot1 with the new node and de-activates slot2.
+    private final void join( final int slot1, final int slot2, final double d ) {
+        int pos2 = -1;
+        double u_new = 0;
+        for( int a = 0; a < _n; ++a ) {
+            final int k = _active[ a ];
+            if ( k == slot2 ) {
+                pos2 = a;
+                continue;
+            }
+            if ( k == slot1 ) {
+                continue;
+            }
+            final double d1k = getDvalue( slot1, k );
+            final double d2k = getDvalue( slot2, k );
+            final double new_d = ( ( d1k + d2k ) - d ) / 2;
+            _u[ k ] += new_d - d1k - d2k;
+            u_new += new_d;
+            setDvalue( slot1, k, new_d );
+        }
+        _u[ slot1 ] = u_new;
+        _slot_of_id[ _id_of_slot[ slot1 ] ] = -1;
+        _slot_of_id[ _id_of_slot[ slot2 ] ] = -1;
+        _id_of_slot[ slot1 ] = _next_id;
+        _slot_of_id[ _next_id ] = slot1;
+        ++_next_id;
+        // slot1 becomes the newest active node: move it to the end, drop slot2
+        int c = 0;
+        for( int a = 0; a < _n; ++a ) {
+            final int k = _active[ a ];
+            if ( ( k != slot1 ) && ( a != pos2 ) ) {
+                _active[ c++ ] = k;
+            }
+        }
+        _active[ c ] = slot1;
+        --_n;
+        _s[ slot2 ] = null;
+        _s_length[ slot2 ] = 0;
+        _s[ slot1 ] = createSortedRow( slot1, _n - 1 );
+        _s_length[ slot1 ] = _s[ slot1 ].length;
+    }
+
+    private final void printProgress( final int slot1, final int slot2 ) {
+        System.out.println( "Node " + printProgressNodeToString( _nodes[ slot1 ] ) + " joins "
+                + ( printProgressNodeToString( _nodes[ slot2 ] ) ) );
+    }
+
+    private final String printProgressNodeToString( final PhylogenyNode n ) {
+        if ( n.isExternal() ) {
+            if ( ForesterUtil.isEmpty( n.getName() ) ) {
+                return Long.toString( n.getId() );
+            }
+            return n.getName();
+        }
+        return n.getId()
+                + " ("
+                + ( ForesterUtil.isEmpty( n.getChildNode1().getName() ) ? n.getChildNode1().getId() : n.getChildNode1()
+                        .getName() )
+                        + "+"
+                        + ( ForesterUtil.isEmpty( n.getChildNode2().getName() ) ? n.getChildNode2().getId() : n.getChildNode2()
+                                .getName() ) + ")";
+    }
+
+    private final void reset( final BasicSymmetricalDistanceMatrix distances ) {
+        _n = distances.getSize();
+        _d = new double[ _n ][];
+        _nodes = new PhylogenyNode[ _n ];
+        _id_of_slot = new int[ _n ];
+        _slot_of_id = new int[ 2 * _n ];
+        _active = new int[ _n ];
+        _u = new double[ _n ];
+        _s = new long[ _n ][];
+        _s_length = new int[ _n ];
+        Arrays.fill( _slot_of_id, -1 );
+        for( int i = 0; i < _n; ++i ) {
+            _d[ i ] = new double[ i ];
+            for( int j = 0; j < i; ++j ) {
+                _d[ i ][ j ] = distances.getValue( j, i );
+            }
+            _nodes[ i ] = new PhylogenyNode();
+            final String id = distances.getIdentifier( i );
+            if ( id != null ) {
+                _nodes[ i ].setName( id );
+            }
+            else {
+                _nodes[ i ].setName( Integer.toString( i ) );
+            }
+            _id_of_slot[ i ] = i;
+            _slot_of_id[ i ] = i;
+            _active[ i ] = i;
+        }
+        for( int i = 0; i < _n; ++i ) {
+            double u = 0;
+            for( int j = 0; j < _n; ++j ) {
+                if ( i != j ) {
+                    u += getDvalue( i, j );
+                }
+            }
+            _u[ i ] = u;
+            _s[ i ] = createSortedRow( i, i );
+            _s_length[ i ] = i;
+        }
+        _next_id = _n;
+        _n_at_last_compaction = _n;
+    }
+
+    private final void setDistanceToParent( final PhylogenyNode n, final double d ) {
+        if ( _df == null ) {
+            n.setDistanceToParent( d );
+        }
+        else {
+            // yes, yes, slow but only grows with n (and not n^2 or worse)...
+            n.setDistanceToParent( Double.parseDouble( _df.format( d ) ) );
+        }
+    }
+
+    private final void setDvalue( final int slot_i, final int slot_j, final double d ) {
+        if ( slot_i > slot_j ) {
+            _d[ slot_i ][ slot_j ] = d;
+        }
+        else {
+            _d[ slot_j ][ slot_i ] = d;
+        }
+    }
+
+    // Uses Q(i,j) = (n-2) * d(i,j) - u(i) - u(j), which is (n-2) times the
+    // value minimized by the other neighbor joining implementations.
+    private final void updateM() {
+        calculateUmax();
+        final int n_minus_2 = _n - 2;
+        double q_min = Double.MAX_VALUE;
+        _min_slot_i = -1;
+        _min_slot_j = -1;
+        for( int a = 1; a < _n; ++a ) {
+            final int slot_j = _active[ a ];
+            final double u_j = _u[ slot_j ];
+            final double bound_offset = u_j + _u_max;
+            final long[] row = _s[ slot_j ];
+            final int l = _s_length[ slot_j ];
+            for( int x = 0; x < l; ++x ) {
+                final long key = row[ x ];
+                if ( ( ( n_minus_2 * keyToDistance( key ) ) - bound_offset ) > q_min ) {
+                    break;
+                }
+                final int slot_i = _slot_of_id[ ( int ) key ];
+                if ( slot_i < 0 ) {
+                    continue;
+                }
+                final double q = ( n_minus_2 * getDvalue( slot_i, slot_j ) ) - u_j - _u[ slot_i ];
+                if ( q < q_min ) {
+                    q_min = q;
+                    _min_slot_i = slot_i;
+                    _min_slot_j = slot_j;
+                }
+            }
+        }
+    }
+
+    public final static NeighborJoiningRapid createInstance() {
+        return new NeighborJoiningRapid();
+    }
+
+    public final static NeighborJoiningRapid createInstance( final boolean verbose,
+                                                             final int maximum_fraction_digits_for_distances ) {
+        return new NeighborJoiningRapid( verbose, maximum_fraction_digits_for_distances );
+    }
+
+    private final static double keyToDistance( final long key ) {
+        final int s = ( int ) ( key >> 32 );
+        return Float.intBitsToFloat( s ^ ( ( s >> 31 ) & 0x7fffffff ) );
+    }
+
+    // The float in the upper half is rounded down, so that it is a lower bound
+    // for the actual distance. Its bits are flipped such that the signed order of
+    // the keys corresponds to the numerical order of the (possibly negative) distances.
+    private final static long toKey( final double d, final int id ) {
+        float f = ( float ) d;
+        if ( f > d ) {
+            f = Math.nextDown( f );
+        }
+        final int bits = Float.floatToIntBits( f );
+        final int s = bits ^ ( ( bits >> 31 ) & 0x7fffffff );
+        return ( ( long ) s << 32 ) | ( id & 0xffffffffL );
+    }
+}
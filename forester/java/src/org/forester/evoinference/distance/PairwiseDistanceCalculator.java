@@ -26,6 +26,7 @@
 package org.forester.evoinference.distance;
 
 import org.forester.evoinference.matrix.distance.BasicSymmetricalDistanceMatrix;
+import org.forester.evoinference.matrix.distance.DistanceMatrix;
 import org.forester.msa.Msa;
 
 public final class PairwiseDistanceCalculator {
@@ -39,11 +40,11 @@ public final class PairwiseDistanceCalculator {
         _value_for_too_large_distance_for_kimura_formula = value_for_too_large_distance_for_kimura_formula;
     }
 
-    private double calcFractionalDissimilarity( final int row_1, final int row_2 ) {
+    private double calcFractionalDissimilarity( final char[] row_1, final char[] row_2 ) {
         final int length = _msa.getLength();
         int nd = 0;
         for( int col = 0; col < length; ++col ) {
-            if ( _msa.getResidueAt( row_1, col ) != _msa.getResidueAt( row_2, col ) ) {
+            if ( row_1[ col ] != row_2[ col ] ) {
                 ++nd;
             }
         }
@@ -58,7 +59,7 @@ public final class PairwiseDistanceCalculator {
      * @param row_2
      * @return
      */
-    private double calcKimuraDistance( final int row_1, final int row_2 ) {
+    private double calcKimuraDistance( final char[] row_1, final char[] row_2 ) {
         final double p = calcFractionalDissimilarity( row_1, row_2 );
         final double dp = 1 - p - ( 0.2 * p * p );
         if ( dp <= 0.0 ) {
@@ -70,7 +71,7 @@ public final class PairwiseDistanceCalculator {
         return -Math.log( dp );
     }
 
-    private double calcPoissonDistance( final int row_1, final int row_2 ) {
+    private double calcPoissonDistance( final char[] row_1, final char[] row_2 ) {
         final double p = calcFractionalDissimilarity( row_1, row_2 );
         final double dp = 1 - p;
         if ( dp <= 0.0 ) {
@@ -106,26 +107,35 @@ public final class PairwiseDistanceCalculator {
         return d;
     }
 
-    private void calcKimuraDistances( final int s, final BasicSymmetricalDistanceMatrix d ) {
+    private void calcKimuraDistances( final int s, final DistanceMatrix d ) {
+        final char[] row_i = new char[ _msa.getLength() ];
+        final char[] row_j = new char[ _msa.getLength() ];
         for( int i = 1; i < s; i++ ) {
+            _msa.getRow( i, row_i );
             for( int j = 0; j < i; j++ ) {
-                d.setValue( i, j, calcKimuraDistance( i, j ) );
+                d.setValue( i, j, calcKimuraDistance( row_i, _msa.getRow( j, row_j ) ) );
             }
         }
     }
 
-    private void calcPoissonDistances( final int s, final BasicSymmetricalDistanceMatrix d ) {
+    private void calcPoissonDistances( final int s, final DistanceMatrix d ) {
+        final char[] row_i = new char[ _msa.getLength() ];
+        final char[] row_j = new char[ _msa.getLength() ];
         for( int i = 1; i < s; i++ ) {
+            _msa.getRow( i, row_i );
             for( int j = 0; j < i; j++ ) {
-                d.setValue( i, j, calcPoissonDistance( i, j ) );
+                d.setValue( i, j, calcPoissonDistance( row_i, _msa.getRow( j, row_j ) ) );
             }
         }
     }
 
-    private void calcFractionalDissimilarities( final int s, final BasicSymmetricalDistanceMatrix d ) {
+    private void calcFractionalDissimilarities( final int s, final DistanceMatrix d ) {
+        final char[] row_i = new char[ _msa.getLength() ];
+        final char[] row_j = new char[ _msa.getLength() ];
         for( int i = 1; i < s; i++ ) {
+            _msa.getRow( i, row_i );
             for( int j = 0; j < i; j++ ) {
-                d.setValue( i, j, calcFractionalDissimilarity( i, j ) );
+                d.setValue( i, j, calcFractionalDissimilarity( row_i, _msa.getRow( j, row_j ) ) );
             }
         }
     }
@@ -135,12 +145,76 @@ public final class PairwiseDistanceCalculator {
         throw new CloneNotSupportedException();
     }
 
-    private void copyIdentifiers( final int s, final BasicSymmetricalDistanceMatrix d ) {
+    private void checkSize( final int s, final DistanceMatrix d ) {
+        if ( d.getSize() != s ) {
+            throw new IllegalArgumentException( "size of distance matrix [" + d.getSize()
+                    + "] does not match number of sequences [" + s + "]" );
+        }
+    }
+
+    private void copyIdentifiers( final int s, final DistanceMatrix d ) {
         for( int i = 0; i < s; i++ ) {
             d.setIdentifier( i, _msa.getIdentifier( i ) );
         }
     }
 
+    /**
+     * Calculates fractional dissimilarities into the given distance matrix
+     * (for example, a PackedSymmetricalDistanceMatrix), which must be of
+     * size equal to the number of sequences.
+     *
+     * @param msa
+     * @param d
+     * @return d
+     */
+    public static <T extends DistanceMatrix> T calcFractionalDissimilarities( final Msa msa, final T d ) {
+        final PairwiseDistanceCalculator c = new PairwiseDistanceCalculator( msa,
+                                                                             DEFAULT_VALUE_FOR_TOO_LARGE_DISTANCE_FOR_KIMURA_FORMULA );
+        final int s = msa.getNumberOfSequences();
+        c.checkSize( s, d );
+        c.copyIdentifiers( s, d );
+        c.calcFractionalDissimilarities( s, d );
+        return d;
+    }
+
+    /**
+     * Calculates Kimura distances into the given distance matrix
+     * (for example, a PackedSymmetricalDistanceMatrix), which must be of
+     * size equal to the number of sequences.
+     *
+     * @param msa
+     * @param d
+     * @return d
+     */
+    public static <T extends DistanceMatrix> T calcKimuraDistances( final Msa msa, final T d ) {
+        final PairwiseDistanceCalculator c = new PairwiseDistanceCalculator( msa,
+                                                                             DEFAULT_VALUE_FOR_TOO_LARGE_DISTANCE_FOR_KIMURA_FORMULA );
+        final int s = msa.getNumberOfSequences();
+        c.checkSize( s, d );
+        c.copyIdentifiers( s, d );
+        c.calcKimuraDistances( s, d );
+        return d;
+    }
+
+    /**
+     * Calculates Poisson distances into the given distance matrix
+     * (for example, a PackedSymmetricalDistanceMatrix), which must be of
+     * size equal to the number of sequences.
+     *
+     * @param msa
+     * @param d
+     * @return d
+     */
+    public static <T extends DistanceMatrix> T calcPoissonDistances( final Msa msa, final T d ) {
+        final PairwiseDistanceCalculator c = new PairwiseDistanceCalculator( msa,
+                                                                             DEFAULT_VALUE_FOR_TOO_LARGE_DISTANCE_FOR_KIMURA_FORMULA );
+        final int s = msa.getNumberOfSequences();
+        c.checkSize( s, d );
+        c.copyIdentifiers( s, d );
+        c.calcPoissonDistances( s, d );
+        return d;
+    }
+
     public static BasicSymmetricalDistanceMatrix calcFractionalDissimilarities( final Msa msa ) {
         return new PairwiseDistanceCalculator( msa, DEFAULT_VALUE_FOR_TOO_LARGE_DISTANCE_FOR_KIMURA_FORMULA )
         .calcFractionalDissimilarities();
@@ -0,0 +1,278 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.evoinference.distance;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.forester.evoinference.matrix.distance.BasicSymmetricalDistanceMatrix;
+import org.forester.evoinference.matrix.distance.DistanceMatrix;
+import org.forester.msa.Msa;
+
+/*
+ * Parallel, bit-parallel version of PairwiseDistanceCalculator.
+ *
+ * Each residue of the alignment is encoded once as a 4, 8, or 16 bit code
+ * (depending on the number of distinct characters in the alignment) and
+ * the codes of a row are packed into longs. The number of differing
+ * positions of two rows is then counted for 16, 8, or 4 columns at a time
+ * (xor, followed by setting the highest bit of each non-zero field, followed
+ * by a population count). Since the encoding is one-to-one, the
+ * counts, and therefore all distances, are exactly the same as the ones
+ * calculated by PairwiseDistanceCalculator.
+ *
+ * The pairs of rows are distributed over a fork-join pool.
+ *
+ */
+public final class PairwiseDistanceCalculatorP {
+
+    // Number of rows i (each compared to all rows j < i) processed by one task.
+    private final static int   ROWS_PER_TASK = 16;
+    private final long[][]     _encoded_rows;
+    // The highest bit of each field in a long.
+    private final long         _high_bits;
+    private final int          _length;
+    private final Msa          _msa;
+    private final int          _number_of_threads;
+    private final double       _value_for_too_large_distance_for_kimura_formula;
+
+    private PairwiseDistanceCalculatorP( final Msa msa,
+                                         final double value_for_too_large_distance_for_kimura_formula,
+                                         final int number_of_threads ) {
+        if ( number_of_threads < 1 ) {
+            throw new IllegalArgumentException( "number of threads is out of range: " + number_of_threads );
+        }
+        _msa = msa;
+        _value_for_too_large_distance_for_kimura_formula = value_for_too_large_distance_for_kimura_formula;
+        _length = msa.getLength();
+        _number_of_threads = number_of_threads;
+        final int[] codes = new int[ Character.MAX_VALUE + 1 ];
+        Arrays.fill( codes, -1 );
+        int number_of_codes = 0;
+        final int rows = msa.getNumberOfSequences();
+        // Rows are read twice (first to assign the codes, then to encode
+        // them), instead of holding a copy of all residues.
+        final char[] r = new char[ _length ];
+        for( int row = 0; row < rows; ++row ) {
+            msa.getRow( row, r );
+            for( int col = 0; col < _length; ++col ) {
+                final char c = r[ col ];
+                if ( codes[ c ] < 0 ) {
+                    // code 0 is reserved for padding
+                    codes[ c ] = ++number_of_codes;
+                }
+            }
+        }
+        final int bits;
+        if ( number_of_codes < 16 ) {
+            bits = 4;
+        }
+        else if ( number_of_codes < 256 ) {
+            bits = 8;
+        }
+        else {
+            bits = 16;
+        }
+        final int per_long = 64 / bits;
+        long high_bits = 0;
+        for( int f = 0; f < per_long; ++f ) {
+            high_bits |= 1L << ( ( ( f + 1 ) * bits ) - 1 );
+        }
+        _high_bits = high_bits;
+        final int words = ( _length + per_long - 1 ) / per_long;
+        _encoded_rows = new long[ rows ][ words ];
+        for( int row = 0; row < rows; ++row ) {
+            msa.getRow( row, r );
+            final long[] e = _encoded_rows[ row ];
+            for( int col = 0; col < _length; ++col ) {
+                e[ col / per_long ] |= ( long ) codes[ r[ col ] ] << ( ( col % per_long ) * bits );
+            }
+        }
+    }
+
+    public final BasicSymmetricalDistanceMatrix calcFractionalDissimilarities() {
+        return calcFractionalDissimilarities( new BasicSymmetricalDistanceMatrix( _msa.getNumberOfSequences() ) );
+    }
+
+    public final <T extends DistanceMatrix> T calcFractionalDissimilarities( final T d ) {
+        return calc( d, Method.FRACTIONAL_DISSIMILARITY );
+    }
+
+    public final BasicSymmetricalDistanceMatrix calcKimuraDistances() {
+        return calcKimuraDistances( new BasicSymmetricalDistanceMatrix( _msa.getNumberOfSequences() ) );
+    }
+
+    public final <T extends DistanceMatrix> T calcKimuraDistances( final T d ) {
+        return calc( d, Method.KIMURA );
+    }
+
+    public final BasicSymmetricalDistanceMatrix calcPoissonDistances() {
+        return calcPoissonDistances( new BasicSymmetricalDistanceMatrix( _msa.getNumberOfSequences() ) );
+    }
+
+    public final <T extends DistanceMatrix> T calcPoissonDistances( final T d ) {
+        return calc( d, Method.POISSON );
+    }
+
+    public final int getNumberOfThreads() {
+        return _number_of_threads;
+    }
+
+    private final <T extends DistanceMatrix> T calc( final T d, final Method method ) {
+        final int s = _msa.getNumberOfSequences();
+        if ( d.getSize() != s ) {
+            throw new IllegalArgumentException( "size of distance matrix [" + d.getSize()
+                    + "] does not match number of sequences [" + s + "]" );
+        }
+        for( int i = 0; i < s; i++ ) {
+            d.setIdentifier( i, _msa.getIdentifier( i ) );
+        }
+        final ForkJoinPool pool = new ForkJoinPool( _number_of_threads );
+        try {
+            pool.invoke( new DistancesTask( d, method, 1, s ) );
+        }
+        finally {
+            pool.shutdown();
+        }
+        return d;
+    }
+
+    private final double calcDistance( final int row_1, final int row_2, final Method method ) {
+        final double p = ( double ) countDifferences( row_1, row_2 ) / _length;
+        switch ( method ) {
+            case FRACTIONAL_DISSIMILARITY:
+                return p;
+            case KIMURA: {
+                final double dp = 1 - p - ( 0.2 * p * p );
+                if ( dp <= 0.0 ) {
+                    return _value_for_too_large_distance_for_kimura_formula;
+                }
+                if ( dp == 1 ) {
+                    return 0; // Too avoid -0.
+                }
+                return -Math.log( dp );
+            }
+            case POISSON: {
+                final double dp = 1 - p;
+                if ( dp <= 0.0 ) {
+                    return _value_for_too_large_distance_for_kimura_formula;
+                }
+                if ( dp == 1 ) {
+                    return 0; // Too avoid -0.
+                }
+                return -Math.log( dp );
+            }
+            default:
+                throw new AssertionError( "unknown method: " + method );
+        }
+    }
+
+    private final void calcDistances( final DistanceMatrix d, final Method method, final int from, final int to ) {
+        for( int i = from; i < to; ++i ) {
+            for( int j = 0; j < i; ++j ) {
+                d.setValue( i, j, calcDistance( i, j, method ) );
+            }
+        }
+    }
+
+    private final int countDifferences( final int row_1, final int row_2 ) {
+        final long[] a = _encoded_rows[ row_1 ];
+        final long[] b = _encoded_rows[ row_2 ];
+        final long high = _high_bits;
+        final long low = ~high;
+        int nd = 0;
+        for( int w = 0; w < a.length; ++w ) {
+            final long x = a[ w ] ^ b[ w ];
+            if ( x != 0 ) {
+                // sets the highest bit of each non-zero field
+                nd += Long.bitCount( ( ( ( x & low ) + low ) | x ) & high );
+            }
+        }
+        return nd;
+    }
+
+    public static BasicSymmetricalDistanceMatrix calcFractionalDissimilarities( final Msa msa,
+                                                                                final int number_of_threads ) {
+        return createInstance( msa, number_of_threads ).calcFractionalDissimilarities();
+    }
+
+    public static BasicSymmetricalDistanceMatrix calcKimuraDistances( final Msa msa, final int number_of_threads ) {
+        return createInstance( msa, number_of_threads ).calcKimuraDistances();
+    }
+
+    public static BasicSymmetricalDistanceMatrix calcPoissonDistances( final Msa msa, final int number_of_threads ) {
+        return createInstance( msa, number_of_threads ).calcPoissonDistances();
+    }
+
+    public static PairwiseDistanceCalculatorP createInstance( final Msa msa ) {
+        return createInstance( msa, Runtime.getRuntime().availableProcessors() );
+    }
+
+    public static PairwiseDistanceCalculatorP createInstance( final Msa msa,
+                                                              final double value_for_too_large_distance_for_kimura_formula,
+                                                              final int number_of_threads ) {
+        return new PairwiseDistanceCalculatorP( msa,
+                                                value_for_too_large_distance_for_kimura_formula,
+                                                number_of_threads );
+    }
+
+    public static PairwiseDistanceCalculatorP createInstance( final Msa msa, final int number_of_threads ) {
+        return new PairwiseDistanceCalculatorP( msa,
+                                                PairwiseDistanceCalculator.DEFAULT_VALUE_FOR_TOO_LARGE_DISTANCE_FOR_KIMURA_FORMULA,
+                                                number_of_threads );
+    }
+
+    private final class DistancesTask extends RecursiveAction {
+
+        private static final long    serialVersionUID = 1L;
+        private final DistanceMatrix _d;
+        private final Method         _method;
+        private final int            _from;
+        private final int            _to;
+
+        DistancesTask( final DistanceMatrix d, final Method method, final int from, final int to ) {
+            _d = d;
+            _method = method;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected final void compute() {
+            if ( ( _to - _from ) <= ROWS_PER_TASK ) {
+                calcDistances( _d, _method, _from, _to );
+            }
+            else {
+                final int mid = ( _from + _to ) >>> 1;
+                invokeAll( new DistancesTask( _d, _method, _from, mid ), new DistancesTask( _d, _method, mid, _to ) );
+            }
+        }
+    }
+
+    private enum Method {
+        FRACTIONAL_DISSIMILARITY, KIMURA, POISSON;
+    }
+}
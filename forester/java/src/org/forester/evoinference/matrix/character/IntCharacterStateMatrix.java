@@ -0,0 +1,110 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.evoinference.matrix.character;
+
+import java.util.Arrays;
+
+/*
+ * Character state matrix which stores states as primitive ints, numbered
+ * from 0 (as used by IntSankoffParsimony); UNKNOWN (-1) marks unknown states.
+ * All states are UNKNOWN initially; null cannot be stored.
+ *
+ */
+public final class IntCharacterStateMatrix extends AbstractCharacterStateMatrix<Integer> {
+
+    public static final int UNKNOWN = -1;
+    private final int[][]   _states;
+
+    public IntCharacterStateMatrix( final int number_of_identifiers, final int number_of_characters ) {
+        super( number_of_identifiers, number_of_characters );
+        _states = new int[ number_of_identifiers ][ number_of_characters ];
+        for( final int[] row : _states ) {
+            Arrays.fill( row, UNKNOWN );
+        }
+    }
+
+    @Override
+    public CharacterStateMatrix<Integer> copy() {
+        final IntCharacterStateMatrix new_matrix = new IntCharacterStateMatrix( getNumberOfIdentifiers(),
+                                                                                _characters.length );
+        for( int character = 0; character < _characters.length; ++character ) {
+            if ( getCharacter( character ) != null ) {
+                new_matrix.setCharacter( character, getCharacter( character ) );
+            }
+        }
+        for( int identifier = 0; identifier < getNumberOfIdentifiers(); ++identifier ) {
+            if ( getIdentifier( identifier ) != null ) {
+                new_matrix.setIdentifier( identifier, getIdentifier( identifier ) );
+            }
+            System.arraycopy( _states[ identifier ], 0, new_matrix._states[ identifier ], 0, _characters.length );
+        }
+        return new_matrix;
+    }
+
+    public int getIntState( final int identifier_index, final int character_index ) {
+        return _states[ identifier_index ][ character_index ];
+    }
+
+    @Override
+    public Integer getState( final int identifier_index, final int character_index ) {
+        return _states[ identifier_index ][ character_index ];
+    }
+
+    @Override
+    public CharacterStateMatrix<Integer> pivot() {
+        final IntCharacterStateMatrix new_matrix = new IntCharacterStateMatrix( _characters.length,
+                                                                                getNumberOfIdentifiers() );
+        for( int character = 0; character < _characters.length; ++character ) {
+            if ( getCharacter( character ) != null ) {
+                new_matrix.setIdentifier( character, getCharacter( character ) );
+            }
+        }
+        for( int identifier = 0; identifier < getNumberOfIdentifiers(); ++identifier ) {
+            if ( getIdentifier( identifier ) != null ) {
+                new_matrix.setCharacter( identifier, getIdentifier( identifier ) );
+            }
+            for( int character = 0; character < _characters.length; ++character ) {
+                new_matrix._states[ character ][ identifier ] = _states[ identifier ][ character ];
+            }
+        }
+        return new_matrix;
+    }
+
+    public void setIntState( final int identifier_index, final int character_index, final int state ) {
+        if ( state < UNKNOWN ) {
+            throw new IllegalArgumentException( "attempt to store negative state [" + state
+                    + "] in int character state matrix" );
+        }
+        _states[ identifier_index ][ character_index ] = state;
+    }
+
+    @Override
+    public void setState( final int identifier_index, final int character_index, final Integer state ) {
+        if ( state == null ) {
+            throw new IllegalArgumentException( "attempt to store null state in int character state matrix" );
+        }
+        setIntState( identifier_index, character_index, state );
+    }
+}
@@ -0,0 +1,176 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.evoinference.matrix.character;
+
+import org.forester.evoinference.matrix.character.CharacterStateMatrix.BinaryStates;
+
+/*
+ * Binary character state matrix which stores one bit per state: the
+ * characters of an identifier are packed, 64 per long word, with bit
+ * (character_index % 64) of word (character_index / 64) set for PRESENT.
+ * All states are ABSENT initially; UNKNOWN (and null) cannot be stored.
+ *
+ * The words are exposed for algorithms which process 64 characters at once
+ * (such as PackedFitchParsimony and PackedDolloParsimony). Bits beyond the
+ * last character are always zero.
+ *
+ */
+public final class PackedBinaryStateMatrix extends AbstractCharacterStateMatrix<BinaryStates> {
+
+    private final long[][] _states;
+
+    public PackedBinaryStateMatrix( final int number_of_identifiers, final int number_of_characters ) {
+        super( number_of_identifiers, number_of_characters );
+        _states = new long[ number_of_identifiers ][ calculateNumberOfWords( number_of_characters ) ];
+    }
+
+    @Override
+    public CharacterStateMatrix<BinaryStates> copy() {
+        final PackedBinaryStateMatrix new_matrix = new PackedBinaryStateMatrix( getNumberOfIdentifiers(),
+                                                                                _characters.length );
+        for( int character = 0; character < _characters.length; ++character ) {
+            if ( getCharacter( character ) != null ) {
+                new_matrix.setCharacter( character, getCharacter( character ) );
+            }
+        }
+        for( int identifier = 0; identifier < getNumberOfIdentifiers(); ++identifier ) {
+            if ( getIdentifier( identifier ) != null ) {
+                new_matrix.setIdentifier( identifier, getIdentifier( identifier ) );
+            }
+            System.arraycopy( _states[ identifier ], 0, new_matrix._states[ identifier ], 0, getNumberOfWords() );
+        }
+        return new_matrix;
+    }
+
+    public int getNumberOfWords() {
+        return calculateNumberOfWords( _characters.length );
+    }
+
+    @Override
+    public BinaryStates getState( final int identifier_index, final int character_index ) {
+        if ( ( character_index < 0 ) || ( character_index >= _characters.length ) ) {
+            throw new IndexOutOfBoundsException( "character index is out of range: " + character_index );
+        }
+        final long word = _states[ identifier_index ][ character_index >>> 6 ];
+        return ( ( word >>> character_index ) & 1L ) != 0 ? BinaryStates.PRESENT : BinaryStates.ABSENT;
+    }
+
+    /**
+     * Returns the states of characters 64 * word_index to 64 * word_index + 63
+     * of an identifier, one bit (set for PRESENT) per character.
+     *
+     */
+    public long getWord( final int identifier_index, final int word_index ) {
+        return _states[ identifier_index ][ word_index ];
+    }
+
+    /**
+     * Returns the mask of the bits of word word_index which correspond to
+     * characters (all bits, except for the last word).
+     *
+     */
+    public long getWordMask( final int word_index ) {
+        return calculateWordMask( _characters.length, word_index );
+    }
+
+    @Override
+    public CharacterStateMatrix<BinaryStates> pivot() {
+        final PackedBinaryStateMatrix new_matrix = new PackedBinaryStateMatrix( _characters.length,
+                                                                                getNumberOfIdentifiers() );
+        for( int character = 0; character < _characters.length; ++character ) {
+            if ( getCharacter( character ) != null ) {
+                new_matrix.setIdentifier( character, getCharacter( character ) );
+            }
+        }
+        for( int identifier = 0; identifier < getNumberOfIdentifiers(); ++identifier ) {
+            if ( getIdentifier( identifier ) != null ) {
+                new_matrix.setCharacter( identifier, getIdentifier( identifier ) );
+            }
+            for( int character = 0; character < _characters.length; ++character ) {
+                new_matrix.setState( character, identifier, getState( identifier, character ) );
+            }
+        }
+        return new_matrix;
+    }
+
+    @Override
+    public void setState( final int identifier_index, final int character_index, final BinaryStates state ) {
+        if ( ( character_index < 0 ) || ( character_index >= _characters.length ) ) {
+            throw new IndexOutOfBoundsException( "character index is out of range: " + character_index );
+        }
+        if ( state == BinaryStates.PRESENT ) {
+            _states[ identifier_index ][ character_index >>> 6 ] |= 1L << character_index;
+        }
+        else if ( state == BinaryStates.ABSENT ) {
+            _states[ identifier_index ][ character_index >>> 6 ] &= ~( 1L << character_index );
+        }
+        else {
+            throw new IllegalArgumentException( "attempt to store state [" + state + "] in packed binary state matrix" );
+        }
+    }
+
+    /**
+     * Sets the states of characters 64 * word_index to 64 * word_index + 63
+     * of an identifier, one bit (set for PRESENT) per character; bits beyond
+     * the last character are ignored.
+     *
+     */
+    public void setWord( final int identifier_index, final int word_index, final long word ) {
+        _states[ identifier_index ][ word_index ] = word & getWordMask( word_index );
+    }
+
+    /**
+     * Creates a packed copy of a binary character state matrix, which must
+     * not contain UNKNOWN (or null) states.
+     *
+     */
+    public static PackedBinaryStateMatrix createInstance( final CharacterStateMatrix<BinaryStates> matrix ) {
+        final PackedBinaryStateMatrix new_matrix = new PackedBinaryStateMatrix( matrix.getNumberOfIdentifiers(),
+                                                                                matrix.getNumberOfCharacters() );
+        for( int character = 0; character < matrix.getNumberOfCharacters(); ++character ) {
+            if ( matrix.getCharacter( character ) != null ) {
+                new_matrix.setCharacter( character, matrix.getCharacter( character ) );
+            }
+        }
+        for( int identifier = 0; identifier < matrix.getNumberOfIdentifiers(); ++identifier ) {
+            if ( matrix.getIdentifier( identifier ) != null ) {
+                new_matrix.setIdentifier( identifier, matrix.getIdentifier( identifier ) );
+            }
+            for( int character = 0; character < matrix.getNumberOfCharacters(); ++character ) {
+                new_matrix.setState( identifier, character, matrix.getState( identifier, character ) );
+            }
+        }
+        return new_matrix;
+    }
+
+    static int calculateNumberOfWords( final int number_of_characters ) {
+        return ( number_of_characters + 63 ) >>> 6;
+    }
+
+    static long calculateWordMask( final int number_of_characters, final int word_index ) {
+        final int rest = number_of_characters - ( word_index << 6 );
+        return rest >= 64 ? -1L : ( 1L << rest ) - 1;
+    }
+}
@@ -0,0 +1,165 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.evoinference.matrix.character;
+
+import org.forester.evoinference.matrix.character.CharacterStateMatrix.GainLossStates;
+
+/*
+ * Gain-loss state matrix which stores two bits per state, in long words of 64
+ * characters (as in PackedBinaryStateMatrix): whether the character is
+ * present after the branch, and whether it changed along the branch. All
+ * states are UNCHANGED_ABSENT initially; UNKNOWN (and null) cannot be stored.
+ *
+ */
+public final class PackedGainLossStateMatrix extends AbstractCharacterStateMatrix<GainLossStates> {
+
+    private final long[][] _changed;
+    private final long[][] _present;
+
+    public PackedGainLossStateMatrix( final int number_of_identifiers, final int number_of_characters ) {
+        super( number_of_identifiers, number_of_characters );
+        final int words = PackedBinaryStateMatrix.calculateNumberOfWords( number_of_characters );
+        _present = new long[ number_of_identifiers ][ words ];
+        _changed = new long[ number_of_identifiers ][ words ];
+    }
+
+    @Override
+    public CharacterStateMatrix<GainLossStates> copy() {
+        final PackedGainLossStateMatrix new_matrix = new PackedGainLossStateMatrix( getNumberOfIdentifiers(),
+                                                                                    _characters.length );
+        for( int character = 0; character < _characters.length; ++character ) {
+            if ( getCharacter( character ) != null ) {
+                new_matrix.setCharacter( character, getCharacter( character ) );
+            }
+        }
+        for( int identifier = 0; identifier < getNumberOfIdentifiers(); ++identifier ) {
+            if ( getIdentifier( identifier ) != null ) {
+                new_matrix.setIdentifier( identifier, getIdentifier( identifier ) );
+            }
+            System.arraycopy( _present[ identifier ], 0, new_matrix._present[ identifier ], 0, getNumberOfWords() );
+            System.arraycopy( _changed[ identifier ], 0, new_matrix._changed[ identifier ], 0, getNumberOfWords() );
+        }
+        return new_matrix;
+    }
+
+    /**
+     * Returns the number of GAIN states of an identifier.
+     *
+     */
+    public int getNumberOfGains( final int identifier_index ) {
+        int gains = 0;
+        for( int w = 0; w < getNumberOfWords(); ++w ) {
+            gains += Long.bitCount( _changed[ identifier_index ][ w ] & _present[ identifier_index ][ w ] );
+        }
+        return gains;
+    }
+
+    /**
+     * Returns the number of LOSS states of an identifier.
+     *
+     */
+    public int getNumberOfLosses( final int identifier_index ) {
+        int losses = 0;
+        for( int w = 0; w < getNumberOfWords(); ++w ) {
+            losses += Long.bitCount( _changed[ identifier_index ][ w ] & ~_present[ identifier_index ][ w ] );
+        }
+        return losses;
+    }
+
+    public int getNumberOfWords() {
+        return PackedBinaryStateMatrix.calculateNumberOfWords( _characters.length );
+    }
+
+    @Override
+    public GainLossStates getState( final int identifier_index, final int character_index ) {
+        if ( ( character_index < 0 ) || ( character_index >= _characters.length ) ) {
+            throw new IndexOutOfBoundsException( "character index is out of range: " + character_index );
+        }
+        final int w = character_index >>> 6;
+        final boolean present = ( ( _present[ identifier_index ][ w ] >>> character_index ) & 1L ) != 0;
+        if ( ( ( _changed[ identifier_index ][ w ] >>> character_index ) & 1L ) != 0 ) {
+            return present ? GainLossStates.GAIN : GainLossStates.LOSS;
+        }
+        return present ? GainLossStates.UNCHANGED_PRESENT : GainLossStates.UNCHANGED_ABSENT;
+    }
+
+    @Override
+    public CharacterStateMatrix<GainLossStates> pivot() {
+        final PackedGainLossStateMatrix new_matrix = new PackedGainLossStateMatrix( _characters.length,
+                                                                                    getNumberOfIdentifiers() );
+        for( int character = 0; character < _characters.length; ++character ) {
+            if ( getCharacter( character ) != null ) {
+                new_matrix.setIdentifier( character, getCharacter( character ) );
+            }
+        }
+        for( int identifier = 0; identifier < getNumberOfIdentifiers(); ++identifier ) {
+            if ( getIdentifier( identifier ) != null ) {
+                new_matrix.setCharacter( identifier, getIdentifier( identifier ) );
+            }
+            for( int character = 0; character < _characters.length; ++character ) {
+                new_matrix.setState( character, identifier, getState( identifier, character ) );
+            }
+        }
+        return new_matrix;
+    }
+
+    @Override
+    public void setState( final int identifier_index, final int character_index, final GainLossStates state ) {
+        if ( ( character_index < 0 ) || ( character_index >= _characters.length ) ) {
+            throw new IndexOutOfBoundsException( "character index is out of range: " + character_index );
+        }
+        if ( ( state == null ) || ( state == GainLossStates.UNKNOWN ) ) {
+            throw new IllegalArgumentException( "attempt to store state [" + state
+                    + "] in packed gain-loss state matrix" );
+        }
+        final int w = character_index >>> 6;
+        final long bit = 1L << character_index;
+        if ( ( state == GainLossStates.GAIN ) || ( state == GainLossStates.UNCHANGED_PRESENT ) ) {
+            _present[ identifier_index ][ w ] |= bit;
+        }
+        else {
+            _present[ identifier_index ][ w ] &= ~bit;
+        }
+        if ( ( state == GainLossStates.GAIN ) || ( state == GainLossStates.LOSS ) ) {
+            _changed[ identifier_index ][ w ] |= bit;
+        }
+        else {
+            _changed[ identifier_index ][ w ] &= ~bit;
+        }
+    }
+
+    /**
+     * Sets the states of characters 64 * word_index to 64 * word_index + 63
+     * of an identifier: present has the bits set of the characters present
+     * after the branch, changed those of the characters gained or lost along
+     * the branch. Bits beyond the last character are ignored.
+     *
+     */
+    public void setWords( final int identifier_index, final int word_index, final long present, final long changed ) {
+        final long mask = PackedBinaryStateMatrix.calculateWordMask( _characters.length, word_index );
+        _present[ identifier_index ][ word_index ] = present & mask;
+        _changed[ identifier_index ][ word_index ] = changed & mask;
+    }
+}
@@ -0,0 +1,350 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.evoinference.matrix.distance;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.StringTokenizer;
+
+import org.forester.util.ForesterUtil;
+import org.forester.util.IllegalFormatUseException;
+
+/*
+ * Symmetrical distance matrix which only stores the values below the
+ * diagonal, as floats, in one packed array (size * (size - 1) / 2 values,
+ * instead of size * size doubles as in BasicSymmetricalDistanceMatrix).
+ *
+ * The values are either kept on the heap or in a memory-mapped file.
+ * In both cases they are split into segments of at most 2^28 values, so
+ * that matrices with more than Integer.MAX_VALUE values can be stored.
+ *
+ */
+public final class PackedSymmetricalDistanceMatrix implements DistanceMatrix {
+
+    private final static NumberFormat PHYLIP_FORMATTER = new DecimalFormat( "0.000000" );
+    private final static int          SEGMENT_SHIFT    = 28;
+    private final static int          SEGMENT_MASK     = ( 1 << SEGMENT_SHIFT ) - 1;
+    private final File                _file;
+    private final String[]            _identifiers;
+    // Either _values (on heap) or _segments (memory-mapped) is used.
+    private final float[][]           _values;
+    private final FloatBuffer[]       _segments;
+    private final int                 _size;
+
+    public PackedSymmetricalDistanceMatrix( final int size ) {
+        if ( size < 0 ) {
+            throw new IllegalArgumentException( "attempt to create distance matrix of negative size" );
+        }
+        _size = size;
+        _identifiers = new String[ size ];
+        _file = null;
+        final long n = calcNumberOfValues( size );
+        _values = new float[ calcNumberOfSegments( n ) ][];
+        for( int s = 0; s < _values.length; ++s ) {
+            _values[ s ] = new float[ calcSegmentLength( n, s ) ];
+        }
+        _segments = null;
+    }
+
+    /**
+     * Creates a distance matrix backed by a memory-mapped file (which will
+     * be created or overwritten). Values are initialized to zero.
+     * The file is not deleted by this class.
+     *
+     * @param size the number of rows (and columns)
+     * @param file the file to map the values to
+     * @throws IOException
+     */
+    public PackedSymmetricalDistanceMatrix( final int size, final File file ) throws IOException {
+        if ( size < 0 ) {
+            throw new IllegalArgumentException( "attempt to create distance matrix of negative size" );
+        }
+        _size = size;
+        _identifiers = new String[ size ];
+        _file = file;
+        _values = null;
+        final long n = calcNumberOfValues( size );
+        _segments = new FloatBuffer[ calcNumberOfSegments( n ) ];
+        final RandomAccessFile raf = new RandomAccessFile( file, "rw" );
+        try {
+            raf.setLength( 0 );
+            raf.setLength( n * 4 );
+            final FileChannel channel = raf.getChannel();
+            for( int s = 0; s < _segments.length; ++s ) {
+                final long start = ( ( long ) s << SEGMENT_SHIFT ) * 4;
+                _segments[ s ] = channel.map( MapMode.READ_WRITE, start, calcSegmentLength( n, s ) * 4L )
+                        .order( ByteOrder.nativeOrder() ).asFloatBuffer();
+            }
+        }
+        finally {
+            // The mapping stays valid after the channel is closed.
+            raf.close();
+        }
+    }
+
+    public final File getFile() {
+        return _file;
+    }
+
+    @Override
+    public final String getIdentifier( final int i ) {
+        return _identifiers[ i ];
+    }
+
+    @Override
+    public final int getIndex( final String identifier ) {
+        for( int i = 0; i < _identifiers.length; i++ ) {
+            if ( getIdentifier( i ).equals( identifier ) ) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException( "identifier [" + identifier + "] not found in distance matrix" );
+    }
+
+    public final long getNumberOfValues() {
+        return calcNumberOfValues( _size );
+    }
+
+    /**
+     * Returns the position of the first value of the given row in the packed
+     * array; the value at (col, row) with col < row is at getRowStart( row ) + col.
+     *
+     */
+    public final long getRowStart( final int row ) {
+        return ( ( long ) row * ( row - 1 ) ) >>> 1;
+    }
+
+    @Override
+    public final int getSize() {
+        return _size;
+    }
+
+    @Override
+    public final double getValue( final int col, final int row ) {
+        if ( col == row ) {
+            if ( col >= _size ) {
+                throw new IndexOutOfBoundsException( "" );
+            }
+            return 0.0;
+        }
+        return getValueAsFloat( col, row );
+    }
+
+    /**
+     * Returns the value at (col, row), with col != row.
+     * No checks are performed, this is intended for algorithms which work
+     * directly on this matrix.
+     *
+     */
+    public final float getValueAsFloat( final int col, final int row ) {
+        return getValueAt( col > row ? calcIndex( col, row ) : calcIndex( row, col ) );
+    }
+
+    /**
+     * Returns the value at the given position in the packed array.
+     *
+     * @see #getRowStart(int)
+     */
+    public final float getValueAt( final long i ) {
+        if ( _values != null ) {
+            return _values[ ( int ) ( i >>> SEGMENT_SHIFT ) ][ ( int ) ( i & SEGMENT_MASK ) ];
+        }
+        return _segments[ ( int ) ( i >>> SEGMENT_SHIFT ) ].get( ( int ) ( i & SEGMENT_MASK ) );
+    }
+
+    public final boolean isMemoryMapped() {
+        return _file != null;
+    }
+
+    public final void randomize( final long seed ) {
+        final java.util.Random r = new java.util.Random( seed );
+        for( int j = 0; j < getSize(); ++j ) {
+            for( int i = 0; i < j; ++i ) {
+                setValue( i, j, r.nextDouble() );
+            }
+        }
+    }
+
+    @Override
+    public final void setIdentifier( final int i, final String identifier ) {
+        _identifiers[ i ] = identifier;
+    }
+
+    public final void setRow( final String s, final int row ) {
+        final StringTokenizer tk = new StringTokenizer( s );
+        int i = 0;
+        while ( tk.hasMoreElements() ) {
+            setValue( i, row, Double.valueOf( tk.nextToken() ) );
+            i++;
+        }
+    }
+
+    @Override
+    public final void setValue( final int col, final int row, final double d ) {
+        if ( d < 0 ) {
+            throw new IllegalArgumentException( "negative distance value" );
+        }
+        if ( col == row ) {
+            if ( d != 0.0 ) {
+                throw new IllegalArgumentException( "attempt to set a non-zero value on the diagonal of a symmetrical distance matrix" );
+            }
+            return;
+        }
+        setValueAsFloat( col, row, ( float ) d );
+    }
+
+    /**
+     * Sets the value at the given position in the packed array.
+     *
+     * @see #getRowStart(int)
+     */
+    public final void setValueAt( final long i, final float d ) {
+        if ( _values != null ) {
+            _values[ ( int ) ( i >>> SEGMENT_SHIFT ) ][ ( int ) ( i & SEGMENT_MASK ) ] = d;
+        }
+        else {
+            _segments[ ( int ) ( i >>> SEGMENT_SHIFT ) ].put( ( int ) ( i & SEGMENT_MASK ), d );
+        }
+    }
+
+    /**
+     * Sets the value at (col, row), with col != row.
+     * No checks are performed (negative values are allowed), this is intended
+     * for algorithms which work directly on this matrix.
+     *
+     */
+    public final void setValueAsFloat( final int col, final int row, final float d ) {
+        setValueAt( col > row ? calcIndex( col, row ) : calcIndex( row, col ), d );
+    }
+
+    @Override
+    public final String toString() {
+        return toPhylip().toString();
+    }
+
+    @Override
+    public final StringBuffer toStringBuffer( final Format format ) {
+        switch ( format ) {
+            case PHYLIP:
+                return toPhylip();
+            default:
+                throw new IllegalArgumentException( "Unknown format:" + format );
+        }
+    }
+
+    public final void write( final Writer w ) throws IOException {
+        w.write( "    " );
+        w.write( getSize() + "" );
+        w.write( ForesterUtil.LINE_SEPARATOR );
+        for( int row = 0; row < getSize(); ++row ) {
+            if ( !ForesterUtil.isEmpty( getIdentifier( row ) ) ) {
+                w.write( ForesterUtil.pad( getIdentifier( row ), 10, ' ', false ).toString() );
+                w.write( ' ' );
+                w.write( ' ' );
+            }
+            else {
+                throw new IllegalFormatUseException( "Phylip format does not allow empty identifiers" );
+            }
+            for( int col = 0; col < getSize(); ++col ) {
+                w.write( PHYLIP_FORMATTER.format( getValue( col, row ) ) );
+                if ( col < ( getSize() - 1 ) ) {
+                    w.write( ' ' );
+                    w.write( ' ' );
+                }
+            }
+            if ( row < ( getSize() - 1 ) ) {
+                w.write( ForesterUtil.LINE_SEPARATOR );
+            }
+        }
+    }
+
+    private final StringBuffer toPhylip() {
+        final StringBuffer sb = new StringBuffer();
+        sb.append( ' ' );
+        sb.append( ' ' );
+        sb.append( ' ' );
+        sb.append( ' ' );
+        sb.append( getSize() );
+        sb.append( ForesterUtil.LINE_SEPARATOR );
+        for( int row = 0; row < getSize(); ++row ) {
+            if ( !ForesterUtil.isEmpty( getIdentifier( row ) ) ) {
+                sb.append( ForesterUtil.pad( getIdentifier( row ), 10, ' ', false ) );
+                sb.append( ' ' );
+                sb.append( ' ' );
+            }
+            else {
+                throw new IllegalFormatUseException( "Phylip format does not allow empty identifiers" );
+            }
+            for( int col = 0; col < getSize(); ++col ) {
+                sb.append( PHYLIP_FORMATTER.format( getValue( col, row ) ) );
+                if ( col < ( getSize() - 1 ) ) {
+                    sb.append( ' ' );
+                    sb.append( ' ' );
+                }
+            }
+            if ( row < ( getSize() - 1 ) ) {
+                sb.append( ForesterUtil.LINE_SEPARATOR );
+            }
+        }
+        return sb;
+    }
+
+    public final static PackedSymmetricalDistanceMatrix createInstance( final DistanceMatrix distances ) {
+        final PackedSymmetricalDistanceMatrix p = new PackedSymmetricalDistanceMatrix( distances.getSize() );
+        for( int i = 0; i < distances.getSize(); ++i ) {
+            p.setIdentifier( i, distances.getIdentifier( i ) );
+            for( int j = 0; j < i; ++j ) {
+                p.setValueAsFloat( i, j, ( float ) distances.getValue( i, j ) );
+            }
+        }
+        return p;
+    }
+
+    // Index of (i, j), i > j, in the packed lower triangle.
+    private final static long calcIndex( final int i, final int j ) {
+        return ( ( ( long ) i * ( i - 1 ) ) >>> 1 ) + j;
+    }
+
+    private final static int calcNumberOfSegments( final long number_of_values ) {
+        return ( int ) ( ( number_of_values + SEGMENT_MASK ) >>> SEGMENT_SHIFT );
+    }
+
+    private final static long calcNumberOfValues( final int size ) {
+        return ( ( long ) size * ( size - 1 ) ) >>> 1;
+    }
+
+    private final static int calcSegmentLength( final long number_of_values, final int segment ) {
+        final long start = ( long ) segment << SEGMENT_SHIFT;
+        return ( int ) Math.min( SEGMENT_MASK + 1L, number_of_values - start );
+    }
+}
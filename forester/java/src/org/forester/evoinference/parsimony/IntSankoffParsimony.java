@@ -0,0 +1,428 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.evoinference.parsimony;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.forester.evoinference.matrix.character.IntCharacterStateMatrix;
+import org.forester.phylogeny.Phylogeny;
+import org.forester.util.FailedConditionCheckException;
+
+/*
+ * Sankoff (weighted) parsimony for int-coded states (0 to number of states
+ * - 1), with a dense matrix of the costs of changes between any two states.
+ * External nodes with UNKNOWN states may be in any state.
+ *
+ * Characters are independent, and are processed in chunks of
+ * CHARACTERS_PER_CHUNK on a pool of number_of_threads threads; each chunk
+ * uses its own arrays of per-node, per-state costs.
+ *
+ * If more than one state is optimal at a node during trace-back, the states
+ * are considered in ascending order and the first one is used by default
+ * (the last one with setUseLast). With setRandomize, one of them is picked
+ * at random: each character has its own random number generator, seeded by
+ * the i-th number of a generator seeded with the random number seed, so that
+ * results only depend on the seed, not on the number of threads (they are
+ * not the same as if one generator were used for all characters in turn).
+ *
+ */
+public class IntSankoffParsimony {
+
+    private static final int        CHARACTERS_PER_CHUNK           = 64;
+    private static final long       RANDOM_NUMBER_SEED_DEFAULT     = 21;
+    private static final boolean    RANDOMIZE_DEFAULT              = false;
+    private static final boolean    RETURN_INTERNAL_STATES_DEFAULT = false;
+    private static final boolean    USE_LAST_DEFAULT               = false;
+    private int                     _cost;
+    // Cost of a change from state i to state j at [ i * number of states + j ].
+    private final int[]             _costs;
+    private IntCharacterStateMatrix _internal_states_matrix;
+    private final int               _number_of_states;
+    private long                    _random_number_seed;
+    private boolean                 _randomize;
+    private boolean                 _return_internal_states;
+    private int                     _total_changes;
+    private boolean                 _use_last;
+
+    /**
+     * @param cost_matrix the square matrix of non-negative costs,
+     * cost_matrix[ i ][ j ] being the cost of a change from state i to state j
+     */
+    public IntSankoffParsimony( final int[][] cost_matrix ) {
+        if ( ( cost_matrix == null ) || ( cost_matrix.length < 1 ) ) {
+            throw new IllegalArgumentException( "cost matrix is null or empty" );
+        }
+        _number_of_states = cost_matrix.length;
+        _costs = new int[ _number_of_states * _number_of_states ];
+        for( int i = 0; i < _number_of_states; ++i ) {
+            if ( cost_matrix[ i ].length != _number_of_states ) {
+                throw new IllegalArgumentException( "cost matrix is not square" );
+            }
+            for( int j = 0; j < _number_of_states; ++j ) {
+                if ( cost_matrix[ i ][ j ] < 0 ) {
+                    throw new IllegalArgumentException( "negative cost [" + cost_matrix[ i ][ j ]
+                            + "] in cost matrix" );
+                }
+                _costs[ ( i * _number_of_states ) + j ] = cost_matrix[ i ][ j ];
+            }
+        }
+        init();
+    }
+
+    public void execute( final Phylogeny p, final IntCharacterStateMatrix external_node_states_matrix ) {
+        execute( p, external_node_states_matrix, Runtime.getRuntime().availableProcessors() );
+    }
+
+    public void execute( final Phylogeny p,
+                         final IntCharacterStateMatrix external_node_states_matrix,
+                         final int number_of_threads ) {
+        if ( !p.isRooted() ) {
+            throw new IllegalArgumentException( "attempt to execute Sankoff parsimony on unroored phylogeny" );
+        }
+        if ( external_node_states_matrix.isEmpty() ) {
+            throw new IllegalArgumentException( "character matrix is empty" );
+        }
+        if ( external_node_states_matrix.getNumberOfIdentifiers() != p.getNumberOfExternalNodes() ) {
+            throw new IllegalArgumentException( "number of external nodes in phylogeny ["
+                    + p.getNumberOfExternalNodes() + "] and number of indentifiers ["
+                    + external_node_states_matrix.getNumberOfIdentifiers() + "] in matrix are not equal" );
+        }
+        if ( number_of_threads < 1 ) {
+            throw new IllegalArgumentException( "number of threads is out of range: " + number_of_threads );
+        }
+        reset();
+        final PackedTopology topology = new PackedTopology( p, external_node_states_matrix );
+        final IntCharacterStateMatrix internal_states_matrix = isReturnInternalStates() ? topology
+                .createInternalIntStatesMatrix( external_node_states_matrix ) : null;
+        final int number_of_characters = external_node_states_matrix.getNumberOfCharacters();
+        final int[] costs = new int[ number_of_characters ];
+        final int[] changes = new int[ number_of_characters ];
+        final ForkJoinPool pool = new ForkJoinPool( number_of_threads );
+        try {
+            pool.invoke( new SankoffTask( this,
+                                          topology,
+                                          external_node_states_matrix,
+                                          isRandomize() ? createCharacterSeeds( number_of_characters,
+                                                                                _random_number_seed ) : null,
+                                          internal_states_matrix,
+                                          costs,
+                                          changes,
+                                          0,
+                                          number_of_characters ) );
+        }
+        finally {
+            pool.shutdown();
+        }
+        for( int c = 0; c < number_of_characters; ++c ) {
+            _cost += costs[ c ];
+            _total_changes += changes[ c ];
+        }
+        _internal_states_matrix = internal_states_matrix;
+    }
+
+    public int getCost() {
+        return _cost;
+    }
+
+    public IntCharacterStateMatrix getInternalStatesMatrix() {
+        if ( !isReturnInternalStates() ) {
+            throw new RuntimeException( "creation of internal state matrix has not been enabled" );
+        }
+        return _internal_states_matrix;
+    }
+
+    public int getNumberOfStates() {
+        return _number_of_states;
+    }
+
+    /**
+     * Returns the number of branches (over all characters) along which the
+     * state changes, for the states chosen during trace-back.
+     *
+     */
+    public int getTotalChanges() {
+        return _total_changes;
+    }
+
+    public void setRandomize( final boolean randomize ) {
+        if ( randomize && isUseLast() ) {
+            throw new IllegalArgumentException( "attempt to allways use last state (ordered) if more than one choices and randomization at the same time" );
+        }
+        _randomize = randomize;
+    }
+
+    public void setRandomNumberSeed( final long random_number_seed ) {
+        if ( !isRandomize() ) {
+            throw new IllegalArgumentException( "attempt to set random number generator seed without randomization enabled" );
+        }
+        _random_number_seed = random_number_seed;
+    }
+
+    public void setReturnInternalStates( final boolean return_internal_states ) {
+        _return_internal_states = return_internal_states;
+    }
+
+    /**
+     * This sets whether to use the first (false) or the last (true) of
+     * the optimal states (in ascending order) during trace-back.
+     * For randomized choices set randomize to true (and this to false).
+     *
+     * @param use_last
+     */
+    public void setUseLast( final boolean use_last ) {
+        if ( use_last && isRandomize() ) {
+            throw new IllegalArgumentException( "attempt to allways use last state (ordered) if more than one choices and randomization at the same time" );
+        }
+        _use_last = use_last;
+    }
+
+    private void init() {
+        setReturnInternalStates( RETURN_INTERNAL_STATES_DEFAULT );
+        setRandomize( RANDOMIZE_DEFAULT );
+        setUseLast( USE_LAST_DEFAULT );
+        _random_number_seed = RANDOM_NUMBER_SEED_DEFAULT;
+        reset();
+    }
+
+    private boolean isRandomize() {
+        return _randomize;
+    }
+
+    private boolean isReturnInternalStates() {
+        return _return_internal_states;
+    }
+
+    private boolean isUseLast() {
+        return _use_last;
+    }
+
+    private void reset() {
+        _cost = 0;
+        _total_changes = 0;
+        _internal_states_matrix = null;
+    }
+
+    private final static long[] createCharacterSeeds( final int number_of_characters, final long random_seed ) {
+        final Random generator = new Random( random_seed );
+        final long[] seeds = new long[ number_of_characters ];
+        for( int c = 0; c < number_of_characters; ++c ) {
+            seeds[ c ] = generator.nextLong();
+        }
+        return seeds;
+    }
+
+    private final static class SankoffTask extends RecursiveAction {
+
+        private static final long             serialVersionUID = 1L;
+        private final int[]                   _changes;
+        private final int[]                   _costs;
+        private final IntCharacterStateMatrix _external_node_states_matrix;
+        private final int                     _from;
+        private final IntCharacterStateMatrix _internal_states_matrix;
+        private final IntSankoffParsimony     _parsimony;
+        private final long[]                  _seeds;
+        private final int                     _to;
+        private final PackedTopology          _topology;
+
+        SankoffTask( final IntSankoffParsimony parsimony,
+                     final PackedTopology topology,
+                     final IntCharacterStateMatrix external_node_states_matrix,
+                     final long[] seeds,
+                     final IntCharacterStateMatrix internal_states_matrix,
+                     final int[] costs,
+                     final int[] changes,
+                     final int from,
+                     final int to ) {
+            _parsimony = parsimony;
+            _topology = topology;
+            _external_node_states_matrix = external_node_states_matrix;
+            _seeds = seeds;
+            _internal_states_matrix = internal_states_matrix;
+            _costs = costs;
+            _changes = changes;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected final void compute() {
+            if ( ( _to - _from ) <= CHARACTERS_PER_CHUNK ) {
+                final int k = _parsimony._number_of_states;
+                final int n = _topology.getNumberOfNodes();
+                // Per node (in preorder): the minimal cost of its subtree for
+                // each of its states (node_costs), the state chosen during
+                // trace-back (states).
+                final int[] node_costs = new int[ n * k ];
+                final int[] states = new int[ n ];
+                final int[] ties = new int[ k ];
+                for( int c = _from; c < _to; ++c ) {
+                    executeForOneCharacter( c, node_costs, states, ties );
+                }
+            }
+            else {
+                final int middle = ( _from + _to ) >>> 1;
+                invokeAll( new SankoffTask( _parsimony,
+                                            _topology,
+                                            _external_node_states_matrix,
+                                            _seeds,
+                                            _internal_states_matrix,
+                                            _costs,
+                                            _changes,
+                                            _from,
+                                            middle ),
+                           new SankoffTask( _parsimony,
+                                            _topology,
+                                            _external_node_states_matrix,
+                                            _seeds,
+                                            _internal_states_matrix,
+                                            _costs,
+                                            _changes,
+                                            middle,
+                                            _to ) );
+            }
+        }
+
+        private final int choose( final int number_of_ties, final int[] ties, final Random random ) {
+            if ( number_of_ties == 1 ) {
+                return ties[ 0 ];
+            }
+            else if ( random != null ) {
+                return ties[ random.nextInt( number_of_ties ) ];
+            }
+            else if ( _parsimony.isUseLast() ) {
+                return ties[ number_of_ties - 1 ];
+            }
+            return ties[ 0 ];
+        }
+
+        private final void executeForOneCharacter( final int c,
+                                                   final int[] node_costs,
+                                                   final int[] states,
+                                                   final int[] ties ) {
+            final int k = _parsimony._number_of_states;
+            final int[] costs = _parsimony._costs;
+            final int n = _topology.getNumberOfNodes();
+            // Post-order: known states of external nodes are kept in states
+            // (and accounted for directly at their parents), UNKNOWN ones
+            // cost nothing in any state.
+            for( int i = n - 1; i >= 0; --i ) {
+                final int[] children = _topology._children[ i ];
+                final int base = i * k;
+                if ( children.length == 0 ) {
+                    final int state = _external_node_states_matrix.getIntState( _topology._leaf_rows[ i ], c );
+                    if ( ( state >= k ) || ( ( state < 0 ) && ( state != IntCharacterStateMatrix.UNKNOWN ) ) ) {
+                        throw new IllegalArgumentException( "state [" + state + "] of character [" + c
+                                + "] is out of range for " + k + " states" );
+                    }
+                    states[ i ] = state;
+                    for( int s = 0; s < k; ++s ) {
+                        node_costs[ base + s ] = 0;
+                    }
+                }
+                else {
+                    for( int s = 0; s < k; ++s ) {
+                        final int row = s * k;
+                        int sum = 0;
+                        for( final int child : children ) {
+                            if ( ( _topology._children[ child ].length == 0 )
+                                    && ( states[ child ] != IntCharacterStateMatrix.UNKNOWN ) ) {
+                                sum += costs[ row + states[ child ] ];
+                            }
+                            else {
+                                final int child_base = child * k;
+                                int min = Integer.MAX_VALUE;
+                                for( int t = 0; t < k; ++t ) {
+                                    final int x = costs[ row + t ] + node_costs[ child_base + t ];
+                                    if ( x < min ) {
+                                        min = x;
+                                    }
+                                }
+                                sum += min;
+                            }
+                        }
+                        node_costs[ base + s ] = sum;
+                    }
+                }
+            }
+            // Trace-back.
+            final Random random = _seeds != null ? new Random( _seeds[ c ] ) : null;
+            int cost = 0;
+            if ( ( _topology._children[ 0 ].length > 0 ) || ( states[ 0 ] == IntCharacterStateMatrix.UNKNOWN ) ) {
+                cost = Integer.MAX_VALUE;
+                int number_of_ties = 0;
+                for( int s = 0; s < k; ++s ) {
+                    final int x = node_costs[ s ];
+                    if ( x < cost ) {
+                        cost = x;
+                        number_of_ties = 0;
+                    }
+                    if ( x == cost ) {
+                        ties[ number_of_ties++ ] = s;
+                    }
+                }
+                states[ 0 ] = choose( number_of_ties, ties, random );
+            }
+            int changes = 0;
+            int edge_costs = 0;
+            for( int i = 1; i < n; ++i ) {
+                final int parent_state = states[ _topology._parents[ i ] ];
+                final int row = parent_state * k;
+                if ( ( _topology._children[ i ].length > 0 ) || ( states[ i ] == IntCharacterStateMatrix.UNKNOWN ) ) {
+                    final int base = i * k;
+                    int min = Integer.MAX_VALUE;
+                    int number_of_ties = 0;
+                    for( int t = 0; t < k; ++t ) {
+                        final int x = costs[ row + t ] + node_costs[ base + t ];
+                        if ( x < min ) {
+                            min = x;
+                            number_of_ties = 0;
+                        }
+                        if ( x == min ) {
+                            ties[ number_of_ties++ ] = t;
+                        }
+                    }
+                    states[ i ] = choose( number_of_ties, ties, random );
+                }
+                edge_costs += costs[ row + states[ i ] ];
+                if ( states[ i ] != parent_state ) {
+                    ++changes;
+                }
+                if ( ( _internal_states_matrix != null ) && ( _topology._internal_rows[ i ] >= 0 ) ) {
+                    _internal_states_matrix.setIntState( _topology._internal_rows[ i ], c, states[ i ] );
+                }
+            }
+            if ( ( _internal_states_matrix != null ) && ( _topology._internal_rows[ 0 ] >= 0 ) ) {
+                _internal_states_matrix.setIntState( _topology._internal_rows[ 0 ], c, states[ 0 ] );
+            }
+            if ( edge_costs != cost ) {
+                throw new FailedConditionCheckException( "this should not have happened: something is deeply wrong with Sankoff parsimony implementation" );
+            }
+            _costs[ c ] = cost;
+            _changes[ c ] = changes;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.evoinference.parsimony;
+
+import org.forester.evoinference.matrix.character.PackedBinaryStateMatrix;
+import org.forester.evoinference.matrix.character.PackedGainLossStateMatrix;
+import org.forester.phylogeny.Phylogeny;
+
+/*
+ * Dollo parsimony for binary characters, operating on 64 characters at once:
+ * for each node, the characters present (or unknown) in at least one and in
+ * at least two child nodes are kept as two words, so that both traversals
+ * are bitwise operations on whole words.
+ *
+ * Produces the same internal states, gain-loss matrix, cost and totals as
+ * DolloParsimony.
+ *
+ */
+public class PackedDolloParsimony {
+
+    private static final boolean      RETURN_GAIN_LOSS_MATRIX_DEFAULT = false;
+    private static final boolean      RETURN_INTERNAL_STATES_DEFAULT  = false;
+    private PackedGainLossStateMatrix _gain_loss_matrix;
+    private PackedBinaryStateMatrix   _internal_states_matrix;
+    // Per node (in preorder): the characters present or unknown (that is,
+    // present or unknown in at least one child node) after the postorder
+    // traversal (_present_or_unknown); the characters present (in at least
+    // two child nodes) after the postorder traversal (_present); the
+    // characters present after trace-back (_states).
+    private long[]                    _present;
+    private long[]                    _present_or_unknown;
+    private boolean                   _return_gain_loss;
+    private boolean                   _return_internal_states;
+    private long[]                    _states;
+    private PackedTopology            _topology;
+    private int                       _total_gains;
+    private int                       _total_losses;
+    private int                       _total_unchanged;
+
+    private PackedDolloParsimony() {
+        init();
+    }
+
+    public void execute( final Phylogeny p, final PackedBinaryStateMatrix external_node_states_matrix ) {
+        if ( !p.isRooted() ) {
+            throw new IllegalArgumentException( "attempt to execute Dollo parsimony on unroored phylogeny" );
+        }
+        if ( external_node_states_matrix.isEmpty() ) {
+            throw new IllegalArgumentException( "character matrix is empty" );
+        }
+        if ( external_node_states_matrix.getNumberOfIdentifiers() != p.getNumberOfExternalNodes() ) {
+            throw new IllegalArgumentException( "number of external nodes in phylogeny ["
+                    + p.getNumberOfExternalNodes() + "] and number of indentifiers ["
+                    + external_node_states_matrix.getNumberOfIdentifiers() + "] in matrix are not equal" );
+        }
+        reset();
+        _topology = new PackedTopology( p, external_node_states_matrix );
+        final int n = _topology.getNumberOfNodes();
+        _present = new long[ n ];
+        _present_or_unknown = new long[ n ];
+        _states = new long[ n ];
+        _gain_loss_matrix = isReturnGainLossMatrix() ? _topology.createGainLossMatrix( external_node_states_matrix )
+                : null;
+        _internal_states_matrix = isReturnInternalStates() ? _topology
+                .createInternalStatesMatrix( external_node_states_matrix ) : null;
+        for( int w = 0; w < external_node_states_matrix.getNumberOfWords(); ++w ) {
+            postOrderTraversal( external_node_states_matrix, w );
+            preOrderTraversal( w, external_node_states_matrix.getWordMask( w ) );
+        }
+        _total_unchanged = ( external_node_states_matrix.getNumberOfCharacters() * n ) - _total_gains
+                - _total_losses;
+        if ( ( external_node_states_matrix.getNumberOfCharacters() * p.getNumberOfBranches() ) != ( getTotalGains()
+                + getTotalLosses() + getTotalUnchanged() ) ) {
+            throw new AssertionError( "this should not have happened: something is deeply wrong with packed Dollo parsimony implementation" );
+        }
+        _present = null;
+        _present_or_unknown = null;
+        _states = null;
+        _topology = null;
+    }
+
+    public int getCost() {
+        return getTotalGains() + getTotalLosses();
+    }
+
+    public PackedGainLossStateMatrix getGainLossMatrix() {
+        if ( !isReturnGainLossMatrix() ) {
+            throw new RuntimeException( "creation of gain-loss matrix has not been enabled" );
+        }
+        return _gain_loss_matrix;
+    }
+
+    public PackedBinaryStateMatrix getInternalStatesMatrix() {
+        if ( !isReturnInternalStates() ) {
+            throw new RuntimeException( "creation of internal state matrix has not been enabled" );
+        }
+        return _internal_states_matrix;
+    }
+
+    public int getTotalGains() {
+        return _total_gains;
+    }
+
+    public int getTotalLosses() {
+        return _total_losses;
+    }
+
+    public int getTotalUnchanged() {
+        return _total_unchanged;
+    }
+
+    public void setReturnGainLossMatrix( final boolean return_gain_loss ) {
+        _return_gain_loss = return_gain_loss;
+    }
+
+    public void setReturnInternalStates( final boolean return_internal_states ) {
+        _return_internal_states = return_internal_states;
+    }
+
+    private void init() {
+        setReturnInternalStates( RETURN_INTERNAL_STATES_DEFAULT );
+        setReturnGainLossMatrix( RETURN_GAIN_LOSS_MATRIX_DEFAULT );
+        reset();
+    }
+
+    private boolean isReturnGainLossMatrix() {
+        return _return_gain_loss;
+    }
+
+    private boolean isReturnInternalStates() {
+        return _return_internal_states;
+    }
+
+    private void postOrderTraversal( final PackedBinaryStateMatrix external_node_states_matrix, final int word_index ) {
+        for( int i = _topology.getNumberOfNodes() - 1; i >= 0; --i ) {
+            final int[] children = _topology._children[ i ];
+            if ( children.length == 0 ) {
+                final long present = external_node_states_matrix.getWord( _topology._leaf_rows[ i ], word_index );
+                _present[ i ] = present;
+                _present_or_unknown[ i ] = present;
+            }
+            else {
+                long at_least_one = 0;
+                long at_least_two = 0;
+                for( final int c : children ) {
+                    at_least_two |= at_least_one & _present_or_unknown[ c ];
+                    at_least_one |= _present_or_unknown[ c ];
+                }
+                _present[ i ] = at_least_two;
+                _present_or_unknown[ i ] = at_least_one;
+            }
+        }
+    }
+
+    private void preOrderTraversal( final int word_index, final long mask ) {
+        // Unknown states at the root are resolved as absent.
+        _states[ 0 ] = _present[ 0 ];
+        recordStates( 0, word_index, _states[ 0 ], 0 );
+        long gained = 0;
+        for( int i = 1; i < _topology.getNumberOfNodes(); ++i ) {
+            final long parent_state = _states[ _topology._parents[ i ] ];
+            // Unknown states are resolved as present if present in the parent.
+            final long state = _present[ i ] | ( _present_or_unknown[ i ] & parent_state );
+            _states[ i ] = state;
+            final long gains = state & ~parent_state & mask;
+            final long losses = parent_state & ~state & mask;
+            if ( ( gained & gains ) != 0 ) {
+                throw new RuntimeException( "this should not have happened: dollo parsimony cannot have more than one gain" );
+            }
+            gained |= gains;
+            _total_gains += Long.bitCount( gains );
+            _total_losses += Long.bitCount( losses );
+            recordStates( i, word_index, state, gains | losses );
+        }
+    }
+
+    private void recordStates( final int i, final int word_index, final long state, final long changed ) {
+        if ( isReturnGainLossMatrix() ) {
+            _gain_loss_matrix.setWords( _topology._gain_loss_rows[ i ], word_index, state, changed );
+        }
+        if ( isReturnInternalStates() && ( _topology._internal_rows[ i ] >= 0 ) ) {
+            _internal_states_matrix.setWord( _topology._internal_rows[ i ], word_index, state );
+        }
+    }
+
+    private void reset() {
+        _total_gains = 0;
+        _total_losses = 0;
+        _total_unchanged = 0;
+    }
+
+    public static PackedDolloParsimony createInstance() {
+        return new PackedDolloParsimony();
+    }
+}
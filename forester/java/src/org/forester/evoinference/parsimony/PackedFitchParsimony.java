@@ -0,0 +1,337 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.evoinference.parsimony;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.forester.evoinference.matrix.character.PackedBinaryStateMatrix;
+import org.forester.evoinference.matrix.character.PackedGainLossStateMatrix;
+import org.forester.phylogeny.Phylogeny;
+import org.forester.util.FailedConditionCheckException;
+
+/*
+ * Fitch parsimony for binary characters, operating on 64 characters at once:
+ * the state sets of a node are kept as two words (bits set for characters
+ * which may be absent, and for characters which may be present), so that
+ * intersections and unions of the state sets of child nodes, as well as the
+ * trace-back, are bitwise operations on whole words.
+ *
+ * Produces the same internal states, gain-loss matrix, cost and totals as
+ * FitchParsimony with BinaryStates, including the choices made with
+ * setUseLast and setRandomize (for the same random number seed, the random
+ * number generator is consumed exactly as in FitchParsimony). Internal
+ * states prior to trace-back are not available.
+ *
+ */
+public class PackedFitchParsimony {
+
+    private static final long         RANDOM_NUMBER_SEED_DEFAULT      = 21;
+    private static final boolean      RANDOMIZE_DEFAULT               = false;
+    private static final boolean      RETURN_GAIN_LOSS_MATRIX_DEFAULT = false;
+    private static final boolean      RETURN_INTERNAL_STATES_DEFAULT  = false;
+    private static final boolean      USE_LAST_DEFAULT                = false;
+    // Per node (in preorder): the characters which may be absent, and which
+    // may be present, after the postorder traversal (_absent, _present); the
+    // characters present after trace-back (_states).
+    private long[]                    _absent;
+    private int                       _cost;
+    private PackedGainLossStateMatrix _gain_loss_matrix;
+    private PackedBinaryStateMatrix   _internal_states_matrix;
+    private long[]                    _present;
+    private Random                    _random_generator;
+    private long                      _random_number_seed;
+    private boolean                   _randomize;
+    private boolean                   _return_gain_loss;
+    private boolean                   _return_internal_states;
+    private long[]                    _states;
+    private PackedTopology            _topology;
+    private int                       _total_gains;
+    private int                       _total_losses;
+    private int                       _total_unchanged;
+    private boolean                   _use_last;
+
+    public PackedFitchParsimony() {
+        init();
+    }
+
+    public void execute( final Phylogeny p, final PackedBinaryStateMatrix external_node_states_matrix ) {
+        if ( !p.isRooted() ) {
+            throw new IllegalArgumentException( "attempt to execute Fitch parsimony on unroored phylogeny" );
+        }
+        if ( external_node_states_matrix.isEmpty() ) {
+            throw new IllegalArgumentException( "character matrix is empty" );
+        }
+        if ( external_node_states_matrix.getNumberOfIdentifiers() != p.getNumberOfExternalNodes() ) {
+            throw new IllegalArgumentException( "number of external nodes in phylogeny ["
+                    + p.getNumberOfExternalNodes() + "] and number of indentifiers ["
+                    + external_node_states_matrix.getNumberOfIdentifiers() + "] in matrix are not equal" );
+        }
+        reset();
+        _topology = new PackedTopology( p, external_node_states_matrix );
+        final int n = _topology.getNumberOfNodes();
+        _absent = new long[ n ];
+        _present = new long[ n ];
+        _states = new long[ n ];
+        _gain_loss_matrix = isReturnGainLossMatrix() ? _topology.createGainLossMatrix( external_node_states_matrix )
+                : null;
+        _internal_states_matrix = isReturnInternalStates() ? _topology
+                .createInternalStatesMatrix( external_node_states_matrix ) : null;
+        final int number_of_characters = external_node_states_matrix.getNumberOfCharacters();
+        final int[] changes_with_absent_root = new int[ 64 ];
+        final int[] changes_with_present_root = new int[ 64 ];
+        for( int w = 0; w < external_node_states_matrix.getNumberOfWords(); ++w ) {
+            final long mask = external_node_states_matrix.getWordMask( w );
+            postOrderTraversal( external_node_states_matrix, w, mask );
+            final long undecided = _absent[ 0 ] & _present[ 0 ];
+            final long decided_present = _present[ 0 ] & ~_absent[ 0 ];
+            long root_state;
+            if ( isRandomize() ) {
+                // FitchParsimony draws a random number for the root, and for
+                // each node at which the state changes, character after
+                // character. The number of changes of a character depends on
+                // the state chosen for the root, therefore both are counted.
+                Arrays.fill( changes_with_absent_root, 0 );
+                Arrays.fill( changes_with_present_root, 0 );
+                preOrderTraversal( decided_present, w, mask, changes_with_absent_root, false );
+                if ( undecided != 0 ) {
+                    preOrderTraversal( decided_present | undecided, w, mask, changes_with_present_root, false );
+                }
+                root_state = decided_present;
+                final int characters_in_word = Math.min( 64, number_of_characters - ( w << 6 ) );
+                for( int b = 0; b < characters_in_word; ++b ) {
+                    int changes = changes_with_absent_root[ b ];
+                    if ( ( ( undecided >>> b ) & 1L ) != 0 ) {
+                        if ( getRandomGenerator().nextInt( 2 ) == 1 ) {
+                            root_state |= 1L << b;
+                            changes = changes_with_present_root[ b ];
+                        }
+                    }
+                    else {
+                        getRandomGenerator().nextInt( 1 );
+                    }
+                    for( int i = 0; i < changes; ++i ) {
+                        getRandomGenerator().nextInt( 1 );
+                    }
+                }
+            }
+            else if ( isUseLast() ) {
+                root_state = decided_present | undecided;
+            }
+            else {
+                root_state = decided_present;
+            }
+            preOrderTraversal( root_state, w, mask, null, true );
+        }
+        _total_unchanged = ( number_of_characters * n ) - _total_gains - _total_losses;
+        if ( ( number_of_characters * p.getNumberOfBranches() ) != ( getTotalGains() + getTotalLosses() + getTotalUnchanged() ) ) {
+            throw new FailedConditionCheckException( "this should not have happened: something is deeply wrong with packed Fitch parsimony implementation" );
+        }
+        _absent = null;
+        _present = null;
+        _states = null;
+        _topology = null;
+    }
+
+    public int getCost() {
+        return _cost;
+    }
+
+    public PackedGainLossStateMatrix getGainLossMatrix() {
+        if ( !isReturnGainLossMatrix() ) {
+            throw new RuntimeException( "creation of gain-loss matrix has not been enabled" );
+        }
+        return _gain_loss_matrix;
+    }
+
+    public PackedBinaryStateMatrix getInternalStatesMatrix() {
+        if ( !isReturnInternalStates() ) {
+            throw new RuntimeException( "creation of internal state matrix has not been enabled" );
+        }
+        return _internal_states_matrix;
+    }
+
+    public int getTotalGains() {
+        return _total_gains;
+    }
+
+    public int getTotalLosses() {
+        return _total_losses;
+    }
+
+    public int getTotalUnchanged() {
+        return _total_unchanged;
+    }
+
+    public void setRandomize( final boolean randomize ) {
+        if ( randomize && isUseLast() ) {
+            throw new IllegalArgumentException( "attempt to allways use last state (ordered) if more than one choices and randomization at the same time" );
+        }
+        _randomize = randomize;
+    }
+
+    public void setRandomNumberSeed( final long random_number_seed ) {
+        if ( !isRandomize() ) {
+            throw new IllegalArgumentException( "attempt to set random number generator seed without randomization enabled" );
+        }
+        _random_number_seed = random_number_seed;
+    }
+
+    public void setReturnGainLossMatrix( final boolean return_gain_loss ) {
+        _return_gain_loss = return_gain_loss;
+    }
+
+    public void setReturnInternalStates( final boolean return_internal_states ) {
+        _return_internal_states = return_internal_states;
+    }
+
+    /**
+     * This sets whether to use absence (false) or presence (true) at
+     * the undecided internal nodes, as in FitchParsimony.
+     * For randomized choices set randomize to true (and this to false).
+     *
+     * @param use_last
+     */
+    public void setUseLast( final boolean use_last ) {
+        if ( use_last && isRandomize() ) {
+            throw new IllegalArgumentException( "attempt to allways use last state (ordered) if more than one choices and randomization at the same time" );
+        }
+        _use_last = use_last;
+    }
+
+    private Random getRandomGenerator() {
+        return _random_generator;
+    }
+
+    private void init() {
+        setReturnInternalStates( RETURN_INTERNAL_STATES_DEFAULT );
+        setReturnGainLossMatrix( RETURN_GAIN_LOSS_MATRIX_DEFAULT );
+        setRandomize( RANDOMIZE_DEFAULT );
+        setUseLast( USE_LAST_DEFAULT );
+        _random_number_seed = RANDOM_NUMBER_SEED_DEFAULT;
+        reset();
+    }
+
+    private boolean isRandomize() {
+        return _randomize;
+    }
+
+    private boolean isReturnGainLossMatrix() {
+        return _return_gain_loss;
+    }
+
+    private boolean isReturnInternalStates() {
+        return _return_internal_states;
+    }
+
+    private boolean isUseLast() {
+        return _use_last;
+    }
+
+    private void postOrderTraversal( final PackedBinaryStateMatrix external_node_states_matrix,
+                                     final int word_index,
+                                     final long mask ) {
+        for( int i = _topology.getNumberOfNodes() - 1; i >= 0; --i ) {
+            final int[] children = _topology._children[ i ];
+            if ( children.length == 0 ) {
+                final long present = external_node_states_matrix.getWord( _topology._leaf_rows[ i ], word_index );
+                _present[ i ] = present;
+                _absent[ i ] = ~present & mask;
+            }
+            else {
+                long intersection_absent = mask;
+                long intersection_present = mask;
+                long union_absent = 0;
+                long union_present = 0;
+                for( final int c : children ) {
+                    intersection_absent &= _absent[ c ];
+                    intersection_present &= _present[ c ];
+                    union_absent |= _absent[ c ];
+                    union_present |= _present[ c ];
+                }
+                // Where the intersection is empty, the union is used.
+                final long empty = ~( intersection_absent | intersection_present );
+                _absent[ i ] = intersection_absent | ( empty & union_absent );
+                _present[ i ] = intersection_present | ( empty & union_present );
+            }
+        }
+    }
+
+    /**
+     * Trace-back for one word, given the states at the root. If
+     * changes_per_character is not null, the number of changes of each
+     * character is added to it. If record is true, totals and matrices are
+     * updated.
+     *
+     */
+    private void preOrderTraversal( final long root_state,
+                                    final int word_index,
+                                    final long mask,
+                                    final int[] changes_per_character,
+                                    final boolean record ) {
+        _states[ 0 ] = root_state;
+        if ( record ) {
+            recordStates( 0, word_index, root_state, 0 );
+        }
+        for( int i = 1; i < _topology.getNumberOfNodes(); ++i ) {
+            final long parent_state = _states[ _topology._parents[ i ] ];
+            // Keep the state of the parent if possible, otherwise the set is a
+            // single state.
+            final long keep = ( parent_state & _present[ i ] ) | ( ~parent_state & _absent[ i ] );
+            final long state = ( keep & parent_state ) | ( ~keep & _present[ i ] );
+            _states[ i ] = state;
+            final long changed = ( state ^ parent_state ) & mask;
+            if ( changes_per_character != null ) {
+                for( long c = changed; c != 0; c &= c - 1 ) {
+                    ++changes_per_character[ Long.numberOfTrailingZeros( c ) ];
+                }
+            }
+            if ( record ) {
+                final int gains = Long.bitCount( changed & state );
+                _total_gains += gains;
+                _total_losses += Long.bitCount( changed ) - gains;
+                _cost += Long.bitCount( changed );
+                recordStates( i, word_index, state, changed );
+            }
+        }
+    }
+
+    private void recordStates( final int i, final int word_index, final long state, final long changed ) {
+        if ( isReturnGainLossMatrix() ) {
+            _gain_loss_matrix.setWords( _topology._gain_loss_rows[ i ], word_index, state, changed );
+        }
+        if ( isReturnInternalStates() && ( _topology._internal_rows[ i ] >= 0 ) ) {
+            _internal_states_matrix.setWord( _topology._internal_rows[ i ], word_index, state );
+        }
+    }
+
+    private void reset() {
+        _cost = 0;
+        _total_gains = 0;
+        _total_losses = 0;
+        _total_unchanged = 0;
+        _random_generator = new Random( _random_number_seed );
+    }
+}
@@ -0,0 +1,161 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.evoinference.parsimony;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.forester.evoinference.matrix.character.CharacterStateMatrix;
+import org.forester.evoinference.matrix.character.IntCharacterStateMatrix;
+import org.forester.evoinference.matrix.character.PackedBinaryStateMatrix;
+import org.forester.evoinference.matrix.character.PackedGainLossStateMatrix;
+import org.forester.phylogeny.Phylogeny;
+import org.forester.phylogeny.PhylogenyNode;
+import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
+import org.forester.util.ForesterUtil;
+
+/*
+ * The topology of a phylogeny as arrays, for the packed (bit-parallel)
+ * parsimony implementations and IntSankoffParsimony. Nodes are numbered in preorder (the root being
+ * 0), so that every node has a larger number than its parent.
+ *
+ * Rows of the gain-loss matrix are in postorder (all nodes), rows of the
+ * internal states matrix are in postorder (internal nodes only), as in
+ * FitchParsimony and DolloParsimony.
+ *
+ * Instances are not modified after construction, and can be shared between
+ * threads.
+ *
+ */
+final class PackedTopology {
+
+    final int[][]         _children;
+    // Row of the gain-loss matrix of each node.
+    final int[]           _gain_loss_rows;
+    // Row of the internal states matrix of each internal node, -1 for external nodes.
+    final int[]           _internal_rows;
+    // Row of the character state matrix of each external node, -1 for internal nodes.
+    final int[]           _leaf_rows;
+    final PhylogenyNode[] _nodes;
+    final int             _number_of_internal_nodes;
+    final int[]           _parents;
+
+    PackedTopology( final Phylogeny p, final CharacterStateMatrix<?> external_node_states_matrix ) {
+        final Map<PhylogenyNode, Integer> indices = new IdentityHashMap<PhylogenyNode, Integer>();
+        for( final PhylogenyNodeIterator it = p.iteratorPreorder(); it.hasNext(); ) {
+            indices.put( it.next(), indices.size() );
+        }
+        final int n = indices.size();
+        _nodes = new PhylogenyNode[ n ];
+        _parents = new int[ n ];
+        _children = new int[ n ][];
+        _leaf_rows = new int[ n ];
+        _internal_rows = new int[ n ];
+        _gain_loss_rows = new int[ n ];
+        for( final Map.Entry<PhylogenyNode, Integer> e : indices.entrySet() ) {
+            final PhylogenyNode node = e.getKey();
+            final int i = e.getValue();
+            _nodes[ i ] = node;
+            _parents[ i ] = node.isRoot() ? -1 : indices.get( node.getParent() );
+            _children[ i ] = new int[ node.getNumberOfDescendants() ];
+            for( int c = 0; c < node.getNumberOfDescendants(); ++c ) {
+                _children[ i ][ c ] = indices.get( node.getChildNode( c ) );
+            }
+            _leaf_rows[ i ] = -1;
+            _internal_rows[ i ] = -1;
+        }
+        int gain_loss_row = 0;
+        int internal_row = 0;
+        for( final PhylogenyNodeIterator it = p.iteratorPostorder(); it.hasNext(); ) {
+            final PhylogenyNode node = it.next();
+            final int i = indices.get( node );
+            _gain_loss_rows[ i ] = gain_loss_row++;
+            if ( node.isInternal() ) {
+                _internal_rows[ i ] = internal_row++;
+            }
+        }
+        _number_of_internal_nodes = internal_row;
+        for( int row = 0; row < external_node_states_matrix.getNumberOfIdentifiers(); ++row ) {
+            final PhylogenyNode node = p.getNode( external_node_states_matrix.getIdentifier( row ) );
+            final int i = indices.get( node );
+            if ( !node.isExternal() || ( _leaf_rows[ i ] >= 0 ) ) {
+                throw new IllegalArgumentException( "identifier [" + external_node_states_matrix.getIdentifier( row )
+                        + "] does not correspond to a distinct external node" );
+            }
+            _leaf_rows[ i ] = row;
+        }
+    }
+
+    PackedGainLossStateMatrix createGainLossMatrix( final CharacterStateMatrix<?> external_node_states_matrix ) {
+        final PackedGainLossStateMatrix m = new PackedGainLossStateMatrix( _nodes.length,
+                                                                           external_node_states_matrix
+                                                                                   .getNumberOfCharacters() );
+        for( int i = 0; i < _nodes.length; ++i ) {
+            m.setIdentifier( _gain_loss_rows[ i ], obtainName( _nodes[ i ] ) );
+        }
+        setCharacters( m, external_node_states_matrix );
+        return m;
+    }
+
+    PackedBinaryStateMatrix createInternalStatesMatrix( final CharacterStateMatrix<?> external_node_states_matrix ) {
+        final PackedBinaryStateMatrix m = new PackedBinaryStateMatrix( _number_of_internal_nodes,
+                                                                       external_node_states_matrix
+                                                                               .getNumberOfCharacters() );
+        for( int i = 0; i < _nodes.length; ++i ) {
+            if ( _internal_rows[ i ] >= 0 ) {
+                m.setIdentifier( _internal_rows[ i ], obtainName( _nodes[ i ] ) );
+            }
+        }
+        setCharacters( m, external_node_states_matrix );
+        return m;
+    }
+
+    IntCharacterStateMatrix createInternalIntStatesMatrix( final CharacterStateMatrix<?> external_node_states_matrix ) {
+        final IntCharacterStateMatrix m = new IntCharacterStateMatrix( _number_of_internal_nodes,
+                                                                       external_node_states_matrix
+                                                                               .getNumberOfCharacters() );
+        for( int i = 0; i < _nodes.length; ++i ) {
+            if ( _internal_rows[ i ] >= 0 ) {
+                m.setIdentifier( _internal_rows[ i ], obtainName( _nodes[ i ] ) );
+            }
+        }
+        setCharacters( m, external_node_states_matrix );
+        return m;
+    }
+
+    int getNumberOfNodes() {
+        return _nodes.length;
+    }
+
+    private static String obtainName( final PhylogenyNode node ) {
+        return ForesterUtil.isEmpty( node.getName() ) ? node.getId() + "" : node.getName();
+    }
+
+    private static void setCharacters( final CharacterStateMatrix<?> to, final CharacterStateMatrix<?> from ) {
+        for( int character_index = 0; character_index < from.getNumberOfCharacters(); ++character_index ) {
+            to.setCharacter( character_index, from.getCharacter( character_index ) );
+        }
+    }
+}
@@ -77,6 +77,16 @@ public class BootstrapResampler {
         return msas;
     }
 
+    public static int[] createResampledColumnPositions( final int length, final long seed ) {
+        preconditionCheck( length, 1 );
+        final Random random = new Random( seed );
+        final int[] columns = new int[ length ];
+        for( int col = 0; col < length; ++col ) {
+            columns[ col ] = random.nextInt( length );
+        }
+        return columns;
+    }
+
     public static int[][] createResampledColumnPositions( final int length, final int n, final long seed ) {
         preconditionCheck( length, n );
         final Random random = new Random( seed );
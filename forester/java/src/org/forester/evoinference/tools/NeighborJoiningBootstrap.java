@@ -0,0 +1,202 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.evoinference.tools;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.forester.evoinference.distance.NeighborJoiningF;
+import org.forester.evoinference.distance.PairwiseDistanceCalculator;
+import org.forester.evoinference.distance.PairwiseDistanceCalculator.PWD_DISTANCE_METHOD;
+import org.forester.evoinference.matrix.distance.BasicSymmetricalDistanceMatrix;
+import org.forester.msa.BasicMsa;
+import org.forester.msa.Msa;
+import org.forester.msa.ResampleableMsa;
+import org.forester.phylogeny.Phylogeny;
+import org.forester.tools.ConfidenceAccumulator;
+
+/*
+ * Bootstrap analysis for neighbor joining trees based on pairwise distances:
+ * each replicate resamples the columns of the alignment, calculates pairwise
+ * distances, infers a neighbor joining tree, and immediately adds this tree
+ * to a ConfidenceAccumulator for the target tree.
+ *
+ * Replicates are run in parallel on a fork-join pool. Replicate i uses its
+ * own seed (the i-th long drawn from a java.util.Random seeded with the given
+ * seed), so results do not depend on the number of threads or on the order in
+ * which replicates finish. At any time, at most one resampled view of the
+ * alignment, one distance matrix, and one tree exist per thread.
+ *
+ */
+public final class NeighborJoiningBootstrap {
+
+    private final BasicMsa            _msa;
+    private final int                 _number_of_threads;
+    private final PWD_DISTANCE_METHOD _pwd_distance_method;
+
+    private NeighborJoiningBootstrap( final Msa msa,
+                                      final PWD_DISTANCE_METHOD pwd_distance_method,
+                                      final int number_of_threads ) {
+        if ( number_of_threads < 1 ) {
+            throw new IllegalArgumentException( "number of threads is out of range: " + number_of_threads );
+        }
+        // Resampling works on the raw data of a BasicMsa, other
+        // implementations (e.g. DeleteableMsa) are copied once.
+        if ( msa.getClass() == BasicMsa.class ) {
+            _msa = ( BasicMsa ) msa;
+        }
+        else {
+            _msa = ( BasicMsa ) BasicMsa.createInstance( msa.asSequenceList() );
+        }
+        _pwd_distance_method = pwd_distance_method;
+        _number_of_threads = number_of_threads;
+    }
+
+    /**
+     * Runs number_of_replicates bootstrap replicates and adds the resulting
+     * trees to the given accumulator (the trees themselves are not retained).
+     *
+     * @param accumulator the accumulator for the target tree
+     * @param number_of_replicates
+     * @param seed
+     */
+    public final void execute( final ConfidenceAccumulator accumulator, final int number_of_replicates, final long seed ) {
+        if ( number_of_replicates < 1 ) {
+            throw new IllegalArgumentException( "Number of bootstrap resamples cannot be zero or negative" );
+        }
+        final ForkJoinPool pool = new ForkJoinPool( _number_of_threads );
+        try {
+            pool.invoke( new ReplicatesTask( accumulator,
+                                             createReplicateSeeds( number_of_replicates, seed ),
+                                             0,
+                                             number_of_replicates ) );
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Runs number_of_replicates bootstrap replicates and sets the number of
+     * replicate trees containing each split of the target as confidence
+     * values of type confidence_type on the target.
+     *
+     * @param confidence_type the confidence type, e.g. "bootstrap"
+     * @param target the tree to assess (usually the tree returned by inferPhylogeny())
+     * @param number_of_replicates
+     * @param seed
+     */
+    public final void execute( final String confidence_type,
+                               final Phylogeny target,
+                               final int number_of_replicates,
+                               final long seed ) {
+        final ConfidenceAccumulator accumulator = new ConfidenceAccumulator( target, true );
+        execute( accumulator, number_of_replicates, seed );
+        accumulator.apply( confidence_type, 1 );
+    }
+
+    public final int getNumberOfThreads() {
+        return _number_of_threads;
+    }
+
+    /**
+     * Infers the neighbor joining tree for the (not resampled) alignment.
+     *
+     * @return the neighbor joining tree
+     */
+    public final Phylogeny inferPhylogeny() {
+        return inferPhylogeny( _msa );
+    }
+
+    private final Phylogeny inferPhylogeny( final Msa msa ) {
+        BasicSymmetricalDistanceMatrix m = null;
+        switch ( _pwd_distance_method ) {
+            case KIMURA_DISTANCE:
+                m = PairwiseDistanceCalculator.calcKimuraDistances( msa );
+                break;
+            case POISSON_DISTANCE:
+                m = PairwiseDistanceCalculator.calcPoissonDistances( msa );
+                break;
+            case FRACTIONAL_DISSIMILARITY:
+                m = PairwiseDistanceCalculator.calcFractionalDissimilarities( msa );
+                break;
+            default:
+                throw new IllegalArgumentException( "invalid pwd method" );
+        }
+        return NeighborJoiningF.createInstance( false, 5 ).execute( m );
+    }
+
+    public final static NeighborJoiningBootstrap createInstance( final Msa msa,
+                                                                 final PWD_DISTANCE_METHOD pwd_distance_method ) {
+        return createInstance( msa, pwd_distance_method, Runtime.getRuntime().availableProcessors() );
+    }
+
+    public final static NeighborJoiningBootstrap createInstance( final Msa msa,
+                                                                 final PWD_DISTANCE_METHOD pwd_distance_method,
+                                                                 final int number_of_threads ) {
+        return new NeighborJoiningBootstrap( msa, pwd_distance_method, number_of_threads );
+    }
+
+    private final static long[] createReplicateSeeds( final int number_of_replicates, final long seed ) {
+        final Random random = new Random( seed );
+        final long[] seeds = new long[ number_of_replicates ];
+        for( int i = 0; i < number_of_replicates; ++i ) {
+            seeds[ i ] = random.nextLong();
+        }
+        return seeds;
+    }
+
+    private final class ReplicatesTask extends RecursiveAction {
+
+        private static final long           serialVersionUID = 1L;
+        private final ConfidenceAccumulator _accumulator;
+        private final long[]                _seeds;
+        private final int                   _from;
+        private final int                   _to;
+
+        ReplicatesTask( final ConfidenceAccumulator accumulator, final long[] seeds, final int from, final int to ) {
+            _accumulator = accumulator;
+            _seeds = seeds;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected final void compute() {
+            if ( ( _to - _from ) == 1 ) {
+                final ResampleableMsa resampleable_msa = new ResampleableMsa( _msa );
+                resampleable_msa.resample( BootstrapResampler.createResampledColumnPositions( _msa.getLength(),
+                                                                                              _seeds[ _from ] ) );
+                _accumulator.add( inferPhylogeny( resampleable_msa ) );
+            }
+            else {
+                final int mid = ( _from + _to ) >>> 1;
+                invokeAll( new ReplicatesTask( _accumulator, _seeds, _from, mid ),
+                           new ReplicatesTask( _accumulator, _seeds, mid, _to ) );
+            }
+        }
+    }
+}
@@ -0,0 +1,337 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.io.parsers;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forester.msa.MsaFormatException;
+
+/*
+ * Index of the sequences of a fasta file, in the style of a samtools ".fai"
+ * file: for each sequence, its identifier, its length (number of residues),
+ * the position (in bytes) of its first residue, and the number of residues
+ * and of bytes of its lines.
+ *
+ * Identifiers are the complete name lines (trimmed, without the '>'), as
+ * in FastaParser, and have to be unique. Lines are interpreted as by
+ * FastaParser.parse, so that reading a sequence via the index gives the
+ * same result as parsing the whole file. As the residues are read until
+ * the length of the sequence is reached, the lines of a sequence do not need
+ * to be of equal length.
+ *
+ * As samtools only uses the first word of a name line as identifier, the
+ * two kinds of index are not interchangeable: index files written by this
+ * class are named with SUFFIX (instead of ".fai").
+ *
+ */
+public final class FastaIndex {
+
+    public final static String         SUFFIX = ".ffai";
+    private final List<String>         _identifiers;
+    private final Map<String, Integer> _indices;
+    private int[]                      _lengths;
+    private int[]                      _line_bases;
+    private int[]                      _line_bytes;
+    private long[]                     _offsets;
+
+    private FastaIndex() {
+        _identifiers = new ArrayList<String>();
+        _indices = new HashMap<String, Integer>();
+        _lengths = new int[ 16 ];
+        _line_bases = new int[ 16 ];
+        _line_bytes = new int[ 16 ];
+        _offsets = new long[ 16 ];
+    }
+
+    public final boolean contains( final String identifier ) {
+        return _indices.containsKey( identifier );
+    }
+
+    /**
+     * Returns the identifiers, in the order of the fasta file.
+     *
+     */
+    public final List<String> getIdentifiers() {
+        return Collections.unmodifiableList( _identifiers );
+    }
+
+    /**
+     * Returns the index (position in the fasta file, starting with 0) of the
+     * sequence with the given identifier, or -1 if not present.
+     *
+     */
+    public final int getIndex( final String identifier ) {
+        final Integer i = _indices.get( identifier );
+        return i == null ? -1 : i;
+    }
+
+    public final int getLength( final int i ) {
+        return _lengths[ i ];
+    }
+
+    public final int getLineBases( final int i ) {
+        return _line_bases[ i ];
+    }
+
+    public final int getLineBytes( final int i ) {
+        return _line_bytes[ i ];
+    }
+
+    public final int getNumberOfSequences() {
+        return _identifiers.size();
+    }
+
+    /**
+     * Returns the position (in bytes) of the first residue of sequence i.
+     *
+     */
+    public final long getOffset( final int i ) {
+        return _offsets[ i ];
+    }
+
+    /**
+     * Writes this index (overwriting an existing file) in ".fai" format: one
+     * tab separated line per sequence, with identifier, length, offset,
+     * residues per line, and bytes per line. Tabs and backslashes in
+     * identifiers are written as \t and \\.
+     *
+     */
+    public final void write( final File fai ) throws IOException {
+        final Writer w = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( fai ), StandardCharsets.UTF_8 ) );
+        try {
+            write( w );
+        }
+        finally {
+            w.close();
+        }
+    }
+
+    public final void write( final Writer w ) throws IOException {
+        for( int i = 0; i < _identifiers.size(); ++i ) {
+            w.write( escape( _identifiers.get( i ) ) );
+            w.write( '\t' );
+            w.write( Integer.toString( _lengths[ i ] ) );
+            w.write( '\t' );
+            w.write( Long.toString( _offsets[ i ] ) );
+            w.write( '\t' );
+            w.write( Integer.toString( _line_bases[ i ] ) );
+            w.write( '\t' );
+            w.write( Integer.toString( _line_bytes[ i ] ) );
+            w.write( '\n' );
+        }
+    }
+
+    private final void add( final String identifier,
+                            final int length,
+                            final long offset,
+                            final int line_bases,
+                            final int line_bytes ) throws IOException {
+        if ( _indices.containsKey( identifier ) ) {
+            throw new IOException( "sequence identifier [" + identifier + "] is not unique" );
+        }
+        final int i = _identifiers.size();
+        if ( i == _lengths.length ) {
+            _lengths = Arrays.copyOf( _lengths, i * 2 );
+            _line_bases = Arrays.copyOf( _line_bases, i * 2 );
+            _line_bytes = Arrays.copyOf( _line_bytes, i * 2 );
+            _offsets = Arrays.copyOf( _offsets, i * 2 );
+        }
+        _identifiers.add( identifier );
+        _indices.put( identifier, i );
+        _lengths[ i ] = length;
+        _offsets[ i ] = offset;
+        _line_bases[ i ] = line_bases;
+        _line_bytes[ i ] = line_bytes;
+    }
+
+    /**
+     * Creates the index of a fasta file by reading it once (without creating
+     * any sequences).
+     *
+     * @param fasta the fasta file
+     * @return the index
+     * @throws IOException if the file cannot be read, is not properly
+     *             formatted, or contains identifiers more than once
+     */
+    public static FastaIndex createInstance( final File fasta ) throws IOException {
+        final FastaIndex index = new FastaIndex();
+        final FastaLineReader reader = new FastaLineReader( new FileInputStream( fasta ) );
+        try {
+            String name = null;
+            long length = 0;
+            long offset = -1;
+            int line_bases = 0;
+            int line_bytes = 0;
+            while ( reader.readLine() ) {
+                final byte[] line = reader.getLine();
+                final int line_length = reader.getLineLength();
+                if ( FastaLineReader.isIgnorable( line, 0, line_length ) ) {
+                    continue;
+                }
+                final int n = FastaLineReader.findName( line, 0, line_length );
+                if ( n >= 0 ) {
+                    if ( ( name != null ) && ( name.length() > 0 ) && ( length > 0 ) ) {
+                        index.add( name, checkLength( name, length ), offset, line_bases, line_bytes );
+                    }
+                    name = new String( line, n, line_length - n, StandardCharsets.UTF_8 ).trim();
+                    length = 0;
+                }
+                else if ( name != null ) {
+                    if ( name.length() < 1 ) {
+                        throw new MsaFormatException( "illegally formatted fasta msa (line: "
+                                + reader.getLineCounter() + "):\n\""
+                                + IteratingFastaParser.trim( new String( line, 0, line_length, StandardCharsets.UTF_8 ) )
+                                + "\"" );
+                    }
+                    int residues = 0;
+                    int first = -1;
+                    for( int i = 0; i < line_length; ++i ) {
+                        if ( !FastaLineReader.isWhitespace( line[ i ] ) ) {
+                            if ( first < 0 ) {
+                                first = i;
+                            }
+                            ++residues;
+                        }
+                    }
+                    if ( length == 0 ) {
+                        offset = reader.getLineOffset() + first;
+                        line_bases = residues;
+                        line_bytes = ( int ) ( reader.getOffset() - reader.getLineOffset() );
+                    }
+                    length += residues;
+                }
+            }
+            if ( ( name != null ) && ( name.length() > 0 ) && ( length > 0 ) ) {
+                index.add( name, checkLength( name, length ), offset, line_bases, line_bytes );
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return index;
+    }
+
+    /**
+     * Reads an index written by write.
+     *
+     * @param fai the index file
+     * @return the index
+     * @throws IOException
+     */
+    public static FastaIndex read( final File fai ) throws IOException {
+        final FastaIndex index = new FastaIndex();
+        final BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( fai ),
+                                                                                 StandardCharsets.UTF_8 ) );
+        try {
+            String line;
+            int line_counter = 0;
+            while ( ( line = reader.readLine() ) != null ) {
+                ++line_counter;
+                if ( line.length() < 1 ) {
+                    continue;
+                }
+                final String[] s = line.split( "\t" );
+                if ( s.length != 5 ) {
+                    throw new IOException( "illegally formatted fasta index (line: " + line_counter + "): \"" + line
+                            + "\"" );
+                }
+                try {
+                    index.add( unescape( s[ 0 ] ),
+                               Integer.parseInt( s[ 1 ] ),
+                               Long.parseLong( s[ 2 ] ),
+                               Integer.parseInt( s[ 3 ] ),
+                               Integer.parseInt( s[ 4 ] ) );
+                }
+                catch ( final NumberFormatException e ) {
+                    throw new IOException( "illegally formatted fasta index (line: " + line_counter + "): \"" + line
+                            + "\"" );
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return index;
+    }
+
+    private final static int checkLength( final String name, final long length ) throws IOException {
+        if ( length > Integer.MAX_VALUE ) {
+            throw new IOException( "sequence [" + name + "] is too long: " + length );
+        }
+        return ( int ) length;
+    }
+
+    private final static String escape( final String identifier ) {
+        if ( ( identifier.indexOf( '\t' ) < 0 ) && ( identifier.indexOf( '\\' ) < 0 ) ) {
+            return identifier;
+        }
+        return identifier.replace( "\\", "\\\\" ).replace( "\t", "\\t" );
+    }
+
+    private final static String unescape( final String identifier ) throws IOException {
+        if ( identifier.indexOf( '\\' ) < 0 ) {
+            return identifier;
+        }
+        final StringBuilder sb = new StringBuilder( identifier.length() );
+        for( int i = 0; i < identifier.length(); ++i ) {
+            final char c = identifier.charAt( i );
+            if ( c != '\\' ) {
+                sb.append( c );
+            }
+            else if ( ( i + 1 ) < identifier.length() ) {
+                final char e = identifier.charAt( ++i );
+                if ( e == 't' ) {
+                    sb.append( '\t' );
+                }
+                else if ( e == '\\' ) {
+                    sb.append( '\\' );
+                }
+                else {
+                    throw new IOException( "illegal escape sequence in fasta index identifier [" + identifier + "]" );
+                }
+            }
+            else {
+                throw new IOException( "illegal escape sequence in fasta index identifier [" + identifier + "]" );
+            }
+        }
+        return sb.toString();
+    }
+}
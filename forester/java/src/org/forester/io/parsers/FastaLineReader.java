@@ -0,0 +1,188 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.io.parsers;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/*
+ * Reads lines of fasta formatted input from a byte stream (without decoding
+ * them), keeping track of their positions; and classifies lines with the
+ * rules of FastaParser.parse. Used by IteratingFastaParser and FastaIndex.
+ *
+ */
+final class FastaLineReader {
+
+    private final static int  BUFFER_SIZE = 1 << 16;
+    private final byte[]      _buffer;
+    private int               _buffer_length;
+    private int               _buffer_position;
+    private final InputStream _is;
+    private byte[]            _line;
+    private int               _line_counter;
+    private int               _line_length;
+    private long              _line_offset;
+    private long              _offset;
+
+    FastaLineReader( final InputStream is ) {
+        _is = is;
+        _buffer = new byte[ BUFFER_SIZE ];
+        _line = new byte[ 256 ];
+    }
+
+    final void close() throws IOException {
+        _is.close();
+    }
+
+    /**
+     * Returns the current line, without line terminator; only the first
+     * getLineLength() bytes are valid.
+     *
+     */
+    final byte[] getLine() {
+        return _line;
+    }
+
+    final int getLineCounter() {
+        return _line_counter;
+    }
+
+    final int getLineLength() {
+        return _line_length;
+    }
+
+    /**
+     * Returns the position (in bytes) of the start of the current line.
+     *
+     */
+    final long getLineOffset() {
+        return _line_offset;
+    }
+
+    /**
+     * Returns the position (in bytes) after the line terminator of the
+     * current line.
+     *
+     */
+    final long getOffset() {
+        return _offset;
+    }
+
+    /**
+     * Reads the next line; returns false at the end of the input. Lines are
+     * terminated by "\n", "\r\n", or "\r".
+     *
+     */
+    final boolean readLine() throws IOException {
+        _line_length = 0;
+        _line_offset = _offset;
+        boolean read = false;
+        while ( true ) {
+            if ( _buffer_position >= _buffer_length ) {
+                if ( !fill() ) {
+                    if ( read ) {
+                        ++_line_counter;
+                    }
+                    return read;
+                }
+            }
+            read = true;
+            final int start = _buffer_position;
+            int i = start;
+            while ( ( i < _buffer_length ) && ( _buffer[ i ] != '\n' ) && ( _buffer[ i ] != '\r' ) ) {
+                ++i;
+            }
+            appendToLine( start, i );
+            _offset += i - start;
+            if ( i < _buffer_length ) {
+                ++_offset;
+                _buffer_position = i + 1;
+                if ( _buffer[ i ] == '\r' ) {
+                    // "\r\n" is one line terminator.
+                    if ( ( ( _buffer_position < _buffer_length ) || fill() ) && ( _buffer[ _buffer_position ] == '\n' ) ) {
+                        ++_buffer_position;
+                        ++_offset;
+                    }
+                }
+                ++_line_counter;
+                return true;
+            }
+            _buffer_position = i;
+        }
+    }
+
+    private final void appendToLine( final int from, final int to ) {
+        final int n = to - from;
+        if ( ( _line_length + n ) > _line.length ) {
+            _line = Arrays.copyOf( _line, Math.max( _line.length * 2, _line_length + n ) );
+        }
+        System.arraycopy( _buffer, from, _line, _line_length, n );
+        _line_length += n;
+    }
+
+    private final boolean fill() throws IOException {
+        _buffer_length = _is.read( _buffer, 0, BUFFER_SIZE );
+        _buffer_position = 0;
+        if ( _buffer_length < 1 ) {
+            _buffer_length = 0;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns true for empty lines, and for lines containing only digits and
+     * whitespace (which are ignored).
+     *
+     */
+    final static boolean isIgnorable( final byte[] line, final int from, final int to ) {
+        for( int i = from; i < to; ++i ) {
+            if ( !isWhitespace( line[ i ] ) && ( ( line[ i ] < '0' ) || ( line[ i ] > '9' ) ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the position of the first character of the name if the line is
+     * a name line (a '>', possibly after whitespace, followed by at least one
+     * character), -1 otherwise.
+     *
+     */
+    final static int findName( final byte[] line, final int from, final int to ) {
+        int i = from;
+        while ( ( i < to ) && isWhitespace( line[ i ] ) ) {
+            ++i;
+        }
+        return ( ( i + 1 ) < to ) && ( line[ i ] == '>' ) ? i + 1 : -1;
+    }
+
+    final static boolean isWhitespace( final byte b ) {
+        return ( b == ' ' ) || ( b == '\t' ) || ( b == '\n' ) || ( b == 0x0B ) || ( b == '\f' ) || ( b == '\r' );
+    }
+}
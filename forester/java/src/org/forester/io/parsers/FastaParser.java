@@ -39,10 +39,10 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.forester.msa.BasicMsa;
+import org.forester.msa.CompactMsa;
 import org.forester.msa.Msa;
-import org.forester.msa.MsaFormatException;
-import org.forester.sequence.BasicSequence;
 import org.forester.sequence.MolecularSequence;
+import org.forester.sequence.MolecularSequence.TYPE;
 
 public class FastaParser {
 
@@ -93,6 +93,24 @@ public class FastaParser {
         return false;
     }
 
+    static public CompactMsa parseCompactMsa( final File f, final TYPE type ) throws IOException {
+        return parseCompactMsa( new FileInputStream( f ), type );
+    }
+
+    /**
+     * Reads a fasta formatted msa one sequence at a time into a CompactMsa of
+     * the given type, without keeping the sequences in memory.
+     *
+     */
+    static public CompactMsa parseCompactMsa( final InputStream is, final TYPE type ) throws IOException {
+        final IteratingFastaParser p = new IteratingFastaParser( is );
+        final CompactMsa.Builder builder = new CompactMsa.Builder( type );
+        while ( p.hasNext() ) {
+            builder.add( p.next() );
+        }
+        return builder.build();
+    }
+
     static public Msa parseMsa( final File f ) throws IOException {
         return parseMsa( new FileInputStream( f ) );
     }
@@ -114,47 +132,10 @@ public class FastaParser {
     }
 
     static public List<MolecularSequence> parse( final InputStream is ) throws IOException {
-        final BufferedReader reader = new BufferedReader( new InputStreamReader( is, "UTF-8" ) );
-        String line = null;
-        int line_counter = 0;
-        boolean saw_first_seq = false;
-        StringBuilder current_seq = null;
-        StringBuilder name = null;
-        final List<StringBuilder[]> temp_msa = new ArrayList<StringBuilder[]>();
-        while ( ( line = reader.readLine() ) != null ) {
-            ++line_counter;
-            final Matcher name_m = NAME_REGEX.matcher( line );
-            final boolean is_name_line = name_m.lookingAt();
-            if ( canIgnore( line, saw_first_seq, is_name_line ) ) {
-                continue;
-            }
-            final Matcher seq_m = SEQ_REGEX.matcher( line );
-            if ( is_name_line ) {
-                saw_first_seq = true;
-                addSeq( name, current_seq, temp_msa );
-                name = new StringBuilder( name_m.group( 1 ).trim() );
-                current_seq = new StringBuilder();
-            }
-            else if ( seq_m.lookingAt() ) {
-                if ( name.length() < 1 ) {
-                    reader.close();
-                    throw new MsaFormatException( "illegally formatted fasta msa (line: " + line_counter + "):\n\""
-                            + trim( line ) + "\"" );
-                }
-                current_seq.append( seq_m.group( 1 ).replaceAll( "\\s+", "" ) );
-            }
-            else {
-                reader.close();
-                throw new MsaFormatException( "illegally formatted fasta msa (line: " + line_counter + "):\n\""
-                        + trim( line ) + "\"" );
-            }
-        }
-        addSeq( name, current_seq, temp_msa );
-        reader.close();
+        final IteratingFastaParser p = new IteratingFastaParser( is );
         final List<MolecularSequence> seqs = new ArrayList<MolecularSequence>();
-        for( int i = 0; i < temp_msa.size(); ++i ) {
-            seqs.add( BasicSequence.createAaSequence( temp_msa.get( i )[ 0 ].toString(),
-                                                      temp_msa.get( i )[ 1 ].toString() ) );
+        while ( p.hasNext() ) {
+            seqs.add( p.next() );
         }
         return seqs;
     }
@@ -168,20 +149,4 @@ public class FastaParser {
         }
         return false;
     }
-
-    private static void addSeq( final StringBuilder name, final StringBuilder seq, final List<StringBuilder[]> temp_msa ) {
-        if ( ( name != null ) && ( seq != null ) && ( name.length() > 0 ) && ( seq.length() > 0 ) ) {
-            final StringBuilder[] ary = new StringBuilder[ 2 ];
-            ary[ 0 ] = name;
-            ary[ 1 ] = seq;
-            temp_msa.add( ary );
-        }
-    }
-
-    private static String trim( final String line ) {
-        if ( line.length() > 100 ) {
-            return line.substring( 0, 100 ) + " ...";
-        }
-        return line;
-    }
 }
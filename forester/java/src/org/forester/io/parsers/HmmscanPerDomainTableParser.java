@@ -27,12 +27,14 @@
 
 package org.forester.io.parsers;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -41,6 +43,7 @@ import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
+import org.forester.io.parsers.util.LineTokenizer;
 import org.forester.protein.BasicDomain;
 import org.forester.protein.BasicProtein;
 import org.forester.protein.Domain;
@@ -309,7 +312,7 @@ public final class HmmscanPerDomainTableParser {
         return _return_type;
     }
 
-    private String getSpecies() {
+    public String getSpecies() {
         return _species;
     }
 
@@ -373,153 +376,158 @@ public final class HmmscanPerDomainTableParser {
         if ( !ForesterUtil.isEmpty( error ) ) {
             throw new IOException( error );
         }
-        final BufferedReader br = new BufferedReader( new FileReader( getInputFile() ) );
-        String line;
+        final InputStream is = new FileInputStream( getInputFile() );
+        // Only the first 21 fields are used (the description is ignored).
+        final LineTokenizer t = new LineTokenizer( is, Charset.defaultCharset(), 21 );
+        final Map<String, String> uc_ids = new HashMap<String, String>();
         final List<Protein> proteins = new ArrayList<Protein>();
         Protein current_protein = null;
         int line_number = 0;
         final long start_time = new Date().getTime();
         String prev_query = "";
         int prev_qlen = -1;
-        while ( ( line = br.readLine() ) != null ) {
-            line_number++;
-            if ( ForesterUtil.isEmpty( line ) || line.startsWith( "#" ) ) {
-                continue;
-            }
-            // 0                    1           2    3                      4           5      6        7      8      9  10  11        12        13     14    15      16  17      18  19      20  21  22
-            // #                                                                              --- full sequence --- -------------- this domain -------------   hmm coord   ali coord   env coord
-            // # target name        accession   tlen query name             accession   qlen   E-value  score  bias   #  of  c-Evalue  i-Evalue  score  bias  from    to  from    to  from    to  acc description of target
-            // #------------------- ---------- -----   -------------------- ---------- ----- --------- ------ ----- --- --- --------- --------- ------ ----- ----- ----- ----- ----- ----- ----- ---- ---------------------
-            // Ion_trans            PF00520.24   201 jgi|Nemve1|7|gw.28.1.1 -           1604  6.3e-169  557.4  95.3   1   4   1.5e-41     3e-38  130.8  11.1     3   171   140   307   139   346 0.81 Ion transport protein
-            // Ion_trans            PF00520.24   201 jgi|Nemve1|7|gw.28.1.1 -           1604  6.3e-169  557.4  95.3   2   4   9.1e-45   1.8e-41  141.3  13.1     4   200   479   664   476   665 0.97 Ion transport protein
-            // Ion_trans            PF00520.24   201 jgi|Nemve1|7|gw.28.1.1 -           1604  6.3e-169  557.4  95.3   3   4   5.2e-45     1e-41  142.1  14.0     1   201   900  1117   900  1117 0.96 Ion transport protein
-            // Ion_trans            PF00520.24   201 jgi|Nemve1|7|gw.28.1.1 -           1604  6.3e-169  557.4  95.3   4   4   9.2e-51   1.8e-47  160.9  11.3     1   201  1217  1423  1217  1423 0.97 Ion transport protein
-            // PKD_channel          PF08016.5    426 jgi|Nemve1|7|gw.28.1.1 -           1604   5.9e-19   67.4  70.5   1   8   0.00053       1.1    7.3   0.4   220   264   142   191   134   200 0.73 Polycystin cation channel
-            final String tokens[] = line.split( "\\s+" );
-            final String target_id = tokens[ 0 ];
-            final String target_acc = tokens[ 1 ];
-            final int tlen = parseInt( tokens[ 2 ], line_number, "tlen" );
-            final String query = tokens[ 3 ];
-            final String query_acc = tokens[ 4 ];
-            final int qlen = parseInt( tokens[ 5 ], line_number, "qlen" );
-            final double fs_e_value = parseDouble( tokens[ 6 ], line_number, "E-value" );
-            final double fs_score = parseDouble( tokens[ 7 ], line_number, "score" );
-            final int domain_number = parseInt( tokens[ 9 ], line_number, "count" );
-            final int total_domains = parseInt( tokens[ 10 ], line_number, "total" );
-            final double c_e_value = parseDouble( tokens[ 11 ], line_number, "c-Evalue" );
-            final double i_e_value = parseDouble( tokens[ 12 ], line_number, "i-Evalue" );
-            final double domain_score = parseDouble( tokens[ 13 ], line_number, "score" );
-            final int hmm_from = parseInt( tokens[ 15 ], line_number, "hmm from" );
-            final int hmm_to = parseInt( tokens[ 16 ], line_number, "hmm to" );
-            final int ali_from = parseInt( tokens[ 17 ], line_number, "ali from" );
-            final int ali_to = parseInt( tokens[ 18 ], line_number, "ali to" );
-            final int env_from = parseInt( tokens[ 19 ], line_number, "env from" );
-            final int env_to = parseInt( tokens[ 20 ], line_number, "env to" );
-            ++_domains_encountered;
-            if ( !query.equals( prev_query ) || ( qlen != prev_qlen ) ) {
-                if ( !isAllowProteinsWithSameName() ) {
-                    if ( query.equals( prev_query ) ) {
-                        throw new IOException( "more than one protein named [" + query + "]" + " lengths: " + qlen
-                                + ", " + prev_qlen );
+        try {
+            while ( t.nextLine() ) {
+                line_number++;
+                if ( t.isEmpty() || t.startsWith( '#' ) ) {
+                    continue;
+                }
+                // 0                    1           2    3                      4           5      6        7      8      9  10  11        12        13     14    15      16  17      18  19      20  21  22
+                // #                                                                              --- full sequence --- -------------- this domain -------------   hmm coord   ali coord   env coord
+                // # target name        accession   tlen query name             accession   qlen   E-value  score  bias   #  of  c-Evalue  i-Evalue  score  bias  from    to  from    to  from    to  acc description of target
+                // #------------------- ---------- -----   -------------------- ---------- ----- --------- ------ ----- --- --- --------- --------- ------ ----- ----- ----- ----- ----- ----- ----- ---- ---------------------
+                // Ion_trans            PF00520.24   201 jgi|Nemve1|7|gw.28.1.1 -           1604  6.3e-169  557.4  95.3   1   4   1.5e-41     3e-38  130.8  11.1     3   171   140   307   139   346 0.81 Ion transport protein
+                // Ion_trans            PF00520.24   201 jgi|Nemve1|7|gw.28.1.1 -           1604  6.3e-169  557.4  95.3   2   4   9.1e-45   1.8e-41  141.3  13.1     4   200   479   664   476   665 0.97 Ion transport protein
+                // Ion_trans            PF00520.24   201 jgi|Nemve1|7|gw.28.1.1 -           1604  6.3e-169  557.4  95.3   3   4   5.2e-45     1e-41  142.1  14.0     1   201   900  1117   900  1117 0.96 Ion transport protein
+                // Ion_trans            PF00520.24   201 jgi|Nemve1|7|gw.28.1.1 -           1604  6.3e-169  557.4  95.3   4   4   9.2e-51   1.8e-47  160.9  11.3     1   201  1217  1423  1217  1423 0.97 Ion transport protein
+                // PKD_channel          PF08016.5    426 jgi|Nemve1|7|gw.28.1.1 -           1604   5.9e-19   67.4  70.5   1   8   0.00053       1.1    7.3   0.4   220   264   142   191   134   200 0.73 Polycystin cation channel
+                if ( t.getNumberOfFields() < 21 ) {
+                    throw new IOException( "unexpected format at line " + line_number + " [" + t.getLine() + "] in ["
+                            + getInputFile().getCanonicalPath() + "]" );
+                }
+                // Domain and protein ids are only obtained as Strings where needed.
+                final int tlen = parseInt( t, 2, line_number, "tlen" );
+                final int qlen = parseInt( t, 5, line_number, "qlen" );
+                final double fs_e_value = parseDouble( t, 6, line_number, "E-value" );
+                final double fs_score = parseDouble( t, 7, line_number, "score" );
+                final int domain_number = parseInt( t, 9, line_number, "count" );
+                final int total_domains = parseInt( t, 10, line_number, "total" );
+                parseDouble( t, 11, line_number, "c-Evalue" );
+                final double i_e_value = parseDouble( t, 12, line_number, "i-Evalue" );
+                final double domain_score = parseDouble( t, 13, line_number, "score" );
+                final int hmm_from = parseInt( t, 15, line_number, "hmm from" );
+                final int hmm_to = parseInt( t, 16, line_number, "hmm to" );
+                final int ali_from = parseInt( t, 17, line_number, "ali from" );
+                final int ali_to = parseInt( t, 18, line_number, "ali to" );
+                final int env_from = parseInt( t, 19, line_number, "env from" );
+                final int env_to = parseInt( t, 20, line_number, "env to" );
+                ++_domains_encountered;
+                if ( !t.fieldEquals( 3, prev_query ) || ( qlen != prev_qlen ) ) {
+                    final String query = t.getField( 3 );
+                    if ( !isAllowProteinsWithSameName() ) {
+                        if ( query.equals( prev_query ) ) {
+                            throw new IOException( "more than one protein named [" + query + "]" + " lengths: " + qlen
+                                    + ", " + prev_qlen );
+                        }
+                        if ( prev_queries.contains( query ) ) {
+                            throw new IOException( "more than one protein named [" + query + "]" );
+                        }
                     }
-                    if ( prev_queries.contains( query ) ) {
-                        throw new IOException( "more than one protein named [" + query + "]" );
+                    final String fail_query = prev_query;
+                    prev_query = query;
+                    prev_qlen = qlen;
+                    prev_queries.add( query );
+                    if ( ( current_protein != null ) && ( current_protein.getProteinDomains().size() > 0 ) ) {
+                        addProtein( proteins, current_protein );
+                    }
+                    else  {
+                        System.out.println("No domains in: " + fail_query ); //TODO
+                    }
+                    if ( getReturnType() == ReturnType.UNORDERED_PROTEIN_DOMAIN_COLLECTION_PER_PROTEIN ) {
+                        current_protein = new BasicProtein( query, getSpecies(), qlen );
+                    }
+                    else {
+                        throw new IllegalArgumentException( "unknown return type" );
                     }
                 }
-                final String fail_query = prev_query;
-                prev_query = query;
-                prev_qlen = qlen;
-                prev_queries.add( query );
-                if ( ( current_protein != null ) && ( current_protein.getProteinDomains().size() > 0 ) ) {
-                    addProtein( proteins, current_protein );
+                boolean failed_cutoff = false;
+                final String target_id = t.getFieldAsCachedString( 0 );
+                if ( getIndividualCutoffAppliesTo() != INDIVIDUAL_SCORE_CUTOFF.NONE ) {
+                    if ( getIndividualScoreCutoffs().containsKey( target_id ) ) {
+                        final double cutoff = getIndividualScoreCutoffs().get( target_id );
+                        if ( getIndividualCutoffAppliesTo() != INDIVIDUAL_SCORE_CUTOFF.FULL_SEQUENCE ) {
+                            if ( fs_score < cutoff ) {
+                                failed_cutoff = true;
+                            }
+                        }
+                        else if ( getIndividualCutoffAppliesTo() != INDIVIDUAL_SCORE_CUTOFF.DOMAIN ) {
+                            if ( domain_score < cutoff ) {
+                                failed_cutoff = true;
+                            }
+                        }
+                    }
+                    else {
+                        throw new IOException( "could not find a score cutoff value for domain id \"" + target_id
+                                + "\" [line " + line_number + "] in [" + getInputFile().getCanonicalPath() + "]" );
+                    }
                 }
-                else  {
-                    System.out.println("No domains in: " + fail_query ); //TODO
+                final int env_length = 1 + env_to - env_from;
+                if ( failed_cutoff ) {
+                    ++_domains_ignored_due_to_individual_score_cutoff;
                 }
-                if ( getReturnType() == ReturnType.UNORDERED_PROTEIN_DOMAIN_COLLECTION_PER_PROTEIN ) {
-                    current_protein = new BasicProtein( query, getSpecies(), qlen );
+                else if ( ali_from == ali_to ) {
+                    //Ignore
                 }
-                else {
-                    throw new IllegalArgumentException( "unknown return type" );
+                else if ( ( getFsEValueMaximum() != HmmscanPerDomainTableParser.E_VALUE_MAXIMUM_DEFAULT )
+                        && ( fs_e_value > getFsEValueMaximum() ) ) {
+                    ++_domains_ignored_due_to_fs_e_value;
                 }
-            }
-            boolean failed_cutoff = false;
-            if ( getIndividualCutoffAppliesTo() != INDIVIDUAL_SCORE_CUTOFF.NONE ) {
-                if ( getIndividualScoreCutoffs().containsKey( target_id ) ) {
-                    final double cutoff = getIndividualScoreCutoffs().get( target_id );
-                    if ( getIndividualCutoffAppliesTo() != INDIVIDUAL_SCORE_CUTOFF.FULL_SEQUENCE ) {
-                        if ( fs_score < cutoff ) {
-                            failed_cutoff = true;
-                        }
-                    }
-                    else if ( getIndividualCutoffAppliesTo() != INDIVIDUAL_SCORE_CUTOFF.DOMAIN ) {
-                        if ( domain_score < cutoff ) {
-                            failed_cutoff = true;
-                        }
-                    }
+                else if ( ( getIEValueMaximum() != HmmscanPerDomainTableParser.E_VALUE_MAXIMUM_DEFAULT )
+                        && ( i_e_value > getIEValueMaximum() ) ) {
+                    ++_domains_ignored_due_to_i_e_value;
                 }
-                else {
-                    throw new IOException( "could not find a score cutoff value for domain id \"" + target_id
-                            + "\" [line " + line_number + "] in [" + getInputFile().getCanonicalPath() + "]" );
+                //
+                else if ( ( getRelEnvLengthRatioCutoff() > 0.0 )
+                        && (  env_length < ( getRelEnvLengthRatioCutoff() * tlen)   ) ) {
+                    ++_domains_ignored_due_to_rel_env_length_ratio_cutoff;
                 }
-            }
-            final String uc_id = target_id.toUpperCase();
-            final int env_length = 1 + env_to - env_from;
-            if ( failed_cutoff ) {
-                ++_domains_ignored_due_to_individual_score_cutoff;
-            }
-            else if ( ali_from == ali_to ) {
-                //Ignore
-            }
-            else if ( ( getFsEValueMaximum() != HmmscanPerDomainTableParser.E_VALUE_MAXIMUM_DEFAULT )
-                    && ( fs_e_value > getFsEValueMaximum() ) ) {
-                ++_domains_ignored_due_to_fs_e_value;
-            }
-            else if ( ( getIEValueMaximum() != HmmscanPerDomainTableParser.E_VALUE_MAXIMUM_DEFAULT )
-                    && ( i_e_value > getIEValueMaximum() ) ) {
-                ++_domains_ignored_due_to_i_e_value;
-            }
-            //
-            else if ( ( getRelEnvLengthRatioCutoff() > 0.0 )
-                    && (  env_length < ( getRelEnvLengthRatioCutoff() * tlen)   ) ) {
-                ++_domains_ignored_due_to_rel_env_length_ratio_cutoff;
-            }
-            //
-            else if ( isIgnoreDufs() && uc_id.startsWith( "DUF" ) ) {
-                ++_domains_ignored_due_to_duf;
-            }
-            else if ( isIgnoreVirusLikeIds()
-                    && ( uc_id.contains( VIR ) || uc_id.contains( PHAGE ) || uc_id.contains( RETRO )
-                            || uc_id.contains( TRANSPOS ) || uc_id.startsWith( RV ) || uc_id.startsWith( GAG )
-                            || uc_id.startsWith( HCV ) || uc_id.startsWith( HERPES ) || uc_id.startsWith( BACULO ) ) ) {
-                ForesterUtil.increaseCountingMap( getDomainsIgnoredDueToVirusLikeIdCountsMap(), target_id );
-                ++_domains_ignored_due_to_virus_like_id;
-            }
-            else if ( ( getFilterType() == FilterType.NEGATIVE_DOMAIN ) && getFilter().contains( target_id ) ) {
-                ++_domains_ignored_due_to_negative_domain_filter;
-                ForesterUtil.increaseCountingMap( getDomainsIgnoredDueToNegativeDomainFilterCountsMap(), target_id );
-            }
-            else {
-                try {
-                    final Domain pd = new BasicDomain( target_id,
-                                                       ali_from,
-                                                       ali_to,
-                                                       ( short ) domain_number,
-                                                       ( short ) total_domains,
-                                                       i_e_value,
-                                                       domain_score,
-                                                       ( short ) tlen,
-                                                       ( short ) hmm_from,
-                                                       ( short ) hmm_to );
-                    current_protein.addProteinDomain( pd );
+                //
+                else if ( isIgnoreDufs() && obtainUpperCaseId( t, uc_ids ).startsWith( "DUF" ) ) {
+                    ++_domains_ignored_due_to_duf;
                 }
-                catch ( final IllegalArgumentException e ) {
-                    throw new IOException( "problem with domain parsing at line " + line_number + "[" + line + "]: "
-                            + e.getMessage() );
+                else if ( isIgnoreVirusLikeIds() && isVirusLike( obtainUpperCaseId( t, uc_ids ) ) ) {
+                    ForesterUtil.increaseCountingMap( getDomainsIgnoredDueToVirusLikeIdCountsMap(), target_id );
+                    ++_domains_ignored_due_to_virus_like_id;
                 }
-                ++_domains_stored;
-            }
-        } // while ( ( line = br.readLine() ) != null )
+                else if ( ( getFilterType() == FilterType.NEGATIVE_DOMAIN ) && getFilter().contains( target_id ) ) {
+                    ++_domains_ignored_due_to_negative_domain_filter;
+                    ForesterUtil.increaseCountingMap( getDomainsIgnoredDueToNegativeDomainFilterCountsMap(), target_id );
+                }
+                else {
+                    try {
+                        final Domain pd = new BasicDomain( target_id,
+                                                           ali_from,
+                                                           ali_to,
+                                                           ( short ) domain_number,
+                                                           ( short ) total_domains,
+                                                           i_e_value,
+                                                           domain_score,
+                                                           ( short ) tlen,
+                                                           ( short ) hmm_from,
+                                                           ( short ) hmm_to );
+                        current_protein.addProteinDomain( pd );
+                    }
+                    catch ( final IllegalArgumentException e ) {
+                        throw new IOException( "problem with domain parsing at line " + line_number + "[" + t.getLine()
+                                + "]: " + e.getMessage() );
+                    }
+                    ++_domains_stored;
+                }
+            } // while ( t.nextLine() )
+        }
+        finally {
+            is.close();
+        }
         if ( ( current_protein != null ) && ( current_protein.getProteinDomains().size() > 0 ) ) {
             addProtein( proteins, current_protein );
         }
@@ -528,29 +536,40 @@ public final class HmmscanPerDomainTableParser {
         return proteins;
     }
 
-    private double parseDouble( final String double_str, final int line_number, final String label )
+    private String obtainUpperCaseId( final LineTokenizer t, final Map<String, String> uc_ids ) {
+        final String id = t.getFieldAsCachedString( 0 );
+        String uc_id = uc_ids.get( id );
+        if ( uc_id == null ) {
+            uc_id = id.toUpperCase();
+            uc_ids.put( id, uc_id );
+        }
+        return uc_id;
+    }
+
+    private double parseDouble( final LineTokenizer t, final int i, final int line_number, final String label )
             throws IOException {
         double d = -1;
         try {
-            d = Double.valueOf( double_str ).doubleValue();
+            d = t.parseDouble( i );
         }
         catch ( final NumberFormatException e ) {
-            throw new IOException( "could not parse \" +label + \" from \"" + double_str + "\" [line " + line_number
-                    + "] in [" + getInputFile().getCanonicalPath() + "]" );
+            throw new IOException( "could not parse \"" + label + "\" from \"" + t.getField( i ) + "\" [line "
+                    + line_number + "] in [" + getInputFile().getCanonicalPath() + "]" );
         }
         return d;
     }
 
-    private int parseInt( final String double_str, final int line_number, final String label ) throws IOException {
-        int i = -1;
+    private int parseInt( final LineTokenizer t, final int i, final int line_number, final String label )
+            throws IOException {
+        int x = -1;
         try {
-            i = Integer.parseInt( double_str );
+            x = t.parseInt( i );
         }
         catch ( final NumberFormatException e ) {
-            throw new IOException( "could not parse \"" + label + "\" from \"" + double_str + "\" [line " + line_number
-                    + "] in [" + getInputFile().getCanonicalPath() + "]" );
+            throw new IOException( "could not parse \"" + label + "\" from \"" + t.getField( i ) + "\" [line "
+                    + line_number + "] in [" + getInputFile().getCanonicalPath() + "]" );
         }
-        return i;
+        return x;
     }
 
     private void setDomainsEncountered( final int domains_encountered ) {
@@ -684,6 +703,12 @@ public final class HmmscanPerDomainTableParser {
         _time = time;
     }
 
+    private final static boolean isVirusLike( final String uc_id ) {
+        return uc_id.contains( VIR ) || uc_id.contains( PHAGE ) || uc_id.contains( RETRO )
+                || uc_id.contains( TRANSPOS ) || uc_id.startsWith( RV ) || uc_id.startsWith( GAG )
+                || uc_id.startsWith( HCV ) || uc_id.startsWith( HERPES ) || uc_id.startsWith( BACULO );
+    }
+
     public static enum FilterType {
                                    NONE,
                                    POSITIVE_PROTEIN,
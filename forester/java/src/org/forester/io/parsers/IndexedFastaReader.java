@@ -0,0 +1,258 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.io.parsers;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.forester.sequence.BasicSequence;
+import org.forester.sequence.MolecularSequence;
+
+/*
+ * Random access, by identifier, to the sequences of a (large) fasta file,
+ * using a FastaIndex. The file is memory-mapped once (in segments of at
+ * most SEGMENT_SIZE bytes); only the region of the file containing the
+ * requested sequence is read, the rest of the file is never loaded.
+ * Sequences are created as by FastaParser (with
+ * BasicSequence.createAaSequence).
+ *
+ * Reading is thread-safe.
+ *
+ */
+public final class IndexedFastaReader implements Closeable {
+
+    private final static int         SEGMENT_SHIFT = 30;
+    private final static long        SEGMENT_SIZE  = 1L << SEGMENT_SHIFT;
+    // Position after the region of each sequence: the offset of the next
+    // sequence (in file order), or the length of the file.
+    private final long[]             _ends;
+    private final FastaIndex         _index;
+    private final RandomAccessFile   _raf;
+    private final MappedByteBuffer[] _segments;
+
+    /**
+     * Creates a reader for a fasta file, using the index file with the same
+     * name plus FastaIndex.SUFFIX if it exists and is not older than the
+     * fasta file, and indexing the fasta file otherwise (without writing the
+     * index). Samtools ".fai" files are not used, as they have different
+     * identifiers.
+     *
+     * @param fasta
+     * @throws IOException
+     */
+    public IndexedFastaReader( final File fasta ) throws IOException {
+        this( fasta, obtainIndex( fasta ) );
+    }
+
+    public IndexedFastaReader( final File fasta, final FastaIndex index ) throws IOException {
+        _index = index;
+        _raf = new RandomAccessFile( fasta, "r" );
+        final FileChannel channel = _raf.getChannel();
+        final long size = channel.size();
+        _segments = new MappedByteBuffer[ ( int ) ( ( ( size + SEGMENT_SIZE ) - 1 ) >>> SEGMENT_SHIFT ) ];
+        for( int s = 0; s < _segments.length; ++s ) {
+            final long start = s * SEGMENT_SIZE;
+            _segments[ s ] = channel.map( MapMode.READ_ONLY, start, Math.min( SEGMENT_SIZE, size - start ) );
+        }
+        final int n = index.getNumberOfSequences();
+        final long[] offsets = new long[ n ];
+        for( int i = 0; i < n; ++i ) {
+            offsets[ i ] = index.getOffset( i );
+        }
+        Arrays.sort( offsets );
+        _ends = new long[ n ];
+        for( int i = 0; i < n; ++i ) {
+            final int k = Arrays.binarySearch( offsets, index.getOffset( i ) );
+            _ends[ i ] = k < ( n - 1 ) ? offsets[ k + 1 ] : size;
+        }
+    }
+
+    /**
+     * Returns a read-only map view of the sequences (identifiers to
+     * sequences as strings), which reads the sequences on demand. Reading
+     * failures are thrown as IllegalStateException.
+     *
+     */
+    public final Map<String, String> asMap() {
+        return new AbstractMap<String, String>() {
+
+            @Override
+            public boolean containsKey( final Object key ) {
+                return _index.contains( ( String ) key );
+            }
+
+            @Override
+            public Set<Map.Entry<String, String>> entrySet() {
+                return new AbstractSet<Map.Entry<String, String>>() {
+
+                    @Override
+                    public Iterator<Map.Entry<String, String>> iterator() {
+                        final Iterator<String> it = _index.getIdentifiers().iterator();
+                        return new Iterator<Map.Entry<String, String>>() {
+
+                            @Override
+                            public boolean hasNext() {
+                                return it.hasNext();
+                            }
+
+                            @Override
+                            public Map.Entry<String, String> next() {
+                                final String id = it.next();
+                                return new AbstractMap.SimpleImmutableEntry<String, String>( id, get( id ) );
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return _index.getNumberOfSequences();
+                    }
+                };
+            }
+
+            @Override
+            public String get( final Object key ) {
+                final int i = _index.getIndex( ( String ) key );
+                if ( i < 0 ) {
+                    return null;
+                }
+                try {
+                    return getSequence( i ).getMolecularSequenceAsString();
+                }
+                catch ( final IOException e ) {
+                    throw new IllegalStateException( e.getMessage(), e );
+                }
+            }
+
+            @Override
+            public int size() {
+                return _index.getNumberOfSequences();
+            }
+        };
+    }
+
+    @Override
+    public final void close() throws IOException {
+        _raf.close();
+    }
+
+    public final FastaIndex getIndex() {
+        return _index;
+    }
+
+    /**
+     * Reads sequence i (in the order of the fasta file).
+     *
+     */
+    public final MolecularSequence getSequence( final int i ) throws IOException {
+        final long offset = _index.getOffset( i );
+        final int length = _index.getLength( i );
+        final long span = _ends[ i ] - offset;
+        if ( ( span < length ) || ( offset < 0 ) ) {
+            throw new IOException( "fasta index does not match fasta file for sequence ["
+                    + _index.getIdentifiers().get( i ) + "]" );
+        }
+        final byte[] region = read( offset, ( int ) Math.min( span, Integer.MAX_VALUE ) );
+        // Line by line (the first line starts at the first residue), so that
+        // ignorable lines are skipped; residues are moved to the front of
+        // the region.
+        int l = 0;
+        int start = 0;
+        while ( ( l < length ) && ( start < region.length ) ) {
+            int end = start;
+            while ( ( end < region.length ) && ( region[ end ] != '\n' ) && ( region[ end ] != '\r' ) ) {
+                ++end;
+            }
+            if ( !FastaLineReader.isIgnorable( region, start, end ) ) {
+                if ( FastaLineReader.findName( region, start, end ) >= 0 ) {
+                    break;
+                }
+                for( int j = start; ( j < end ) && ( l < length ); ++j ) {
+                    if ( !FastaLineReader.isWhitespace( region[ j ] ) ) {
+                        region[ l++ ] = region[ j ];
+                    }
+                }
+            }
+            start = end + 1;
+        }
+        if ( l < length ) {
+            throw new IOException( "fasta index does not match fasta file for sequence ["
+                    + _index.getIdentifiers().get( i ) + "]" );
+        }
+        return BasicSequence.createAaSequence( _index.getIdentifiers().get( i ),
+                                               new String( region, 0, length, StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * Reads the sequence with the given identifier.
+     *
+     * @throws IllegalArgumentException if the identifier is not present
+     */
+    public final MolecularSequence getSequence( final String identifier ) throws IOException {
+        final int i = _index.getIndex( identifier );
+        if ( i < 0 ) {
+            throw new IllegalArgumentException( "sequence [" + identifier + "] not found" );
+        }
+        return getSequence( i );
+    }
+
+    // Duplicates of the segments are used, so that reading does not change
+    // the (shared) positions of the segments.
+    private final byte[] read( final long offset, final int length ) {
+        final byte[] region = new byte[ length ];
+        int r = 0;
+        while ( r < length ) {
+            final long position = offset + r;
+            final ByteBuffer segment = _segments[ ( int ) ( position >>> SEGMENT_SHIFT ) ].duplicate();
+            segment.position( ( int ) ( position & ( SEGMENT_SIZE - 1 ) ) );
+            final int l = Math.min( length - r, segment.remaining() );
+            segment.get( region, r, l );
+            r += l;
+        }
+        return region;
+    }
+
+    private final static FastaIndex obtainIndex( final File fasta ) throws IOException {
+        final File fai = new File( fasta.getPath() + FastaIndex.SUFFIX );
+        if ( fai.isFile() && ( fai.lastModified() >= fasta.lastModified() ) ) {
+            return FastaIndex.read( fai );
+        }
+        return FastaIndex.createInstance( fasta );
+    }
+}
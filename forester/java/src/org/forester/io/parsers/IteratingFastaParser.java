@@ -0,0 +1,171 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.io.parsers;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import org.forester.msa.MsaFormatException;
+import org.forester.sequence.BasicSequence;
+import org.forester.sequence.MolecularSequence;
+
+/*
+ * Reads fasta formatted sequences one at a time, so that files of any size
+ * can be processed with memory proportional to the longest sequence.
+ *
+ * Lines are read directly from a byte stream (identifiers are decoded as
+ * UTF-8), and are classified without regular expressions, with the same
+ * rules as FastaParser.parse: lines containing only digits and whitespace
+ * are ignored, as is everything before the first name line (a line starting
+ * with '>', possibly after whitespace); whitespace is removed from sequence
+ * lines, and names without sequence are skipped. The sequences are created
+ * with BasicSequence.createAaSequence.
+ *
+ */
+public final class IteratingFastaParser implements Closeable {
+
+    private String                _name;
+    private MolecularSequence     _next;
+    private final FastaLineReader _reader;
+    private byte[]                _seq;
+    private int                   _seq_length;
+
+    public IteratingFastaParser( final File f ) throws IOException {
+        this( new FileInputStream( f ) );
+    }
+
+    public IteratingFastaParser( final InputStream is ) throws IOException {
+        _reader = new FastaLineReader( is );
+        _seq = new byte[ 256 ];
+        try {
+            _next = readNext();
+        }
+        catch ( final IOException e ) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public final void close() throws IOException {
+        _reader.close();
+    }
+
+    public final boolean hasNext() {
+        return _next != null;
+    }
+
+    /**
+     * Returns the next sequence; the input stream is closed once the last
+     * sequence has been read (or if reading fails).
+     *
+     * @return the next sequence
+     * @throws IOException
+     */
+    public final MolecularSequence next() throws IOException {
+        if ( _next == null ) {
+            throw new NoSuchElementException( "all sequences have been read" );
+        }
+        final MolecularSequence seq = _next;
+        try {
+            _next = readNext();
+        }
+        catch ( final IOException e ) {
+            close();
+            throw e;
+        }
+        return seq;
+    }
+
+    private final void appendToSeq( final byte b ) {
+        if ( _seq_length == _seq.length ) {
+            _seq = Arrays.copyOf( _seq, _seq.length * 2 );
+        }
+        _seq[ _seq_length++ ] = b;
+    }
+
+    private final MolecularSequence createSeq() {
+        if ( ( _name == null ) || ( _name.length() < 1 ) || ( _seq_length < 1 ) ) {
+            return null;
+        }
+        // Whitespace removal cannot split multi-byte UTF-8 characters, as all
+        // their bytes are above 0x7F.
+        return BasicSequence.createAaSequence( _name, new String( _seq,
+                                                                  0,
+                                                                  _seq_length,
+                                                                  StandardCharsets.UTF_8 ) );
+    }
+
+    private final MolecularSequence readNext() throws IOException {
+        while ( _reader.readLine() ) {
+            final byte[] line = _reader.getLine();
+            final int length = _reader.getLineLength();
+            if ( FastaLineReader.isIgnorable( line, 0, length ) ) {
+                continue;
+            }
+            final int name = FastaLineReader.findName( line, 0, length );
+            if ( name >= 0 ) {
+                final MolecularSequence seq = createSeq();
+                _name = new String( line, name, length - name, StandardCharsets.UTF_8 ).trim();
+                _seq_length = 0;
+                if ( seq != null ) {
+                    return seq;
+                }
+            }
+            else if ( _name != null ) {
+                if ( _name.length() < 1 ) {
+                    throw new MsaFormatException( "illegally formatted fasta msa (line: " + _reader.getLineCounter()
+                            + "):\n\"" + trim( new String( line, 0, length, StandardCharsets.UTF_8 ) ) + "\"" );
+                }
+                for( int i = 0; i < length; ++i ) {
+                    if ( !FastaLineReader.isWhitespace( line[ i ] ) ) {
+                        appendToSeq( line[ i ] );
+                    }
+                }
+            }
+        }
+        final MolecularSequence seq = createSeq();
+        _name = null;
+        _seq_length = 0;
+        if ( seq == null ) {
+            close();
+        }
+        return seq;
+    }
+
+    final static String trim( final String line ) {
+        if ( line.length() > 100 ) {
+            return line.substring( 0, 100 ) + " ...";
+        }
+        return line;
+    }
+}
@@ -31,6 +31,7 @@ import java.util.List;
 
 import org.forester.evoinference.matrix.distance.BasicSymmetricalDistanceMatrix;
 import org.forester.evoinference.matrix.distance.DistanceMatrix;
+import org.forester.evoinference.matrix.distance.PackedSymmetricalDistanceMatrix;
 import org.forester.util.BasicTable;
 import org.forester.util.BasicTableParser;
 import org.forester.util.ForesterUtil;
@@ -58,6 +59,7 @@ public class SymmetricalDistanceMatrixParser {
     private final static char            VALUE_SEPARATOR           = ' ';
     private int                          _matrix_size;
     private InputMatrixType              _input_matrix_type;
+    private boolean                      _packed;
 
     private SymmetricalDistanceMatrixParser() {
         init();
@@ -93,6 +95,7 @@ public class SymmetricalDistanceMatrixParser {
 
     private void init() {
         setInputMatrixType( INPUT_MATRIX_TYPE_DEFAULT );
+        setPacked( false );
         reset();
     }
 
@@ -120,6 +123,16 @@ public class SymmetricalDistanceMatrixParser {
         _input_matrix_type = input_matrix_type;
     }
 
+    /**
+     * If set to true, PackedSymmetricalDistanceMatrix objects
+     * (instead of BasicSymmetricalDistanceMatrix objects) are created.
+     *
+     * @param packed
+     */
+    public void setPacked( final boolean packed ) {
+        _packed = packed;
+    }
+
     private void setMatrixSize( final int matrix_size ) {
         _matrix_size = matrix_size;
     }
@@ -158,7 +171,8 @@ public class SymmetricalDistanceMatrixParser {
             throw new IllegalArgumentException( "attempt to create distance matrix with illegal dimensions [columns: "
                     + table.getNumberOfColumns() + ", rows: " + table.getNumberOfRows() + "]" );
         }
-        final DistanceMatrix distance_matrix = new BasicSymmetricalDistanceMatrix( table.getNumberOfColumns() - 1 );
+        final DistanceMatrix distance_matrix = _packed ? new PackedSymmetricalDistanceMatrix( table.getNumberOfColumns() - 1 )
+                : new BasicSymmetricalDistanceMatrix( table.getNumberOfColumns() - 1 );
         int start_row = 0;
         if ( first_line_is_size ) {
             start_row = 1;
@@ -0,0 +1,81 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.io.parsers.binary;
+
+/*
+ * Constants of the forester binary phylogeny format, used by
+ * BinaryPhylogenyParser and BinaryPhylogenyWriter.
+ *
+ * All numbers are big-endian. A file starts with the four bytes of MAGIC,
+ * the format version (short) and the number of phylogenies (int). Each
+ * phylogeny is preceded by its length in bytes (long), so that phylogenies
+ * can be skipped without decoding them, and consists of:
+ *
+ * - a string table: the number of strings (int), followed by each string as
+ *   its UTF-8 length (int) and bytes; strings are referred to by their
+ *   index in this table, -1 denoting null
+ * - the phylogeny level data: flags (byte), name, type, description and
+ *   distance unit (string indices), and, if flagged, confidence and
+ *   identifier
+ * - the number of nodes n (int), followed by the nodes in preorder as four
+ *   arrays: parent indices (n ints, -1 for the root), distances to parent
+ *   (n doubles), names (n string indices) and node flags (n bytes); the
+ *   children of a node are the nodes which name it as parent, in order
+ * - the annotations of the nodes flagged as having node or branch data, in
+ *   preorder: a mask (short) of the node data present, followed by the data,
+ *   then a mask (byte) of the branch data present, followed by the data
+ *
+ */
+public final class BinaryPhylogenyFormat {
+
+    public static final byte[] MAGIC                   = { 'F', 'B', 'P', 'H' };
+    public static final short  VERSION                 = 1;
+    public static final String FILE_SUFFIX             = ".fbp";
+    public static final int    NONE                    = -1;
+    public static final byte   PHYLOGENY_ROOTED        = 1;
+    public static final byte   PHYLOGENY_REROOTABLE    = 2;
+    public static final byte   PHYLOGENY_CONFIDENCE    = 4;
+    public static final byte   PHYLOGENY_IDENTIFIER    = 8;
+    public static final byte   NODE_COLLAPSE           = 1;
+    public static final byte   NODE_NODE_DATA          = 2;
+    public static final byte   NODE_BRANCH_DATA        = 4;
+    public static final short  DATA_EVENT              = 1;
+    public static final short  DATA_TAXONOMIES         = 2;
+    public static final short  DATA_SEQUENCES          = 4;
+    public static final short  DATA_DISTRIBUTIONS      = 8;
+    public static final short  DATA_DATE               = 16;
+    public static final short  DATA_BINARY_CHARACTERS  = 32;
+    public static final short  DATA_PROPERTIES         = 64;
+    public static final short  DATA_REFERENCES         = 128;
+    public static final short  DATA_VECTOR             = 256;
+    public static final short  DATA_NODE_VISUAL_DATA   = 512;
+    public static final byte   BRANCH_DATA_COLOR       = 1;
+    public static final byte   BRANCH_DATA_CONFIDENCES = 2;
+    public static final byte   BRANCH_DATA_WIDTH       = 4;
+
+    private BinaryPhylogenyFormat() {
+    }
+}
@@ -0,0 +1,645 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.io.parsers.binary;
+
+import java.awt.Color;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.forester.io.parsers.IteratingPhylogenyParser;
+import org.forester.io.parsers.PhylogenyParser;
+import org.forester.io.parsers.util.PhylogenyParserException;
+import org.forester.phylogeny.Phylogeny;
+import org.forester.phylogeny.PhylogenyNode;
+import org.forester.phylogeny.data.Accession;
+import org.forester.phylogeny.data.Annotation;
+import org.forester.phylogeny.data.BinaryCharacters;
+import org.forester.phylogeny.data.BranchColor;
+import org.forester.phylogeny.data.BranchData;
+import org.forester.phylogeny.data.BranchWidth;
+import org.forester.phylogeny.data.Confidence;
+import org.forester.phylogeny.data.Date;
+import org.forester.phylogeny.data.Distribution;
+import org.forester.phylogeny.data.DomainArchitecture;
+import org.forester.phylogeny.data.Event;
+import org.forester.phylogeny.data.Identifier;
+import org.forester.phylogeny.data.NodeData;
+import org.forester.phylogeny.data.NodeVisualData;
+import org.forester.phylogeny.data.NodeVisualData.FontType;
+import org.forester.phylogeny.data.NodeVisualData.NodeFill;
+import org.forester.phylogeny.data.NodeVisualData.NodeShape;
+import org.forester.phylogeny.data.Point;
+import org.forester.phylogeny.data.Polygon;
+import org.forester.phylogeny.data.PropertiesList;
+import org.forester.phylogeny.data.Property;
+import org.forester.phylogeny.data.Property.AppliesTo;
+import org.forester.phylogeny.data.ProteinDomain;
+import org.forester.phylogeny.data.Reference;
+import org.forester.phylogeny.data.Sequence;
+import org.forester.phylogeny.data.Taxonomy;
+import org.forester.phylogeny.data.Uri;
+import org.forester.util.ForesterUtil;
+
+/*
+ * Reads phylogenies in the forester binary phylogeny format (see
+ * BinaryPhylogenyFormat), as written by BinaryPhylogenyWriter.
+ *
+ * Files are memory-mapped rather than read; byte arrays and input streams
+ * are accepted as sources as well. Phylogenies are decoded one at a time by
+ * next(), or all at once by parse().
+ *
+ */
+public final class BinaryPhylogenyParser implements PhylogenyParser, IteratingPhylogenyParser {
+
+    private ByteBuffer _buffer;
+    private int        _number_of_phylogenies;
+    private int        _phylogenies_read;
+    private Object     _source;
+    private String[]   _strings;
+
+    public BinaryPhylogenyParser() {
+        _buffer = null;
+        _source = null;
+    }
+
+    @Override
+    public String getName() {
+        return "Binary Phylogeny Parser";
+    }
+
+    public final int getNumberOfPhylogenies() {
+        return _number_of_phylogenies;
+    }
+
+    @Override
+    public final boolean hasNext() {
+        return ( _buffer != null ) && ( _phylogenies_read < _number_of_phylogenies );
+    }
+
+    @Override
+    public final Phylogeny next() throws IOException {
+        if ( !hasNext() ) {
+            return null;
+        }
+        ++_phylogenies_read;
+        try {
+            final long length = _buffer.getLong();
+            if ( ( length < 0 ) || ( length > _buffer.remaining() ) ) {
+                throw new PhylogenyParserException( "binary phylogeny data is truncated or corrupt" );
+            }
+            final int end = _buffer.position() + ( int ) length;
+            final Phylogeny phy = readPhylogeny();
+            _buffer.position( end );
+            return phy;
+        }
+        catch ( final BufferUnderflowException e ) {
+            throw new PhylogenyParserException( "binary phylogeny data is truncated or corrupt" );
+        }
+        catch ( final IndexOutOfBoundsException e ) {
+            throw new PhylogenyParserException( "binary phylogeny data is corrupt: " + e.getMessage() );
+        }
+        catch ( final IllegalArgumentException e ) {
+            throw new PhylogenyParserException( "binary phylogeny data is corrupt: " + e.getMessage() );
+        }
+    }
+
+    @Override
+    public final Phylogeny[] parse() throws IOException {
+        final List<Phylogeny> l = new ArrayList<Phylogeny>();
+        while ( hasNext() ) {
+            l.add( next() );
+        }
+        reset();
+        return l.toArray( new Phylogeny[ l.size() ] );
+    }
+
+    @Override
+    public final void reset() throws IOException {
+        _phylogenies_read = 0;
+        _number_of_phylogenies = 0;
+        _strings = null;
+        _buffer = createBuffer( _source );
+        try {
+            final byte[] magic = new byte[ BinaryPhylogenyFormat.MAGIC.length ];
+            _buffer.get( magic );
+            if ( !Arrays.equals( magic, BinaryPhylogenyFormat.MAGIC ) ) {
+                throw new PhylogenyParserException( "not in binary phylogeny format" );
+            }
+            final short version = _buffer.getShort();
+            if ( ( version < 1 ) || ( version > BinaryPhylogenyFormat.VERSION ) ) {
+                throw new PhylogenyParserException( "unsupported binary phylogeny format version: " + version );
+            }
+            _number_of_phylogenies = _buffer.getInt();
+        }
+        catch ( final BufferUnderflowException e ) {
+            throw new PhylogenyParserException( "not in binary phylogeny format" );
+        }
+    }
+
+    @Override
+    public final void setSource( final Object source ) throws IOException {
+        // A stream can only be read once, but reset() has to start over.
+        if ( source instanceof InputStream ) {
+            _source = readFully( ( InputStream ) source );
+        }
+        else {
+            _source = source;
+        }
+        reset();
+    }
+
+    private final Accession readAccession() {
+        return new Accession( readString(), readString(), readString() );
+    }
+
+    private final Annotation readAnnotation() throws IOException {
+        final String ref_source = readString();
+        final String ref_value = readString();
+        final Annotation annotation;
+        if ( ForesterUtil.isEmpty( ref_source ) && ForesterUtil.isEmpty( ref_value ) ) {
+            annotation = new Annotation();
+        }
+        else {
+            annotation = new Annotation( ref_source, ref_value );
+        }
+        annotation.setDesc( readString() );
+        annotation.setEvidence( readString() );
+        annotation.setSource( readString() );
+        annotation.setType( readString() );
+        if ( readBoolean() ) {
+            annotation.setConfidence( readConfidence() );
+        }
+        if ( readBoolean() ) {
+            annotation.setProperties( readProperties() );
+        }
+        annotation.setUris( readUris() );
+        return annotation;
+    }
+
+    private final BigDecimal readBigDecimal() {
+        final String s = readString();
+        return s != null ? new BigDecimal( s ) : null;
+    }
+
+    private final boolean readBoolean() {
+        return _buffer.get() != 0;
+    }
+
+    private final void readBranchData( final BranchData data, final byte mask ) {
+        if ( ( mask & BinaryPhylogenyFormat.BRANCH_DATA_COLOR ) != 0 ) {
+            data.setBranchColor( new BranchColor( new Color( _buffer.getInt(), true ) ) );
+        }
+        if ( ( mask & BinaryPhylogenyFormat.BRANCH_DATA_CONFIDENCES ) != 0 ) {
+            final int n = _buffer.getInt();
+            for( int i = 0; i < n; ++i ) {
+                data.addConfidence( readConfidence() );
+            }
+        }
+        if ( ( mask & BinaryPhylogenyFormat.BRANCH_DATA_WIDTH ) != 0 ) {
+            data.setBranchWidth( new BranchWidth( _buffer.getDouble() ) );
+        }
+    }
+
+    private final Confidence readConfidence() {
+        final double value = _buffer.getDouble();
+        final double sd = _buffer.getDouble();
+        return new Confidence( value, readString(), sd );
+    }
+
+    private final DomainArchitecture readDomainArchitecture() {
+        final DomainArchitecture da = new DomainArchitecture();
+        da.setTotalLength( _buffer.getInt() );
+        final int n = _buffer.getInt();
+        for( int i = 0; i < n; ++i ) {
+            final String name = readString();
+            final int from = _buffer.getInt();
+            final int to = _buffer.getInt();
+            final String id = readString();
+            da.addDomain( new ProteinDomain( name, from, to, id, _buffer.getDouble() ) );
+        }
+        return da;
+    }
+
+    private final Identifier readIdentifier() {
+        return new Identifier( readString(), readString() );
+    }
+
+    private final void readNodeData( final NodeData data, final short mask ) throws IOException {
+        if ( ( mask & BinaryPhylogenyFormat.DATA_EVENT ) != 0 ) {
+            final int duplications = _buffer.getInt();
+            final int speciations = _buffer.getInt();
+            final int gene_losses = _buffer.getInt();
+            final Event event = new Event( duplications, speciations, gene_losses, readString() );
+            if ( readBoolean() ) {
+                event.setConfidence( readConfidence() );
+            }
+            data.setEvent( event );
+        }
+        if ( ( mask & BinaryPhylogenyFormat.DATA_TAXONOMIES ) != 0 ) {
+            final int n = _buffer.getInt();
+            for( int i = 0; i < n; ++i ) {
+                data.addTaxonomy( readTaxonomy() );
+            }
+        }
+        if ( ( mask & BinaryPhylogenyFormat.DATA_SEQUENCES ) != 0 ) {
+            final int n = _buffer.getInt();
+            for( int i = 0; i < n; ++i ) {
+                data.addSequence( readSequence() );
+            }
+        }
+        if ( ( mask & BinaryPhylogenyFormat.DATA_DISTRIBUTIONS ) != 0 ) {
+            final int n = _buffer.getInt();
+            for( int i = 0; i < n; ++i ) {
+                final String desc = readString();
+                final List<Point> points = readPoints();
+                final int number_of_polygons = _buffer.getInt();
+                List<Polygon> polygons = null;
+                if ( number_of_polygons != BinaryPhylogenyFormat.NONE ) {
+                    polygons = new ArrayList<Polygon>( number_of_polygons );
+                    for( int j = 0; j < number_of_polygons; ++j ) {
+                        polygons.add( new Polygon( readPoints() ) );
+                    }
+                }
+                data.addDistribution( new Distribution( desc, points, polygons ) );
+            }
+        }
+        if ( ( mask & BinaryPhylogenyFormat.DATA_DATE ) != 0 ) {
+            final Date date = new Date();
+            date.setDesc( readString() );
+            date.setValue( readBigDecimal() );
+            date.setMin( readBigDecimal() );
+            date.setMax( readBigDecimal() );
+            date.setUnit( readString() );
+            data.setDate( date );
+        }
+        if ( ( mask & BinaryPhylogenyFormat.DATA_BINARY_CHARACTERS ) != 0 ) {
+            final String type = readString();
+            final SortedSet<String> present = readSortedStrings();
+            final SortedSet<String> gained = readSortedStrings();
+            final SortedSet<String> lost = readSortedStrings();
+            final int present_count = _buffer.getInt();
+            final int gained_count = _buffer.getInt();
+            final int lost_count = _buffer.getInt();
+            data.setBinaryCharacters( new BinaryCharacters( present,
+                                                            gained,
+                                                            lost,
+                                                            type,
+                                                            present_count,
+                                                            gained_count,
+                                                            lost_count ) );
+        }
+        if ( ( mask & BinaryPhylogenyFormat.DATA_PROPERTIES ) != 0 ) {
+            data.setProperties( readProperties() );
+        }
+        if ( ( mask & BinaryPhylogenyFormat.DATA_REFERENCES ) != 0 ) {
+            final int n = _buffer.getInt();
+            for( int i = 0; i < n; ++i ) {
+                final String desc = readString();
+                data.addReference( new Reference( desc, readString() ) );
+            }
+        }
+        if ( ( mask & BinaryPhylogenyFormat.DATA_VECTOR ) != 0 ) {
+            final int n = _buffer.getInt();
+            final List<Double> vector = new ArrayList<Double>( n );
+            for( int i = 0; i < n; ++i ) {
+                vector.add( _buffer.getDouble() );
+            }
+            data.setVector( vector );
+        }
+        if ( ( mask & BinaryPhylogenyFormat.DATA_NODE_VISUAL_DATA ) != 0 ) {
+            final String font_name = readString();
+            final String font_style = readString();
+            final byte font_size = _buffer.get();
+            final Color font_color = readBoolean() ? new Color( _buffer.getInt(), true ) : null;
+            final String shape = readString();
+            final String fill_type = readString();
+            final Color node_color = readBoolean() ? new Color( _buffer.getInt(), true ) : null;
+            final float size = _buffer.getFloat();
+            final float transparency = _buffer.getFloat();
+            data.setNodeVisualData( new NodeVisualData( font_name,
+                                                        font_style != null ? FontType.valueOf( font_style ) : null,
+                                                        font_size,
+                                                        font_color,
+                                                        shape != null ? NodeShape.valueOf( shape ) : null,
+                                                        fill_type != null ? NodeFill.valueOf( fill_type ) : null,
+                                                        node_color,
+                                                        size,
+                                                        transparency ) );
+        }
+    }
+
+    private final Phylogeny readPhylogeny() throws IOException {
+        final int number_of_strings = _buffer.getInt();
+        if ( number_of_strings < 0 ) {
+            throw new PhylogenyParserException( "binary phylogeny data is corrupt: negative number of strings" );
+        }
+        _strings = new String[ number_of_strings ];
+        for( int i = 0; i < number_of_strings; ++i ) {
+            final int length = _buffer.getInt();
+            if ( length < 0 ) {
+                throw new PhylogenyParserException( "binary phylogeny data is corrupt: negative string length" );
+            }
+            if ( length > _buffer.remaining() ) {
+                throw new PhylogenyParserException( "binary phylogeny data is truncated or corrupt" );
+            }
+            final byte[] b = new byte[ length ];
+            _buffer.get( b );
+            _strings[ i ] = new String( b, StandardCharsets.UTF_8 );
+        }
+        final Phylogeny phy = new Phylogeny();
+        final byte phylogeny_flags = _buffer.get();
+        phy.setRooted( ( phylogeny_flags & BinaryPhylogenyFormat.PHYLOGENY_ROOTED ) != 0 );
+        phy.setRerootable( ( phylogeny_flags & BinaryPhylogenyFormat.PHYLOGENY_REROOTABLE ) != 0 );
+        phy.setName( readString() );
+        phy.setType( readString() );
+        phy.setDescription( readString() );
+        phy.setDistanceUnit( readString() );
+        if ( ( phylogeny_flags & BinaryPhylogenyFormat.PHYLOGENY_CONFIDENCE ) != 0 ) {
+            phy.setConfidence( readConfidence() );
+        }
+        if ( ( phylogeny_flags & BinaryPhylogenyFormat.PHYLOGENY_IDENTIFIER ) != 0 ) {
+            phy.setIdentifier( readIdentifier() );
+        }
+        final int n = _buffer.getInt();
+        if ( n < 0 ) {
+            throw new PhylogenyParserException( "binary phylogeny data is corrupt: negative number of nodes" );
+        }
+        // The arrays are read in bulk.
+        final int[] parents = new int[ n ];
+        _buffer.asIntBuffer().get( parents );
+        _buffer.position( _buffer.position() + ( 4 * n ) );
+        final double[] distances = new double[ n ];
+        _buffer.asDoubleBuffer().get( distances );
+        _buffer.position( _buffer.position() + ( 8 * n ) );
+        final int[] names = new int[ n ];
+        _buffer.asIntBuffer().get( names );
+        _buffer.position( _buffer.position() + ( 4 * n ) );
+        final byte[] flags = new byte[ n ];
+        _buffer.get( flags );
+        final PhylogenyNode[] nodes = new PhylogenyNode[ n ];
+        for( int i = 0; i < n; ++i ) {
+            final PhylogenyNode node = new PhylogenyNode();
+            nodes[ i ] = node;
+            if ( i > 0 ) {
+                final int parent = parents[ i ];
+                if ( ( parent < 0 ) || ( parent >= i ) ) {
+                    throw new PhylogenyParserException( "binary phylogeny data is corrupt: illegal parent index "
+                            + parent + " of node " + i );
+                }
+                nodes[ parent ].addAsChild( node );
+            }
+            node.setDistanceToParent( distances[ i ] );
+            // Nodes are named "" by default.
+            if ( names[ i ] == BinaryPhylogenyFormat.NONE ) {
+                node.setName( null );
+            }
+            else if ( _strings[ names[ i ] ].length() > 0 ) {
+                node.setName( _strings[ names[ i ] ] );
+            }
+            if ( ( flags[ i ] & BinaryPhylogenyFormat.NODE_COLLAPSE ) != 0 ) {
+                node.setCollapse( true );
+            }
+            if ( ( flags[ i ] & BinaryPhylogenyFormat.NODE_NODE_DATA ) != 0 ) {
+                readNodeData( node.getNodeData(), _buffer.getShort() );
+            }
+            if ( ( flags[ i ] & BinaryPhylogenyFormat.NODE_BRANCH_DATA ) != 0 ) {
+                readBranchData( node.getBranchData(), _buffer.get() );
+            }
+        }
+        if ( n > 0 ) {
+            phy.setRoot( nodes[ 0 ] );
+        }
+        _strings = null;
+        return phy;
+    }
+
+    private final List<Point> readPoints() {
+        final int n = _buffer.getInt();
+        if ( n == BinaryPhylogenyFormat.NONE ) {
+            return null;
+        }
+        final List<Point> points = new ArrayList<Point>( n );
+        for( int i = 0; i < n; ++i ) {
+            final String geodetic_datum = readString();
+            final BigDecimal lat = readBigDecimal();
+            final BigDecimal longitude = readBigDecimal();
+            final BigDecimal alt = readBigDecimal();
+            final String alt_unit = readString();
+            if ( ForesterUtil.isEmpty( geodetic_datum ) ) {
+                points.add( new Point() );
+            }
+            else {
+                points.add( new Point( geodetic_datum, lat, longitude, alt, alt_unit ) );
+            }
+        }
+        return points;
+    }
+
+    private final PropertiesList readProperties() {
+        final PropertiesList properties = new PropertiesList();
+        final int n = _buffer.getInt();
+        for( int i = 0; i < n; ++i ) {
+            final String ref = readString();
+            final String value = readString();
+            final String unit = readString();
+            final String datatype = readString();
+            final String applies_to = readString();
+            final String id_ref = readString();
+            properties.addProperty( new Property( ref,
+                                                  value,
+                                                  unit,
+                                                  datatype,
+                                                  applies_to != null ? AppliesTo.valueOf( applies_to ) : null,
+                                                  id_ref ) );
+        }
+        return properties;
+    }
+
+    private final Sequence readSequence() throws IOException {
+        final Sequence sequence = new Sequence();
+        sequence.setName( readString() );
+        sequence.setSymbol( readString() );
+        sequence.setGeneName( readString() );
+        sequence.setLocation( readString() );
+        sequence.setMolecularSequence( readString() );
+        sequence.setMolecularSequenceAligned( readBoolean() );
+        sequence.setSourceId( readString() );
+        sequence.setType( readString() );
+        if ( readBoolean() ) {
+            sequence.setAccession( readAccession() );
+        }
+        sequence.setUris( readUris() );
+        final int number_of_annotations = _buffer.getInt();
+        for( int i = 0; i < number_of_annotations; ++i ) {
+            sequence.addAnnotation( readAnnotation() );
+        }
+        final int number_of_xrefs = _buffer.getInt();
+        for( int i = 0; i < number_of_xrefs; ++i ) {
+            sequence.addCrossReference( readAccession() );
+        }
+        if ( readBoolean() ) {
+            sequence.setDomainArchitecture( readDomainArchitecture() );
+        }
+        return sequence;
+    }
+
+    private final SortedSet<String> readSortedStrings() {
+        final int n = _buffer.getInt();
+        final SortedSet<String> strings = new TreeSet<String>();
+        for( int i = 0; i < n; ++i ) {
+            strings.add( readString() );
+        }
+        return strings;
+    }
+
+    private final String readString() {
+        final int i = _buffer.getInt();
+        return i != BinaryPhylogenyFormat.NONE ? _strings[ i ] : null;
+    }
+
+    private final List<String> readStrings() {
+        final int n = _buffer.getInt();
+        if ( n == BinaryPhylogenyFormat.NONE ) {
+            return null;
+        }
+        final List<String> strings = new ArrayList<String>( n );
+        for( int i = 0; i < n; ++i ) {
+            strings.add( readString() );
+        }
+        return strings;
+    }
+
+    private final Taxonomy readTaxonomy() throws IOException {
+        final Taxonomy taxonomy = new Taxonomy();
+        taxonomy.setScientificName( readString() );
+        taxonomy.setCommonName( readString() );
+        taxonomy.setAuthority( readString() );
+        taxonomy.setTaxonomyCode( readString() );
+        taxonomy.setRank( readString() );
+        if ( readBoolean() ) {
+            taxonomy.setIdentifier( readIdentifier() );
+        }
+        final List<String> synonyms = readStrings();
+        if ( synonyms != null ) {
+            taxonomy.getSynonyms().addAll( synonyms );
+        }
+        taxonomy.setLineage( readStrings() );
+        taxonomy.setUris( readUris() );
+        return taxonomy;
+    }
+
+    private final List<Uri> readUris() {
+        final int n = _buffer.getInt();
+        if ( n == BinaryPhylogenyFormat.NONE ) {
+            return null;
+        }
+        final List<Uri> uris = new ArrayList<Uri>( n );
+        for( int i = 0; i < n; ++i ) {
+            final String value = readString();
+            final String desc = readString();
+            uris.add( new Uri( value, desc, readString() ) );
+        }
+        return uris;
+    }
+
+    /**
+     * Returns true if the given file starts with the magic number of the
+     * binary phylogeny format.
+     *
+     */
+    public final static boolean isBinaryPhylogenyFile( final File file ) throws IOException {
+        final byte[] magic = new byte[ BinaryPhylogenyFormat.MAGIC.length ];
+        final InputStream is = new FileInputStream( file );
+        try {
+            int n = 0;
+            while ( n < magic.length ) {
+                final int r = is.read( magic, n, magic.length - n );
+                if ( r < 0 ) {
+                    return false;
+                }
+                n += r;
+            }
+        }
+        finally {
+            is.close();
+        }
+        return Arrays.equals( magic, BinaryPhylogenyFormat.MAGIC );
+    }
+
+    private final static ByteBuffer createBuffer( final Object source ) throws IOException {
+        if ( source == null ) {
+            throw new PhylogenyParserException( BinaryPhylogenyParser.class + ": attempt to parse null object." );
+        }
+        else if ( source instanceof File ) {
+            final File f = ( File ) source;
+            final String error = ForesterUtil.isReadableFile( f );
+            if ( !ForesterUtil.isEmpty( error ) ) {
+                throw new PhylogenyParserException( error );
+            }
+            final RandomAccessFile raf = new RandomAccessFile( f, "r" );
+            try {
+                final FileChannel channel = raf.getChannel();
+                if ( channel.size() > Integer.MAX_VALUE ) {
+                    throw new PhylogenyParserException( "binary phylogeny file is too large to be mapped: " + f );
+                }
+                // The mapping remains valid after the channel is closed.
+                return channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+            }
+            finally {
+                raf.close();
+            }
+        }
+        else if ( source instanceof byte[] ) {
+            return ByteBuffer.wrap( ( byte[] ) source );
+        }
+        throw new IllegalArgumentException( BinaryPhylogenyParser.class + " can only parse objects of type File,"
+                + " byte[], or InputStream [attempt to parse object of " + source.getClass() + "]." );
+    }
+
+    private final static byte[] readFully( final InputStream is ) throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        final byte[] b = new byte[ 8192 ];
+        int n;
+        while ( ( n = is.read( b ) ) > 0 ) {
+            os.write( b, 0, n );
+        }
+        return os.toByteArray();
+    }
+}
@@ -79,8 +79,12 @@ public final class NHXParser implements PhylogenyParser, IteratingPhylogenyParse
     private final static boolean GUESS_ROOTEDNESS_DEFAULT                   = true;
     private final static boolean IGNORE_QUOTES_DEFAULT                      = false;
     private final static char    BELL                                       = 7;
+    private final static int     BUFFER_SIZE                                = 8192;
     private final static String  ENCODING_DEFAULT                           = ForesterConstants.UTF_8;
     private boolean              _allow_errors_in_distance_to_parent;
+    private final char[]         _buffer                                    = new char[ BUFFER_SIZE ];
+    private int                  _buffer_length;
+    private int                  _buffer_position;
     private int                  _clade_level;
     private StringBuilder        _current_anotation;
     private PhylogenyNode        _current_node;
@@ -156,6 +160,8 @@ public final class NHXParser implements PhylogenyParser, IteratingPhylogenyParse
     @Override
     public final void reset() throws NHXFormatException, IOException {
         _i = 0;
+        _buffer_length = 0;
+        _buffer_position = 0;
         _next = null;
         _in_comment = false;
         _saw_colon = false;
@@ -287,13 +293,8 @@ public final class NHXParser implements PhylogenyParser, IteratingPhylogenyParse
     private final Phylogeny finishPhylogeny()
             throws PhylogenyParserException, NHXFormatException, PhyloXmlDataFormatException {
         if ( _current_phylogeny != null ) {
-            parseNHX( _current_anotation != null ? _current_anotation.toString() : "",
-                      _current_phylogeny.getRoot(),
-                      getTaxonomyExtraction(),
-                      isReplaceUnderscores(),
-                      isAllowErrorsInDistanceToParent(),
-                      true,
-                      isParseBeastStyleExtendedTags() );
+            parseLabel( _current_anotation != null ? _current_anotation : new StringBuilder(),
+                        _current_phylogeny.getRoot() );
             if ( GUESS_IF_SUPPORT_VALUES ) {
                 if ( isBranchLengthsLikeBootstrapValues( _current_phylogeny ) ) {
                     moveBranchLengthsToConfidenceValues( _current_phylogeny );
@@ -314,13 +315,7 @@ public final class NHXParser implements PhylogenyParser, IteratingPhylogenyParse
     private final Phylogeny finishSingleNodePhylogeny()
             throws PhylogenyParserException, NHXFormatException, PhyloXmlDataFormatException {
         final PhylogenyNode new_node = new PhylogenyNode();
-        parseNHX( _current_anotation.toString(),
-                  new_node,
-                  getTaxonomyExtraction(),
-                  isReplaceUnderscores(),
-                  isAllowErrorsInDistanceToParent(),
-                  true,
-                  isParseBeastStyleExtendedTags() );
+        parseLabel( _current_anotation, new_node );
         _current_phylogeny = new Phylogeny();
         _current_phylogeny.setRoot( new_node );
         return _current_phylogeny;
@@ -335,19 +330,19 @@ public final class NHXParser implements PhylogenyParser, IteratingPhylogenyParse
         setParseBeastStyleExtendedTags( false );
     }
 
-    private final boolean isAllowErrorsInDistanceToParent() {
+    final boolean isAllowErrorsInDistanceToParent() {
         return _allow_errors_in_distance_to_parent;
     }
 
-    private final boolean isGuessRootedness() {
+    final boolean isGuessRootedness() {
         return _guess_rootedness;
     }
 
-    private final boolean isIgnoreQuotes() {
+    final boolean isIgnoreQuotes() {
         return _ignore_quotes;
     }
 
-    private final boolean isReplaceUnderscores() {
+    final boolean isReplaceUnderscores() {
         return _replace_underscores;
     }
 
@@ -358,13 +353,16 @@ public final class NHXParser implements PhylogenyParser, IteratingPhylogenyParse
         while ( true ) {
             char c = '\b';
             if ( _input_type == BUFFERED_READER ) {
-                final int ci = _my_source_br.read();
-                if ( ci >= 0 ) {
-                    c = ( char ) ci;
-                }
-                else {
-                    break;
+                // Reads in bulk, instead of one (synchronized) read() per char.
+                if ( _buffer_position >= _buffer_length ) {
+                    _buffer_length = _my_source_br.read( _buffer, 0, BUFFER_SIZE );
+                    _buffer_position = 0;
+                    if ( _buffer_length < 0 ) {
+                        _buffer_length = 0;
+                        break;
+                    }
                 }
+                c = _buffer[ _buffer_position++ ];
             }
             else {
                 if ( _i >= _source_length ) {
@@ -431,7 +429,7 @@ public final class NHXParser implements PhylogenyParser, IteratingPhylogenyParse
                     }
                     else if ( ( _saw_colon || _after_close_paren )
                             && ( ( ( c > 47 ) && ( c < 58 ) ) || ( c == 46 ) || ( c == 45 ) || ( c == 43 ) ) ) {
-                        _current_anotation.append( "[" + c );
+                        _current_anotation.append( '[' ).append( c );
                     }
                     else {
                         _in_comment = true;
@@ -472,6 +470,7 @@ public final class NHXParser implements PhylogenyParser, IteratingPhylogenyParse
         }
         else if ( ( _current_anotation != null ) && ( _current_anotation.length() > 0 ) ) {
             _next = finishSingleNodePhylogeny();
+            _current_phylogeny = null;
             _current_anotation = null;
         }
         else {
@@ -492,6 +491,28 @@ public final class NHXParser implements PhylogenyParser, IteratingPhylogenyParse
         return c;
     }
 
+    /**
+     * Annotates a node from the characters collected for it, using the fast
+     * path for plain Newick labels where possible.
+     *
+     */
+    private final void parseLabel( final StringBuilder label, final PhylogenyNode node )
+            throws NHXFormatException, PhyloXmlDataFormatException {
+        if ( !parsePlainNewickLabel( label,
+                                     node,
+                                     getTaxonomyExtraction(),
+                                     isReplaceUnderscores(),
+                                     isAllowErrorsInDistanceToParent() ) ) {
+            parseNHX( label.toString(),
+                      node,
+                      getTaxonomyExtraction(),
+                      isReplaceUnderscores(),
+                      isAllowErrorsInDistanceToParent(),
+                      true,
+                      isParseBeastStyleExtendedTags() );
+        }
+    }
+
     private final void processCloseParen()
             throws PhylogenyParserException, NHXFormatException, PhyloXmlDataFormatException {
         if ( _clade_level < 0 ) {
@@ -500,25 +521,13 @@ public final class NHXParser implements PhylogenyParser, IteratingPhylogenyParse
         --_clade_level;
         if ( !_saw_closing_paren ) {
             final PhylogenyNode new_node = new PhylogenyNode();
-            parseNHX( _current_anotation.toString(),
-                      new_node,
-                      getTaxonomyExtraction(),
-                      isReplaceUnderscores(),
-                      isAllowErrorsInDistanceToParent(),
-                      true,
-                      isParseBeastStyleExtendedTags() );
-            _current_anotation = new StringBuilder();
+            parseLabel( _current_anotation, new_node );
+            _current_anotation.setLength( 0 );
             _current_node.addAsChild( new_node );
         }
         else {
-            parseNHX( _current_anotation.toString(),
-                      _current_node.getLastChildNode(),
-                      getTaxonomyExtraction(),
-                      isReplaceUnderscores(),
-                      isAllowErrorsInDistanceToParent(),
-                      true,
-                      isParseBeastStyleExtendedTags() );
-            _current_anotation = new StringBuilder();
+            parseLabel( _current_anotation, _current_node.getLastChildNode() );
+            _current_anotation.setLength( 0 );
         }
         if ( !_current_node.isRoot() ) {
             _current_node = _current_node.getParent();
@@ -529,28 +538,16 @@ public final class NHXParser implements PhylogenyParser, IteratingPhylogenyParse
     private final void processComma() throws PhylogenyParserException, NHXFormatException, PhyloXmlDataFormatException {
         if ( !_saw_closing_paren ) {
             final PhylogenyNode new_node = new PhylogenyNode();
-            parseNHX( _current_anotation.toString(),
-                      new_node,
-                      getTaxonomyExtraction(),
-                      isReplaceUnderscores(),
-                      isAllowErrorsInDistanceToParent(),
-                      true,
-                      isParseBeastStyleExtendedTags() );
+            parseLabel( _current_anotation, new_node );
             if ( _current_node == null ) {
                 throw new NHXFormatException( "format might not be NH or NHX" );
             }
             _current_node.addAsChild( new_node );
         }
         else {
-            parseNHX( _current_anotation.toString(),
-                      _current_node.getLastChildNode(),
-                      getTaxonomyExtraction(),
-                      isReplaceUnderscores(),
-                      isAllowErrorsInDistanceToParent(),
-                      true,
-                      isParseBeastStyleExtendedTags() );
+            parseLabel( _current_anotation, _current_node.getLastChildNode() );
         }
-        _current_anotation = new StringBuilder();
+        _current_anotation.setLength( 0 );
         _saw_closing_paren = false;
     }
 
@@ -724,6 +721,60 @@ public final class NHXParser implements PhylogenyParser, IteratingPhylogenyParse
         return 0.0;
     }
 
+    /**
+     * Annotates a node from a plain Newick label ("name", "name:length", or
+     * ":length") in a single pass, without regular expressions or tokenizing,
+     * with the same result as parseNHX. Returns false, without changing the
+     * node, for anything else (brackets, such as "[&&NHX" or "[&", spaces,
+     * quoted colons, more than one colon, tags, or underscores which are to be
+     * replaced); such labels need to be parsed by parseNHX.
+     *
+     */
+    private final static boolean parsePlainNewickLabel( final StringBuilder label,
+                                                        final PhylogenyNode node_to_annotate,
+                                                        final TAXONOMY_EXTRACTION taxonomy_extraction,
+                                                        final boolean replace_underscores,
+                                                        final boolean allow_errors_in_distance_to_parent )
+            throws NHXFormatException, PhyloXmlDataFormatException {
+        if ( ( taxonomy_extraction != TAXONOMY_EXTRACTION.NO ) && replace_underscores ) {
+            throw new IllegalArgumentException( "cannot extract taxonomies and replace under scores at the same time" );
+        }
+        final int length = label.length();
+        int colon = -1;
+        for( int i = 0; i < length; ++i ) {
+            final char c = label.charAt( i );
+            if ( c == ':' ) {
+                if ( colon >= 0 ) {
+                    return false;
+                }
+                colon = i;
+            }
+            else if ( ( c <= ' ' ) || ( c == '[' ) || ( c == ']' ) || ( c == '=' )
+                    || ( replace_underscores && ( c == '_' ) ) ) {
+                return false;
+            }
+        }
+        if ( colon != 0 ) {
+            if ( length < 1 ) {
+                return true;
+            }
+            node_to_annotate.setName( colon < 0 ? label.toString() : label.substring( 0, colon ) );
+            if ( !replace_underscores && ( taxonomy_extraction != TAXONOMY_EXTRACTION.NO ) ) {
+                ParserUtils.extractTaxonomyDataFromNodeName( node_to_annotate, taxonomy_extraction );
+            }
+        }
+        if ( ( colon >= 0 ) && ( colon < ( length - 1 ) ) ) {
+            final String s = label.substring( colon + 1 );
+            if ( ( node_to_annotate.getDistanceToParent() != PhylogenyDataUtil.BRANCH_LENGTH_DEFAULT )
+                    && !allow_errors_in_distance_to_parent ) {
+                throw new NHXFormatException( "error in NHX formatted data: more than one distance to parent:" + "\""
+                        + s + "\"" );
+            }
+            node_to_annotate.setDistanceToParent( doubleValue( s, allow_errors_in_distance_to_parent ) );
+        }
+        return true;
+    }
+
     private final static boolean isBranchLengthsLikeBootstrapValues( final Phylogeny p ) {
         final PhylogenyNodeIterator it = p.iteratorExternalForward();
         final double d0 = it.next().getDistanceToParent();
@@ -830,7 +881,7 @@ public final class NHXParser implements PhylogenyParser, IteratingPhylogenyParse
         return _encoding;
     }
 
-    private final boolean isParseBeastStyleExtendedTags() {
+    final boolean isParseBeastStyleExtendedTags() {
         return _parse_beast_style_extended_tags;
     }
 
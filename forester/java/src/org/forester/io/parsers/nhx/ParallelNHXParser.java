@@ -0,0 +1,424 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.io.parsers.nhx;
+
+import java.io.CharArrayReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.forester.io.parsers.IteratingPhylogenyParser;
+import org.forester.io.parsers.PhylogenyParser;
+import org.forester.io.parsers.util.PhylogenyParserException;
+import org.forester.phylogeny.Phylogeny;
+import org.forester.util.ForesterUtil;
+
+/*
+ * Parses NH/NHX input containing many trees (such as bootstrap replicates or
+ * posterior samples) on several threads, and returns the trees in input
+ * order.
+ *
+ * The input is split into chunks at each semicolon which is not part of a
+ * quoted label, a comment or an annotation, and not inside of parentheses.
+ * Each chunk is then parsed by its own NHXParser, configured like the
+ * parser given to the constructor. Splitting and retrieval of the trees
+ * happen on the calling thread; at most 2 * number_of_threads chunks are
+ * being parsed, or are waiting to be retrieved, at any time.
+ *
+ * For well-formed input the trees are the same as those returned by
+ * NHXParser. Unlike NHXParser, a top level semicolon always ends a tree,
+ * so text following it is never appended to the label of the root.
+ *
+ * Errors are reported in order: all trees preceding a malformed tree, or
+ * preceding a failed read, are returned by next() before it throws.
+ *
+ * Threads are started by the first call to hasNext() or next() after
+ * setSource() or reset(), and stopped once all trees have been returned,
+ * after an error, or by close().
+ *
+ */
+public final class ParallelNHXParser implements PhylogenyParser, IteratingPhylogenyParser {
+
+    private final static int                     BUFFER_SIZE = 8192;
+    private final StringBuilder                  _chunk;
+    private boolean                              _close_reader;
+    private IOException                          _error;
+    private ExecutorService                      _executor;
+    private Phylogeny                            _next;
+    private final int                            _number_of_threads;
+    private final NHXParser                      _parser;
+    private final Deque<Future<List<Phylogeny>>> _pending;
+    private final char[]                         _read_buffer;
+    private IOException                          _read_error;
+    private int                                  _read_length;
+    private int                                  _read_position;
+    private Reader                               _reader;
+    private Object                               _source;
+    private boolean                              _started;
+    private List<Phylogeny>                      _trees;
+    private int                                  _trees_index;
+
+    /**
+     * @param parser the parser whose settings (taxonomy extraction, quotes, underscores, etc.) are used for each tree
+     * @param number_of_threads
+     */
+    public ParallelNHXParser( final NHXParser parser, final int number_of_threads ) {
+        if ( number_of_threads < 1 ) {
+            throw new IllegalArgumentException( "number of threads is out of range: " + number_of_threads );
+        }
+        _parser = parser;
+        _number_of_threads = number_of_threads;
+        _chunk = new StringBuilder();
+        _pending = new ArrayDeque<Future<List<Phylogeny>>>();
+        _read_buffer = new char[ BUFFER_SIZE ];
+    }
+
+    /**
+     * Stops the threads of this parser and closes its input; trees not yet
+     * retrieved are discarded.
+     *
+     */
+    public final void close() {
+        if ( _executor != null ) {
+            _executor.shutdownNow();
+            _executor = null;
+        }
+        _pending.clear();
+        closeReader();
+    }
+
+    @Override
+    public String getName() {
+        return "Parallel NH/NHX Parser";
+    }
+
+    public final int getNumberOfThreads() {
+        return _number_of_threads;
+    }
+
+    @Override
+    public final boolean hasNext() {
+        if ( !_started ) {
+            start();
+        }
+        return ( _next != null ) || ( _error != null );
+    }
+
+    @Override
+    public final Phylogeny next() throws IOException {
+        if ( !_started ) {
+            start();
+        }
+        if ( _error != null ) {
+            final IOException e = _error;
+            _error = null;
+            throw e;
+        }
+        final Phylogeny phy = _next;
+        advance();
+        return phy;
+    }
+
+    @Override
+    public final Phylogeny[] parse() throws IOException {
+        final List<Phylogeny> l = new ArrayList<Phylogeny>();
+        while ( hasNext() ) {
+            l.add( next() );
+        }
+        reset();
+        return l.toArray( new Phylogeny[ l.size() ] );
+    }
+
+    @Override
+    public final void reset() throws IOException {
+        close();
+        _next = null;
+        _error = null;
+        _read_error = null;
+        _trees = null;
+        _trees_index = 0;
+        _read_length = 0;
+        _read_position = 0;
+        _started = false;
+        _reader = createReader( _source );
+        _close_reader = ( _source instanceof File ) || ( _source instanceof URL );
+    }
+
+    @Override
+    public final void setSource( final Object nhx_source ) throws IOException {
+        _source = nhx_source;
+        reset();
+    }
+
+    private final void advance() {
+        _next = null;
+        try {
+            while ( ( _trees == null ) || ( _trees_index >= _trees.size() ) ) {
+                if ( _pending.isEmpty() ) {
+                    _trees = null;
+                    // A failed read is reported after all trees read before it.
+                    _error = _read_error;
+                    _read_error = null;
+                    close();
+                    return;
+                }
+                _trees = retrieve( _pending.removeFirst() );
+                _trees_index = 0;
+                submit();
+            }
+            _next = _trees.get( _trees_index++ );
+        }
+        catch ( final IOException e ) {
+            _error = e;
+            close();
+        }
+        catch ( final RuntimeException e ) {
+            close();
+            throw e;
+        }
+        catch ( final Error e ) {
+            close();
+            throw e;
+        }
+    }
+
+    private final void closeReader() {
+        if ( ( _reader != null ) && _close_reader ) {
+            try {
+                _reader.close();
+            }
+            catch ( final IOException e ) {
+                // Ignore.
+            }
+        }
+        _reader = null;
+    }
+
+    private final Reader createReader( final Object nhx_source ) throws IOException {
+        if ( nhx_source == null ) {
+            throw new PhylogenyParserException( getClass() + ": attempt to parse null object." );
+        }
+        else if ( nhx_source instanceof String ) {
+            return new StringReader( ( String ) nhx_source );
+        }
+        else if ( nhx_source instanceof char[] ) {
+            return new CharArrayReader( ( char[] ) nhx_source );
+        }
+        else if ( nhx_source instanceof File ) {
+            final String error = ForesterUtil.isReadableFile( ( File ) nhx_source );
+            if ( !ForesterUtil.isEmpty( error ) ) {
+                throw new PhylogenyParserException( error );
+            }
+            return new InputStreamReader( new FileInputStream( ( File ) nhx_source ), _parser.getEncoding() );
+        }
+        else if ( nhx_source instanceof URL ) {
+            return new InputStreamReader( ( ( URL ) nhx_source ).openStream(), _parser.getEncoding() );
+        }
+        else if ( nhx_source instanceof InputStream ) {
+            return new InputStreamReader( ( InputStream ) nhx_source, _parser.getEncoding() );
+        }
+        throw new IllegalArgumentException( getClass() + " can only parse objects of type String,"
+                + " char[], File, InputStream, or URL " + " [attempt to parse object of " + nhx_source.getClass()
+                + "]." );
+    }
+
+    private final NHXParser createTreeParser() {
+        final NHXParser p = new NHXParser( _parser.getEncoding() );
+        p.setTaxonomyExtraction( _parser.getTaxonomyExtraction() );
+        p.setReplaceUnderscores( _parser.isReplaceUnderscores() );
+        p.setGuessRootedness( _parser.isGuessRootedness() );
+        p.setIgnoreQuotes( _parser.isIgnoreQuotes() );
+        p.setAllowErrorsInDistanceToParent( _parser.isAllowErrorsInDistanceToParent() );
+        p.setParseBeastStyleExtendedTags( _parser.isParseBeastStyleExtendedTags() );
+        return p;
+    }
+
+    /**
+     * Returns the characters up to the next semicolon at the top level
+     * (without the semicolon), or null if the input is exhausted. Chunks
+     * consisting of white space only are skipped.
+     *
+     */
+    private final char[] readChunk() throws IOException {
+        if ( _reader == null ) {
+            return null;
+        }
+        final boolean ignore_quotes = _parser.isIgnoreQuotes();
+        boolean in_comment = false;
+        boolean in_double_quote = false;
+        boolean in_single_quote = false;
+        boolean empty = true;
+        int clade_level = 0;
+        _chunk.setLength( 0 );
+        while ( true ) {
+            if ( _read_position >= _read_length ) {
+                _read_length = _reader.read( _read_buffer, 0, BUFFER_SIZE );
+                _read_position = 0;
+                if ( _read_length < 0 ) {
+                    _read_length = 0;
+                    closeReader();
+                    break;
+                }
+            }
+            final char c = _read_buffer[ _read_position++ ];
+            if ( in_comment ) {
+                if ( c == ']' ) {
+                    in_comment = false;
+                }
+            }
+            else if ( in_double_quote ) {
+                if ( c == '"' ) {
+                    in_double_quote = false;
+                }
+            }
+            else if ( in_single_quote ) {
+                if ( c == '\'' ) {
+                    in_single_quote = false;
+                }
+            }
+            else if ( ( c == '"' ) && !ignore_quotes ) {
+                in_double_quote = true;
+            }
+            else if ( ( c == '\'' ) && !ignore_quotes ) {
+                in_single_quote = true;
+            }
+            else if ( c == '[' ) {
+                in_comment = true;
+            }
+            else if ( c == '(' ) {
+                ++clade_level;
+            }
+            else if ( c == ')' ) {
+                --clade_level;
+            }
+            else if ( ( c == ';' ) && ( clade_level == 0 ) ) {
+                if ( !empty ) {
+                    break;
+                }
+                _chunk.setLength( 0 );
+                continue;
+            }
+            _chunk.append( c );
+            if ( c > ' ' ) {
+                empty = false;
+            }
+        }
+        if ( empty ) {
+            return null;
+        }
+        final char[] chunk = new char[ _chunk.length() ];
+        _chunk.getChars( 0, chunk.length, chunk, 0 );
+        return chunk;
+    }
+
+    private final void start() {
+        _started = true;
+        _executor = Executors.newFixedThreadPool( _number_of_threads, new ThreadFactory() {
+
+            @Override
+            public Thread newThread( final Runnable r ) {
+                final Thread t = new Thread( r, "NH/NHX parser" );
+                t.setDaemon( true );
+                return t;
+            }
+        } );
+        submit();
+        advance();
+    }
+
+    // Read errors are kept until the chunks read before are retrieved.
+    private final void submit() {
+        while ( ( _read_error == null ) && ( _pending.size() < ( 2 * _number_of_threads ) ) ) {
+            final char[] chunk;
+            try {
+                chunk = readChunk();
+            }
+            catch ( final IOException e ) {
+                _read_error = e;
+                closeReader();
+                return;
+            }
+            if ( chunk == null ) {
+                return;
+            }
+            final NHXParser p = createTreeParser();
+            _pending.addLast( _executor.submit( new Callable<List<Phylogeny>>() {
+
+                @Override
+                public List<Phylogeny> call() throws IOException {
+                    return parseChunk( p, chunk );
+                }
+            } ) );
+        }
+    }
+
+    private final List<Phylogeny> retrieve( final Future<List<Phylogeny>> f ) throws IOException {
+        try {
+            return f.get();
+        }
+        catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new IOException( "interrupted: " + e.getMessage() );
+        }
+        catch ( final ExecutionException e ) {
+            final Throwable cause = e.getCause();
+            if ( cause instanceof IOException ) {
+                throw ( IOException ) cause;
+            }
+            else if ( cause instanceof RuntimeException ) {
+                throw ( RuntimeException ) cause;
+            }
+            else if ( cause instanceof Error ) {
+                throw ( Error ) cause;
+            }
+            throw new IOException( cause.toString() );
+        }
+    }
+
+    private final static List<Phylogeny> parseChunk( final NHXParser p, final char[] chunk ) throws IOException {
+        // Not using parse(), which parses the first tree again when resetting.
+        p.setSource( chunk );
+        final List<Phylogeny> l = new ArrayList<Phylogeny>( 1 );
+        while ( p.hasNext() ) {
+            l.add( p.next() );
+        }
+        return l;
+    }
+}
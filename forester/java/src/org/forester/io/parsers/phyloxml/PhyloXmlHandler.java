@@ -30,6 +30,8 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.forester.io.parsers.phyloxml.data.BinaryCharactersParser;
 import org.forester.io.parsers.phyloxml.data.BranchWidthParser;
@@ -72,6 +74,19 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+/*
+ * Maps phyloXML to phylogenies.
+ *
+ * By default, all elements of a phylogeny are collected into a tree of
+ * XmlElements, which is mapped to the phylogeny once the clade (or the
+ * phylogeny) it belongs to ends. In direct mapping mode, clade and phylogeny
+ * attributes are mapped as they are read, clade names and branch lengths are
+ * mapped straight from a reused character buffer, and every other data
+ * element (taxonomy, sequence, ...) is mapped to the current node as soon as
+ * it ends. Thus, no XmlElements are created for clades, and no more than the
+ * data element being read is held as XmlElements.
+ *
+ */
 public final class PhyloXmlHandler extends DefaultHandler {
 
     private static final String                              PHYLOXML               = "phyloxml";
@@ -80,10 +95,28 @@ public final class PhyloXmlHandler extends DefaultHandler {
     private List<Phylogeny>                                  _phylogenies;
     private XmlElement                                       _current_xml_element;
     private PhylogenyNode                                    _current_node;
-    private static Map<Phylogeny, HashMap<String, Sequence>> phylogenySequencesById = new HashMap<Phylogeny, HashMap<String, Sequence>>();
+    private final BlockingQueue<Object>                      _queue;
+    private final boolean                                    _direct_mapping;
+    private final StringBuilder                              _chars;
+    private boolean                                          _collecting_chars;
+    private int                                              _clade_depth;
+    private String                                           _current_value_element_name;
+    private static Map<Phylogeny, HashMap<String, Sequence>> phylogenySequencesById = new ConcurrentHashMap<Phylogeny, HashMap<String, Sequence>>();
 
     PhyloXmlHandler() {
-        // Constructor.
+        this( null, false );
+    }
+
+    /**
+     * Creates a handler which hands each phylogeny, once it is complete,
+     * over to the given queue (instead of collecting it), if queue is not
+     * null.
+     *
+     */
+    PhyloXmlHandler( final BlockingQueue<Object> queue, final boolean direct_mapping ) {
+        _queue = queue;
+        _direct_mapping = direct_mapping;
+        _chars = new StringBuilder();
     }
 
     private void addNode() {
@@ -92,8 +125,69 @@ public final class PhyloXmlHandler extends DefaultHandler {
         setCurrentNode( new_node );
     }
 
+    private void addSequenceRelation( final XmlElement xml_element ) throws SAXException {
+        try {
+            final SequenceRelation seqRelation = ( SequenceRelation ) SequenceRelationParser
+                    .getInstance( getCurrentPhylogeny() ).parse( xml_element );
+            final Map<String, Sequence> sequencesById = getSequenceMapByIdForPhylogeny( getCurrentPhylogeny() );
+            final Sequence ref0 = sequencesById.get( seqRelation.getRef0().getSourceId() ), ref1 = sequencesById
+                    .get( seqRelation.getRef1().getSourceId() );
+            if ( ref0 != null ) {
+                // check for reverse relation
+                boolean fFoundReverse = false;
+                for( final SequenceRelation sr : ref0.getSequenceRelations() ) {
+                    if ( sr.getType().equals( seqRelation.getType() )
+                            && ( ( sr.getRef0().isEqual( ref1 ) && sr.getRef1().isEqual( ref0 ) ) || ( sr
+                                    .getRef0().isEqual( ref0 ) && sr.getRef1().isEqual( ref1 ) ) ) ) {
+                        // in this case we don't need to re-add it, but we make sure we don't loose the confidence value
+                        fFoundReverse = true;
+                        if ( ( sr.getConfidence() == null ) && ( seqRelation.getConfidence() != null ) ) {
+                            sr.setConfidence( seqRelation.getConfidence() );
+                        }
+                    }
+                }
+                if ( !fFoundReverse ) {
+                    ref0.addSequenceRelation( seqRelation );
+                }
+            }
+            if ( ref1 != null ) {
+                // check for reverse relation
+                boolean fFoundReverse = false;
+                for( final SequenceRelation sr : ref1.getSequenceRelations() ) {
+                    if ( sr.getType().equals( seqRelation.getType() )
+                            && ( ( sr.getRef0().isEqual( ref1 ) && sr.getRef1().isEqual( ref0 ) ) || ( sr
+                                    .getRef0().isEqual( ref0 ) && sr.getRef1().isEqual( ref1 ) ) ) ) {
+                        // in this case we don't need to re-add it, but we make sure we don't loose the confidence value
+                        fFoundReverse = true;
+                        if ( ( sr.getConfidence() == null ) && ( seqRelation.getConfidence() != null ) ) {
+                            sr.setConfidence( seqRelation.getConfidence() );
+                        }
+                    }
+                }
+                if ( !fFoundReverse ) {
+                    ref1.addSequenceRelation( seqRelation );
+                }
+            }
+            // we add the type to the current phylogeny so we can know it needs to be displayed in the combo
+            final Collection<SEQUENCE_RELATION_TYPE> relationTypesForCurrentPhylogeny = getCurrentPhylogeny()
+                    .getRelevantSequenceRelationTypes();
+            if ( !relationTypesForCurrentPhylogeny.contains( seqRelation.getType() ) ) {
+                relationTypesForCurrentPhylogeny.add( seqRelation.getType() );
+            }
+        }
+        catch ( final PhyloXmlDataFormatException ex ) {
+            throw new SAXException( ex.getMessage() );
+        }
+    }
+
     @Override
     public void characters( final char[] chars, final int start_index, final int end_index ) {
+        if ( _direct_mapping ) {
+            if ( _collecting_chars ) {
+                _chars.append( chars, start_index, end_index );
+            }
+            return;
+        }
         if ( ( ( getCurrentXmlElement() != null ) && ( getCurrentElementName() != null ) )
                 && !getCurrentElementName().equals( PhyloXmlMapping.CLADE )
                 && !getCurrentElementName().equals( PhyloXmlMapping.PHYLOGENY ) ) {
@@ -110,7 +204,10 @@ public final class PhyloXmlHandler extends DefaultHandler {
     public void endElement( final String namespace_uri, final String local_name, final String qualified_name )
             throws SAXException {
         if ( ForesterUtil.isEmpty( namespace_uri ) || namespace_uri.startsWith( ForesterConstants.PHYLO_XML_LOCATION ) ) {
-            if ( local_name.equals( PhyloXmlMapping.CLADE ) ) {
+            if ( _direct_mapping ) {
+                endElementDirectly( local_name );
+            }
+            else if ( local_name.equals( PhyloXmlMapping.CLADE ) ) {
                 try {
                     mapElementToPhylogenyNode( getCurrentXmlElement(), getCurrentNode() );
                     if ( !getCurrentNode().isRoot() ) {
@@ -127,59 +224,9 @@ public final class PhyloXmlHandler extends DefaultHandler {
                 }
             }
             else if ( local_name.equals( PhyloXmlMapping.SEQUENCE_RELATION ) ) {
-                try {
-                    if ( getCurrentPhylogeny() != null ) {
-                        final SequenceRelation seqRelation = ( SequenceRelation ) SequenceRelationParser
-                                .getInstance( getCurrentPhylogeny() ).parse( getCurrentXmlElement() );
-                        final Map<String, Sequence> sequencesById = getSequenceMapByIdForPhylogeny( getCurrentPhylogeny() );
-                        final Sequence ref0 = sequencesById.get( seqRelation.getRef0().getSourceId() ), ref1 = sequencesById
-                                .get( seqRelation.getRef1().getSourceId() );
-                        if ( ref0 != null ) {
-                            // check for reverse relation
-                            boolean fFoundReverse = false;
-                            for( final SequenceRelation sr : ref0.getSequenceRelations() ) {
-                                if ( sr.getType().equals( seqRelation.getType() )
-                                        && ( ( sr.getRef0().isEqual( ref1 ) && sr.getRef1().isEqual( ref0 ) ) || ( sr
-                                                .getRef0().isEqual( ref0 ) && sr.getRef1().isEqual( ref1 ) ) ) ) {
-                                    // in this case we don't need to re-add it, but we make sure we don't loose the confidence value
-                                    fFoundReverse = true;
-                                    if ( ( sr.getConfidence() == null ) && ( seqRelation.getConfidence() != null ) ) {
-                                        sr.setConfidence( seqRelation.getConfidence() );
-                                    }
-                                }
-                            }
-                            if ( !fFoundReverse ) {
-                                ref0.addSequenceRelation( seqRelation );
-                            }
-                        }
-                        if ( ref1 != null ) {
-                            // check for reverse relation
-                            boolean fFoundReverse = false;
-                            for( final SequenceRelation sr : ref1.getSequenceRelations() ) {
-                                if ( sr.getType().equals( seqRelation.getType() )
-                                        && ( ( sr.getRef0().isEqual( ref1 ) && sr.getRef1().isEqual( ref0 ) ) || ( sr
-                                                .getRef0().isEqual( ref0 ) && sr.getRef1().isEqual( ref1 ) ) ) ) {
-                                    // in this case we don't need to re-add it, but we make sure we don't loose the confidence value
-                                    fFoundReverse = true;
-                                    if ( ( sr.getConfidence() == null ) && ( seqRelation.getConfidence() != null ) ) {
-                                        sr.setConfidence( seqRelation.getConfidence() );
-                                    }
-                                }
-                            }
-                            if ( !fFoundReverse ) {
-                                ref1.addSequenceRelation( seqRelation );
-                            }
-                        }
-                        // we add the type to the current phylogeny so we can know it needs to be displayed in the combo
-                        final Collection<SEQUENCE_RELATION_TYPE> relationTypesForCurrentPhylogeny = getCurrentPhylogeny()
-                                .getRelevantSequenceRelationTypes();
-                        if ( !relationTypesForCurrentPhylogeny.contains( seqRelation.getType() ) ) {
-                            relationTypesForCurrentPhylogeny.add( seqRelation.getType() );
-                        }
-                    }
-                }
-                catch ( final PhyloXmlDataFormatException ex ) {
-                    throw new SAXException( ex.getMessage() );
+                if ( getCurrentPhylogeny() != null ) {
+                    addSequenceRelation( getCurrentXmlElement() );
+                    setCurrentXmlElement( getCurrentXmlElement().getParent() );
                 }
             }
             else if ( local_name.equals( PhyloXmlMapping.PHYLOGENY ) ) {
@@ -205,14 +252,83 @@ public final class PhyloXmlHandler extends DefaultHandler {
         }
     }
 
+    private void endElementDirectly( final String local_name ) throws SAXException {
+        try {
+            if ( local_name.equals( PhyloXmlMapping.CLADE ) ) {
+                if ( !getCurrentNode().isRoot() ) {
+                    setCurrentNode( getCurrentNode().getParent() );
+                }
+                --_clade_depth;
+            }
+            else if ( local_name.equals( PhyloXmlMapping.PHYLOGENY ) ) {
+                finishPhylogeny();
+                reset();
+            }
+            else if ( _current_value_element_name != null ) {
+                final String value = normalizeValue( _chars );
+                if ( _current_value_element_name.equals( PhyloXmlMapping.NODE_NAME ) ) {
+                    getCurrentNode().setName( value );
+                }
+                else {
+                    checkDistanceNotSet( getCurrentNode() );
+                    try {
+                        getCurrentNode().setDistanceToParent( Double.parseDouble( value ) );
+                    }
+                    catch ( final NumberFormatException ex ) {
+                        throw new PhyloXmlDataFormatException( "attempt to parse [" + value
+                                + "] into double, in \"" + PhyloXmlMapping.BRANCH_LENGTH + "\" [value: " + value
+                                + ", parent element: \"" + PhyloXmlMapping.CLADE + "\"]" );
+                    }
+                }
+                _current_value_element_name = null;
+            }
+            else if ( getCurrentXmlElement() != null ) {
+                final XmlElement element = getCurrentXmlElement();
+                if ( _collecting_chars && ( _chars.length() > 0 ) ) {
+                    element.setValue( _chars.toString() );
+                }
+                setCurrentXmlElement( element.getParent() );
+                if ( local_name.equals( PhyloXmlMapping.SEQUENCE_RELATION ) ) {
+                    addSequenceRelation( element );
+                }
+                else if ( element.getParent() == null ) {
+                    if ( _clade_depth > 0 ) {
+                        mapChildElementToPhylogenyNode( element, getCurrentNode() );
+                    }
+                    else {
+                        mapChildElementToPhylogeny( element, getCurrentPhylogeny() );
+                    }
+                }
+            }
+        }
+        catch ( final PhylogenyParserException e ) {
+            throw new SAXException( e.getMessage() );
+        }
+        catch ( final PhyloXmlDataFormatException e ) {
+            throw new SAXException( e.getMessage() );
+        }
+        _collecting_chars = false;
+    }
+
     private void finishPhylogeny() throws SAXException {
         getCurrentPhylogeny().recalculateNumberOfExternalDescendants( false );
-        getPhylogenies().add( getCurrentPhylogeny() );
         final HashMap<String, Sequence> phyloSequences = phylogenySequencesById.get( getCurrentPhylogeny() );
         if ( phyloSequences != null ) {
             getCurrentPhylogeny().setSequenceRelationQueries( phyloSequences.values() );
             phylogenySequencesById.remove( getCurrentPhylogeny() );
         }
+        if ( _queue == null ) {
+            getPhylogenies().add( getCurrentPhylogeny() );
+        }
+        else {
+            try {
+                _queue.put( getCurrentPhylogeny() );
+            }
+            catch ( final InterruptedException e ) {
+                Thread.currentThread().interrupt();
+                throw new SAXException( "interrupted" );
+            }
+        }
     }
 
     private String getCurrentElementName() {
@@ -254,90 +370,78 @@ public final class PhyloXmlHandler extends DefaultHandler {
 
     private void mapElementToPhylogenyNode( final XmlElement xml_element, final PhylogenyNode node )
             throws PhylogenyParserException, PhyloXmlDataFormatException {
-        if ( xml_element.isHasAttribute( PhyloXmlMapping.BRANCH_LENGTH ) ) {
-            double d = 0;
-            try {
-                d = Double.parseDouble( xml_element.getAttribute( PhyloXmlMapping.BRANCH_LENGTH ) );
-            }
-            catch ( final NumberFormatException e ) {
-                throw new PhylogenyParserException( "ill formatted distance in clade attribute ["
-                        + xml_element.getAttribute( PhyloXmlMapping.BRANCH_LENGTH ) + "]: " + e.getMessage() );
-            }
-            node.setDistanceToParent( d );
+        final String branch_length = xml_element.getAttributes().get( PhyloXmlMapping.BRANCH_LENGTH );
+        final String collapse = xml_element.getAttributes().get( PhyloXmlMapping.NODE_COLLAPSE );
+        mapCladeAttributesToPhylogenyNode( branch_length, collapse, node );
+        for( int i = 0; i < xml_element.getNumberOfChildElements(); ++i ) {
+            mapChildElementToPhylogenyNode( xml_element.getChildElement( i ), node );
         }
-        if ( xml_element.isHasAttribute( PhyloXmlMapping.NODE_COLLAPSE ) ) {
-            final String collapse_str = xml_element.getAttribute( PhyloXmlMapping.NODE_COLLAPSE );
-            if ( !ForesterUtil.isEmpty( collapse_str ) && collapse_str.trim().equalsIgnoreCase( "true" ) ) {
-                node.setCollapse( true );
+    }
+
+    private void mapChildElementToPhylogenyNode( final XmlElement element, final PhylogenyNode node )
+            throws PhylogenyParserException, PhyloXmlDataFormatException {
+        final String qualified_name = element.getQualifiedName();
+        if ( qualified_name.equals( PhyloXmlMapping.BRANCH_LENGTH ) ) {
+            checkDistanceNotSet( node );
+            node.setDistanceToParent( element.getValueAsDouble() );
+        }
+        else if ( qualified_name.equals( PhyloXmlMapping.NODE_NAME ) ) {
+            node.setName( element.getValueAsString() );
+        }
+        //  else if ( qualified_name.equals( PhyloXmlMapping.NODE_IDENTIFIER ) ) {
+        //      node.getNodeData().setNodeIdentifier( ( Identifier ) IdentifierParser.getInstance().parse( element ) );
+        //  }
+        else if ( qualified_name.equals( PhyloXmlMapping.TAXONOMY ) ) {
+            node.getNodeData().addTaxonomy( ( Taxonomy ) TaxonomyParser.getInstance().parse( element ) );
+        }
+        else if ( qualified_name.equals( PhyloXmlMapping.SEQUENCE ) ) {
+            final Sequence sequence = ( Sequence ) SequenceParser.getInstance().parse( element );
+            node.getNodeData().addSequence( sequence );
+            // we temporarily store all sequences that have a source ID so we can access them easily when we need to attach relations to them
+            final String sourceId = sequence.getSourceId();
+            if ( ( getCurrentPhylogeny() != null ) && !ForesterUtil.isEmpty( sourceId ) ) {
+                getSequenceMapByIdForPhylogeny( getCurrentPhylogeny() ).put( sourceId, sequence );
             }
         }
-        for( int i = 0; i < xml_element.getNumberOfChildElements(); ++i ) {
-            final XmlElement element = xml_element.getChildElement( i );
-            final String qualified_name = element.getQualifiedName();
-            if ( qualified_name.equals( PhyloXmlMapping.BRANCH_LENGTH ) ) {
-                if ( node.getDistanceToParent() != PhylogenyDataUtil.BRANCH_LENGTH_DEFAULT ) {
-                    throw new PhylogenyParserException( "ill advised attempt to set distance twice for the same clade (probably via element and via attribute)" );
-                }
-                node.setDistanceToParent( element.getValueAsDouble() );
-            }
-            if ( qualified_name.equals( PhyloXmlMapping.NODE_NAME ) ) {
-                node.setName( element.getValueAsString() );
-            }
-            //  else if ( qualified_name.equals( PhyloXmlMapping.NODE_IDENTIFIER ) ) {
-            //      node.getNodeData().setNodeIdentifier( ( Identifier ) IdentifierParser.getInstance().parse( element ) );
-            //  }
-            else if ( qualified_name.equals( PhyloXmlMapping.TAXONOMY ) ) {
-                node.getNodeData().addTaxonomy( ( Taxonomy ) TaxonomyParser.getInstance().parse( element ) );
-            }
-            else if ( qualified_name.equals( PhyloXmlMapping.SEQUENCE ) ) {
-                final Sequence sequence = ( Sequence ) SequenceParser.getInstance().parse( element );
-                node.getNodeData().addSequence( sequence );
-                // we temporarily store all sequences that have a source ID so we can access them easily when we need to attach relations to them
-                final String sourceId = sequence.getSourceId();
-                if ( ( getCurrentPhylogeny() != null ) && !ForesterUtil.isEmpty( sourceId ) ) {
-                    getSequenceMapByIdForPhylogeny( getCurrentPhylogeny() ).put( sourceId, sequence );
+        else if ( qualified_name.equals( PhyloXmlMapping.DISTRIBUTION ) ) {
+            node.getNodeData().addDistribution( ( Distribution ) DistributionParser.getInstance().parse( element ) );
+        }
+        else if ( qualified_name.equals( PhyloXmlMapping.CLADE_DATE ) ) {
+            node.getNodeData().setDate( ( Date ) DateParser.getInstance().parse( element ) );
+        }
+        else if ( qualified_name.equals( PhyloXmlMapping.REFERENCE ) ) {
+            node.getNodeData().addReference( ( Reference ) ReferenceParser.getInstance().parse( element ) );
+        }
+        else if ( qualified_name.equals( PhyloXmlMapping.BINARY_CHARACTERS ) ) {
+            node.getNodeData().setBinaryCharacters( ( BinaryCharacters ) BinaryCharactersParser.getInstance()
+                                                    .parse( element ) );
+        }
+        else if ( qualified_name.equals( PhyloXmlMapping.COLOR ) ) {
+            node.getBranchData().setBranchColor( ( BranchColor ) ColorParser.getInstance().parse( element ) );
+        }
+        else if ( qualified_name.equals( PhyloXmlMapping.CONFIDENCE ) ) {
+            node.getBranchData().addConfidence( ( Confidence ) ConfidenceParser.getInstance().parse( element ) );
+        }
+        else if ( qualified_name.equals( PhyloXmlMapping.WIDTH ) ) {
+            node.getBranchData().setBranchWidth( ( BranchWidth ) BranchWidthParser.getInstance().parse( element ) );
+        }
+        else if ( qualified_name.equals( PhyloXmlMapping.EVENTS ) ) {
+            node.getNodeData().setEvent( ( Event ) EventParser.getInstance().parse( element ) );
+        }
+        else if ( qualified_name.equals( PhyloXmlMapping.PROPERTY ) ) {
+            final Property prop = ( Property ) PropertyParser.getInstance().parse( element );
+            if ( prop.getRef().startsWith( NodeVisualData.APTX_VISUALIZATION_REF )
+                    && ( prop.getAppliesTo() == AppliesTo.NODE ) ) {
+                if ( node.getNodeData().getNodeVisualData() == null ) {
+                    node.getNodeData().setNodeVisualData( new NodeVisualData() );
                 }
+                node.getNodeData().getNodeVisualData().parseProperty( prop );
             }
-            else if ( qualified_name.equals( PhyloXmlMapping.DISTRIBUTION ) ) {
-                node.getNodeData().addDistribution( ( Distribution ) DistributionParser.getInstance().parse( element ) );
-            }
-            else if ( qualified_name.equals( PhyloXmlMapping.CLADE_DATE ) ) {
-                node.getNodeData().setDate( ( Date ) DateParser.getInstance().parse( element ) );
-            }
-            else if ( qualified_name.equals( PhyloXmlMapping.REFERENCE ) ) {
-                node.getNodeData().addReference( ( Reference ) ReferenceParser.getInstance().parse( element ) );
-            }
-            else if ( qualified_name.equals( PhyloXmlMapping.BINARY_CHARACTERS ) ) {
-                node.getNodeData().setBinaryCharacters( ( BinaryCharacters ) BinaryCharactersParser.getInstance()
-                                                        .parse( element ) );
-            }
-            else if ( qualified_name.equals( PhyloXmlMapping.COLOR ) ) {
-                node.getBranchData().setBranchColor( ( BranchColor ) ColorParser.getInstance().parse( element ) );
-            }
-            else if ( qualified_name.equals( PhyloXmlMapping.CONFIDENCE ) ) {
-                node.getBranchData().addConfidence( ( Confidence ) ConfidenceParser.getInstance().parse( element ) );
-            }
-            else if ( qualified_name.equals( PhyloXmlMapping.WIDTH ) ) {
-                node.getBranchData().setBranchWidth( ( BranchWidth ) BranchWidthParser.getInstance().parse( element ) );
-            }
-            else if ( qualified_name.equals( PhyloXmlMapping.EVENTS ) ) {
-                node.getNodeData().setEvent( ( Event ) EventParser.getInstance().parse( element ) );
-            }
-            else if ( qualified_name.equals( PhyloXmlMapping.PROPERTY ) ) {
-                final Property prop = ( Property ) PropertyParser.getInstance().parse( element );
-                if ( prop.getRef().startsWith( NodeVisualData.APTX_VISUALIZATION_REF )
-                        && ( prop.getAppliesTo() == AppliesTo.NODE ) ) {
-                    if ( node.getNodeData().getNodeVisualData() == null ) {
-                        node.getNodeData().setNodeVisualData( new NodeVisualData() );
-                    }
-                    node.getNodeData().getNodeVisualData().parseProperty( prop );
-                }
-                else {
-                    if ( !node.getNodeData().isHasProperties() ) {
-                        node.getNodeData().setProperties( new PropertiesList() );
-                    }
-                    node.getNodeData().getProperties().addProperty( prop );
+            else {
+                if ( !node.getNodeData().isHasProperties() ) {
+                    node.getNodeData().setProperties( new PropertiesList() );
                 }
+                node.getNodeData().getProperties().addProperty( prop );
             }
         }
     }
@@ -360,6 +464,64 @@ public final class PhyloXmlHandler extends DefaultHandler {
         setCurrentNode( null );
         setCurrentElementName( null );
         setCurrentXmlElement( null );
+        _chars.setLength( 0 );
+        _collecting_chars = false;
+        _clade_depth = 0;
+        _current_value_element_name = null;
+    }
+
+    private void startElementDirectly( final String namespace_uri,
+                                       final String local_name,
+                                       final Attributes attributes ) throws SAXException {
+        if ( local_name.equals( PhyloXmlMapping.CLADE ) ) {
+            _collecting_chars = false;
+            ++_clade_depth;
+            newClade();
+            try {
+                mapCladeAttributesToPhylogenyNode( attributes.getValue( PhyloXmlMapping.BRANCH_LENGTH ),
+                                                   attributes.getValue( PhyloXmlMapping.NODE_COLLAPSE ),
+                                                   getCurrentNode() );
+            }
+            catch ( final PhylogenyParserException e ) {
+                throw new SAXException( e.getMessage() );
+            }
+        }
+        else if ( local_name.equals( PhyloXmlMapping.PHYLOGENY ) ) {
+            _collecting_chars = false;
+            newPhylogeny();
+            mapPhylogenyAttributes( attributes, getCurrentPhylogeny() );
+        }
+        else if ( local_name.equals( PHYLOXML ) || ( getCurrentPhylogeny() == null ) ) {
+            _collecting_chars = false;
+        }
+        else {
+            if ( _current_value_element_name != null ) {
+                // Not expected: an element within a name or branch length.
+                setCurrentXmlElement( new XmlElement( namespace_uri,
+                                                      _current_value_element_name,
+                                                      _current_value_element_name,
+                                                      null ) );
+                _current_value_element_name = null;
+            }
+            if ( getCurrentXmlElement() != null ) {
+                if ( _collecting_chars && ( _chars.length() > 0 ) ) {
+                    getCurrentXmlElement().setValue( _chars.toString() );
+                }
+                final XmlElement element = new XmlElement( namespace_uri, local_name, local_name, attributes );
+                getCurrentXmlElement().addChildElement( element );
+                setCurrentXmlElement( element );
+            }
+            else if ( ( _clade_depth > 0 )
+                    && ( local_name.equals( PhyloXmlMapping.NODE_NAME ) || local_name
+                            .equals( PhyloXmlMapping.BRANCH_LENGTH ) ) ) {
+                _current_value_element_name = local_name;
+            }
+            else {
+                setCurrentXmlElement( new XmlElement( namespace_uri, local_name, local_name, attributes ) );
+            }
+            _chars.setLength( 0 );
+            _collecting_chars = true;
+        }
     }
 
     private void setCurrentElementName( final String element_name ) {
@@ -394,7 +556,10 @@ public final class PhyloXmlHandler extends DefaultHandler {
                               final Attributes attributes ) throws SAXException {
         if ( ForesterUtil.isEmpty( namespace_uri ) || namespace_uri.startsWith( ForesterConstants.PHYLO_XML_LOCATION ) ) {
             setCurrentElementName( local_name );
-            if ( local_name.equals( PhyloXmlMapping.CLADE ) ) {
+            if ( _direct_mapping ) {
+                startElementDirectly( namespace_uri, local_name, attributes );
+            }
+            else if ( local_name.equals( PhyloXmlMapping.CLADE ) ) {
                 final XmlElement element = new XmlElement( namespace_uri, local_name, local_name, attributes );
                 getCurrentXmlElement().addChildElement( element );
                 setCurrentXmlElement( element );
@@ -403,22 +568,7 @@ public final class PhyloXmlHandler extends DefaultHandler {
             else if ( local_name.equals( PhyloXmlMapping.PHYLOGENY ) ) {
                 setCurrentXmlElement( new XmlElement( "", "", "", null ) );
                 newPhylogeny();
-                final XmlElement element = new XmlElement( namespace_uri, local_name, local_name, attributes );
-                if ( element.isHasAttribute( PhyloXmlMapping.PHYLOGENY_IS_REROOTABLE_ATTR ) ) {
-                    getCurrentPhylogeny().setRerootable( Boolean.parseBoolean( element
-                                                                               .getAttribute( PhyloXmlMapping.PHYLOGENY_IS_REROOTABLE_ATTR ) ) );
-                }
-                if ( element.isHasAttribute( PhyloXmlMapping.PHYLOGENY_BRANCHLENGTH_UNIT_ATTR ) ) {
-                    getCurrentPhylogeny()
-                    .setDistanceUnit( element.getAttribute( PhyloXmlMapping.PHYLOGENY_BRANCHLENGTH_UNIT_ATTR ) );
-                }
-                if ( element.isHasAttribute( PhyloXmlMapping.PHYLOGENY_IS_ROOTED_ATTR ) ) {
-                    getCurrentPhylogeny().setRooted( Boolean.parseBoolean( element
-                                                                           .getAttribute( PhyloXmlMapping.PHYLOGENY_IS_ROOTED_ATTR ) ) );
-                }
-                if ( element.isHasAttribute( PhyloXmlMapping.PHYLOGENY_TYPE_ATTR ) ) {
-                    getCurrentPhylogeny().setType( ( element.getAttribute( PhyloXmlMapping.PHYLOGENY_TYPE_ATTR ) ) );
-                }
+                mapPhylogenyAttributes( attributes, getCurrentPhylogeny() );
             }
             else if ( local_name.equals( PHYLOXML ) ) {
             }
@@ -456,23 +606,99 @@ public final class PhyloXmlHandler extends DefaultHandler {
         return seqMap;
     }
 
+    private static void checkDistanceNotSet( final PhylogenyNode node ) throws PhylogenyParserException {
+        if ( node.getDistanceToParent() != PhylogenyDataUtil.BRANCH_LENGTH_DEFAULT ) {
+            throw new PhylogenyParserException( "ill advised attempt to set distance twice for the same clade (probably via element and via attribute)" );
+        }
+    }
+
+    private static boolean isWhitespace( final char c ) {
+        return ( c == ' ' ) || ( c == '\t' ) || ( c == '\n' ) || ( c == '\r' ) || ( c == '\f' ) || ( c == '\u000B' );
+    }
+
+    private static void mapCladeAttributesToPhylogenyNode( final String branch_length,
+                                                           final String collapse,
+                                                           final PhylogenyNode node ) throws PhylogenyParserException {
+        if ( branch_length != null ) {
+            double d = 0;
+            try {
+                d = Double.parseDouble( branch_length );
+            }
+            catch ( final NumberFormatException e ) {
+                throw new PhylogenyParserException( "ill formatted distance in clade attribute [" + branch_length
+                        + "]: " + e.getMessage() );
+            }
+            node.setDistanceToParent( d );
+        }
+        if ( !ForesterUtil.isEmpty( collapse ) && collapse.trim().equalsIgnoreCase( "true" ) ) {
+            node.setCollapse( true );
+        }
+    }
+
+    private static void mapChildElementToPhylogeny( final XmlElement element, final Phylogeny phylogeny )
+            throws PhylogenyParserException, PhyloXmlDataFormatException {
+        final String qualified_name = element.getQualifiedName();
+        if ( qualified_name.equals( PhyloXmlMapping.PHYLOGENY_NAME ) ) {
+            phylogeny.setName( element.getValueAsString() );
+        }
+        else if ( qualified_name.equals( PhyloXmlMapping.PHYLOGENY_DESCRIPTION ) ) {
+            phylogeny.setDescription( element.getValueAsString() );
+        }
+        else if ( qualified_name.equals( PhyloXmlMapping.IDENTIFIER ) ) {
+            phylogeny.setIdentifier( ( Identifier ) IdentifierParser.getInstance().parse( element ) );
+        }
+        else if ( qualified_name.equals( PhyloXmlMapping.CONFIDENCE ) ) {
+            phylogeny.setConfidence( ( Confidence ) ConfidenceParser.getInstance().parse( element ) );
+        }
+    }
+
     private static void mapElementToPhylogeny( final XmlElement xml_element, final Phylogeny phylogeny )
             throws PhylogenyParserException, PhyloXmlDataFormatException {
         for( int i = 0; i < xml_element.getNumberOfChildElements(); ++i ) {
-            final XmlElement element = xml_element.getChildElement( i );
-            final String qualified_name = element.getQualifiedName();
-            if ( qualified_name.equals( PhyloXmlMapping.PHYLOGENY_NAME ) ) {
-                phylogeny.setName( element.getValueAsString() );
-            }
-            else if ( qualified_name.equals( PhyloXmlMapping.PHYLOGENY_DESCRIPTION ) ) {
-                phylogeny.setDescription( element.getValueAsString() );
-            }
-            else if ( qualified_name.equals( PhyloXmlMapping.IDENTIFIER ) ) {
-                phylogeny.setIdentifier( ( Identifier ) IdentifierParser.getInstance().parse( element ) );
+            mapChildElementToPhylogeny( xml_element.getChildElement( i ), phylogeny );
+        }
+    }
+
+    private static void mapPhylogenyAttributes( final Attributes attributes, final Phylogeny phylogeny ) {
+        final String rerootable = attributes.getValue( PhyloXmlMapping.PHYLOGENY_IS_REROOTABLE_ATTR );
+        if ( rerootable != null ) {
+            phylogeny.setRerootable( Boolean.parseBoolean( rerootable ) );
+        }
+        final String branch_length_unit = attributes.getValue( PhyloXmlMapping.PHYLOGENY_BRANCHLENGTH_UNIT_ATTR );
+        if ( branch_length_unit != null ) {
+            phylogeny.setDistanceUnit( branch_length_unit );
+        }
+        final String rooted = attributes.getValue( PhyloXmlMapping.PHYLOGENY_IS_ROOTED_ATTR );
+        if ( rooted != null ) {
+            phylogeny.setRooted( Boolean.parseBoolean( rooted ) );
+        }
+        final String type = attributes.getValue( PhyloXmlMapping.PHYLOGENY_TYPE_ATTR );
+        if ( type != null ) {
+            phylogeny.setType( type );
+        }
+    }
+
+    /**
+     * Returns the characters of a value with runs of whitespace replaced by
+     * single spaces, and trimmed (as XmlElement.getValueAsString() does).
+     *
+     */
+    private static String normalizeValue( final StringBuilder value ) {
+        final StringBuilder sb = new StringBuilder( value.length() );
+        boolean whitespace = false;
+        for( int i = 0; i < value.length(); ++i ) {
+            final char c = value.charAt( i );
+            if ( isWhitespace( c ) ) {
+                whitespace = true;
             }
-            else if ( qualified_name.equals( PhyloXmlMapping.CONFIDENCE ) ) {
-                phylogeny.setConfidence( ( Confidence ) ConfidenceParser.getInstance().parse( element ) );
+            else {
+                if ( whitespace && ( sb.length() > 0 ) ) {
+                    sb.append( ' ' );
+                }
+                whitespace = false;
+                sb.append( c );
             }
         }
+        return sb.toString().trim();
     }
 }
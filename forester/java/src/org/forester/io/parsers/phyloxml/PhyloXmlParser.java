@@ -36,6 +36,8 @@ import java.io.StringReader;
 import java.net.URL;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.SynchronousQueue;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
@@ -44,6 +46,7 @@ import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 
+import org.forester.io.parsers.IteratingPhylogenyParser;
 import org.forester.io.parsers.PhylogenyParser;
 import org.forester.io.parsers.util.PhylogenyParserException;
 import org.forester.phylogeny.Phylogeny;
@@ -57,24 +60,41 @@ import org.xml.sax.SAXParseException;
 import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
 
-public class PhyloXmlParser implements PhylogenyParser {
-
-    final public static String   JAXP_SCHEMA_LANGUAGE                       = "http://java.sun.com/xml/jaxp/properties/schemaLanguage";
-    final public static String   W3C_XML_SCHEMA                             = "http://www.w3.org/2001/XMLSchema";
-    final public static String   JAXP_SCHEMA_SOURCE                         = "http://java.sun.com/xml/jaxp/properties/schemaSource";
-    final public static String   SAX_FEATURES_VALIDATION                    = "http://xml.org/sax/features/validation";
-    final public static String   APACHE_FEATURES_VALIDATION_SCHEMA          = "http://apache.org/xml/features/validation/schema";
-    final public static String   APACHE_FEATURES_VALIDATION_SCHEMA_FULL     = "http://apache.org/xml/features/validation/schema-full-checking";
-    final public static String   APACHE_PROPERTIES_SCHEMA_EXTERNAL_LOCATION = "http://apache.org/xml/properties/schema/external-schemaLocation";
-    final static private boolean TIME                                       = false;
-    private Object               _source;
-    private boolean              _valid;
-    private boolean              _zipped_inputstream;
-    private int                  _error_count;
-    private int                  _warning_count;
-    private String               _schema_location;
-    private StringBuffer         _error_messages;
-    private StringBuffer         _warning_messages;
+/*
+ * Parses phyloXML, either all at once (parse()), or one phylogeny at a time
+ * (hasNext() and next()).
+ *
+ * When iterating, the document is parsed on a separate thread, which hands
+ * each phylogeny over as soon as its closing tag has been read, and then
+ * waits until it has been taken. Hence, at most three phylogenies (the one
+ * returned last, the one returned next, and the one being parsed) are held in
+ * memory, regardless of the number of phylogenies in the document. reset()
+ * and setSource() stop the parsing thread.
+ *
+ */
+public class PhyloXmlParser implements PhylogenyParser, IteratingPhylogenyParser {
+
+    final public static String    JAXP_SCHEMA_LANGUAGE                       = "http://java.sun.com/xml/jaxp/properties/schemaLanguage";
+    final public static String    W3C_XML_SCHEMA                             = "http://www.w3.org/2001/XMLSchema";
+    final public static String    JAXP_SCHEMA_SOURCE                         = "http://java.sun.com/xml/jaxp/properties/schemaSource";
+    final public static String    SAX_FEATURES_VALIDATION                    = "http://xml.org/sax/features/validation";
+    final public static String    APACHE_FEATURES_VALIDATION_SCHEMA          = "http://apache.org/xml/features/validation/schema";
+    final public static String    APACHE_FEATURES_VALIDATION_SCHEMA_FULL     = "http://apache.org/xml/features/validation/schema-full-checking";
+    final public static String    APACHE_PROPERTIES_SCHEMA_EXTERNAL_LOCATION = "http://apache.org/xml/properties/schema/external-schemaLocation";
+    final static private boolean  TIME                                       = false;
+    final static private Object   END                                        = new Object();
+    private Object                _source;
+    private boolean               _valid;
+    private boolean               _zipped_inputstream;
+    private boolean               _direct_mapping;
+    private int                   _error_count;
+    private int                   _warning_count;
+    private String                _schema_location;
+    private StringBuffer          _error_messages;
+    private StringBuffer          _warning_messages;
+    private Object                _next;
+    private Thread                _thread;
+    private BlockingQueue<Object> _queue;
 
     private PhyloXmlParser() {
         init();
@@ -89,9 +109,8 @@ public class PhyloXmlParser implements PhylogenyParser {
         return _error_messages;
     }
 
-    private Reader getReaderFromZipFile() throws IOException {
+    private Reader getReaderFromZipFile( final ZipFile zip_file ) throws IOException {
         Reader reader = null;
-        final ZipFile zip_file = new ZipFile( getSource().toString() );
         final Enumeration<?> zip_file_entries = zip_file.entries();
         while ( zip_file_entries.hasMoreElements() ) {
             final ZipEntry zip_file_entry = ( ZipEntry ) zip_file_entries.nextElement();
@@ -101,12 +120,6 @@ public class PhyloXmlParser implements PhylogenyParser {
                 break;
             }
         }
-        try {
-            zip_file.close();
-        }
-        catch ( final Exception e ) {
-            // Ignore
-        }
         return reader;
     }
 
@@ -130,6 +143,10 @@ public class PhyloXmlParser implements PhylogenyParser {
         setZippedInputstream( false );
     }
 
+    public boolean isDirectMapping() {
+        return _direct_mapping;
+    }
+
     public boolean isValid() {
         return _valid;
     }
@@ -138,10 +155,47 @@ public class PhyloXmlParser implements PhylogenyParser {
         return _zipped_inputstream;
     }
 
+    @Override
+    public boolean hasNext() {
+        if ( _next == null ) {
+            startIteration();
+        }
+        return _next != END;
+    }
+
+    /**
+     * Returns the next phylogeny of the source, or null if all have been
+     * returned.
+     *
+     */
+    @Override
+    public Phylogeny next() throws IOException, PhylogenyParserException {
+        if ( !hasNext() ) {
+            return null;
+        }
+        final Object next = _next;
+        if ( next instanceof PhylogenyParserException ) {
+            _next = END;
+            throw ( PhylogenyParserException ) next;
+        }
+        _next = take();
+        return ( Phylogeny ) next;
+    }
+
     @Override
     public Phylogeny[] parse() throws IOException, PhylogenyParserException {
         reset();
-        final PhyloXmlHandler handler = new PhyloXmlHandler();
+        final PhyloXmlHandler handler = new PhyloXmlHandler( null, isDirectMapping() );
+        parse( handler );
+        final Phylogeny[] ps = new Phylogeny[ handler.getPhylogenies().size() ];
+        int i = 0;
+        for( final Phylogeny phylogeny : handler.getPhylogenies() ) {
+            ps[ i++ ] = phylogeny;
+        }
+        return ps;
+    }
+
+    private void parse( final PhyloXmlHandler handler ) throws PhylogenyParserException {
         final SAXParserFactory factory = SAXParserFactory.newInstance();
         factory.setNamespaceAware( true );
         try {
@@ -184,16 +238,28 @@ public class PhyloXmlParser implements PhylogenyParser {
             if ( getSource() instanceof File ) {
                 if ( !getSource().toString().toLowerCase().endsWith( ".zip" ) ) {
                     final InputStream is = new FileInputStream( (File) getSource() );
-                    final InputStreamReader isr = new InputStreamReader( is, ForesterConstants.UTF_8 );
-                    xml_reader.parse( new InputSource( new BufferedReader( isr ) ) );
+                    try {
+                        final InputStreamReader isr = new InputStreamReader( is, ForesterConstants.UTF_8 );
+                        xml_reader.parse( new InputSource( new BufferedReader( isr ) ) );
+                    }
+                    finally {
+                        is.close();
+                    }
                 }
                 else {
-                    final Reader reader = getReaderFromZipFile();
-                    if ( reader == null ) {
-                        throw new PhylogenyParserException( "zip file \"" + getSource()
-                                                            + "\" appears not to contain any entries" );
+                    // The zip file must stay open while its entry is read.
+                    final ZipFile zip_file = new ZipFile( getSource().toString() );
+                    try {
+                        final Reader reader = getReaderFromZipFile( zip_file );
+                        if ( reader == null ) {
+                            throw new PhylogenyParserException( "zip file \"" + getSource()
+                                                                + "\" appears not to contain any entries" );
+                        }
+                        xml_reader.parse( new InputSource( new BufferedReader( reader ) ) );
+                    }
+                    finally {
+                        zip_file.close();
                     }
-                    xml_reader.parse( new InputSource( new BufferedReader( reader ) ) );
                 }
             }
             else if ( getSource() instanceof InputSource ) {
@@ -242,15 +308,11 @@ public class PhyloXmlParser implements PhylogenyParser {
             err.printStackTrace();
             throw new PhylogenyParserException( "severe error: " + err.getLocalizedMessage() );
         }
-        final Phylogeny[] ps = new Phylogeny[ handler.getPhylogenies().size() ];
-        int i = 0;
-        for( final Phylogeny phylogeny : handler.getPhylogenies() ) {
-            ps[ i++ ] = phylogeny;
-        }
-        return ps;
     }
 
-    private void reset() {
+    @Override
+    public void reset() {
+        stopIteration();
         _valid = true;
         _error_count = 0;
         _warning_count = 0;
@@ -261,6 +323,18 @@ public class PhyloXmlParser implements PhylogenyParser {
     @Override
     public void setSource( final Object source ) {
         _source = source;
+        reset();
+    }
+
+    /**
+     * Sets whether to map phyloXML elements to node and branch data directly,
+     * as they are read, instead of first building a tree of XmlElements for
+     * each phylogeny. The resulting phylogenies are the same; direct mapping
+     * needs less memory and time for large, richly annotated phylogenies.
+     *
+     */
+    public void setDirectMapping( final boolean direct_mapping ) {
+        _direct_mapping = direct_mapping;
     }
 
     public void setValidateAgainstSchema( final String schema_location ) {
@@ -271,6 +345,59 @@ public class PhyloXmlParser implements PhylogenyParser {
         _zipped_inputstream = zipped_inputstream;
     }
 
+    private void startIteration() {
+        final BlockingQueue<Object> queue = new SynchronousQueue<Object>();
+        final PhyloXmlHandler handler = new PhyloXmlHandler( queue, isDirectMapping() );
+        final Thread thread = new Thread( new Runnable() {
+
+            @Override
+            public void run() {
+                Object last = END;
+                try {
+                    parse( handler );
+                }
+                catch ( final PhylogenyParserException e ) {
+                    last = e;
+                }
+                try {
+                    queue.put( last );
+                }
+                catch ( final InterruptedException e ) {
+                    // Iteration has been stopped.
+                }
+            }
+        }, "phyloXML parser" );
+        thread.setDaemon( true );
+        _queue = queue;
+        _thread = thread;
+        thread.start();
+        _next = take();
+    }
+
+    private void stopIteration() {
+        if ( _thread != null ) {
+            _thread.interrupt();
+            _thread = null;
+        }
+        _queue = null;
+        _next = null;
+    }
+
+    private Object take() {
+        try {
+            final Object next = _queue.take();
+            if ( ( next == END ) || ( next instanceof PhylogenyParserException ) ) {
+                _thread = null;
+            }
+            return next;
+        }
+        catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            stopIteration();
+            return new PhylogenyParserException( "interrupted while parsing [" + getSource() + "]" );
+        }
+    }
+
     public static PhyloXmlParser createPhyloXmlParserXsdValidating() {
         final PhyloXmlParser xml_parser = new PhyloXmlParser();
         final ClassLoader cl = PhyloXmlParser.class.getClassLoader();
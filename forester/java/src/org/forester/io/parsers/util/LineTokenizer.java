@@ -0,0 +1,482 @@
+// $Id:
+//
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2008-2009 Christian M. Zmasek
+// Copyright (C) 2008-2009 Burnham Institute for Medical Research
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: www.phylosoft.org/
+
+package org.forester.io.parsers.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.Charset;
+
+/*
+ * Reads lines from a stream of bytes (in an ASCII compatible encoding) into a
+ * reusable buffer and splits them into whitespace separated fields, without
+ * creating a String for each line or field.
+ *
+ * Fields are the same as the elements of line.split( "\\s+" ) (i.e. a line
+ * starting with whitespace has an empty first field). Numbers are parsed
+ * directly from the buffer; Strings are only created on request, either as
+ * new Strings or from a cache of canonical instances (for fields with few
+ * distinct values, such as domain ids).
+ *
+ * Lines are terminated by '\n', '\r', or "\r\n", as in BufferedReader.
+ *
+ */
+public final class LineTokenizer {
+
+    private final static int      BUFFER_SIZE      = 1 << 16;
+    // Parsing of doubles: exact powers of ten as doubles (up to 10^22), and
+    // double-double approximations of 10^MIN_EXPONENT to 10^MAX_EXPONENT.
+    private final static int      MAX_EXACT        = 22;
+    private final static int      MAX_EXPONENT     = 290;
+    private final static int      MIN_EXPONENT     = -290;
+    private final static long     MAX_MANTISSA     = 1L << 53;
+    private final static double[] EXACT_POWERS     = new double[ MAX_EXACT + 1 ];
+    private final static double[] POWERS_HI        = new double[ ( MAX_EXPONENT - MIN_EXPONENT ) + 1 ];
+    private final static double[] POWERS_LO        = new double[ ( MAX_EXPONENT - MIN_EXPONENT ) + 1 ];
+    // Bound for the relative error of the double-double products.
+    private final static double   RELATIVE_ERROR   = Math.scalb( 1.0, -100 );
+    private byte[]                _buffer;
+    private int                   _buffer_end;
+    private String[]              _cache;
+    private int                   _cache_size;
+    private final Charset         _charset;
+    private int[]                 _ends;
+    private boolean               _eof;
+    private final InputStream     _in;
+    private int                   _line_end;
+    private int                   _line_start;
+    private final int             _max_fields;
+    private int                   _number_of_fields;
+    private int                   _pos;
+    private int[]                 _starts;
+    static {
+        double p = 1;
+        for( int i = 0; i <= MAX_EXACT; ++i ) {
+            EXACT_POWERS[ i ] = p;
+            p *= 10;
+        }
+        final MathContext mc = new MathContext( 50 );
+        for( int e = MIN_EXPONENT; e <= MAX_EXPONENT; ++e ) {
+            final BigDecimal x = e >= 0 ? BigDecimal.TEN.pow( e ) : BigDecimal.ONE.divide( BigDecimal.TEN.pow( -e ),
+                                                                                              mc );
+            final double hi = x.doubleValue();
+            POWERS_HI[ e - MIN_EXPONENT ] = hi;
+            POWERS_LO[ e - MIN_EXPONENT ] = x.subtract( new BigDecimal( hi ) ).doubleValue();
+        }
+    }
+
+    /**
+     * @param in the stream to read from (not closed by this class)
+     * @param charset the (ASCII compatible) encoding of the stream, used to create Strings
+     * @param max_fields the maximal number of fields per line to split, the
+     * remainder of a line is ignored
+     */
+    public LineTokenizer( final InputStream in, final Charset charset, final int max_fields ) {
+        if ( max_fields < 1 ) {
+            throw new IllegalArgumentException( "maximal number of fields is out of range: " + max_fields );
+        }
+        _in = in;
+        _charset = charset;
+        _max_fields = max_fields;
+        _buffer = new byte[ BUFFER_SIZE ];
+        _buffer_end = 0;
+        _pos = 0;
+        _eof = false;
+        _starts = new int[ max_fields ];
+        _ends = new int[ max_fields ];
+        _number_of_fields = 0;
+        _cache = new String[ 1024 ];
+        _cache_size = 0;
+    }
+
+    /**
+     * Returns true if field i is equal to s.
+     *
+     */
+    public final boolean fieldEquals( final int i, final String s ) {
+        final int start = _starts[ i ];
+        final int length = _ends[ i ] - start;
+        if ( length != s.length() ) {
+            return isAscii( i ) ? false : getField( i ).equals( s );
+        }
+        for( int j = 0; j < length; ++j ) {
+            final int b = _buffer[ start + j ];
+            if ( ( b < 0 ) || ( b != s.charAt( j ) ) ) {
+                return isAscii( i ) ? false : getField( i ).equals( s );
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns field i as new String.
+     *
+     */
+    public final String getField( final int i ) {
+        return new String( _buffer, _starts[ i ], _ends[ i ] - _starts[ i ], _charset );
+    }
+
+    /**
+     * Returns field i as String, which is only created the first time a given
+     * value is encountered.
+     *
+     */
+    public final String getFieldAsCachedString( final int i ) {
+        if ( !isAscii( i ) ) {
+            return getField( i );
+        }
+        final int start = _starts[ i ];
+        final int end = _ends[ i ];
+        int h = 0;
+        for( int j = start; j < end; ++j ) {
+            h = ( 31 * h ) + _buffer[ j ];
+        }
+        final int mask = _cache.length - 1;
+        int k = mix( h ) & mask;
+        while ( _cache[ k ] != null ) {
+            final String s = _cache[ k ];
+            if ( ( s.hashCode() == h ) && fieldEquals( i, s ) ) {
+                return s;
+            }
+            k = ( k + 1 ) & mask;
+        }
+        final String s = getField( i );
+        _cache[ k ] = s;
+        if ( ++_cache_size > ( _cache.length >>> 1 ) ) {
+            rehash();
+        }
+        return s;
+    }
+
+    /**
+     * Returns the current line as new String (without line terminator).
+     *
+     */
+    public final String getLine() {
+        return new String( _buffer, _line_start, _line_end - _line_start, _charset );
+    }
+
+    /**
+     * Returns the number of fields of the current line (at most max_fields).
+     *
+     */
+    public final int getNumberOfFields() {
+        return _number_of_fields;
+    }
+
+    /**
+     * Returns true if the current line is empty.
+     *
+     */
+    public final boolean isEmpty() {
+        return _line_end == _line_start;
+    }
+
+    /**
+     * Returns true if the current line starts with c.
+     *
+     */
+    public final boolean startsWith( final char c ) {
+        return ( _line_end > _line_start ) && ( _buffer[ _line_start ] == c );
+    }
+
+    /**
+     * Advances to the next line.
+     *
+     * @return false if there are no more lines
+     * @throws IOException
+     */
+    public final boolean nextLine() throws IOException {
+        int scan = _pos;
+        while ( true ) {
+            for( int j = scan; j < _buffer_end; ++j ) {
+                final byte b = _buffer[ j ];
+                if ( ( b == '\n' ) || ( b == '\r' ) ) {
+                    if ( ( b == '\r' ) && ( ( j + 1 ) == _buffer_end ) && !_eof ) {
+                        // Need to know whether "\r\n".
+                        break;
+                    }
+                    _line_start = _pos;
+                    _line_end = j;
+                    _pos = ( ( b == '\r' ) && ( ( j + 1 ) < _buffer_end ) && ( _buffer[ j + 1 ] == '\n' ) ) ? j + 2
+                            : j + 1;
+                    tokenize();
+                    return true;
+                }
+                scan = j + 1;
+            }
+            if ( _eof ) {
+                if ( _pos < _buffer_end ) {
+                    _line_start = _pos;
+                    _line_end = _buffer_end;
+                    _pos = _buffer_end;
+                    tokenize();
+                    return true;
+                }
+                return false;
+            }
+            scan -= _pos;
+            fill();
+        }
+    }
+
+    /**
+     * Parses field i as double; gives the same result as Double.parseDouble.
+     *
+     * @throws NumberFormatException
+     */
+    public final double parseDouble( final int i ) {
+        int j = _starts[ i ];
+        final int end = _ends[ i ];
+        boolean negative = false;
+        if ( ( j < end ) && ( ( _buffer[ j ] == '-' ) || ( _buffer[ j ] == '+' ) ) ) {
+            negative = _buffer[ j ] == '-';
+            ++j;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int significant_digits = 0;
+        int exponent = 0;
+        boolean point = false;
+        for( ; j < end; ++j ) {
+            final int b = _buffer[ j ];
+            if ( ( b >= '0' ) && ( b <= '9' ) ) {
+                ++digits;
+                if ( ( mantissa != 0 ) || ( b != '0' ) ) {
+                    if ( ++significant_digits > 18 ) {
+                        return parseDoubleSlowly( i );
+                    }
+                    mantissa = ( mantissa * 10 ) + ( b - '0' );
+                }
+                if ( point ) {
+                    --exponent;
+                }
+            }
+            else if ( ( b == '.' ) && !point ) {
+                point = true;
+            }
+            else {
+                break;
+            }
+        }
+        if ( digits == 0 ) {
+            return parseDoubleSlowly( i );
+        }
+        if ( j < end ) {
+            if ( ( _buffer[ j ] != 'e' ) && ( _buffer[ j ] != 'E' ) ) {
+                return parseDoubleSlowly( i );
+            }
+            ++j;
+            boolean negative_exponent = false;
+            if ( ( j < end ) && ( ( _buffer[ j ] == '-' ) || ( _buffer[ j ] == '+' ) ) ) {
+                negative_exponent = _buffer[ j ] == '-';
+                ++j;
+            }
+            if ( ( j == end ) || ( ( end - j ) > 5 ) ) {
+                return parseDoubleSlowly( i );
+            }
+            int e = 0;
+            for( ; j < end; ++j ) {
+                final int b = _buffer[ j ];
+                if ( ( b < '0' ) || ( b > '9' ) ) {
+                    return parseDoubleSlowly( i );
+                }
+                e = ( e * 10 ) + ( b - '0' );
+            }
+            exponent += negative_exponent ? -e : e;
+        }
+        if ( mantissa == 0 ) {
+            return negative ? -0.0 : 0.0;
+        }
+        if ( mantissa >= MAX_MANTISSA ) {
+            return parseDoubleSlowly( i );
+        }
+        final double m = mantissa;
+        double d;
+        if ( ( exponent >= 0 ) && ( exponent <= MAX_EXACT ) ) {
+            // Both exact, hence a single (correctly rounded) operation.
+            d = m * EXACT_POWERS[ exponent ];
+        }
+        else if ( ( exponent < 0 ) && ( exponent >= -MAX_EXACT ) ) {
+            d = m / EXACT_POWERS[ -exponent ];
+        }
+        else if ( ( exponent >= MIN_EXPONENT ) && ( exponent <= MAX_EXPONENT ) ) {
+            d = multiply( m, exponent );
+            if ( Double.isNaN( d ) ) {
+                return parseDoubleSlowly( i );
+            }
+        }
+        else {
+            return parseDoubleSlowly( i );
+        }
+        return negative ? -d : d;
+    }
+
+    /**
+     * Parses field i as int; gives the same result as Integer.parseInt (for
+     * ASCII digits).
+     *
+     * @throws NumberFormatException
+     */
+    public final int parseInt( final int i ) {
+        int j = _starts[ i ];
+        final int end = _ends[ i ];
+        boolean negative = false;
+        if ( ( j < end ) && ( ( _buffer[ j ] == '-' ) || ( _buffer[ j ] == '+' ) ) ) {
+            negative = _buffer[ j ] == '-';
+            ++j;
+        }
+        if ( j == end ) {
+            throw new NumberFormatException( "For input string: \"" + getField( i ) + "\"" );
+        }
+        // Accumulated negatively, to include Integer.MIN_VALUE.
+        final long limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        long x = 0;
+        for( ; j < end; ++j ) {
+            final int b = _buffer[ j ];
+            if ( ( b < '0' ) || ( b > '9' ) ) {
+                return Integer.parseInt( getField( i ) );
+            }
+            x = ( x * 10 ) - ( b - '0' );
+            if ( x < limit ) {
+                throw new NumberFormatException( "For input string: \"" + getField( i ) + "\"" );
+            }
+        }
+        return ( int ) ( negative ? x : -x );
+    }
+
+    private final void fill() throws IOException {
+        if ( _pos > 0 ) {
+            System.arraycopy( _buffer, _pos, _buffer, 0, _buffer_end - _pos );
+            _buffer_end -= _pos;
+            _pos = 0;
+        }
+        if ( _buffer_end == _buffer.length ) {
+            final byte[] b = new byte[ _buffer.length * 2 ];
+            System.arraycopy( _buffer, 0, b, 0, _buffer_end );
+            _buffer = b;
+        }
+        final int n = _in.read( _buffer, _buffer_end, _buffer.length - _buffer_end );
+        if ( n < 0 ) {
+            _eof = true;
+        }
+        else {
+            _buffer_end += n;
+        }
+    }
+
+    private final boolean isAscii( final int i ) {
+        for( int j = _starts[ i ]; j < _ends[ i ]; ++j ) {
+            if ( _buffer[ j ] < 0 ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private final double parseDoubleSlowly( final int i ) {
+        return Double.parseDouble( getField( i ) );
+    }
+
+    private final void rehash() {
+        final String[] old = _cache;
+        _cache = new String[ old.length * 2 ];
+        final int mask = _cache.length - 1;
+        for( final String s : old ) {
+            if ( s != null ) {
+                int k = mix( s.hashCode() ) & mask;
+                while ( _cache[ k ] != null ) {
+                    k = ( k + 1 ) & mask;
+                }
+                _cache[ k ] = s;
+            }
+        }
+    }
+
+    private final void tokenize() {
+        int n = 0;
+        int j = _line_start;
+        final int end = _line_end;
+        if ( ( j < end ) && isWhitespace( _buffer[ j ] ) ) {
+            // As split(): leading whitespace results in an empty first field.
+            _starts[ 0 ] = j;
+            _ends[ 0 ] = j;
+            ++n;
+        }
+        while ( n < _max_fields ) {
+            while ( ( j < end ) && isWhitespace( _buffer[ j ] ) ) {
+                ++j;
+            }
+            if ( j == end ) {
+                break;
+            }
+            _starts[ n ] = j;
+            while ( ( j < end ) && !isWhitespace( _buffer[ j ] ) ) {
+                ++j;
+            }
+            _ends[ n ] = j;
+            ++n;
+        }
+        _number_of_fields = n;
+    }
+
+    private final static boolean isWhitespace( final byte b ) {
+        return ( b == ' ' ) || ( b == '\t' ) || ( b == '\n' ) || ( b == 0x0B ) || ( b == '\f' ) || ( b == '\r' );
+    }
+
+    private final static int mix( final int h ) {
+        return h ^ ( h >>> 16 );
+    }
+
+    /**
+     * Returns m * 10^exponent, correctly rounded, or NaN if correct rounding
+     * cannot be guaranteed (in which case the caller falls back to
+     * Double.parseDouble). m is an integer smaller than 2^53.
+     *
+     */
+    private final static double multiply( final double m, final int exponent ) {
+        final double p_hi = POWERS_HI[ exponent - MIN_EXPONENT ];
+        final double p_lo = POWERS_LO[ exponent - MIN_EXPONENT ];
+        // m * (p_hi + p_lo) as hi + lo, with a relative error well below
+        // RELATIVE_ERROR.
+        final double hi = m * p_hi;
+        final double lo = Math.fma( m, p_hi, -hi ) + ( m * p_lo );
+        final double r = hi + lo;
+        if ( !( ( r >= Double.MIN_NORMAL ) && ( r < Double.MAX_VALUE ) ) ) {
+            return Double.NaN;
+        }
+        // Distance of hi + lo from r (hi - r is exact), and from the nearest
+        // point halfway between r and one of its neighbors.
+        final double d = ( hi - r ) + lo;
+        final double half = ( d < 0 ? r - Math.nextDown( r ) : Math.nextUp( r ) - r ) / 2;
+        if ( ( half - Math.abs( d ) ) <= ( r * RELATIVE_ERROR ) ) {
+            return Double.NaN;
+        }
+        return r;
+    }
+}
@@ -39,6 +39,8 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.forester.io.parsers.PhylogenyParser;
+import org.forester.io.parsers.binary.BinaryPhylogenyFormat;
+import org.forester.io.parsers.binary.BinaryPhylogenyParser;
 import org.forester.io.parsers.nexus.NexusPhylogeniesParser;
 import org.forester.io.parsers.nhx.NHXParser;
 import org.forester.io.parsers.nhx.NHXParser.TAXONOMY_EXTRACTION;
@@ -98,6 +100,9 @@ public final class ParserUtils {
                                                                            final boolean phyloxml_validate_against_xsd )
                                                                                    throws FileNotFoundException, IOException {
         PhylogenyParser parser = null;
+        if ( BinaryPhylogenyParser.isBinaryPhylogenyFile( file ) ) {
+            return new BinaryPhylogenyParser();
+        }
         final String first_line = ForesterUtil.getFirstLine( file ).trim().toLowerCase();
         if ( first_line.startsWith( "<" ) ) {
             parser = PhyloXmlParser.createPhyloXmlParser();
@@ -420,6 +425,9 @@ public final class ParserUtils {
                 || filename_lc.endsWith( ".nwk" ) ) {
             parser = new NHXParser();
         }
+        else if ( filename_lc.endsWith( BinaryPhylogenyFormat.FILE_SUFFIX ) ) {
+            parser = new BinaryPhylogenyParser();
+        }
         return parser;
     }
 
@@ -0,0 +1,574 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.io.writers;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forester.io.parsers.binary.BinaryPhylogenyFormat;
+import org.forester.phylogeny.Phylogeny;
+import org.forester.phylogeny.PhylogenyNode;
+import org.forester.phylogeny.data.Accession;
+import org.forester.phylogeny.data.Annotation;
+import org.forester.phylogeny.data.BinaryCharacters;
+import org.forester.phylogeny.data.BranchData;
+import org.forester.phylogeny.data.Confidence;
+import org.forester.phylogeny.data.Date;
+import org.forester.phylogeny.data.Distribution;
+import org.forester.phylogeny.data.DomainArchitecture;
+import org.forester.phylogeny.data.Event;
+import org.forester.phylogeny.data.Identifier;
+import org.forester.phylogeny.data.NodeData;
+import org.forester.phylogeny.data.NodeVisualData;
+import org.forester.phylogeny.data.Point;
+import org.forester.phylogeny.data.Polygon;
+import org.forester.phylogeny.data.PropertiesList;
+import org.forester.phylogeny.data.Property;
+import org.forester.phylogeny.data.ProteinDomain;
+import org.forester.phylogeny.data.Reference;
+import org.forester.phylogeny.data.Sequence;
+import org.forester.phylogeny.data.Taxonomy;
+import org.forester.phylogeny.data.Uri;
+
+/*
+ * Writes phylogenies in the forester binary phylogeny format (see
+ * BinaryPhylogenyFormat), which can be read by BinaryPhylogenyParser.
+ *
+ * Everything written to phyloXML is preserved: phylogeny level data,
+ * topology, branch lengths, node names, collapse states, node data
+ * (events, taxonomies, sequences, distributions, dates, binary characters,
+ * properties, references, vectors and node visual data) and branch data
+ * (colors, confidences and widths). Sequence relations are not preserved.
+ *
+ */
+public final class BinaryPhylogenyWriter {
+
+    private final Map<String, Integer> _string_indices;
+    private final List<String>         _strings;
+
+    public BinaryPhylogenyWriter() {
+        _string_indices = new HashMap<String, Integer>();
+        _strings = new ArrayList<String>();
+    }
+
+    public byte[] toBinary( final Phylogeny tree ) throws IOException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        toBinary( os, new Phylogeny[] { tree } );
+        return os.toByteArray();
+    }
+
+    public void toBinary( final File out_file, final Phylogeny[] trees ) throws IOException {
+        if ( out_file.exists() ) {
+            throw new IOException( "attempt to overwrite existing file \"" + out_file.getAbsolutePath() + "\"" );
+        }
+        final OutputStream os = new BufferedOutputStream( new FileOutputStream( out_file ) );
+        try {
+            toBinary( os, trees );
+        }
+        finally {
+            os.close();
+        }
+    }
+
+    public void toBinary( final OutputStream os, final Phylogeny[] trees ) throws IOException {
+        final DataOutputStream out = new DataOutputStream( os );
+        out.write( BinaryPhylogenyFormat.MAGIC );
+        out.writeShort( BinaryPhylogenyFormat.VERSION );
+        out.writeInt( trees.length );
+        for( final Phylogeny tree : trees ) {
+            final byte[] block = createBlock( tree );
+            out.writeLong( block.length );
+            out.write( block );
+        }
+        out.flush();
+    }
+
+    private byte[] createBlock( final Phylogeny tree ) throws IOException {
+        _string_indices.clear();
+        _strings.clear();
+        // The body is written first, since it determines the string table.
+        final ByteArrayOutputStream body_bytes = new ByteArrayOutputStream();
+        final DataOutputStream body = new DataOutputStream( body_bytes );
+        writePhylogenyData( body, tree );
+        final List<PhylogenyNode> nodes = new ArrayList<PhylogenyNode>();
+        final List<Integer> parents = new ArrayList<Integer>();
+        if ( !tree.isEmpty() ) {
+            // Preorder, with the children of each node in order.
+            final List<PhylogenyNode> stack = new ArrayList<PhylogenyNode>();
+            final List<Integer> stack_parents = new ArrayList<Integer>();
+            stack.add( tree.getRoot() );
+            stack_parents.add( BinaryPhylogenyFormat.NONE );
+            while ( !stack.isEmpty() ) {
+                final PhylogenyNode node = stack.remove( stack.size() - 1 );
+                final int parent = stack_parents.remove( stack_parents.size() - 1 );
+                final int index = nodes.size();
+                nodes.add( node );
+                parents.add( parent );
+                for( int i = node.getNumberOfDescendants() - 1; i >= 0; --i ) {
+                    stack.add( node.getChildNode( i ) );
+                    stack_parents.add( index );
+                }
+            }
+        }
+        final int n = nodes.size();
+        final short[] data_masks = new short[ n ];
+        final byte[] branch_data_masks = new byte[ n ];
+        final byte[] flags = new byte[ n ];
+        for( int i = 0; i < n; ++i ) {
+            final PhylogenyNode node = nodes.get( i );
+            if ( node.isHasNodeData() ) {
+                data_masks[ i ] = calculateDataMask( node.getNodeData() );
+            }
+            branch_data_masks[ i ] = calculateBranchDataMask( node.getBranchData() );
+            if ( node.isCollapse() ) {
+                flags[ i ] |= BinaryPhylogenyFormat.NODE_COLLAPSE;
+            }
+            if ( data_masks[ i ] != 0 ) {
+                flags[ i ] |= BinaryPhylogenyFormat.NODE_NODE_DATA;
+            }
+            if ( branch_data_masks[ i ] != 0 ) {
+                flags[ i ] |= BinaryPhylogenyFormat.NODE_BRANCH_DATA;
+            }
+        }
+        body.writeInt( n );
+        for( int i = 0; i < n; ++i ) {
+            body.writeInt( parents.get( i ) );
+        }
+        for( int i = 0; i < n; ++i ) {
+            body.writeDouble( nodes.get( i ).getDistanceToParent() );
+        }
+        for( int i = 0; i < n; ++i ) {
+            writeString( body, nodes.get( i ).getName() );
+        }
+        body.write( flags );
+        for( int i = 0; i < n; ++i ) {
+            if ( data_masks[ i ] != 0 ) {
+                body.writeShort( data_masks[ i ] );
+                writeNodeData( body, nodes.get( i ).getNodeData(), data_masks[ i ] );
+            }
+            if ( branch_data_masks[ i ] != 0 ) {
+                body.writeByte( branch_data_masks[ i ] );
+                writeBranchData( body, nodes.get( i ).getBranchData(), branch_data_masks[ i ] );
+            }
+        }
+        body.flush();
+        final ByteArrayOutputStream block_bytes = new ByteArrayOutputStream( body_bytes.size() + 1024 );
+        final DataOutputStream block = new DataOutputStream( block_bytes );
+        block.writeInt( _strings.size() );
+        for( final String s : _strings ) {
+            final byte[] b = s.getBytes( StandardCharsets.UTF_8 );
+            block.writeInt( b.length );
+            block.write( b );
+        }
+        body_bytes.writeTo( block );
+        block.flush();
+        return block_bytes.toByteArray();
+    }
+
+    private void writeAccession( final DataOutputStream out, final Accession accession ) throws IOException {
+        writeString( out, accession.getValue() );
+        writeString( out, accession.getSource() );
+        writeString( out, accession.getComment() );
+    }
+
+    private void writeAnnotation( final DataOutputStream out, final Annotation annotation ) throws IOException {
+        writeString( out, annotation.getRefSource() );
+        writeString( out, annotation.getRefValue() );
+        writeString( out, annotation.getDesc() );
+        writeString( out, annotation.getEvidence() );
+        writeString( out, annotation.getSource() );
+        writeString( out, annotation.getType() );
+        out.writeBoolean( annotation.getConfidence() != null );
+        if ( annotation.getConfidence() != null ) {
+            writeConfidence( out, annotation.getConfidence() );
+        }
+        out.writeBoolean( annotation.getProperties() != null );
+        if ( annotation.getProperties() != null ) {
+            writeProperties( out, annotation.getProperties() );
+        }
+        writeUris( out, annotation.getUris() );
+    }
+
+    private void writeBigDecimal( final DataOutputStream out, final BigDecimal value ) throws IOException {
+        writeString( out, value != null ? value.toString() : null );
+    }
+
+    private void writeBranchData( final DataOutputStream out, final BranchData data, final byte mask )
+            throws IOException {
+        if ( ( mask & BinaryPhylogenyFormat.BRANCH_DATA_COLOR ) != 0 ) {
+            out.writeInt( data.getBranchColor().getValue().getRGB() );
+        }
+        if ( ( mask & BinaryPhylogenyFormat.BRANCH_DATA_CONFIDENCES ) != 0 ) {
+            out.writeInt( data.getNumberOfConfidences() );
+            for( final Confidence confidence : data.getConfidences() ) {
+                writeConfidence( out, confidence );
+            }
+        }
+        if ( ( mask & BinaryPhylogenyFormat.BRANCH_DATA_WIDTH ) != 0 ) {
+            out.writeDouble( data.getBranchWidth().getValue() );
+        }
+    }
+
+    private void writeConfidence( final DataOutputStream out, final Confidence confidence ) throws IOException {
+        out.writeDouble( confidence.getValue() );
+        out.writeDouble( confidence.getStandardDeviation() );
+        writeString( out, confidence.getType() );
+    }
+
+    private void writeDomainArchitecture( final DataOutputStream out, final DomainArchitecture da )
+            throws IOException {
+        out.writeInt( da.getTotalLength() );
+        out.writeInt( da.getNumberOfDomains() );
+        for( int i = 0; i < da.getNumberOfDomains(); ++i ) {
+            final ProteinDomain domain = da.getDomain( i );
+            writeString( out, domain.getName() );
+            out.writeInt( domain.getFrom() );
+            out.writeInt( domain.getTo() );
+            writeString( out, domain.getId() );
+            out.writeDouble( domain.getConfidence() );
+        }
+    }
+
+    private void writeIdentifier( final DataOutputStream out, final Identifier identifier ) throws IOException {
+        writeString( out, identifier.getValue() );
+        writeString( out, identifier.getProvider() );
+    }
+
+    private void writeNodeData( final DataOutputStream out, final NodeData data, final short mask ) throws IOException {
+        if ( ( mask & BinaryPhylogenyFormat.DATA_EVENT ) != 0 ) {
+            final Event event = data.getEvent();
+            out.writeInt( event.getNumberOfDuplications() );
+            out.writeInt( event.getNumberOfSpeciations() );
+            out.writeInt( event.getNumberOfGeneLosses() );
+            writeString( out, event.getEventType().name() );
+            out.writeBoolean( event.getConfidence() != null );
+            if ( event.getConfidence() != null ) {
+                writeConfidence( out, event.getConfidence() );
+            }
+        }
+        if ( ( mask & BinaryPhylogenyFormat.DATA_TAXONOMIES ) != 0 ) {
+            out.writeInt( countNonNull( data.getTaxonomies() ) );
+            for( final Taxonomy taxonomy : data.getTaxonomies() ) {
+                if ( taxonomy != null ) {
+                    writeTaxonomy( out, taxonomy );
+                }
+            }
+        }
+        if ( ( mask & BinaryPhylogenyFormat.DATA_SEQUENCES ) != 0 ) {
+            out.writeInt( countNonNull( data.getSequences() ) );
+            for( final Sequence sequence : data.getSequences() ) {
+                if ( sequence != null ) {
+                    writeSequence( out, sequence );
+                }
+            }
+        }
+        if ( ( mask & BinaryPhylogenyFormat.DATA_DISTRIBUTIONS ) != 0 ) {
+            out.writeInt( countNonNull( data.getDistributions() ) );
+            for( final Distribution distribution : data.getDistributions() ) {
+                if ( distribution != null ) {
+                    writeString( out, distribution.getDesc() );
+                    writePoints( out, distribution.getPoints() );
+                    if ( distribution.getPolygons() == null ) {
+                        out.writeInt( BinaryPhylogenyFormat.NONE );
+                    }
+                    else {
+                        out.writeInt( distribution.getPolygons().size() );
+                        for( final Polygon polygon : distribution.getPolygons() ) {
+                            writePoints( out, polygon.getPoints() );
+                        }
+                    }
+                }
+            }
+        }
+        if ( ( mask & BinaryPhylogenyFormat.DATA_DATE ) != 0 ) {
+            final Date date = data.getDate();
+            writeString( out, date.getDesc() );
+            writeBigDecimal( out, date.getValue() );
+            writeBigDecimal( out, date.getMin() );
+            writeBigDecimal( out, date.getMax() );
+            writeString( out, date.getUnit() );
+        }
+        if ( ( mask & BinaryPhylogenyFormat.DATA_BINARY_CHARACTERS ) != 0 ) {
+            final BinaryCharacters bc = data.getBinaryCharacters();
+            writeString( out, bc.getType() );
+            writeStrings( out, bc.getPresentCharacters() );
+            writeStrings( out, bc.getGainedCharacters() );
+            writeStrings( out, bc.getLostCharacters() );
+            out.writeInt( bc.getPresentCount() );
+            out.writeInt( bc.getGainedCount() );
+            out.writeInt( bc.getLostCount() );
+        }
+        if ( ( mask & BinaryPhylogenyFormat.DATA_PROPERTIES ) != 0 ) {
+            writeProperties( out, data.getProperties() );
+        }
+        if ( ( mask & BinaryPhylogenyFormat.DATA_REFERENCES ) != 0 ) {
+            out.writeInt( countNonNull( data.getReferences() ) );
+            for( final Reference reference : data.getReferences() ) {
+                if ( reference != null ) {
+                    writeString( out, reference.getDescription() );
+                    writeString( out, reference.getDoi() );
+                }
+            }
+        }
+        if ( ( mask & BinaryPhylogenyFormat.DATA_VECTOR ) != 0 ) {
+            out.writeInt( data.getVector().size() );
+            for( final Double d : data.getVector() ) {
+                out.writeDouble( d );
+            }
+        }
+        if ( ( mask & BinaryPhylogenyFormat.DATA_NODE_VISUAL_DATA ) != 0 ) {
+            final NodeVisualData vd = data.getNodeVisualData();
+            writeString( out, vd.getFontName() );
+            writeString( out, vd.getFontStyle() != null ? vd.getFontStyle().name() : null );
+            out.writeByte( vd.getFontSize() );
+            out.writeBoolean( vd.getFontColor() != null );
+            if ( vd.getFontColor() != null ) {
+                out.writeInt( vd.getFontColor().getRGB() );
+            }
+            writeString( out, vd.getShape() != null ? vd.getShape().name() : null );
+            writeString( out, vd.getFillType() != null ? vd.getFillType().name() : null );
+            out.writeBoolean( vd.getNodeColor() != null );
+            if ( vd.getNodeColor() != null ) {
+                out.writeInt( vd.getNodeColor().getRGB() );
+            }
+            out.writeFloat( vd.getSize() );
+            out.writeFloat( vd.getTransparency() );
+        }
+    }
+
+    private void writePhylogenyData( final DataOutputStream out, final Phylogeny tree ) throws IOException {
+        byte flags = 0;
+        if ( tree.isRooted() ) {
+            flags |= BinaryPhylogenyFormat.PHYLOGENY_ROOTED;
+        }
+        if ( tree.isRerootable() ) {
+            flags |= BinaryPhylogenyFormat.PHYLOGENY_REROOTABLE;
+        }
+        if ( tree.getConfidence() != null ) {
+            flags |= BinaryPhylogenyFormat.PHYLOGENY_CONFIDENCE;
+        }
+        if ( tree.getIdentifier() != null ) {
+            flags |= BinaryPhylogenyFormat.PHYLOGENY_IDENTIFIER;
+        }
+        out.writeByte( flags );
+        writeString( out, tree.getName() );
+        writeString( out, tree.getType() );
+        writeString( out, tree.getDescription() );
+        writeString( out, tree.getDistanceUnit() );
+        if ( tree.getConfidence() != null ) {
+            writeConfidence( out, tree.getConfidence() );
+        }
+        if ( tree.getIdentifier() != null ) {
+            writeIdentifier( out, tree.getIdentifier() );
+        }
+    }
+
+    private void writePoints( final DataOutputStream out, final List<Point> points ) throws IOException {
+        if ( points == null ) {
+            out.writeInt( BinaryPhylogenyFormat.NONE );
+            return;
+        }
+        out.writeInt( points.size() );
+        for( final Point point : points ) {
+            writeString( out, point.getGeodeticDatum() );
+            writeBigDecimal( out, point.getLatitude() );
+            writeBigDecimal( out, point.getLongitude() );
+            writeBigDecimal( out, point.getAltitude() );
+            writeString( out, point.getAltiudeUnit() );
+        }
+    }
+
+    private void writeProperties( final DataOutputStream out, final PropertiesList properties ) throws IOException {
+        out.writeInt( properties.size() );
+        for( final Property property : properties.getProperties() ) {
+            writeString( out, property.getRef() );
+            writeString( out, property.getValue() );
+            writeString( out, property.getUnit() );
+            writeString( out, property.getDataType() );
+            writeString( out, property.getAppliesTo() != null ? property.getAppliesTo().name() : null );
+            writeString( out, property.getIdRef() );
+        }
+    }
+
+    private void writeSequence( final DataOutputStream out, final Sequence sequence ) throws IOException {
+        writeString( out, sequence.getName() );
+        writeString( out, sequence.getSymbol() );
+        writeString( out, sequence.getGeneName() );
+        writeString( out, sequence.getLocation() );
+        writeString( out, sequence.getMolecularSequence() );
+        out.writeBoolean( sequence.isMolecularSequenceAligned() );
+        writeString( out, sequence.getSourceId() );
+        writeString( out, sequence.getType() );
+        out.writeBoolean( sequence.getAccession() != null );
+        if ( sequence.getAccession() != null ) {
+            writeAccession( out, sequence.getAccession() );
+        }
+        writeUris( out, sequence.getUris() );
+        out.writeInt( sequence.getAnnotations().size() );
+        for( final Annotation annotation : sequence.getAnnotations() ) {
+            writeAnnotation( out, annotation );
+        }
+        if ( sequence.getCrossReferences() == null ) {
+            out.writeInt( BinaryPhylogenyFormat.NONE );
+        }
+        else {
+            out.writeInt( sequence.getCrossReferences().size() );
+            for( final Accession xref : sequence.getCrossReferences() ) {
+                writeAccession( out, xref );
+            }
+        }
+        out.writeBoolean( sequence.getDomainArchitecture() != null );
+        if ( sequence.getDomainArchitecture() != null ) {
+            writeDomainArchitecture( out, sequence.getDomainArchitecture() );
+        }
+    }
+
+    private void writeString( final DataOutputStream out, final String s ) throws IOException {
+        if ( s == null ) {
+            out.writeInt( BinaryPhylogenyFormat.NONE );
+            return;
+        }
+        Integer index = _string_indices.get( s );
+        if ( index == null ) {
+            index = _strings.size();
+            _strings.add( s );
+            _string_indices.put( s, index );
+        }
+        out.writeInt( index );
+    }
+
+    private void writeStrings( final DataOutputStream out, final Collection<String> strings ) throws IOException {
+        if ( strings == null ) {
+            out.writeInt( BinaryPhylogenyFormat.NONE );
+            return;
+        }
+        out.writeInt( strings.size() );
+        for( final String s : strings ) {
+            writeString( out, s );
+        }
+    }
+
+    private void writeTaxonomy( final DataOutputStream out, final Taxonomy taxonomy ) throws IOException {
+        writeString( out, taxonomy.getScientificName() );
+        writeString( out, taxonomy.getCommonName() );
+        writeString( out, taxonomy.getAuthority() );
+        writeString( out, taxonomy.getTaxonomyCode() );
+        writeString( out, taxonomy.getRank() );
+        out.writeBoolean( taxonomy.getIdentifier() != null );
+        if ( taxonomy.getIdentifier() != null ) {
+            writeIdentifier( out, taxonomy.getIdentifier() );
+        }
+        writeStrings( out, taxonomy.getSynonyms() );
+        writeStrings( out, taxonomy.getLineage() );
+        writeUris( out, taxonomy.getUris() );
+    }
+
+    private void writeUris( final DataOutputStream out, final List<Uri> uris ) throws IOException {
+        if ( uris == null ) {
+            out.writeInt( BinaryPhylogenyFormat.NONE );
+            return;
+        }
+        out.writeInt( uris.size() );
+        for( final Uri uri : uris ) {
+            writeString( out, uri.getValue().toString() );
+            writeString( out, uri.getDescription() );
+            writeString( out, uri.getType() );
+        }
+    }
+
+    private static byte calculateBranchDataMask( final BranchData data ) {
+        byte mask = 0;
+        if ( data.isHasBranchColor() && ( data.getBranchColor().getValue() != null ) ) {
+            mask |= BinaryPhylogenyFormat.BRANCH_DATA_COLOR;
+        }
+        if ( data.isHasConfidences() ) {
+            mask |= BinaryPhylogenyFormat.BRANCH_DATA_CONFIDENCES;
+        }
+        if ( data.isHasBranchWidth() ) {
+            mask |= BinaryPhylogenyFormat.BRANCH_DATA_WIDTH;
+        }
+        return mask;
+    }
+
+    private static short calculateDataMask( final NodeData data ) {
+        short mask = 0;
+        if ( data.isHasEvent() ) {
+            mask |= BinaryPhylogenyFormat.DATA_EVENT;
+        }
+        if ( countNonNull( data.getTaxonomies() ) > 0 ) {
+            mask |= BinaryPhylogenyFormat.DATA_TAXONOMIES;
+        }
+        if ( countNonNull( data.getSequences() ) > 0 ) {
+            mask |= BinaryPhylogenyFormat.DATA_SEQUENCES;
+        }
+        if ( countNonNull( data.getDistributions() ) > 0 ) {
+            mask |= BinaryPhylogenyFormat.DATA_DISTRIBUTIONS;
+        }
+        if ( data.getDate() != null ) {
+            mask |= BinaryPhylogenyFormat.DATA_DATE;
+        }
+        if ( data.isHasBinaryCharacters() ) {
+            mask |= BinaryPhylogenyFormat.DATA_BINARY_CHARACTERS;
+        }
+        if ( data.isHasProperties() ) {
+            mask |= BinaryPhylogenyFormat.DATA_PROPERTIES;
+        }
+        if ( countNonNull( data.getReferences() ) > 0 ) {
+            mask |= BinaryPhylogenyFormat.DATA_REFERENCES;
+        }
+        if ( ( data.getVector() != null ) && !data.getVector().isEmpty() ) {
+            mask |= BinaryPhylogenyFormat.DATA_VECTOR;
+        }
+        if ( ( data.getNodeVisualData() != null ) && !data.getNodeVisualData().isEmpty() ) {
+            mask |= BinaryPhylogenyFormat.DATA_NODE_VISUAL_DATA;
+        }
+        return mask;
+    }
+
+    private static int countNonNull( final List<?> l ) {
+        int c = 0;
+        if ( l != null ) {
+            for( final Object o : l ) {
+                if ( o != null ) {
+                    ++c;
+                }
+            }
+        }
+        return c;
+    }
+}
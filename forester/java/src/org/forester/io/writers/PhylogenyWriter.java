@@ -503,7 +503,13 @@ public final class PhylogenyWriter {
         writePhyloXmlEnd( writer );
     }
 
-    private void toPhyloXMLNoPhyloXmlSource( final Writer writer, final Phylogeny tree, final int phyloxml_level )
+    /**
+     * Writes a phylogeny as phyloXML, without the enclosing phyloxml element;
+     * for writing phylogenies one at a time between writePhyloXmlStart and
+     * writePhyloXmlEnd.
+     *
+     */
+    public void toPhyloXMLNoPhyloXmlSource( final Writer writer, final Phylogeny tree, final int phyloxml_level )
             throws IOException {
         setPhyloXmlLevel( phyloxml_level );
         setOutputFormt( FORMAT.PHYLO_XML );
@@ -731,12 +737,12 @@ public final class PhylogenyWriter {
         writer.write( ForesterUtil.LINE_SEPARATOR );
     }
 
-    private static void writePhyloXmlEnd( final Writer writer ) throws IOException {
+    public static void writePhyloXmlEnd( final Writer writer ) throws IOException {
         writer.write( ForesterUtil.LINE_SEPARATOR );
         writer.write( PhylogenyWriter.PHYLO_XML_END );
     }
 
-    private static void writePhyloXmlStart( final Writer writer ) throws IOException {
+    public static void writePhyloXmlStart( final Writer writer ) throws IOException {
         writer.write( PhylogenyWriter.PHYLO_XML_VERSION_ENCODING_LINE );
         writer.write( ForesterUtil.LINE_SEPARATOR );
         writer.write( PhylogenyWriter.PHYLO_XML_NAMESPACE_LINE );
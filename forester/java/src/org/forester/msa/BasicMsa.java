@@ -82,6 +82,14 @@ public class BasicMsa implements Msa {
         return column;
     }
 
+    @Override
+    public char[] getColumn( final int col, final char[] residues ) {
+        for( int row = 0; row < _data.length; ++row ) {
+            residues[ row ] = _data[ row ][ col ];
+        }
+        return residues;
+    }
+
     @Override
     public String getIdentifier( final int row ) {
         return _identifiers[ row ];
@@ -102,6 +110,12 @@ public class BasicMsa implements Msa {
         return _data[ row ][ col ];
     }
 
+    @Override
+    public char[] getRow( final int row, final char[] residues ) {
+        System.arraycopy( _data[ row ], 0, residues, 0, _data[ row ].length );
+        return residues;
+    }
+
     @Override
     public MolecularSequence getSequence( final int row ) {
         return new BasicSequence( getIdentifier( row ), _data[ row ], getType() );
@@ -120,9 +134,7 @@ public class BasicMsa implements Msa {
     @Override
     public StringBuffer getSequenceAsString( final int row ) {
         final StringBuffer sb = new StringBuffer( getLength() );
-        for( int col = 0; col < getLength(); ++col ) {
-            sb.append( getResidueAt( row, col ) );
-        }
+        sb.append( getRow( row, new char[ getLength() ] ) );
         return sb;
     }
 
@@ -168,25 +180,34 @@ public class BasicMsa implements Msa {
 
     @Override
     public void write( final Writer w, final MSA_FORMAT format ) throws IOException {
+        write( this, w, format );
+    }
+
+    /**
+     * Writes any msa in the given format (for Msa implementations other
+     * than BasicMsa).
+     *
+     */
+    static void write( final Msa msa, final Writer w, final MSA_FORMAT format ) throws IOException {
         switch ( format ) {
             case PHYLIP:
-                writeToPhylip( w );
+                writeToPhylip( msa, w );
                 break;
             case FASTA:
-                writeToFasta( w );
+                writeToFasta( msa, w );
                 break;
             case NEXUS:
-                writeToNexus( w );
+                writeToNexus( msa, w );
                 break;
             default:
                 throw new RuntimeException( "unknown format " + format );
         }
     }
 
-    private short determineMaxIdLength() {
+    private static short determineMaxIdLength( final Msa msa ) {
         short max = 0;
-        for( int row = 0; row < getNumberOfSequences(); ++row ) {
-            final short l = ( short ) getIdentifier( row ).length();
+        for( int row = 0; row < msa.getNumberOfSequences(); ++row ) {
+            final short l = ( short ) msa.getIdentifier( row ).length();
             if ( l > max ) {
                 max = l;
             }
@@ -194,15 +215,15 @@ public class BasicMsa implements Msa {
         return max;
     }
 
-    private void writeToFasta( final Writer w ) throws IOException {
-        SequenceWriter.writeSeqs( asSequenceList(), w, SEQ_FORMAT.FASTA, 100 );
+    private static void writeToFasta( final Msa msa, final Writer w ) throws IOException {
+        SequenceWriter.writeSeqs( msa.asSequenceList(), w, SEQ_FORMAT.FASTA, 100 );
     }
 
-    private void writeToNexus( final Writer w ) throws IOException {
-        final int max = determineMaxIdLength() + 1;
+    private static void writeToNexus( final Msa msa, final Writer w ) throws IOException {
+        final int max = determineMaxIdLength( msa ) + 1;
         TYPE t = null;
-        for( int row = 0; row < getNumberOfSequences(); ++row ) {
-            t = ForesterUtil.guessMolecularSequenceType( getSequence( row ).getMolecularSequenceAsString() );
+        for( int row = 0; row < msa.getNumberOfSequences(); ++row ) {
+            t = ForesterUtil.guessMolecularSequenceType( msa.getSequence( row ).getMolecularSequenceAsString() );
             if ( t != null ) {
                 break;
             }
@@ -221,21 +242,20 @@ public class BasicMsa implements Msa {
         }
         w.write( "Begin Data;" );
         w.write( ForesterUtil.LINE_SEPARATOR );
-        w.write( "   Dimensions NTax=" + getNumberOfSequences() );
-        w.write( " NChar=" + getLength() );
+        w.write( "   Dimensions NTax=" + msa.getNumberOfSequences() );
+        w.write( " NChar=" + msa.getLength() );
         w.write( ";" );
         w.write( ForesterUtil.LINE_SEPARATOR );
         w.write( "   Format DataType=" + type_str + " Interleave=No gap=-;" );
         w.write( ForesterUtil.LINE_SEPARATOR );
         w.write( "   Matrix" );
         w.write( ForesterUtil.LINE_SEPARATOR );
-        for( int row = 0; row < getNumberOfSequences(); ++row ) {
-            final MolecularSequence seq = getSequence( row );
-            final String s = seq.getMolecularSequenceAsString();
+        final char[] residues = new char[ msa.getLength() ];
+        for( int row = 0; row < msa.getNumberOfSequences(); ++row ) {
             w.write( "      " );
-            w.write( ForesterUtil.pad( getIdentifier( row ).replace( ' ', '_' ), max, ' ', false ).toString() );
+            w.write( ForesterUtil.pad( msa.getIdentifier( row ).replace( ' ', '_' ), max, ' ', false ).toString() );
             w.write( " " );
-            w.write( s );
+            w.write( msa.getRow( row, residues ) );
             w.write( ForesterUtil.LINE_SEPARATOR );
         }
         w.write( "   ;" );
@@ -244,19 +264,31 @@ public class BasicMsa implements Msa {
         w.write( ForesterUtil.LINE_SEPARATOR );
     }
 
-    private void writeToPhylip( final Writer w ) throws IOException {
-        final int max = determineMaxIdLength() + 1;
-        w.write( getNumberOfSequences() + " " + getLength() );
+    private static void writeToPhylip( final Msa msa, final Writer w ) throws IOException {
+        final int max = determineMaxIdLength( msa ) + 1;
+        w.write( msa.getNumberOfSequences() + " " + msa.getLength() );
         w.write( ForesterUtil.LINE_SEPARATOR );
-        for( int row = 0; row < getNumberOfSequences(); ++row ) {
-            w.write( ForesterUtil.pad( getIdentifier( row ).replace( ' ', '_' ), max, ' ', false ).toString() );
-            for( int col = 0; col < getLength(); ++col ) {
-                w.write( getResidueAt( row, col ) );
-            }
+        final char[] residues = new char[ msa.getLength() ];
+        for( int row = 0; row < msa.getNumberOfSequences(); ++row ) {
+            w.write( ForesterUtil.pad( msa.getIdentifier( row ).replace( ' ', '_' ), max, ' ', false ).toString() );
+            w.write( msa.getRow( row, residues ) );
             w.write( ForesterUtil.LINE_SEPARATOR );
         }
     }
 
+    /**
+     * Creates a copy of any msa, reading it row by row.
+     *
+     */
+    public static BasicMsa createInstance( final Msa msa ) {
+        final BasicMsa basic = new BasicMsa( msa.getNumberOfSequences(), msa.getLength(), msa.getType() );
+        for( int row = 0; row < msa.getNumberOfSequences(); ++row ) {
+            basic.setIdentifier( row, msa.getIdentifier( row ) );
+            msa.getRow( row, basic._data[ row ] );
+        }
+        return basic;
+    }
+
     public static Msa createInstance( final List<MolecularSequence> seqs ) {
         if ( seqs.size() < 1 ) {
             throw new IllegalArgumentException( "cannot create msa from less than one sequence" );
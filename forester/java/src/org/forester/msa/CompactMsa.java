@@ -0,0 +1,600 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+
+package org.forester.msa;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.forester.sequence.BasicSequence;
+import org.forester.sequence.MolecularSequence;
+import org.forester.sequence.MolecularSequence.TYPE;
+import org.forester.util.ForesterUtil;
+
+/*
+ * Msa which stores its residues packed into longs, instead of one char each:
+ *
+ * DNA and RNA: 2 bits per position for A, C, G and T (U), plus one escape
+ * bit per position; with the escape bit set, the 2 bits denote a gap, N,
+ * ?, or an exception.
+ * Amino acids: 5 bits per position for the upper case amino acid codes
+ * (including B, J, O, U, X, Z and *), gaps, ? and ., or an exception.
+ * Other types: 8 bits per position for all characters below 255, or an
+ * exception.
+ *
+ * Lower case letters (for example, soft-masked regions) are stored as
+ * their upper case symbol, plus one bit per position in a case mask, which
+ * only exists for rows containing lower case residues. Any other character
+ * (such as IUPAC ambiguity codes in DNA alignments) is stored as an
+ * exception: a sorted list of positions, and their residues, per row.
+ * An alignment of 100000 DNA sequences of length 30000 needs about 1.1 GB
+ * (compared to 6 GB for BasicMsa), as long as exceptions are rare.
+ *
+ * Large alignments are best created with a Builder (see also
+ * FastaParser.parseCompactMsa), which only keeps the packed rows in
+ * memory. Rows and columns are best read with getRow and getColumn.
+ *
+ */
+public final class CompactMsa implements Msa {
+
+    private final static int      AA_BITS     = 5;
+    private final static String   AA_SYMBOLS  = "-ACDEFGHIKLMNPQRSTVWYXBZJUO*?.";
+    private final static int      BYTE_BITS   = 8;
+    // Symbols 4 to 6 are escaped.
+    private final static String   DNA_SYMBOLS = "ACGT-N?";
+    // Flag (in the encoding) of lower case letters stored as upper case symbol.
+    private final static int      LOWER_CASE  = 0x100;
+    private final static int      NUC_BITS    = 2;
+    private final static String   RNA_SYMBOLS = "ACGU-N?";
+    private final static Alphabet AA          = new Alphabet( AA_BITS, AA_SYMBOLS );
+    private final static Alphabet DNA         = new Alphabet( NUC_BITS, DNA_SYMBOLS );
+    private final static Alphabet GENERAL     = new Alphabet( BYTE_BITS, null );
+    private final static Alphabet RNA         = new Alphabet( NUC_BITS, RNA_SYMBOLS );
+    private final Alphabet        _alphabet;
+    private final String[]        _identifiers;
+    private final Set<String>     _identifiers_set;
+    private final int             _length;
+    private final Row[]           _rows;
+    private final TYPE            _type;
+
+    /**
+     * Creates an msa of gaps only.
+     *
+     */
+    public CompactMsa( final int rows, final int columns, final TYPE type ) {
+        if ( ( rows < 1 ) || ( columns < 1 ) ) {
+            throw new IllegalArgumentException( "compact msa of size zero are illegal" );
+        }
+        _type = type;
+        _alphabet = obtainAlphabet( type );
+        _length = columns;
+        _identifiers = new String[ rows ];
+        _identifiers_set = new HashSet<String>();
+        _rows = new Row[ rows ];
+        final char[] gaps = new char[ columns ];
+        Arrays.fill( gaps, MolecularSequence.GAP );
+        final Row gap_row = new Row( _alphabet, gaps, columns );
+        for( int row = 0; row < rows; ++row ) {
+            _rows[ row ] = new Row( gap_row );
+        }
+    }
+
+    private CompactMsa( final TYPE type, final int length, final List<String> identifiers, final List<Row> rows ) {
+        _type = type;
+        _alphabet = obtainAlphabet( type );
+        _length = length;
+        _identifiers = identifiers.toArray( new String[ identifiers.size() ] );
+        _identifiers_set = new HashSet<String>( identifiers );
+        _rows = rows.toArray( new Row[ rows.size() ] );
+    }
+
+    @Override
+    public List<MolecularSequence> asSequenceList() {
+        final List<MolecularSequence> seqs = new ArrayList<MolecularSequence>( getNumberOfSequences() );
+        for( int i = 0; i < getNumberOfSequences(); ++i ) {
+            seqs.add( getSequence( i ) );
+        }
+        return seqs;
+    }
+
+    @Override
+    public char[] getColumn( final int col, final char[] residues ) {
+        checkColumn( col );
+        for( int row = 0; row < _rows.length; ++row ) {
+            residues[ row ] = _rows[ row ].getResidue( col );
+        }
+        return residues;
+    }
+
+    @Override
+    public List<Character> getColumnAt( final int col ) {
+        final char[] residues = getColumn( col, new char[ getNumberOfSequences() ] );
+        final List<Character> column = new ArrayList<Character>( residues.length );
+        for( final char residue : residues ) {
+            column.add( residue );
+        }
+        return column;
+    }
+
+    @Override
+    public String getIdentifier( final int row ) {
+        return _identifiers[ row ];
+    }
+
+    @Override
+    public int getLength() {
+        return _length;
+    }
+
+    @Override
+    public int getNumberOfSequences() {
+        return _identifiers.length;
+    }
+
+    @Override
+    public char getResidueAt( final int row, final int col ) {
+        checkColumn( col );
+        return _rows[ row ].getResidue( col );
+    }
+
+    @Override
+    public char[] getRow( final int row, final char[] residues ) {
+        _rows[ row ].getResidues( residues, _length );
+        return residues;
+    }
+
+    @Override
+    public MolecularSequence getSequence( final int row ) {
+        return new BasicSequence( getIdentifier( row ), getRow( row, new char[ _length ] ), getType() );
+    }
+
+    @Override
+    public MolecularSequence getSequence( final String id ) {
+        for( int i = 0; i < getNumberOfSequences(); ++i ) {
+            if ( getIdentifier( i ).equals( id ) ) {
+                return getSequence( i );
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public StringBuffer getSequenceAsString( final int row ) {
+        final StringBuffer sb = new StringBuffer( _length );
+        sb.append( getRow( row, new char[ _length ] ) );
+        return sb;
+    }
+
+    @Override
+    public TYPE getType() {
+        return _type;
+    }
+
+    @Override
+    public boolean isGapAt( final int row, final int col ) {
+        return getResidueAt( row, col ) == MolecularSequence.GAP;
+    }
+
+    @Override
+    public void setIdentifier( final int row, final String id ) {
+        if ( ForesterUtil.isEmpty( id ) ) {
+            throw new IllegalArgumentException( "illegal attempt to create msa with empty identifier" );
+        }
+        if ( id.equals( _identifiers[ row ] ) ) {
+            return;
+        }
+        if ( !_identifiers_set.add( id ) ) {
+            throw new IllegalArgumentException( "illegal attempt to create msa with non-unique identifiers [" + id
+                    + "]" );
+        }
+        if ( _identifiers[ row ] != null ) {
+            _identifiers_set.remove( _identifiers[ row ] );
+        }
+        _identifiers[ row ] = id;
+    }
+
+    @Override
+    public void setResidueAt( final int row, final int col, final char residue ) {
+        checkColumn( col );
+        _rows[ row ].setResidue( col, residue, _length );
+    }
+
+    @Override
+    public String toString() {
+        final Writer w = new StringWriter();
+        try {
+            write( w, MSA_FORMAT.PHYLIP );
+        }
+        catch ( final IOException e ) {
+            e.printStackTrace();
+        }
+        return w.toString();
+    }
+
+    @Override
+    public void write( final Writer w, final MSA_FORMAT format ) throws IOException {
+        BasicMsa.write( this, w, format );
+    }
+
+    private final void checkColumn( final int col ) {
+        if ( ( col >= _length ) || ( col < 0 ) ) {
+            throw new IllegalArgumentException( "column " + col + " is out of range" );
+        }
+    }
+
+    public static CompactMsa createInstance( final List<MolecularSequence> seqs ) {
+        if ( seqs.size() < 1 ) {
+            throw new IllegalArgumentException( "cannot create msa from less than one sequence" );
+        }
+        final Builder builder = new Builder( seqs.get( 0 ).getType() );
+        for( final MolecularSequence seq : seqs ) {
+            if ( seq.getType() != builder.getType() ) {
+                throw new IllegalArgumentException( "illegal attempt to build msa from sequences of different type ["
+                        + seq.getIdentifier() + "]" );
+            }
+            builder.add( seq );
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates a compact copy of any msa.
+     *
+     */
+    public static CompactMsa createInstance( final Msa msa ) {
+        final Builder builder = new Builder( msa.getType() );
+        final char[] residues = new char[ msa.getLength() ];
+        for( int row = 0; row < msa.getNumberOfSequences(); ++row ) {
+            builder.add( msa.getIdentifier( row ), msa.getRow( row, residues ) );
+        }
+        return builder.build();
+    }
+
+    private final static Alphabet obtainAlphabet( final TYPE type ) {
+        if ( type == TYPE.DNA ) {
+            return DNA;
+        }
+        else if ( type == TYPE.RNA ) {
+            return RNA;
+        }
+        else if ( type == TYPE.AA ) {
+            return AA;
+        }
+        return GENERAL;
+    }
+
+    /**
+     * Creates a CompactMsa from sequences added one at a time (for example,
+     * as read by IteratingFastaParser), so that only the packed rows, and
+     * not the sequences, are kept in memory.
+     * The type of the msa is the type given to the builder; residues are
+     * stored as they are, regardless of the type of the added sequences.
+     *
+     */
+    public final static class Builder {
+
+        private final Alphabet     _alphabet;
+        private final List<String> _identifiers;
+        private final Set<String>  _identifiers_set;
+        private int                _length;
+        private final List<Row>    _rows;
+        private final TYPE         _type;
+
+        public Builder( final TYPE type ) {
+            _type = type;
+            _alphabet = obtainAlphabet( type );
+            _identifiers = new ArrayList<String>();
+            _identifiers_set = new HashSet<String>();
+            _rows = new ArrayList<Row>();
+            _length = -1;
+        }
+
+        public final Builder add( final MolecularSequence seq ) {
+            return add( seq.getIdentifier(), seq.getMolecularSequence() );
+        }
+
+        /**
+         * Adds a row; the residues are copied, so the array can be reused.
+         *
+         */
+        public final Builder add( final String id, final char[] residues ) {
+            if ( ForesterUtil.isEmpty( id ) ) {
+                throw new IllegalArgumentException( "illegal attempt to create msa with empty identifier" );
+            }
+            if ( _length < 0 ) {
+                if ( residues.length < 1 ) {
+                    throw new IllegalArgumentException( "compact msa of size zero are illegal" );
+                }
+                _length = residues.length;
+            }
+            else if ( residues.length != _length ) {
+                throw new IllegalArgumentException( "illegal attempt to build msa from sequences of unequal length ["
+                        + id + "]" );
+            }
+            if ( !_identifiers_set.add( id ) ) {
+                throw new IllegalArgumentException( "illegal attempt to create msa with non-unique identifiers [" + id
+                        + "]" );
+            }
+            _identifiers.add( id );
+            _rows.add( new Row( _alphabet, residues, _length ) );
+            return this;
+        }
+
+        public final CompactMsa build() {
+            if ( _rows.isEmpty() ) {
+                throw new IllegalArgumentException( "cannot create msa from less than one sequence" );
+            }
+            return new CompactMsa( _type, _length, _identifiers, _rows );
+        }
+
+        public final int getNumberOfSequences() {
+            return _rows.size();
+        }
+
+        public final TYPE getType() {
+            return _type;
+        }
+    }
+
+    private final static class Alphabet {
+
+        private final int    _bits;
+        // Symbol of each character below 256 (the symbol of the upper case
+        // letter, plus LOWER_CASE, for lower case letters), -1 for exceptions.
+        private final int[]  _encoding;
+        private final int    _exception_symbol;
+        private final char[] _lower_case_symbols;
+        private final int    _per_long;
+        private final char[] _symbols;
+
+        Alphabet( final int bits, final String symbols ) {
+            _bits = bits;
+            _per_long = 64 / bits;
+            _exception_symbol = bits == NUC_BITS ? 7 : ( 1 << bits ) - 1;
+            _symbols = new char[ _exception_symbol + 1 ];
+            _lower_case_symbols = new char[ _exception_symbol + 1 ];
+            _encoding = new int[ 256 ];
+            Arrays.fill( _encoding, -1 );
+            for( int s = 0; s < _exception_symbol; ++s ) {
+                if ( symbols == null ) {
+                    _symbols[ s ] = ( char ) s;
+                }
+                else if ( s < symbols.length() ) {
+                    _symbols[ s ] = symbols.charAt( s );
+                }
+                else {
+                    continue;
+                }
+                _lower_case_symbols[ s ] = Character.toLowerCase( _symbols[ s ] );
+                _encoding[ _symbols[ s ] ] = s;
+            }
+            for( char c = 'a'; c <= 'z'; ++c ) {
+                final int upper = _encoding[ Character.toUpperCase( c ) ];
+                if ( ( _encoding[ c ] < 0 ) && ( upper >= 0 ) ) {
+                    _encoding[ c ] = upper | LOWER_CASE;
+                }
+            }
+        }
+
+        final int encode( final char residue ) {
+            return residue < _encoding.length ? _encoding[ residue ] : -1;
+        }
+    }
+
+    private final static class Row {
+
+        private final Alphabet _alphabet;
+        // The codes, _alphabet._per_long per long.
+        private final long[]   _codes;
+        // The escape bits (DNA and RNA only), 64 per long.
+        private final long[]   _escapes;
+        // The positions (sorted) and residues of the exceptions, null if none.
+        private int[]          _exception_positions;
+        private char[]         _exception_residues;
+        // The lower case bits, 64 per long, null if there are no lower case residues.
+        private long[]         _lower_case;
+        private int            _number_of_exceptions;
+
+        Row( final Alphabet alphabet, final char[] residues, final int length ) {
+            _alphabet = alphabet;
+            _codes = new long[ ( ( length + alphabet._per_long ) - 1 ) / alphabet._per_long ];
+            _escapes = alphabet._bits == NUC_BITS ? new long[ ( length + 63 ) >>> 6 ] : null;
+            for( int col = 0; col < length; ++col ) {
+                final int e = alphabet.encode( residues[ col ] );
+                if ( e < 0 ) {
+                    setSymbol( col, alphabet._exception_symbol );
+                    ++_number_of_exceptions;
+                }
+                else {
+                    setSymbol( col, e & ~LOWER_CASE );
+                    if ( ( e & LOWER_CASE ) != 0 ) {
+                        setLowerCase( col, true, length );
+                    }
+                }
+            }
+            if ( _number_of_exceptions > 0 ) {
+                _exception_positions = new int[ _number_of_exceptions ];
+                _exception_residues = new char[ _number_of_exceptions ];
+                int i = 0;
+                for( int col = 0; col < length; ++col ) {
+                    if ( alphabet.encode( residues[ col ] ) < 0 ) {
+                        _exception_positions[ i ] = col;
+                        _exception_residues[ i++ ] = residues[ col ];
+                    }
+                }
+            }
+        }
+
+        Row( final Row row ) {
+            _alphabet = row._alphabet;
+            _codes = row._codes.clone();
+            _escapes = row._escapes != null ? row._escapes.clone() : null;
+            _lower_case = row._lower_case != null ? row._lower_case.clone() : null;
+            _number_of_exceptions = row._number_of_exceptions;
+            _exception_positions = row._exception_positions != null ? row._exception_positions.clone() : null;
+            _exception_residues = row._exception_residues != null ? row._exception_residues.clone() : null;
+        }
+
+        final char getResidue( final int col ) {
+            final int s = getSymbol( col );
+            if ( s == _alphabet._exception_symbol ) {
+                return _exception_residues[ findException( col ) ];
+            }
+            if ( ( _lower_case != null ) && ( ( ( _lower_case[ col >>> 6 ] >>> col ) & 1 ) != 0 ) ) {
+                return _alphabet._lower_case_symbols[ s ];
+            }
+            return _alphabet._symbols[ s ];
+        }
+
+        final void getResidues( final char[] residues, final int length ) {
+            final int bits = _alphabet._bits;
+            final int mask = ( 1 << bits ) - 1;
+            final char[] symbols = _alphabet._symbols;
+            int col = 0;
+            for( int w = 0; col < length; ++w ) {
+                long word = _codes[ w ];
+                final int end = Math.min( col + _alphabet._per_long, length );
+                for( ; col < end; ++col ) {
+                    int s = ( int ) word & mask;
+                    word >>>= bits;
+                    if ( _escapes != null ) {
+                        s |= ( ( int ) ( _escapes[ col >>> 6 ] >>> col ) & 1 ) << 2;
+                    }
+                    residues[ col ] = symbols[ s ];
+                }
+            }
+            if ( _lower_case != null ) {
+                for( int w = 0; w < _lower_case.length; ++w ) {
+                    long word = _lower_case[ w ];
+                    while ( word != 0 ) {
+                        final int c = ( w << 6 ) + Long.numberOfTrailingZeros( word );
+                        residues[ c ] = Character.toLowerCase( residues[ c ] );
+                        word &= word - 1;
+                    }
+                }
+            }
+            for( int i = 0; i < _number_of_exceptions; ++i ) {
+                residues[ _exception_positions[ i ] ] = _exception_residues[ i ];
+            }
+        }
+
+        final void setResidue( final int col, final char residue, final int length ) {
+            final int e = _alphabet.encode( residue );
+            final int i = findException( col );
+            if ( e >= 0 ) {
+                if ( i >= 0 ) {
+                    removeException( i );
+                }
+                setSymbol( col, e & ~LOWER_CASE );
+                setLowerCase( col, ( e & LOWER_CASE ) != 0, length );
+            }
+            else {
+                if ( i >= 0 ) {
+                    _exception_residues[ i ] = residue;
+                }
+                else {
+                    insertException( -( i + 1 ), col, residue );
+                }
+                setSymbol( col, _alphabet._exception_symbol );
+                setLowerCase( col, false, length );
+            }
+        }
+
+        private final int findException( final int col ) {
+            if ( _number_of_exceptions < 1 ) {
+                return -1;
+            }
+            return Arrays.binarySearch( _exception_positions, 0, _number_of_exceptions, col );
+        }
+
+        private final int getSymbol( final int col ) {
+            final int bits = _alphabet._bits;
+            final int per_long = _alphabet._per_long;
+            int s = ( int ) ( _codes[ col / per_long ] >>> ( ( col % per_long ) * bits ) ) & ( ( 1 << bits ) - 1 );
+            if ( _escapes != null ) {
+                s |= ( ( int ) ( _escapes[ col >>> 6 ] >>> col ) & 1 ) << 2;
+            }
+            return s;
+        }
+
+        // Grows the arrays by doubling, so that filling a row column by
+        // column takes amortized constant time per exception.
+        private final void insertException( final int i, final int col, final char residue ) {
+            if ( _exception_positions == null ) {
+                _exception_positions = new int[ 4 ];
+                _exception_residues = new char[ 4 ];
+            }
+            else if ( _number_of_exceptions == _exception_positions.length ) {
+                _exception_positions = Arrays.copyOf( _exception_positions, 2 * _number_of_exceptions );
+                _exception_residues = Arrays.copyOf( _exception_residues, 2 * _number_of_exceptions );
+            }
+            System.arraycopy( _exception_positions, i, _exception_positions, i + 1, _number_of_exceptions - i );
+            System.arraycopy( _exception_residues, i, _exception_residues, i + 1, _number_of_exceptions - i );
+            _exception_positions[ i ] = col;
+            _exception_residues[ i ] = residue;
+            ++_number_of_exceptions;
+        }
+
+        private final void removeException( final int i ) {
+            --_number_of_exceptions;
+            System.arraycopy( _exception_positions, i + 1, _exception_positions, i, _number_of_exceptions - i );
+            System.arraycopy( _exception_residues, i + 1, _exception_residues, i, _number_of_exceptions - i );
+        }
+
+        private final void setLowerCase( final int col, final boolean lower_case, final int length ) {
+            if ( lower_case ) {
+                if ( _lower_case == null ) {
+                    _lower_case = new long[ ( length + 63 ) >>> 6 ];
+                }
+                _lower_case[ col >>> 6 ] |= 1L << col;
+            }
+            else if ( _lower_case != null ) {
+                _lower_case[ col >>> 6 ] &= ~( 1L << col );
+            }
+        }
+
+        private final void setSymbol( final int col, final int s ) {
+            final int bits = _alphabet._bits;
+            final int w = col / _alphabet._per_long;
+            final int shift = ( col % _alphabet._per_long ) * bits;
+            final long mask = ( ( 1L << bits ) - 1 ) << shift;
+            _codes[ w ] = ( _codes[ w ] & ~mask ) | ( ( ( long ) s << shift ) & mask );
+            if ( _escapes != null ) {
+                if ( ( s & 4 ) != 0 ) {
+                    _escapes[ col >>> 6 ] |= 1L << col;
+                }
+                else {
+                    _escapes[ col >>> 6 ] &= ~( 1L << col );
+                }
+            }
+        }
+    }
+}
@@ -31,10 +31,11 @@ import org.forester.sequence.MolecularSequence;
 
 public final class DeleteableMsa extends BasicMsa {
 
-    private int _length                 = 0;
-    private int _mapped_col_positions[] = null;
-    private int _mapped_row_positions[] = null;
-    private int _seqs                   = 0;
+    private int                      _length                 = 0;
+    private int                      _mapped_col_positions[] = null;
+    private int                      _mapped_row_positions[] = null;
+    private int                      _seqs                   = 0;
+    private IncrementalMsaStatistics _statistics             = null;
 
     private DeleteableMsa( final BasicMsa msa ) {
         super( msa );
@@ -82,12 +83,25 @@ public final class DeleteableMsa extends BasicMsa {
         return max;
     }
 
+    final public void deleteColumn( final int col ) {
+        checkColumn( col );
+        if ( _statistics != null ) {
+            _statistics.removeColumn( col );
+        }
+        for( int c = col; c < ( _length - 1 ); ++c ) {
+            _mapped_col_positions[ c ] = _mapped_col_positions[ c + 1 ];
+        }
+        --_length;
+    }
+
     final public void deleteGapColumns( final double max_allowed_gap_ratio ) {
         if ( ( max_allowed_gap_ratio < 0 ) || ( max_allowed_gap_ratio > 1 ) ) {
             throw new IllegalArgumentException( "max allowed gap ration is out of range: " + max_allowed_gap_ratio );
         }
+        final int[] gap_sums = _statistics != null ? null : MsaMethods.calcGapSumsPerColumn( this );
         for( int col = getLength() - 1; col >= 0; --col ) {
-            final boolean delete = ( ( double ) MsaMethods.calcGapSumPerColumn( this, col ) / getNumberOfSequences() ) > max_allowed_gap_ratio;
+            final int gaps = _statistics != null ? _statistics.getNumberOfGaps( col ) : gap_sums[ col ];
+            final boolean delete = ( ( double ) gaps / getNumberOfSequences() ) > max_allowed_gap_ratio;
             if ( delete ) {
                 deleteColumn( col );
             }
@@ -96,7 +110,7 @@ public final class DeleteableMsa extends BasicMsa {
 
     final public void deleteGapOnlyColumns() {
         for( int col = getLength() - 1; col >= 0; --col ) {
-            if ( isAllGap( col ) ) {
+            if ( _statistics != null ? _statistics.getNumberOfGaps( col ) == _seqs : isAllGap( col ) ) {
                 deleteColumn( col );
             }
         }
@@ -134,6 +148,16 @@ public final class DeleteableMsa extends BasicMsa {
         }
     }
 
+    @Override
+    final public char[] getColumn( final int col, final char[] residues ) {
+        checkColumn( col );
+        final int m_col = _mapped_col_positions[ col ];
+        for( int row = 0; row < _seqs; ++row ) {
+            residues[ row ] = super.getResidueAt( _mapped_row_positions[ row ], m_col );
+        }
+        return residues;
+    }
+
     @Override
     final public String getIdentifier( final int row ) {
         checkRow( row );
@@ -157,10 +181,33 @@ public final class DeleteableMsa extends BasicMsa {
         return super.getResidueAt( _mapped_row_positions[ row ], _mapped_col_positions[ col ] );
     }
 
+    @Override
+    final public char[] getRow( final int row, final char[] residues ) {
+        checkRow( row );
+        final int m_row = _mapped_row_positions[ row ];
+        for( int col = 0; col < _length; ++col ) {
+            residues[ col ] = super.getResidueAt( m_row, _mapped_col_positions[ col ] );
+        }
+        return residues;
+    }
+
+    /**
+     * Returns the statistics of this msa, which are calculated on the first
+     * call, and then kept up to date when rows or columns are deleted (they
+     * are recalculated after setResidueAt).
+     *
+     */
+    final public IncrementalMsaStatistics getStatistics() {
+        if ( _statistics == null ) {
+            _statistics = new IncrementalMsaStatistics( this );
+        }
+        return _statistics;
+    }
+
     @Override
     public MolecularSequence getSequence( final int row ) {
         checkRow( row );
-        return new BasicSequence( getIdentifier( row ), getSequenceAsString( row ).toString(), getType() );
+        return new BasicSequence( getIdentifier( row ), getRow( row, new char[ _length ] ), getType() );
     }
 
     final public boolean isAllGap( final int col ) {
@@ -184,6 +231,7 @@ public final class DeleteableMsa extends BasicMsa {
         checkRow( row );
         checkColumn( col );
         super.setResidueAt( _mapped_row_positions[ row ], _mapped_col_positions[ col ], residue );
+        _statistics = null;
     }
 
     final private void checkColumn( final int col ) {
@@ -198,16 +246,11 @@ public final class DeleteableMsa extends BasicMsa {
         }
     }
 
-    final private void deleteColumn( final int col ) {
-        checkColumn( col );
-        for( int c = col; c < ( _length - 1 ); ++c ) {
-            _mapped_col_positions[ c ] = _mapped_col_positions[ c + 1 ];
-        }
-        --_length;
-    }
-
     final private void deleteRow( final int row ) {
         checkRow( row );
+        if ( _statistics != null ) {
+            _statistics.removeRow( row );
+        }
         for( int r = row; r < ( _seqs - 1 ); ++r ) {
             _mapped_row_positions[ r ] = _mapped_row_positions[ r + 1 ];
         }
@@ -218,7 +261,15 @@ public final class DeleteableMsa extends BasicMsa {
         return new DeleteableMsa( ( BasicMsa ) BasicMsa.createInstance( seqs ) );
     }
 
+    /**
+     * Deletion works on the char array of a BasicMsa, other implementations
+     * (such as CompactMsa) are copied once, row by row.
+     *
+     */
     public final static DeleteableMsa createInstance( final Msa msa ) {
-        return new DeleteableMsa( ( BasicMsa ) msa );
+        if ( msa instanceof BasicMsa ) {
+            return new DeleteableMsa( ( BasicMsa ) msa );
+        }
+        return new DeleteableMsa( BasicMsa.createInstance( msa ) );
     }
 }
@@ -0,0 +1,312 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.msa;
+
+import java.util.Arrays;
+
+import org.forester.sequence.MolecularSequence;
+
+/*
+ * Statistics of an msa which are updated, instead of recalculated, when a
+ * row or a column is deleted (see DeleteableMsa.getStatistics()): the gap
+ * ratio, the average number of gaps (runs of gaps) per sequence, and the
+ * normalized Shannon entropies (k = 7 and k = 21) as calculated by
+ * MsaMethods.
+ *
+ * Per column, the counts of each residue (and of each of the 7 residue
+ * classes) are kept, together with the sum of n_a * ln(n_a) over residues
+ * a, so that the entropy of a column with n rows is
+ * -(sum / n - ln(n)) / ln(min(n, k)). Deleting a row updates these in
+ * O(columns), deleting a column updates the gap runs in O(rows). Entropies
+ * are summed over the columns when requested, in O(columns).
+ *
+ */
+public final class IncrementalMsaStatistics {
+
+    private final static int NUMBER_OF_CLASSES = 7;
+    // Residue class (for k = 7) of each alphabet index.
+    private final int[]      _classes;
+    // Per column (original index), NUMBER_OF_CLASSES per column.
+    private final int[]      _class_counts;
+    private final int[]      _class_distinct;
+    private final double[]   _class_sums;
+    // Current to original column indices.
+    private final int[]      _columns;
+    private final int[]      _gap_runs;
+    private final int[]      _gaps;
+    // Alphabet index of each character, -1 for characters not in the msa.
+    private final int[]      _index;
+    private int              _length;
+    private final Msa        _msa;
+    private final int        _number_of_residues;
+    // Per column (original index), _number_of_residues per column.
+    private final int[]      _residue_counts;
+    private final int[]      _residue_distinct;
+    private final double[]   _residue_sums;
+    // Current to original row indices.
+    private final int[]      _rows;
+    private int              _seqs;
+    private long             _total_gap_runs;
+    private long             _total_gaps;
+    // x * ln(x), for x from 0 to the number of rows.
+    private final double[]   _x_ln_x;
+
+    IncrementalMsaStatistics( final Msa msa ) {
+        _msa = msa;
+        _seqs = msa.getNumberOfSequences();
+        _length = msa.getLength();
+        _rows = new int[ _seqs ];
+        for( int row = 0; row < _seqs; ++row ) {
+            _rows[ row ] = row;
+        }
+        _columns = new int[ _length ];
+        for( int col = 0; col < _length; ++col ) {
+            _columns[ col ] = col;
+        }
+        _x_ln_x = new double[ _seqs + 1 ];
+        for( int x = 2; x <= _seqs; ++x ) {
+            _x_ln_x[ x ] = x * Math.log( x );
+        }
+        _index = new int[ Character.MAX_VALUE + 1 ];
+        Arrays.fill( _index, -1 );
+        final char[] residues = new char[ _length ];
+        final char[] alphabet = new char[ Character.MAX_VALUE + 1 ];
+        int number_of_residues = 0;
+        for( int row = 0; row < _seqs; ++row ) {
+            msa.getRow( row, residues );
+            for( int col = 0; col < _length; ++col ) {
+                if ( _index[ residues[ col ] ] < 0 ) {
+                    alphabet[ number_of_residues ] = residues[ col ];
+                    _index[ residues[ col ] ] = number_of_residues++;
+                }
+            }
+        }
+        _number_of_residues = number_of_residues;
+        _classes = new int[ number_of_residues ];
+        for( int i = 0; i < number_of_residues; ++i ) {
+            _classes[ i ] = determineClass( alphabet[ i ] );
+        }
+        _residue_counts = new int[ _length * _number_of_residues ];
+        _residue_distinct = new int[ _length ];
+        _residue_sums = new double[ _length ];
+        _class_counts = new int[ _length * NUMBER_OF_CLASSES ];
+        _class_distinct = new int[ _length ];
+        _class_sums = new double[ _length ];
+        _gaps = new int[ _length ];
+        _gap_runs = new int[ _seqs ];
+        for( int row = 0; row < _seqs; ++row ) {
+            msa.getRow( row, residues );
+            boolean was_gap = false;
+            for( int col = 0; col < _length; ++col ) {
+                final int r = _index[ residues[ col ] ];
+                if ( _residue_counts[ ( col * _number_of_residues ) + r ]++ == 0 ) {
+                    ++_residue_distinct[ col ];
+                }
+                if ( _class_counts[ ( col * NUMBER_OF_CLASSES ) + _classes[ r ] ]++ == 0 ) {
+                    ++_class_distinct[ col ];
+                }
+                if ( residues[ col ] == MolecularSequence.GAP ) {
+                    ++_gaps[ col ];
+                    if ( !was_gap ) {
+                        ++_gap_runs[ row ];
+                        was_gap = true;
+                    }
+                }
+                else {
+                    was_gap = false;
+                }
+            }
+            _total_gap_runs += _gap_runs[ row ];
+        }
+        for( int col = 0; col < _length; ++col ) {
+            _total_gaps += _gaps[ col ];
+            double s = 0;
+            for( int r = 0; r < _number_of_residues; ++r ) {
+                s += _x_ln_x[ _residue_counts[ ( col * _number_of_residues ) + r ] ];
+            }
+            _residue_sums[ col ] = s;
+            s = 0;
+            for( int c = 0; c < NUMBER_OF_CLASSES; ++c ) {
+                s += _x_ln_x[ _class_counts[ ( col * NUMBER_OF_CLASSES ) + c ] ];
+            }
+            _class_sums[ col ] = s;
+        }
+    }
+
+    /**
+     * Returns the mean (over all sequences) of the number of runs of gaps,
+     * as MsaMethods.calcNumberOfGapsStats( msa ).arithmeticMean().
+     *
+     */
+    public final double getAverageNumberOfGaps() {
+        return ( double ) _total_gap_runs / _seqs;
+    }
+
+    /**
+     * Returns the ratio of gaps, as MsaMethods.calcGapRatio( msa ).
+     *
+     */
+    public final double getGapRatio() {
+        return ( double ) _total_gaps / ( ( double ) _length * _seqs );
+    }
+
+    public final int getLength() {
+        return _length;
+    }
+
+    /**
+     * Returns the normalized Shannon entropy for k = 7 or k = 21, as
+     * MsaMethods.calcNormalizedShannonsEntropy( k, msa ), up to rounding
+     * errors.
+     *
+     */
+    public final double getNormalizedShannonsEntropy( final int k ) {
+        final int[] distinct;
+        final double[] sums;
+        if ( k == 7 ) {
+            distinct = _class_distinct;
+            sums = _class_sums;
+        }
+        else if ( k == 21 ) {
+            distinct = _residue_distinct;
+            sums = _residue_sums;
+        }
+        else {
+            throw new IllegalArgumentException( "illegal value for k: " + k );
+        }
+        final double ln_n = Math.log( _seqs );
+        final double norm = _seqs < k ? ln_n : Math.log( k );
+        double s = 0;
+        for( int col = 0; col < _length; ++col ) {
+            final int c = _columns[ col ];
+            if ( distinct[ c ] > 1 ) {
+                s -= ( ( sums[ c ] / _seqs ) - ln_n ) / norm;
+            }
+        }
+        return s / _length;
+    }
+
+    public final int getNumberOfGaps( final int col ) {
+        return _gaps[ _columns[ col ] ];
+    }
+
+    public final int getNumberOfSequences() {
+        return _seqs;
+    }
+
+    /**
+     * Updates the statistics for the deletion of column col; has to be called
+     * before the column is deleted from the msa.
+     *
+     */
+    final void removeColumn( final int col ) {
+        final char[] column = _msa.getColumn( col, new char[ _seqs ] );
+        final char[] prev = col > 0 ? _msa.getColumn( col - 1, new char[ _seqs ] ) : null;
+        final char[] next = col < ( _length - 1 ) ? _msa.getColumn( col + 1, new char[ _seqs ] ) : null;
+        for( int row = 0; row < _seqs; ++row ) {
+            final boolean gap = column[ row ] == MolecularSequence.GAP;
+            final boolean prev_gap = ( prev != null ) && ( prev[ row ] == MolecularSequence.GAP );
+            final boolean next_gap = ( next != null ) && ( next[ row ] == MolecularSequence.GAP );
+            // A run of gaps disappears if the column is a gap by itself, two
+            // runs are joined if the column separates them.
+            if ( ( gap && !prev_gap && !next_gap ) || ( !gap && prev_gap && next_gap ) ) {
+                --_gap_runs[ _rows[ row ] ];
+                --_total_gap_runs;
+            }
+        }
+        _total_gaps -= _gaps[ _columns[ col ] ];
+        System.arraycopy( _columns, col + 1, _columns, col, _length - col - 1 );
+        --_length;
+    }
+
+    /**
+     * Updates the statistics for the deletion of row row; has to be called
+     * before the row is deleted from the msa.
+     *
+     */
+    final void removeRow( final int row ) {
+        final char[] residues = _msa.getRow( row, new char[ _length ] );
+        for( int col = 0; col < _length; ++col ) {
+            final int c = _columns[ col ];
+            final int r = _index[ residues[ col ] ];
+            final int i = ( c * _number_of_residues ) + r;
+            final int n = _residue_counts[ i ]--;
+            _residue_sums[ c ] += _x_ln_x[ n - 1 ] - _x_ln_x[ n ];
+            if ( n == 1 ) {
+                --_residue_distinct[ c ];
+            }
+            final int j = ( c * NUMBER_OF_CLASSES ) + _classes[ r ];
+            final int m = _class_counts[ j ]--;
+            _class_sums[ c ] += _x_ln_x[ m - 1 ] - _x_ln_x[ m ];
+            if ( m == 1 ) {
+                --_class_distinct[ c ];
+            }
+            if ( residues[ col ] == MolecularSequence.GAP ) {
+                --_gaps[ c ];
+                --_total_gaps;
+            }
+        }
+        _total_gap_runs -= _gap_runs[ _rows[ row ] ];
+        System.arraycopy( _rows, row + 1, _rows, row, _seqs - row - 1 );
+        --_seqs;
+    }
+
+    // The residue classes of MsaMethods.calcNormalizedShannonsEntropy for
+    // k = 7: aliphatic [AVLIMC], aromatic [FWYH], polar [STNQ], positive [KR],
+    // negative [DE], special conformations [GP], and all others (including
+    // gaps).
+    private final static int determineClass( final char c ) {
+        switch ( c ) {
+            case 'A':
+            case 'V':
+            case 'L':
+            case 'I':
+            case 'M':
+            case 'C':
+                return 0;
+            case 'F':
+            case 'W':
+            case 'Y':
+            case 'H':
+                return 1;
+            case 'S':
+            case 'T':
+            case 'N':
+            case 'Q':
+                return 2;
+            case 'K':
+            case 'R':
+                return 3;
+            case 'D':
+            case 'E':
+                return 4;
+            case 'G':
+            case 'P':
+                return 5;
+            default:
+                return 6;
+        }
+    }
+}
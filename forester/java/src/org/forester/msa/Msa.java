@@ -52,6 +52,22 @@ public interface Msa {
 
     public List<Character> getColumnAt( int col );
 
+    /**
+     * Copies the residues of column col into residues (which needs to have
+     * at least getNumberOfSequences() elements).
+     *
+     * @return residues
+     */
+    public char[] getColumn( int col, char[] residues );
+
+    /**
+     * Copies the residues of row row into residues (which needs to have at
+     * least getLength() elements).
+     *
+     * @return residues
+     */
+    public char[] getRow( int row, char[] residues );
+
     public MolecularSequence getSequence( final String id );
 
     public MolecularSequence getSequence( final int row );
@@ -60,21 +60,24 @@ public final class MsaMethods {
         }
         final boolean ignore_too_short_seqs = min_allowed_length > 0;
         final boolean[] delete_cols = new boolean[ msa.getLength() ];
+        final int[] gap_sums = calcGapSumsPerColumn( msa );
         int new_length = 0;
         for( int col = 0; col < msa.getLength(); ++col ) {
-            delete_cols[ col ] = ( ( double ) calcGapSumPerColumn( msa, col ) / msa.getNumberOfSequences() ) > max_allowed_gap_ratio;
+            delete_cols[ col ] = ( ( double ) gap_sums[ col ] / msa.getNumberOfSequences() ) > max_allowed_gap_ratio;
             if ( !delete_cols[ col ] ) {
                 ++new_length;
             }
         }
         final List<MolecularSequence> seqs = new ArrayList<MolecularSequence>( msa.getNumberOfSequences() );
+        final char[] residues = new char[ msa.getLength() ];
         for( int row = 0; row < msa.getNumberOfSequences(); ++row ) {
             final char[] mol_seq = new char[ new_length ];
             int new_col = 0;
             int non_gap_cols_sum = 0;
+            msa.getRow( row, residues );
             for( int col = 0; col < msa.getLength(); ++col ) {
                 if ( !delete_cols[ col ] ) {
-                    final char residue = msa.getResidueAt( row, col );
+                    final char residue = residues[ col ];
                     mol_seq[ new_col++ ] = ( residue );
                     if ( residue != MolecularSequence.GAP ) {
                         ++non_gap_cols_sum;
@@ -119,23 +122,24 @@ public final class MsaMethods {
     public static final int[] calcNumberOfGapsInMsa( final Msa msa ) {
         final int seqs = msa.getNumberOfSequences();
         final int[]  gaps= new int[ seqs ];
+        final char[] residues = new char[ msa.getLength() ];
         for( int i = 0; i < seqs; ++i ) {
-            gaps[ i ] =  calcNumberOfGaps( msa.getSequence( i ) );
+            gaps[ i ] =  calcNumberOfGaps( msa.getRow( i, residues ) );
         }
         return gaps;
     }
     
     
 
-    public final static int calcNumberOfGaps( final MolecularSequence seq  ) {
+    public final static int calcNumberOfGaps( final char[] residues ) {
         int gaps = 0;
         boolean was_gap = false;
-        for( int i = 0; i < seq.getLength(); ++i ) {
-            if ( seq.isGapAt( i ) ) {
-               if ( !was_gap ) {
-                   ++gaps;
-                   was_gap = true;
-               }
+        for( final char residue : residues ) {
+            if ( residue == MolecularSequence.GAP ) {
+                if ( !was_gap ) {
+                    ++gaps;
+                    was_gap = true;
+                }
             }
             else {
                 was_gap = false;
@@ -144,19 +148,26 @@ public final class MsaMethods {
         return gaps;
     }
 
+    public final static int calcNumberOfGaps( final MolecularSequence seq  ) {
+        return calcNumberOfGaps( seq.getMolecularSequence() );
+    }
+
     public static DescriptiveStatistics calcBasicGapinessStatistics( final Msa msa ) {
         final DescriptiveStatistics stats = new BasicDescriptiveStatistics();
+        final int[] gap_sums = calcGapSumsPerColumn( msa );
         for( int i = 0; i < msa.getLength(); ++i ) {
-            stats.addValue( ( double ) calcGapSumPerColumn( msa, i ) / msa.getNumberOfSequences() );
+            stats.addValue( ( double ) gap_sums[ i ] / msa.getNumberOfSequences() );
         }
         return stats;
     }
 
     public static double calcGapRatio( final Msa msa ) {
         int gaps = 0;
+        final char[] residues = new char[ msa.getLength() ];
         for( int seq = 0; seq < msa.getNumberOfSequences(); ++seq ) {
+            msa.getRow( seq, residues );
             for( int i = 0; i < msa.getLength(); ++i ) {
-                if ( msa.getResidueAt( seq, i ) == MolecularSequence.GAP ) {
+                if ( residues[ i ] == MolecularSequence.GAP ) {
                     gaps++;
                 }
             }
@@ -165,15 +176,35 @@ public final class MsaMethods {
     }
 
     public static int calcGapSumPerColumn( final Msa msa, final int col ) {
+        final char[] residues = msa.getColumn( col, new char[ msa.getNumberOfSequences() ] );
         int gap_rows = 0;
-        for( int j = 0; j < msa.getNumberOfSequences(); ++j ) {
-            if ( msa.isGapAt( j, col ) ) {
+        for( final char residue : residues ) {
+            if ( residue == MolecularSequence.GAP ) {
                 gap_rows++;
             }
         }
         return gap_rows;
     }
 
+    /**
+     * Returns the number of gaps in each column, reading the msa row by row.
+     *
+     */
+    public static int[] calcGapSumsPerColumn( final Msa msa ) {
+        final int length = msa.getLength();
+        final int[] gap_sums = new int[ length ];
+        final char[] residues = new char[ length ];
+        for( int row = 0; row < msa.getNumberOfSequences(); ++row ) {
+            msa.getRow( row, residues );
+            for( int col = 0; col < length; ++col ) {
+                if ( residues[ col ] == MolecularSequence.GAP ) {
+                    gap_sums[ col ]++;
+                }
+            }
+        }
+        return gap_sums;
+    }
+
     final public static double calcNormalizedShannonsEntropy( final int k, final Msa msa ) {
         double s = 0;
         for( int col = 0; col < msa.getLength(); ++col ) {
@@ -227,9 +258,16 @@ public final class MsaMethods {
 
     final public static DescriptiveStatistics calculateEffectiveLengthStatistics( final Msa msa ) {
         final DescriptiveStatistics stats = new BasicDescriptiveStatistics();
+        final char[] residues = new char[ msa.getLength() ];
         for( int row = 0; row < msa.getNumberOfSequences(); ++row ) {
-            final MolecularSequence s = msa.getSequence( row );
-            stats.addValue( s.getLength() - s.getNumberOfGapResidues() );
+            msa.getRow( row, residues );
+            int non_gaps = 0;
+            for( final char residue : residues ) {
+                if ( residue != MolecularSequence.GAP ) {
+                    ++non_gaps;
+                }
+            }
+            stats.addValue( non_gaps );
         }
         return stats;
     }
@@ -257,7 +295,7 @@ public final class MsaMethods {
 
     public static SortedMap<Character, Integer> calculateResidueDestributionPerColumn( final Msa msa, final int column ) {
         final SortedMap<Character, Integer> map = new TreeMap<Character, Integer>();
-        for( final Character r : msa.getColumnAt( column ) ) {
+        for( final char r : msa.getColumn( column, new char[ msa.getNumberOfSequences() ] ) ) {
             if ( r != MolecularSequence.GAP ) {
                 if ( !map.containsKey( r ) ) {
                     map.put( r, 1 );
@@ -302,10 +340,12 @@ public final class MsaMethods {
 
     public static Msa removeSequencesByMinimalLength( final Msa msa, final int min_effective_length ) {
         final List<Integer> to_remove_rows = new ArrayList<Integer>();
+        final char[] residues = new char[ msa.getLength() ];
         for( int seq = 0; seq < msa.getNumberOfSequences(); ++seq ) {
+            msa.getRow( seq, residues );
             int eff_length = 0;
             for( int i = 0; i < msa.getLength(); ++i ) {
-                if ( msa.getResidueAt( seq, i ) != MolecularSequence.GAP ) {
+                if ( residues[ i ] != MolecularSequence.GAP ) {
                     eff_length++;
                 }
             }
@@ -331,8 +371,9 @@ public final class MsaMethods {
 
     final private static HashMap<Character, Integer> calcResidueDistribution20( final Msa msa, final int col ) {
         final HashMap<Character, Integer> counts = new HashMap<Character, Integer>();
+        final char[] column = msa.getColumn( col, new char[ msa.getNumberOfSequences() ] );
         for( int row = 0; row < msa.getNumberOfSequences(); ++row ) {
-            final char c = msa.getResidueAt( row, col );
+            final char c = column[ row ];
             if ( c != MolecularSequence.GAP ) {
                 if ( !counts.containsKey( c ) ) {
                     counts.put( c, 1 );
@@ -347,8 +388,9 @@ public final class MsaMethods {
 
     final private static HashMap<Character, Integer> calcResidueDistribution21( final Msa msa, final int col ) {
         final HashMap<Character, Integer> counts = new HashMap<Character, Integer>();
+        final char[] column = msa.getColumn( col, new char[ msa.getNumberOfSequences() ] );
         for( int row = 0; row < msa.getNumberOfSequences(); ++row ) {
-            final char c = msa.getResidueAt( row, col );
+            final char c = column[ row ];
             if ( !counts.containsKey( c ) ) {
                 counts.put( c, 1 );
             }
@@ -365,8 +407,9 @@ public final class MsaMethods {
         // special conformations [GP] and gaps. This convention follows that
         // of Mirny & Shakhnovich (1999, J Mol Biol 291:177-196).
         final HashMap<Character, Integer> counts = new HashMap<Character, Integer>();
+        final char[] column = msa.getColumn( col, new char[ msa.getNumberOfSequences() ] );
         for( int row = 0; row < msa.getNumberOfSequences(); ++row ) {
-            final char c = msa.getResidueAt( row, col );
+            final char c = column[ row ];
             char x;
             if ( ( c == 'A' ) || ( c == 'V' ) || ( c == 'L' ) || ( c == 'I' ) || ( c == 'M' ) || ( c == 'C' ) ) {
                 // aliphatic
@@ -411,8 +454,9 @@ public final class MsaMethods {
         // special conformations [GP] and gaps. This convention follows that
         // of Mirny & Shakhnovich (1999, J Mol Biol 291:177-196).
         final HashMap<Character, Integer> counts = new HashMap<Character, Integer>();
+        final char[] column = msa.getColumn( col, new char[ msa.getNumberOfSequences() ] );
         for( int row = 0; row < msa.getNumberOfSequences(); ++row ) {
-            final char c = msa.getResidueAt( row, col );
+            final char c = column[ row ];
             char x = '-';
             if ( ( c == 'A' ) || ( c == 'V' ) || ( c == 'L' ) || ( c == 'I' ) || ( c == 'M' ) || ( c == 'C' ) ) {
                 // aliphatic
@@ -36,6 +36,14 @@ public final class ResampleableMsa extends BasicMsa {
         super( msa );
     }
 
+    @Override
+    final public char[] getColumn( final int col, final char[] residues ) {
+        if ( _resampled_column_positions != null ) {
+            return super.getColumn( _resampled_column_positions[ col ], residues );
+        }
+        return super.getColumn( col, residues );
+    }
+
     @Override
     final public char getResidueAt( final int row, final int col ) {
         if ( _resampled_column_positions != null ) {
@@ -44,6 +52,17 @@ public final class ResampleableMsa extends BasicMsa {
         return super.getResidueAt( row, col );
     }
 
+    @Override
+    final public char[] getRow( final int row, final char[] residues ) {
+        if ( _resampled_column_positions != null ) {
+            for( int col = 0; col < _resampled_column_positions.length; ++col ) {
+                residues[ col ] = super.getResidueAt( row, _resampled_column_positions[ col ] );
+            }
+            return residues;
+        }
+        return super.getRow( row, residues );
+    }
+
     final public void resample( final int[] resampled_column_positions ) {
         if ( resampled_column_positions.length != getLength() ) {
             throw new IllegalArgumentException( "illegal attempt to use " + resampled_column_positions.length
@@ -59,6 +78,6 @@ public final class ResampleableMsa extends BasicMsa {
 
     @Override
     public MolecularSequence getSequence( final int row ) {
-        return new BasicSequence( getIdentifier( row ), getSequenceAsString( row ).toString(), getType() );
+        return new BasicSequence( getIdentifier( row ), getRow( row, new char[ getLength() ] ), getType() );
     }
 }
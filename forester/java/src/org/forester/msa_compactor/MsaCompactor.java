@@ -40,10 +40,12 @@ import java.util.TreeSet;
 import org.forester.archaeopteryx.Archaeopteryx;
 import org.forester.archaeopteryx.Configuration;
 import org.forester.evoinference.distance.NeighborJoiningF;
+import org.forester.evoinference.distance.NeighborJoiningP;
 import org.forester.evoinference.distance.PairwiseDistanceCalculator;
 import org.forester.evoinference.distance.PairwiseDistanceCalculator.PWD_DISTANCE_METHOD;
+import org.forester.evoinference.distance.PairwiseDistanceCalculatorP;
 import org.forester.evoinference.matrix.distance.BasicSymmetricalDistanceMatrix;
-import org.forester.evoinference.tools.BootstrapResampler;
+import org.forester.evoinference.tools.NeighborJoiningBootstrap;
 import org.forester.io.parsers.nhx.NHXParser.TAXONOMY_EXTRACTION;
 import org.forester.io.parsers.phyloxml.PhyloXmlDataFormatException;
 import org.forester.io.parsers.util.ParserUtils;
@@ -55,7 +57,6 @@ import org.forester.msa.Msa;
 import org.forester.msa.Msa.MSA_FORMAT;
 import org.forester.msa.MsaInferrer;
 import org.forester.msa.MsaMethods;
-import org.forester.msa.ResampleableMsa;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyMethods;
 import org.forester.phylogeny.PhylogenyMethods.DESCENDANT_SORT_PRIORITY;
@@ -65,7 +66,6 @@ import org.forester.phylogeny.data.NodeVisualData.NodeFill;
 import org.forester.phylogeny.data.NodeVisualData.NodeShape;
 import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
 import org.forester.sequence.MolecularSequence;
-import org.forester.tools.ConfidenceAssessor;
 import org.forester.util.BasicDescriptiveStatistics;
 import org.forester.util.DescriptiveStatistics;
 import org.forester.util.ForesterUtil;
@@ -83,6 +83,7 @@ public class MsaCompactor {
     private String                             _maffts_opts               = "--auto";
     private DeleteableMsa                      _msa                       = null;
     private boolean                            _normalize_for_effective_seq_length                      = true;
+    private int                                _nj_threads                = 1;
     private File                               _out_file_base             = null;
     private MSA_FORMAT                         _output_format             = MSA_FORMAT.FASTA;
     private String                             _path_to_mafft             = null;
@@ -152,7 +153,7 @@ public class MsaCompactor {
         if ( x < 2 ) {
             x = 2;
         }
-        MsaProperties msa_prop = new MsaProperties( _msa, "", _calculate_shannon_entropy );
+        MsaProperties msa_prop = new MsaProperties( _msa.getStatistics(), "", _calculate_shannon_entropy );
         msa_props.add( msa_prop );
         printTableHeader();
         printMsaProperties( msa_prop );
@@ -164,7 +165,7 @@ public class MsaCompactor {
             if ( realign && isPrintMsaStatsWriteOutfileAndRealign( i ) ) {
                 removeGapColumns();
                 realignWithMafft();
-                msa_prop = new MsaProperties( _msa, id, _calculate_shannon_entropy );
+                msa_prop = new MsaProperties( _msa.getStatistics(), id, _calculate_shannon_entropy );
                 msa_props.add( msa_prop );
                 printMsaProperties( msa_prop );
                 System.out.print( "(realigned)" );
@@ -172,7 +173,7 @@ public class MsaCompactor {
             }
             else if ( isPrintMsaStats( i ) ) {
                 removeGapColumns();
-                msa_prop = new MsaProperties( _msa, id, _calculate_shannon_entropy );
+                msa_prop = new MsaProperties( _msa.getStatistics(), id, _calculate_shannon_entropy );
                 msa_props.add( msa_prop );
                 printMsaProperties( msa_prop );
                 System.out.println();
@@ -319,24 +320,24 @@ public class MsaCompactor {
             addSeqs2Tree( _msa, phy );
         }
         printTableHeader();
-        MsaProperties msa_prop = new MsaProperties( _msa, "", _calculate_shannon_entropy );
+        MsaProperties msa_prop = new MsaProperties( _msa.getStatistics(), "", _calculate_shannon_entropy );
         msa_props.add( msa_prop );
         printMsaProperties( msa_prop );
         System.out.println();
         int i = 0;
-        while ( MsaMethods.calcGapRatio( _msa ) > mean_gapiness ) {
+        while ( _msa.getStatistics().getGapRatio() > mean_gapiness ) {
             final String id = to_remove_ids.get( i );
             _removed_seq_ids.add( id );
             final MolecularSequence deleted = _msa.deleteRow( id, true );
             _removed_seqs.add( deleted );
             removeGapColumns();
-            if ( isPrintMsaStatsWriteOutfileAndRealign( i ) || ( MsaMethods.calcGapRatio( _msa ) <= mean_gapiness ) ) {
+            if ( isPrintMsaStatsWriteOutfileAndRealign( i ) || ( _msa.getStatistics().getGapRatio() <= mean_gapiness ) ) {
                 msa_prop = printMsaStatsWriteOutfileAndRealign( _realign, id );
                 msa_props.add( msa_prop );
                 System.out.println();
             }
             else if ( isPrintMsaStats( i ) ) {
-                msa_prop = new MsaProperties( _msa, id, _calculate_shannon_entropy );
+                msa_prop = new MsaProperties( _msa.getStatistics(), id, _calculate_shannon_entropy );
                 msa_props.add( msa_prop );
                 printMsaProperties( msa_prop );
                 System.out.println();
@@ -377,7 +378,7 @@ public class MsaCompactor {
             addSeqs2Tree( _msa, phy );
         }
         printTableHeader();
-        MsaProperties msa_prop = new MsaProperties( _msa, "", _calculate_shannon_entropy );
+        MsaProperties msa_prop = new MsaProperties( _msa.getStatistics(), "", _calculate_shannon_entropy );
         msa_props.add( msa_prop );
         printMsaProperties( msa_prop );
         System.out.println();
@@ -394,7 +395,7 @@ public class MsaCompactor {
                 System.out.println();
             }
             else if ( isPrintMsaStats( i ) ) {
-                msa_prop = new MsaProperties( _msa, id, _calculate_shannon_entropy );
+                msa_prop = new MsaProperties( _msa.getStatistics(), id, _calculate_shannon_entropy );
                 printMsaProperties( msa_prop );
                 msa_props.add( msa_prop );
                 System.out.println();
@@ -435,7 +436,7 @@ public class MsaCompactor {
             addSeqs2Tree( _msa, phy );
         }
         printTableHeader();
-        MsaProperties msa_prop = new MsaProperties( _msa, "", _calculate_shannon_entropy );
+        MsaProperties msa_prop = new MsaProperties( _msa.getStatistics(), "", _calculate_shannon_entropy );
         msa_props.add( msa_prop );
         printMsaProperties( msa_prop );
         System.out.println();
@@ -451,7 +452,7 @@ public class MsaCompactor {
                 System.out.println();
             }
             else if ( isPrintMsaStats( i ) ) {
-                msa_prop = new MsaProperties( _msa, id, _calculate_shannon_entropy );
+                msa_prop = new MsaProperties( _msa.getStatistics(), id, _calculate_shannon_entropy );
                 msa_props.add( msa_prop );
                 printMsaProperties( msa_prop );
                 System.out.println();
@@ -491,6 +492,13 @@ public class MsaCompactor {
         _normalize_for_effective_seq_length = normalize_for_effective_seq_length;
     }
 
+    public final void setNumberOfThreadsForNJ( final int nj_threads ) {
+        if ( nj_threads < 1 ) {
+            throw new IllegalArgumentException( "number of threads is out of range: " + nj_threads );
+        }
+        _nj_threads = nj_threads;
+    }
+
     final public void setOutFileBase( final File out_file_base ) {
         _out_file_base = out_file_base;
     }
@@ -567,15 +575,19 @@ public class MsaCompactor {
     private final GapContribution[] calcGapContribtions( final boolean normalize_for_effective_seq_length ) {
         final double gappiness[] = calcGappiness();
         final GapContribution stats[] = new GapContribution[ _msa.getNumberOfSequences() ];
+        final char[] residues = new char[ _msa.getLength() ];
         for( int row = 0; row < _msa.getNumberOfSequences(); ++row ) {
             stats[ row ] = new GapContribution( _msa.getIdentifier( row ) );
+            _msa.getRow( row, residues );
+            int non_gap_residues = 0;
             for( int col = 0; col < _msa.getLength(); ++col ) {
-                if ( !_msa.isGapAt( row, col ) ) {
+                if ( residues[ col ] != MolecularSequence.GAP ) {
                     stats[ row ].addToValue( gappiness[ col ] );
+                    ++non_gap_residues;
                 }
             }
             if ( normalize_for_effective_seq_length ) {
-                stats[ row ].divideValue( calcNonGapResidues( _msa.getSequence( row ) ) );
+                stats[ row ].divideValue( non_gap_residues );
             }
             else {
                 stats[ row ].divideValue( _msa.getLength() );
@@ -594,8 +606,9 @@ public class MsaCompactor {
         final int l = _msa.getLength();
         final double gappiness[] = new double[ l ];
         final int seqs = _msa.getNumberOfSequences();
+        final int[] gap_sums = MsaMethods.calcGapSumsPerColumn( _msa );
         for( int i = 0; i < l; ++i ) {
-            gappiness[ i ] = ( double ) MsaMethods.calcGapSumPerColumn( _msa, i ) / seqs;
+            gappiness[ i ] = ( double ) gap_sums[ i ] / seqs;
         }
         return gappiness;
     }
@@ -611,18 +624,36 @@ public class MsaCompactor {
                                               final boolean write_matrix,
                                               final String matrix_name ) {
         BasicSymmetricalDistanceMatrix m = null;
-        switch ( pwd_distance_method ) {
-            case KIMURA_DISTANCE:
-                m = PairwiseDistanceCalculator.calcKimuraDistances( msa );
-                break;
-            case POISSON_DISTANCE:
-                m = PairwiseDistanceCalculator.calcPoissonDistances( msa );
-                break;
-            case FRACTIONAL_DISSIMILARITY:
-                m = PairwiseDistanceCalculator.calcFractionalDissimilarities( msa );
-                break;
-            default:
-                throw new IllegalArgumentException( "invalid pwd method" );
+        if ( _nj_threads > 1 ) {
+            final PairwiseDistanceCalculatorP pwdc = PairwiseDistanceCalculatorP.createInstance( msa, _nj_threads );
+            switch ( pwd_distance_method ) {
+                case KIMURA_DISTANCE:
+                    m = pwdc.calcKimuraDistances();
+                    break;
+                case POISSON_DISTANCE:
+                    m = pwdc.calcPoissonDistances();
+                    break;
+                case FRACTIONAL_DISSIMILARITY:
+                    m = pwdc.calcFractionalDissimilarities();
+                    break;
+                default:
+                    throw new IllegalArgumentException( "invalid pwd method" );
+            }
+        }
+        else {
+            switch ( pwd_distance_method ) {
+                case KIMURA_DISTANCE:
+                    m = PairwiseDistanceCalculator.calcKimuraDistances( msa );
+                    break;
+                case POISSON_DISTANCE:
+                    m = PairwiseDistanceCalculator.calcPoissonDistances( msa );
+                    break;
+                case FRACTIONAL_DISSIMILARITY:
+                    m = PairwiseDistanceCalculator.calcFractionalDissimilarities( msa );
+                    break;
+                default:
+                    throw new IllegalArgumentException( "invalid pwd method" );
+            }
         }
         if ( write_matrix ) {
             try {
@@ -632,6 +663,9 @@ public class MsaCompactor {
                 e.printStackTrace();
             }
         }
+        if ( _nj_threads > 1 ) {
+            return NeighborJoiningP.createInstance( false, 5, _nj_threads ).execute( m );
+        }
         final NeighborJoiningF nj = NeighborJoiningF.createInstance( false, 5 );
         final Phylogeny phy = nj.execute( m );
         return phy;
@@ -677,16 +711,8 @@ public class MsaCompactor {
         final Phylogeny master_phy = inferNJphylogeny( PWD_DISTANCE_METHOD.KIMURA_DISTANCE, _msa, true, matrix );
         final int seed = 15;
         final int n = 100;
-        final ResampleableMsa resampleable_msa = new ResampleableMsa( _msa );
-        final int[][] resampled_column_positions = BootstrapResampler.createResampledColumnPositions( _msa.getLength(),
-                                                                                                      n,
-                                                                                                      seed );
-        final Phylogeny[] eval_phys = new Phylogeny[ n ];
-        for( int i = 0; i < n; ++i ) {
-            resampleable_msa.resample( resampled_column_positions[ i ] );
-            eval_phys[ i ] = inferNJphylogeny( PWD_DISTANCE_METHOD.KIMURA_DISTANCE, resampleable_msa, false, null );
-        }
-        ConfidenceAssessor.evaluate( "bootstrap", eval_phys, master_phy, true, 1 );
+        NeighborJoiningBootstrap.createInstance( _msa, PWD_DISTANCE_METHOD.KIMURA_DISTANCE, _nj_threads )
+                .execute( "bootstrap", master_phy, n, seed );
         PhylogenyMethods.extractFastaInformation( master_phy );
         return master_phy;
     }
@@ -705,7 +731,7 @@ public class MsaCompactor {
         if ( realign ) {
             realignWithMafft();
         }
-        final MsaProperties msa_prop = new MsaProperties( _msa, id, _calculate_shannon_entropy );
+        final MsaProperties msa_prop = new MsaProperties( _msa.getStatistics(), id, _calculate_shannon_entropy );
         printMsaProperties( msa_prop );
         final String s = writeOutfile();
         System.out.print( "-> " + s + ( realign ? "\t(realigned)" : "" ) );
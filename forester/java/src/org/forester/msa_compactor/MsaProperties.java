@@ -24,6 +24,7 @@
 
 package org.forester.msa_compactor;
 
+import org.forester.msa.IncrementalMsaStatistics;
 import org.forester.msa.Msa;
 import org.forester.msa.MsaMethods;
 
@@ -69,6 +70,30 @@ public final class MsaProperties {
         }
     }
 
+    /**
+     * Creates the properties from statistics which are kept up to date while
+     * rows and columns are deleted (instead of recalculating them from the
+     * msa).
+     *
+     */
+    public MsaProperties( final IncrementalMsaStatistics stats,
+                          final String removed_seq,
+                          final boolean calculate_normalized_shannon_entropy ) {
+        _number_of_sequences = stats.getNumberOfSequences();
+        _length = stats.getLength();
+        _gap_ratio = stats.getGapRatio();
+        _removed_seq = removed_seq;
+        _avg_number_of_gaps = stats.getAverageNumberOfGaps();
+        if ( calculate_normalized_shannon_entropy ) {
+            _entropy7 = stats.getNormalizedShannonsEntropy( 7 );
+            _entropy21 = stats.getNormalizedShannonsEntropy( 21 );
+        }
+        else {
+            _entropy7 = -1;
+            _entropy21 = -1;
+        }
+    }
+
     public final double getEntropy21() {
         return _entropy21;
     }
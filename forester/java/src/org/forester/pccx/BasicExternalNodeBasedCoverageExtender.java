@@ -34,6 +34,7 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
+import org.forester.phylogeny.LCAIndex;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyNode;
 import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
@@ -49,6 +50,7 @@ public class BasicExternalNodeBasedCoverageExtender implements CoverageExtender
                          final List<SortedMap<PhylogenyNode, Double>> external_node_scores_list,
                          final List<SortedMap<PhylogenyNode, Double>> external_node_scores_list_temp,
                          final List<Phylogeny> phylogenies,
+                         final List<LCAIndex> lca_indices,
                          final Set<String> already_covered,
                          final PrintStream out,
                          final int i,
@@ -61,6 +63,7 @@ public class BasicExternalNodeBasedCoverageExtender implements CoverageExtender
             if ( !already_covered.contains( name ) ) {
                 final double score = BasicExternalNodeBasedCoverageExtender
                         .calculateCoverage( phylogenies,
+                                            lca_indices,
                                             name,
                                             options,
                                             scoring_method,
@@ -73,6 +76,7 @@ public class BasicExternalNodeBasedCoverageExtender implements CoverageExtender
             }
         }
         BasicExternalNodeBasedCoverageExtender.calculateCoverage( phylogenies,
+                                                                  lca_indices,
                                                                   best_name,
                                                                   options,
                                                                   scoring_method,
@@ -115,13 +119,16 @@ public class BasicExternalNodeBasedCoverageExtender implements CoverageExtender
         final List<String> best_names = new ArrayList<String>();
         final Set<String> my_already_covered = new HashSet<String>();
         final List<SortedMap<PhylogenyNode, Double>> external_node_scores_list = new ArrayList<SortedMap<PhylogenyNode, Double>>();
+        final List<LCAIndex> lca_indices = new ArrayList<LCAIndex>();
         for( int i = 0; i < phylogenies.size(); ++i ) {
             external_node_scores_list.add( ModelingUtils.setUpExternalCoverageHashMap( phylogenies.get( i ) ) );
+            lca_indices.add( new LCAIndex( phylogenies.get( i ) ) );
         }
         if ( already_covered != null ) {
             for( final String name : already_covered ) {
                 my_already_covered.add( name );
                 BasicExternalNodeBasedCoverageExtender.calculateCoverage( phylogenies,
+                                                                          lca_indices,
                                                                           name,
                                                                           options,
                                                                           scoring_method,
@@ -139,6 +146,7 @@ public class BasicExternalNodeBasedCoverageExtender implements CoverageExtender
                                       external_node_scores_list,
                                       external_node_scores_list,
                                       phylogenies,
+                                      lca_indices,
                                       my_already_covered,
                                       out,
                                       i,
@@ -150,6 +158,7 @@ public class BasicExternalNodeBasedCoverageExtender implements CoverageExtender
     }
 
     private static double calculateCoverage( final List<Phylogeny> phylogenies,
+                                             final List<LCAIndex> lca_indices,
                                              final String name,
                                              final CoverageCalculationOptions options,
                                              final BranchCountingBasedScoringMethod scoring_method,
@@ -158,6 +167,7 @@ public class BasicExternalNodeBasedCoverageExtender implements CoverageExtender
         int i = 0;
         double score_sum = 0.0;
         for( final Object element : phylogenies ) {
+            final LCAIndex lca_index = lca_indices.get( i );
             SortedMap<PhylogenyNode, Double> external_node_scores;
             if ( update_external_node_scores_list ) {
                 external_node_scores = external_node_scores_list.get( i++ );
@@ -167,9 +177,8 @@ public class BasicExternalNodeBasedCoverageExtender implements CoverageExtender
             }
             final Phylogeny phylogeny = ( Phylogeny ) element;
             scoring_method.calculateScoreForExternalNode( external_node_scores,
-                                                          phylogeny,
-                                                          phylogeny.getNode( name ),
-                                                          options );
+                                                          lca_index,
+                                                          phylogeny.getNode( name ) );
             for( final Object element2 : external_node_scores.values() ) {
                 score_sum += ( ( Double ) element2 ).doubleValue();
             }
@@ -28,6 +28,7 @@ package org.forester.pccx;
 
 import java.util.SortedMap;
 
+import org.forester.phylogeny.LCAIndex;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyNode;
 
@@ -39,13 +40,14 @@ import org.forester.phylogeny.PhylogenyNode;
 public class BranchCountingBasedScoringMethod implements ScoringMethodForExternalNode {
 
     double calculateScoreContributionPerExternalNode( final PhylogenyNode external_node,
-                                                      final PhylogenyNode current_node ) {
+                                                      final PhylogenyNode current_node,
+                                                      final LCAIndex lca_index ) {
         double score_contribution = 0.0;
         if ( current_node == external_node ) {
             score_contribution = 1.0;
         }
         else {
-            score_contribution = 1.0 / ModelingUtils.calculateBranchSum( external_node, current_node );
+            score_contribution = 1.0 / ModelingUtils.calculateBranchSum( external_node, current_node, lca_index );
         }
         return score_contribution;
     }
@@ -55,9 +57,23 @@ public class BranchCountingBasedScoringMethod implements ScoringMethodForExterna
                                                final Phylogeny phylogeny,
                                                final PhylogenyNode external_node,
                                                final CoverageCalculationOptions options ) {
+        calculateScoreForExternalNode( external_node_scores, new LCAIndex( phylogeny ), external_node );
+    }
+
+    /**
+     * Same as calculateScoreForExternalNode(SortedMap, Phylogeny,
+     * PhylogenyNode, CoverageCalculationOptions), for callers which score
+     * the same phylogeny repeatedly and therefore create its LCA index once.
+     *
+     */
+    void calculateScoreForExternalNode( final SortedMap<PhylogenyNode, Double> external_node_scores,
+                                        final LCAIndex lca_index,
+                                        final PhylogenyNode external_node ) {
         for( final Object element : external_node_scores.keySet() ) {
             final PhylogenyNode current_node = ( PhylogenyNode ) element;
-            final double score_contribution = calculateScoreContributionPerExternalNode( external_node, current_node );
+            final double score_contribution = calculateScoreContributionPerExternalNode( external_node,
+                                                                                         current_node,
+                                                                                         lca_index );
             final double prev_score_contribution = external_node_scores.get( current_node );
             if ( score_contribution > prev_score_contribution ) {
                 external_node_scores.put( current_node, score_contribution );
@@ -31,6 +31,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
 
+import org.forester.phylogeny.LCAIndex;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyMethods;
 import org.forester.phylogeny.PhylogenyNode;
@@ -89,11 +90,11 @@ public class ExternalNodeBasedCoverageMethod implements CoverageCalculationMetho
                                       final double normalization_factor ) {
         final SortedMap<PhylogenyNode, Double> external_node_scores = ModelingUtils
                 .setUpExternalCoverageHashMap( phylogeny );
+        final LCAIndex lca_index = new LCAIndex( phylogeny );
         for( final Object element : names ) {
             scoring_method.calculateScoreForExternalNode( external_node_scores,
-                                                          phylogeny,
-                                                          phylogeny.getNode( ( String ) element ),
-                                                          options );
+                                                          lca_index,
+                                                          phylogeny.getNode( ( String ) element ) );
         }
         if ( annotate_phylogeny ) {
             colorizePhylogenyAccordingToCoverage( external_node_scores, phylogeny, normalization_factor );
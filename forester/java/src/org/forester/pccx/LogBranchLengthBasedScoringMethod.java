@@ -26,6 +26,7 @@
 
 package org.forester.pccx;
 
+import org.forester.phylogeny.LCAIndex;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyNode;
 import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
@@ -41,14 +42,15 @@ public class LogBranchLengthBasedScoringMethod extends BranchCountingBasedScorin
 
     @Override
     double calculateScoreContributionPerExternalNode( final PhylogenyNode external_node,
-                                                      final PhylogenyNode current_node ) {
+                                                      final PhylogenyNode current_node,
+                                                      final LCAIndex lca_index ) {
         double score_contribution = 0.0;
         if ( current_node == external_node ) {
             score_contribution = external_node.getDistanceToParent();
             // This, of course, is completely /ad hoc/.
         }
         else {
-            score_contribution = ModelingUtils.calculateBranchLengthSum( external_node, current_node );
+            score_contribution = ModelingUtils.calculateBranchLengthSum( external_node, current_node, lca_index );
         }
         if ( score_contribution > LogBranchLengthBasedScoringMethod.MAX_ALLOWED_BL_VALUE ) {
             score_contribution = LogBranchLengthBasedScoringMethod.MAX_ALLOWED_BL_VALUE;
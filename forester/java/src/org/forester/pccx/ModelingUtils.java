@@ -28,6 +28,7 @@ package org.forester.pccx;
 import java.util.SortedMap;
 import java.util.TreeMap;
 
+import org.forester.phylogeny.LCAIndex;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyMethods;
 import org.forester.phylogeny.PhylogenyNode;
@@ -44,6 +45,14 @@ public final class ModelingUtils {
                 + ModelingUtils.calculateBranchLengthSumHelper( n2, lca );
     }
 
+    static double calculateBranchLengthSum( final PhylogenyNode n1,
+                                            final PhylogenyNode n2,
+                                            final LCAIndex lca_index ) {
+        final PhylogenyNode lca = lca_index.calculateLCA( n1, n2 );
+        return ModelingUtils.calculateBranchLengthSumHelper( n1, lca )
+                + ModelingUtils.calculateBranchLengthSumHelper( n2, lca );
+    }
+
     private static double calculateBranchLengthSumHelper( final PhylogenyNode outer, final PhylogenyNode inner ) {
         PhylogenyNode my_outer = outer;
         double l = 0;
@@ -61,6 +70,13 @@ public final class ModelingUtils {
         return ModelingUtils.calculateBranchSumHelper( n1, lca ) + ModelingUtils.calculateBranchSumHelper( n2, lca );
     }
 
+    static int calculateBranchSum( final PhylogenyNode n1, final PhylogenyNode n2, final LCAIndex lca_index ) {
+        final int i1 = lca_index.getIndex( n1 );
+        final int i2 = lca_index.getIndex( n2 );
+        return ( lca_index.getDepth( i1 ) + lca_index.getDepth( i2 ) )
+                - ( 2 * lca_index.getDepth( lca_index.calculateLCA( i1, i2 ) ) );
+    }
+
     private static int calculateBranchSumHelper( final PhylogenyNode outer, final PhylogenyNode inner ) {
         PhylogenyNode my_outer = outer;
         int s = 0;
@@ -0,0 +1,211 @@
+// $Id:
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.phylogeny;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
+
+/*
+ * Index for repeated LCA (lowest common ancestor) and depth queries on one
+ * phylogeny.
+ *
+ * Nodes are numbered in preorder. The index stores an Euler tour of the
+ * phylogeny (the sequence of nodes visited by a depth-first traversal,
+ * 2n - 1 entries) together with a sparse table of range minima over this tour.
+ * The LCA of two nodes is the node with the smallest preorder number between
+ * their first occurrences in the tour, which the sparse table returns in
+ * constant time. Construction takes O(n log n) time and memory.
+ *
+ * The index is not updated when the phylogeny changes; it has to be
+ * recreated after any topological change. Queries are thread-safe.
+ *
+ */
+public final class LCAIndex {
+
+    private final int[]                       _depths;
+    // Position of the first occurrence of each node in the Euler tour.
+    private final int[]                       _first;
+    private final Map<PhylogenyNode, Integer> _indices;
+    private final PhylogenyNode[]             _nodes;
+    private final int[]                       _parents;
+    // _table[ k ][ i ] is the minimum of the Euler tour from i to i + 2^k - 1.
+    private final int[][]                     _table;
+
+    public LCAIndex( final Phylogeny phy ) {
+        if ( ( phy == null ) || phy.isEmpty() ) {
+            throw new IllegalArgumentException( "attempt to create LCA index for null or empty phylogeny" );
+        }
+        int n = 0;
+        for( final PhylogenyNodeIterator it = phy.iteratorPreorder(); it.hasNext(); it.next() ) {
+            ++n;
+        }
+        _nodes = new PhylogenyNode[ n ];
+        _depths = new int[ n ];
+        _parents = new int[ n ];
+        _first = new int[ n ];
+        _indices = new IdentityHashMap<PhylogenyNode, Integer>( n );
+        final int[] tour = new int[ ( 2 * n ) - 1 ];
+        // Iterative depth-first traversal: stack of nodes (by preorder number)
+        // and of the next child to visit for each of them.
+        final int[] stack = new int[ n ];
+        final int[] next_child = new int[ n ];
+        int top = 0;
+        int count = 0;
+        int t = 0;
+        _nodes[ 0 ] = phy.getRoot();
+        _indices.put( _nodes[ 0 ], 0 );
+        _parents[ 0 ] = -1;
+        _first[ 0 ] = 0;
+        tour[ t++ ] = 0;
+        stack[ 0 ] = count++;
+        while ( top >= 0 ) {
+            final int i = stack[ top ];
+            final PhylogenyNode node = _nodes[ i ];
+            if ( next_child[ top ] < node.getNumberOfDescendants() ) {
+                final PhylogenyNode child = node.getChildNode( next_child[ top ]++ );
+                if ( count >= n ) {
+                    throw new IllegalArgumentException( "phylogeny is not a tree" );
+                }
+                final int c = count++;
+                _nodes[ c ] = child;
+                if ( _indices.put( child, c ) != null ) {
+                    throw new IllegalArgumentException( "phylogeny is not a tree" );
+                }
+                _depths[ c ] = _depths[ i ] + 1;
+                _parents[ c ] = i;
+                _first[ c ] = t;
+                tour[ t++ ] = c;
+                ++top;
+                stack[ top ] = c;
+                next_child[ top ] = 0;
+            }
+            else {
+                --top;
+                if ( top >= 0 ) {
+                    tour[ t++ ] = stack[ top ];
+                }
+            }
+        }
+        if ( count != n ) {
+            throw new IllegalArgumentException( "phylogeny is not a tree" );
+        }
+        final int levels = 32 - Integer.numberOfLeadingZeros( tour.length );
+        _table = new int[ levels ][];
+        _table[ 0 ] = tour;
+        for( int k = 1; k < levels; ++k ) {
+            final int[] prev = _table[ k - 1 ];
+            final int half = 1 << ( k - 1 );
+            final int[] cur = new int[ ( tour.length - ( 1 << k ) ) + 1 ];
+            for( int i = 0; i < cur.length; ++i ) {
+                cur[ i ] = Math.min( prev[ i ], prev[ i + half ] );
+            }
+            _table[ k ] = cur;
+        }
+    }
+
+    /**
+     * Returns the index of the LCA of the nodes with indices i and j.
+     *
+     * @see #getIndex(PhylogenyNode)
+     */
+    public final int calculateLCA( final int i, final int j ) {
+        if ( i == j ) {
+            return i;
+        }
+        int l = _first[ i ];
+        int r = _first[ j ];
+        if ( l > r ) {
+            final int x = l;
+            l = r;
+            r = x;
+        }
+        final int k = 31 - Integer.numberOfLeadingZeros( ( r - l ) + 1 );
+        final int[] row = _table[ k ];
+        return Math.min( row[ l ], row[ ( r - ( 1 << k ) ) + 1 ] );
+    }
+
+    /**
+     * Returns the LCA of PhylogenyNodes node1 and node2.
+     *
+     *
+     * @param node1
+     * @param node2
+     * @return LCA of node1 and node2
+     */
+    public final PhylogenyNode calculateLCA( final PhylogenyNode node1, final PhylogenyNode node2 ) {
+        return _nodes[ calculateLCA( getIndex( node1 ), getIndex( node2 ) ) ];
+    }
+
+    /**
+     * Returns the depth (number of ancestors) of the node with index i.
+     *
+     */
+    public final int getDepth( final int i ) {
+        return _depths[ i ];
+    }
+
+    /**
+     * Returns the depth (number of ancestors) of a node; the same as
+     * PhylogenyNode.calculateDepth(), in constant time.
+     *
+     */
+    public final int getDepth( final PhylogenyNode node ) {
+        return _depths[ getIndex( node ) ];
+    }
+
+    /**
+     * Returns the index (preorder number, the root being 0) of a node.
+     *
+     */
+    public final int getIndex( final PhylogenyNode node ) {
+        if ( node == null ) {
+            throw new IllegalArgumentException( "node is null" );
+        }
+        final Integer i = _indices.get( node );
+        if ( i == null ) {
+            throw new IllegalArgumentException( "node [" + node.getName() + "] is not part of the indexed phylogeny" );
+        }
+        return i;
+    }
+
+    public final PhylogenyNode getNode( final int i ) {
+        return _nodes[ i ];
+    }
+
+    public final int getNumberOfNodes() {
+        return _nodes.length;
+    }
+
+    /**
+     * Returns the index of the parent of the node with index i, -1 for the
+     * root.
+     *
+     */
+    public final int getParent( final int i ) {
+        return _parents[ i ];
+    }
+}
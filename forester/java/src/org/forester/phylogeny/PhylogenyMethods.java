@@ -43,6 +43,7 @@ import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
 import org.forester.io.parsers.FastaParser;
+import org.forester.io.parsers.IndexedFastaReader;
 import org.forester.io.parsers.PhylogenyParser;
 import org.forester.io.parsers.phyloxml.PhyloXmlDataFormatException;
 import org.forester.io.parsers.phyloxml.PhyloXmlUtil;
@@ -189,6 +190,25 @@ public class PhylogenyMethods {
         return ( PhylogenyMethods.getDistance( n1, lca ) + PhylogenyMethods.getDistance( n2, lca ) );
     }
 
+    /**
+     * Calculates the distance between PhylogenyNodes node1 and node2,
+     * using a LCA index for their phylogeny (to be preferred over
+     * calculateDistance(PhylogenyNode, PhylogenyNode) for many queries
+     * on the same phylogeny).
+     *
+     *
+     * @param node1
+     * @param node2
+     * @param lca_index LCA index of the phylogeny containing node1 and node2
+     * @return distance between node1 and node2
+     */
+    public static double calculateDistance( final PhylogenyNode node1,
+                                            final PhylogenyNode node2,
+                                            final LCAIndex lca_index ) {
+        final PhylogenyNode lca = lca_index.calculateLCA( node1, node2 );
+        return ( PhylogenyMethods.getDistance( node1, lca ) + PhylogenyMethods.getDistance( node2, lca ) );
+    }
+
     /**
      * Returns the LCA of PhylogenyNodes node1 and node2.
      *
@@ -492,10 +512,11 @@ public class PhylogenyMethods {
         if ( n.isInternal() ) {
             throw new IllegalArgumentException( "node is not external" );
         }
+        final LCAIndex lca_index = new LCAIndex( phy );
         final ArrayList<PhylogenyNode> to_delete = new ArrayList<PhylogenyNode>();
         for( final PhylogenyNodeIterator it = phy.iteratorExternalForward(); it.hasNext(); ) {
             final PhylogenyNode i = it.next();
-            if ( !PhylogenyMethods.getEventAtLCA( n, i ).isSpeciation() ) {
+            if ( !PhylogenyMethods.getEventAtLCA( n, i, lca_index ).isSpeciation() ) {
                 to_delete.add( i );
             }
         }
@@ -623,6 +644,12 @@ public class PhylogenyMethods {
         return calculateLCA( n1, n2 ).getNodeData().getEvent();
     }
 
+    final public static Event getEventAtLCA( final PhylogenyNode n1,
+                                             final PhylogenyNode n2,
+                                             final LCAIndex lca_index ) {
+        return lca_index.calculateLCA( n1, n2 ).getNodeData().getEvent();
+    }
+
     /**
      * Returns taxonomy t if all external descendants have
      * the same taxonomy t, null otherwise.
@@ -959,11 +986,10 @@ public class PhylogenyMethods {
             return;
         }
         phy.setIdToNodeMap( null );
-        long i = PhylogenyNode.getNodeCount();
+        long i = PhylogenyNode.obtainNodeIds( phy.getNodeCount() );
         for( final PhylogenyNodeIterator it = phy.iteratorPreorder(); it.hasNext(); ) {
-            it.next().setId( i++ );
+            it.next().setIdDirectly( i++ );
         }
-        PhylogenyNode.setNodeCount( i );
     }
 
     public final static Phylogeny[] readPhylogenies( final PhylogenyParser parser, final File file )
@@ -1948,6 +1974,39 @@ public class PhylogenyMethods {
         }
     }
 
+    /**
+     * Adds the sequences of an indexed fasta file to the external nodes with
+     * matching names. Only the sequences of these nodes are read from the
+     * fasta file.
+     *
+     * @param phy
+     * @param reader
+     * @return the number of nodes to which a sequence was added
+     * @throws IOException
+     */
+    public static int addMolecularSeqsToTree( final Phylogeny phy, final IndexedFastaReader reader )
+            throws IOException {
+        int added = 0;
+        for( final PhylogenyNodeIterator it = phy.iteratorExternalForward(); it.hasNext(); ) {
+            final PhylogenyNode node = it.next();
+            if ( !ForesterUtil.isEmpty( node.getName() ) && reader.getIndex().contains( node.getName() ) ) {
+                final org.forester.sequence.MolecularSequence seq = reader.getSequence( node.getName() );
+                final org.forester.phylogeny.data.Sequence new_seq = new Sequence();
+                new_seq.setMolecularSequence( seq.getMolecularSequenceAsString() );
+                new_seq.setName( seq.getIdentifier() );
+                try {
+                    new_seq.setType( PhyloXmlUtil.SEQ_TYPE_PROTEIN );
+                }
+                catch ( final PhyloXmlDataFormatException ignore ) {
+                    // do nothing
+                }
+                node.getNodeData().addSequence( new_seq );
+                ++added;
+            }
+        }
+        return added;
+    }
+
     final private static class PhylogenyNodeSortTaxonomyPriority implements Comparator<PhylogenyNode> {
 
         @Override
@@ -69,26 +69,28 @@ public final class PhylogenyNode implements Comparable<PhylogenyNode> {
      * Default constructor for PhylogenyNode.
      */
     public PhylogenyNode() {
-        setId( PhylogenyNode.getNodeCount() );
-        PhylogenyNode.increaseNodeCount();
+        _id = PhylogenyNode.obtainNodeIds( 1 );
         setSumExtNodes( 1 ); // For ext node, this number is 1 (not 0!!)
     }
 
     public PhylogenyNode( final String node_name ) {
-        setId( PhylogenyNode.getNodeCount() );
-        PhylogenyNode.increaseNodeCount();
+        _id = PhylogenyNode.obtainNodeIds( 1 );
         setSumExtNodes( 1 ); // For ext node, this number is 1 (not 0!!)
         if ( node_name != null ) {
             getNodeData().setNodeName( node_name );
         }
     }
 
+    // For copies, which keep the id of the original.
+    private PhylogenyNode( final long id ) {
+        _id = id;
+    }
+
     private PhylogenyNode( final String nhx,
                            final NHXParser.TAXONOMY_EXTRACTION taxonomy_extraction,
                            final boolean replace_underscores ) throws NHXFormatException, PhyloXmlDataFormatException {
         NHXParser.parseNHX( nhx, this, taxonomy_extraction, replace_underscores, false, false, false );
-        setId( PhylogenyNode.getNodeCount() );
-        PhylogenyNode.increaseNodeCount();
+        _id = PhylogenyNode.obtainNodeIds( 1 );
         setSumExtNodes( 1 ); // For ext node, this number is 1 (not 0!!).
     }
     
@@ -103,8 +105,7 @@ public final class PhylogenyNode implements Comparable<PhylogenyNode> {
                             false,
                             false,
                             parse_extended_tags );
-        setId( PhylogenyNode.getNodeCount() );
-        PhylogenyNode.increaseNodeCount();
+        _id = PhylogenyNode.obtainNodeIds( 1 );
         setSumExtNodes( 1 ); // For ext node, this number is 1 (not 0!!).
     }
 
@@ -161,9 +162,7 @@ public final class PhylogenyNode implements Comparable<PhylogenyNode> {
      * @see #getLink()
      */
     final public PhylogenyNode copyNodeData() {
-        final PhylogenyNode node = new PhylogenyNode();
-        PhylogenyNode.decreaseNodeCount();
-        node._id = _id;
+        final PhylogenyNode node = new PhylogenyNode( _id );
         node._sum_ext_nodes = _sum_ext_nodes;
         node._indicator = _indicator;
         node._x = _x;
@@ -188,9 +187,7 @@ public final class PhylogenyNode implements Comparable<PhylogenyNode> {
      * @see #getLink()
      */
     final public PhylogenyNode copyNodeDataShallow() {
-        final PhylogenyNode node = new PhylogenyNode();
-        PhylogenyNode.decreaseNodeCount();
-        node._id = _id;
+        final PhylogenyNode node = new PhylogenyNode( _id );
         node._sum_ext_nodes = _sum_ext_nodes;
         node._indicator = _indicator;
         node._x = _x;
@@ -1042,6 +1039,14 @@ public final class PhylogenyNode implements Comparable<PhylogenyNode> {
         _id = i;
     }
 
+    /**
+     * Sets the Id of this PhylogenyNode to i, which must have been obtained
+     * from obtainNodeIds(long).
+     */
+    final void setIdDirectly( final long i ) {
+        _id = i;
+    }
+
     final BranchData getBranchDataDirectly() {
         return _branch_data;
     }
@@ -1115,13 +1120,6 @@ public final class PhylogenyNode implements Comparable<PhylogenyNode> {
         return NODE_COUNT;
     }
 
-    /**
-     * Decreases the total number of all Nodes created so far by one.
-     */
-    final static synchronized void decreaseNodeCount() {
-        --NODE_COUNT;
-    }
-
     /**
      * Sets the total number of all Nodes created so far to i.
      */
@@ -1130,10 +1128,14 @@ public final class PhylogenyNode implements Comparable<PhylogenyNode> {
     }
 
     /**
-     * Increases the total number of all Nodes created so far by one.
+     * Increases the total number of all Nodes created so far by n and
+     * returns the first of the n (unique) ids thus reserved. This is atomic,
+     * so nodes can be created from several threads at the same time.
      */
-    synchronized final private static void increaseNodeCount() {
-        ++NODE_COUNT;
+    synchronized final static long obtainNodeIds( final long n ) {
+        final long first = NODE_COUNT;
+        NODE_COUNT += n;
+        return first;
     }
 
     public enum NH_CONVERSION_SUPPORT_VALUE_STYLE {
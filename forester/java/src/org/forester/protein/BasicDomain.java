@@ -26,16 +26,17 @@
 
 package org.forester.protein;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.forester.util.ForesterUtil;
 
 public class BasicDomain implements Domain {
 
     private static short                    COUNT        = 0;
-    private final static Map<Short, String> ID_TO_STRING = new HashMap<Short, String>();
-    private final static Map<String, Short> STRING_TO_ID = new HashMap<String, Short>();
+    // Concurrent, as domains of several genomes can be created in parallel.
+    private final static Map<Short, String> ID_TO_STRING = new ConcurrentHashMap<Short, String>();
+    private final static Map<String, Short> STRING_TO_ID = new ConcurrentHashMap<String, Short>();
     final private int                       _from;
     final private short                     _id;
     final private short                     _number;
@@ -246,15 +247,22 @@ public class BasicDomain implements Domain {
     }
 
     public final static short obtainIdAsShort( final String id ) {
-        if ( !STRING_TO_ID.containsKey( id ) ) {
-            if ( COUNT >= ( Short.MAX_VALUE - 2 ) ) {
-                throw new RuntimeException( "too many domain ids!" );
+        final Short s = STRING_TO_ID.get( id );
+        if ( s != null ) {
+            return s;
+        }
+        synchronized ( STRING_TO_ID ) {
+            if ( !STRING_TO_ID.containsKey( id ) ) {
+                if ( COUNT >= ( Short.MAX_VALUE - 2 ) ) {
+                    throw new RuntimeException( "too many domain ids!" );
+                }
+                // ID_TO_STRING first, so that every id obtained can be resolved.
+                ID_TO_STRING.put( COUNT, id );
+                STRING_TO_ID.put( id, COUNT );
+                ++COUNT;
             }
-            ID_TO_STRING.put( COUNT, id );
-            STRING_TO_ID.put( id, COUNT );
-            ++COUNT;
+            return STRING_TO_ID.get( id );
         }
-        return STRING_TO_ID.get( id );
     }
 
     public final static String obtainIdFromShort( final short id ) {
@@ -37,8 +37,14 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.forester.datastructures.IntMatrix;
 import org.forester.io.parsers.IteratingPhylogenyParser;
@@ -47,6 +53,7 @@ import org.forester.io.parsers.nexus.NexusPhylogeniesParser;
 import org.forester.io.parsers.nhx.NHXParser;
 import org.forester.io.parsers.nhx.NHXParser.TAXONOMY_EXTRACTION;
 import org.forester.io.parsers.util.ParserUtils;
+import org.forester.phylogeny.LCAIndex;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyMethods;
 import org.forester.phylogeny.PhylogenyNode;
@@ -67,7 +74,7 @@ public final class RIO {
 
     public static final int                  DEFAULT_RANGE = -1;
     private static final int                 END_OF_GT     = Integer.MAX_VALUE;
-    private static IntMatrix                 _m;
+    private IntMatrix                        _m;
     private Phylogeny[]                      _analyzed_gene_trees;
     private List<PhylogenyNode>              _removed_gene_tree_nodes;
     private int                              _ext_nodes;
@@ -91,8 +98,12 @@ public final class RIO {
                  int last,
                  final boolean produce_log,
                  final boolean verbose,
-                 final boolean transfer_taxonomy )
+                 final boolean transfer_taxonomy,
+                 final int number_of_threads )
             throws IOException, SDIException, RIOException {
+        if ( number_of_threads < 1 ) {
+            throw new IllegalArgumentException( "number of threads is out of range: " + number_of_threads );
+        }
         if ( ( last == DEFAULT_RANGE ) && ( first >= 0 ) ) {
             last = END_OF_GT;
         }
@@ -113,7 +124,7 @@ public final class RIO {
         _removed_gene_tree_nodes = null;
         _duplications_stats = new BasicDescriptiveStatistics();
         p.reset();
-        inferOrthologs( p, species_tree, algorithm, outgroup, first, last, transfer_taxonomy );
+        inferOrthologs( p, species_tree, algorithm, outgroup, first, last, transfer_taxonomy, number_of_threads );
         _species_tree = species_tree;
     }
 
@@ -202,13 +213,27 @@ public final class RIO {
         return _species_tree;
     }
 
+    private final void setResults( final Results results ) {
+        for( final int dups : results.getDuplications() ) {
+            _duplications_stats.addValue( dups );
+        }
+        if ( results.getRemovedGeneTreeNodes() != null ) {
+            _removed_gene_tree_nodes = results.getRemovedGeneTreeNodes();
+        }
+        _dup_to_tree_map = results.getDuplicationsToTreeMap();
+        if ( _dup_to_tree_map != null ) {
+            _min_dub_gene_tree = _dup_to_tree_map.get( Collections.min( _dup_to_tree_map.keySet() ) );
+        }
+    }
+
     private final void inferOrthologs( final IteratingPhylogenyParser parser,
                                        final Phylogeny species_tree,
                                        final ALGORITHM algorithm,
                                        final String outgroup,
                                        int first,
                                        final int last,
-                                       final boolean transfer_taxonomy )
+                                       final boolean transfer_taxonomy,
+                                       final int number_of_threads )
             throws SDIException, RIOException, FileNotFoundException, IOException {
         if ( !parser.hasNext() ) {
             throw new RIOException( "no gene trees to analyze" );
@@ -219,61 +244,52 @@ public final class RIO {
         if ( _verbose ) {
             System.out.println();
         }
-        int gene_tree_ext_nodes = 0;
-        int i = 0;
-        int counter = 0;
         final boolean no_range = ( first < 0 ) || ( last < first );
-        while ( parser.hasNext() ) {
-            final Phylogeny gt = parser.next();
-            if ( no_range || ( ( i >= first ) && ( i <= last ) ) ) {
-                if ( gt.isEmpty() ) {
-                    throw new RIOException( "gene tree #" + i + " is empty" );
-                }
-                if ( gt.getNumberOfExternalNodes() == 1 ) {
-                    throw new RIOException( "gene tree #" + i + " has only one external node" );
-                }
-                if ( _verbose ) {
-                    System.out.print( "\r" + i );
-                }
-                if ( counter == 0 ) {
-                    if ( algorithm == ALGORITHM.SDIR ) {
-                        // Removes from species_tree all species not found in gene_tree.
-                        PhylogenyMethods.taxonomyBasedDeletionOfExternalNodes( gt, species_tree );
-                        if ( species_tree.isEmpty() ) {
-                            throw new RIOException( "failed to establish species based mapping between gene and species trees" );
-                        }
-                    }
-                    gene_tree_ext_nodes = gt.getNumberOfExternalNodes();
-                }
-                else if ( gene_tree_ext_nodes != gt.getNumberOfExternalNodes() ) {
-                    throw new RIOException( "gene tree #" + i + " has a different number of external nodes ("
-                            + gt.getNumberOfExternalNodes() + ") than the preceding gene tree(s) ("
-                            + gene_tree_ext_nodes + ")" );
+        final GeneTreeSource source = new GeneTreeSource( parser, no_range, first, last, _verbose );
+        final Results results = new Results();
+        // The first gene tree is analyzed on its own, since it determines the
+        // (stripped) species tree, the labels of the ortholog table, and the
+        // expected number of external nodes.
+        final GeneTree g0 = source.next();
+        if ( g0 != null ) {
+            final Phylogeny gt = g0.getPhylogeny();
+            checkGeneTree( gt, g0.getIndex(), -1 );
+            if ( algorithm == ALGORITHM.SDIR ) {
+                // Removes from species_tree all species not found in gene_tree.
+                PhylogenyMethods.taxonomyBasedDeletionOfExternalNodes( gt, species_tree );
+                if ( species_tree.isEmpty() ) {
+                    throw new RIOException( "failed to establish species based mapping between gene and species trees" );
                 }
-                if ( algorithm == ALGORITHM.SDIR ) {
-                    // Removes from gene_tree all species not found in species_tree.
-                    PhylogenyMethods.taxonomyBasedDeletionOfExternalNodes( species_tree, gt );
-                    if ( gt.isEmpty() ) {
-                        throw new RIOException( "failed to establish species based mapping between gene and species trees" );
-                    }
+            }
+            final int gene_tree_ext_nodes = gt.getNumberOfExternalNodes();
+            analyzeGeneTree( g0, species_tree, algorithm, outgroup, transfer_taxonomy, gene_tree_ext_nodes, results );
+            if ( number_of_threads > 1 ) {
+                analyzeGeneTreesInParallel( source,
+                                            species_tree,
+                                            algorithm,
+                                            outgroup,
+                                            transfer_taxonomy,
+                                            gene_tree_ext_nodes,
+                                            results,
+                                            number_of_threads );
+            }
+            else {
+                GeneTree g;
+                while ( ( g = source.next() ) != null ) {
+                    analyzeGeneTree( g, species_tree, algorithm, outgroup, transfer_taxonomy, gene_tree_ext_nodes, results );
                 }
-                final Phylogeny analyzed_gt = performOrthologInference( gt,
-                                                                        species_tree,
-                                                                        algorithm,
-                                                                        outgroup,
-                                                                        counter,
-                                                                        transfer_taxonomy );
-                RIO.calculateOrthologTable( analyzed_gt, true, counter );
-                ++counter;
             }
-            ++i;
         }
+        final int counter = source.getNumberOfGeneTreesReturned();
         if ( _verbose ) {
             System.out.print( "\rGene trees analyzed                 :\t" + counter );
         }
-        if ( ( first >= 0 ) && ( counter == 0 ) && ( i > 0 ) ) {
-            throw new RIOException( "attempt to analyze first gene tree #" + first + " in a set of " + i );
+        if ( ( first >= 0 ) && ( counter == 0 ) && ( source.getNumberOfGeneTreesRead() > 0 ) ) {
+            throw new RIOException( "attempt to analyze first gene tree #" + first + " in a set of "
+                    + source.getNumberOfGeneTreesRead() );
         }
+        setResults( results );
+        _m = results.getOrthologTable();
         if ( no_range ) {
             first = 0;
         }
@@ -286,6 +302,91 @@ public final class RIO {
         }
     }
 
+    /**
+     * Analyzes the remaining gene trees of source with number_of_threads
+     * threads. Each thread uses its own copy of the species tree and its own
+     * results, which are merged into results at the end.
+     */
+    private final void analyzeGeneTreesInParallel( final GeneTreeSource source,
+                                                   final Phylogeny species_tree,
+                                                   final ALGORITHM algorithm,
+                                                   final String outgroup,
+                                                   final boolean transfer_taxonomy,
+                                                   final int gene_tree_ext_nodes,
+                                                   final Results results,
+                                                   final int number_of_threads )
+            throws SDIException, RIOException, IOException {
+        final List<Callable<Results>> workers = new ArrayList<Callable<Results>>();
+        for( int t = 0; t < number_of_threads; ++t ) {
+            workers.add( new Worker( source,
+                                     species_tree.copy(),
+                                     algorithm,
+                                     outgroup,
+                                     transfer_taxonomy,
+                                     gene_tree_ext_nodes,
+                                     results.createEmptyResults() ) );
+        }
+        final ForkJoinPool pool = new ForkJoinPool( number_of_threads );
+        try {
+            for( final Future<Results> f : pool.invokeAll( workers ) ) {
+                results.merge( f.get() );
+            }
+        }
+        catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            throw new RIOException( "interrupted: " + e.getMessage() );
+        }
+        catch ( final ExecutionException e ) {
+            final Throwable cause = e.getCause();
+            if ( cause instanceof RIOException ) {
+                throw ( RIOException ) cause;
+            }
+            else if ( cause instanceof SDIException ) {
+                throw ( SDIException ) cause;
+            }
+            else if ( cause instanceof IOException ) {
+                throw ( IOException ) cause;
+            }
+            else if ( cause instanceof RuntimeException ) {
+                throw ( RuntimeException ) cause;
+            }
+            else if ( cause instanceof Error ) {
+                throw ( Error ) cause;
+            }
+            throw new RIOException( cause.toString() );
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    private final void analyzeGeneTree( final GeneTree g,
+                                        final Phylogeny species_tree,
+                                        final ALGORITHM algorithm,
+                                        final String outgroup,
+                                        final boolean transfer_taxonomy,
+                                        final int gene_tree_ext_nodes,
+                                        final Results results )
+            throws SDIException, RIOException {
+        final Phylogeny gt = g.getPhylogeny();
+        checkGeneTree( gt, g.getIndex(), gene_tree_ext_nodes );
+        if ( algorithm == ALGORITHM.SDIR ) {
+            // Removes from gene_tree all species not found in species_tree.
+            PhylogenyMethods.taxonomyBasedDeletionOfExternalNodes( species_tree, gt );
+            if ( gt.isEmpty() ) {
+                throw new RIOException( "failed to establish species based mapping between gene and species trees" );
+            }
+        }
+        final Phylogeny analyzed_gt = performOrthologInference( gt,
+                                                                species_tree,
+                                                                algorithm,
+                                                                outgroup,
+                                                                g.getCounter(),
+                                                                transfer_taxonomy,
+                                                                results );
+        results.updateCounts( analyzed_gt, g.getCounter() );
+    }
+
     private final void inferOrthologs( final Phylogeny[] gene_trees,
                                        final Phylogeny species_tree,
                                        final ALGORITHM algorithm,
@@ -319,6 +420,7 @@ public final class RIO {
             System.out.println();
         }
         _analyzed_gene_trees = new Phylogeny[ my_gene_trees.length ];
+        final Results results = new Results();
         int gene_tree_ext_nodes = 0;
         for( int i = 0; i < my_gene_trees.length; ++i ) {
             final Phylogeny gt = my_gene_trees[ i ];
@@ -351,8 +453,10 @@ public final class RIO {
                                                                   algorithm,
                                                                   outgroup,
                                                                   i,
-                                                                  transfer_taxonomy );
+                                                                  transfer_taxonomy,
+                                                                  results );
         }
+        setResults( results );
         if ( log() ) {
             postLog( species_tree, first, last );
         }
@@ -403,12 +507,13 @@ public final class RIO {
                                                       final ALGORITHM algorithm,
                                                       final String outgroup,
                                                       final int i,
-                                                      final boolean transfer_taxonomy )
+                                                      final boolean transfer_taxonomy,
+                                                      final Results results )
             throws SDIException, RIOException {
         final Phylogeny assigned_tree;
         switch ( algorithm ) {
             case SDIR: {
-                assigned_tree = performOrthologInferenceBySDI( gene_tree, species_tree );
+                assigned_tree = performOrthologInferenceBySDI( gene_tree, species_tree, i, results );
                 break;
             }
             case GSDIR: {
@@ -416,7 +521,8 @@ public final class RIO {
                                                                 species_tree,
                                                                 outgroup,
                                                                 i,
-                                                                transfer_taxonomy );
+                                                                transfer_taxonomy,
+                                                                results );
                 break;
             }
             default: {
@@ -439,7 +545,8 @@ public final class RIO {
                                                             final Phylogeny species_tree,
                                                             final String outgroup,
                                                             final int i,
-                                                            final boolean transfer_taxonomy )
+                                                            final boolean transfer_taxonomy,
+                                                            final Results results )
             throws SDIException, RIOException {
         final Phylogeny assigned_tree;
         final int dups;
@@ -447,13 +554,14 @@ public final class RIO {
             final GSDIR gsdir = new GSDIR( gene_tree, species_tree, true, i == 0, transfer_taxonomy );
             assigned_tree = gsdir.getMinDuplicationsSumGeneTree();
             if ( i == 0 ) {
-                _removed_gene_tree_nodes = gsdir.getStrippedExternalGeneTreeNodes();
-                for( final PhylogenyNode r : _removed_gene_tree_nodes ) {
+                final List<PhylogenyNode> removed_gene_tree_nodes = gsdir.getStrippedExternalGeneTreeNodes();
+                for( final PhylogenyNode r : removed_gene_tree_nodes ) {
                     if ( !r.getNodeData().isHasTaxonomy() ) {
                         throw new RIOException( "node with no (appropriate) taxonomic information found in gene tree #"
                                 + i + ": " + r.toString() );
                     }
                 }
+                results.setRemovedGeneTreeNodes( removed_gene_tree_nodes, i );
             }
             if ( i == 0 ) {
                 _gsdir_tax_comp_base = gsdir.getTaxCompBase();
@@ -469,13 +577,14 @@ public final class RIO {
                 gene_tree.reRoot( n );
             }
             final GSDI gsdi = new GSDI( gene_tree, species_tree, true, true, true, transfer_taxonomy );
-            _removed_gene_tree_nodes = gsdi.getStrippedExternalGeneTreeNodes();
-            for( final PhylogenyNode r : _removed_gene_tree_nodes ) {
+            final List<PhylogenyNode> removed_gene_tree_nodes = gsdi.getStrippedExternalGeneTreeNodes();
+            for( final PhylogenyNode r : removed_gene_tree_nodes ) {
                 if ( !r.getNodeData().isHasTaxonomy() ) {
                     throw new RIOException( "node with no (appropriate) taxonomic information found in gene tree #" + i
                             + ": " + r.toString() );
                 }
             }
+            results.setRemovedGeneTreeNodes( removed_gene_tree_nodes, i );
             assigned_tree = gene_tree;
             if ( i == 0 ) {
                 _gsdir_tax_comp_base = gsdi.getTaxCompBase();
@@ -483,31 +592,7 @@ public final class RIO {
             dups = gsdi.getDuplicationsSum();
         }
         assigned_tree.setRerootable( false );
-        double new_dist = -1;
-        if ( ( i == 0 ) || ( dups < _duplications_stats.getMin() ) ) {
-            _min_dub_gene_tree = assigned_tree;
-        }
-        else if ( dups == _duplications_stats.getMin() ) {
-            new_dist = PhylogenyMethods.calculateMaxDistanceToRoot( assigned_tree );
-            if ( new_dist < PhylogenyMethods.calculateMaxDistanceToRoot( _min_dub_gene_tree ) ) {
-                _min_dub_gene_tree = assigned_tree;
-            }
-        }
-        if ( _dup_to_tree_map == null ) {
-            _dup_to_tree_map = new HashMap<Integer, Phylogeny>();
-        }
-        if ( !_dup_to_tree_map.containsKey( dups ) ) {
-            _dup_to_tree_map.put( dups, assigned_tree );
-        }
-        else {
-            if ( new_dist == -1 ) {
-                new_dist = PhylogenyMethods.calculateMaxDistanceToRoot( assigned_tree );
-            }
-            if ( new_dist < PhylogenyMethods.calculateMaxDistanceToRoot( _dup_to_tree_map.get( dups ) ) ) {
-                _dup_to_tree_map.put( dups, assigned_tree );
-            }
-        }
-        _duplications_stats.addValue( dups );
+        results.addAssignedTree( assigned_tree, dups, i );
         return assigned_tree;
     }
 
@@ -515,13 +600,15 @@ public final class RIO {
         return _dup_to_tree_map;
     }
 
-    private final Phylogeny performOrthologInferenceBySDI( final Phylogeny gene_tree, final Phylogeny species_tree )
+    private final Phylogeny performOrthologInferenceBySDI( final Phylogeny gene_tree,
+                                                           final Phylogeny species_tree,
+                                                           final int i,
+                                                           final Results results )
             throws SDIException {
         final SDIR sdir = new SDIR();
         final Phylogeny r = sdir.infer( gene_tree, species_tree, false, true, true, true, 1 )[ 0 ];
         r.setRerootable( false );
-        final int dups = sdir.getMinimalDuplications();
-        _duplications_stats.addValue( dups );
+        results.addDuplications( sdir.getMinimalDuplications(), i );
         return r;
     }
 
@@ -613,17 +700,7 @@ public final class RIO {
 
     public final static IntMatrix calculateOrthologTable( final Phylogeny[] analyzed_gene_trees, final boolean sort )
             throws RIOException {
-        final List<String> labels = new ArrayList<String>();
-        final Set<String> labels_set = new HashSet<String>();
-        for( final PhylogenyNode n : analyzed_gene_trees[ 0 ].getExternalNodes() ) {
-            final String label = obtainLabel( labels_set, n );
-            labels_set.add( label );
-            labels.add( label );
-        }
-        if ( sort ) {
-            Collections.sort( labels );
-        }
-        final IntMatrix m = new IntMatrix( labels );
+        final IntMatrix m = createOrthologTable( analyzed_gene_trees[ 0 ], sort );
         int counter = 0;
         for( final Phylogeny gt : analyzed_gene_trees ) {
             counter++;
@@ -716,6 +793,37 @@ public final class RIO {
                                              final boolean verbose,
                                              final boolean transfer_taxonomy )
             throws IOException, SDIException, RIOException {
+        return executeAnalysis( p,
+                                species_tree_file,
+                                algorithm,
+                                rerooting,
+                                outgroup,
+                                first,
+                                last,
+                                produce_log,
+                                verbose,
+                                transfer_taxonomy,
+                                1 );
+    }
+
+    /**
+     * Same as the corresponding method without number_of_threads, but with
+     * the gene trees (after the first one) being analyzed by number_of_threads
+     * threads. The results are the same as for one thread.
+     *
+     */
+    public final static RIO executeAnalysis( final IteratingPhylogenyParser p,
+                                             final File species_tree_file,
+                                             final ALGORITHM algorithm,
+                                             final REROOTING rerooting,
+                                             final String outgroup,
+                                             final int first,
+                                             final int last,
+                                             final boolean produce_log,
+                                             final boolean verbose,
+                                             final boolean transfer_taxonomy,
+                                             final int number_of_threads )
+            throws IOException, SDIException, RIOException {
         final Phylogeny g0 = p.next();
         if ( ( g0 == null ) || g0.isEmpty() || ( g0.getNumberOfExternalNodes() < 2 ) ) {
             throw new RIOException( "input file does not seem to contain any gene trees" );
@@ -732,7 +840,8 @@ public final class RIO {
                         last,
                         produce_log,
                         verbose,
-                        transfer_taxonomy );
+                        transfer_taxonomy,
+                        number_of_threads );
     }
 
     public final static RIO executeAnalysis( final IteratingPhylogenyParser p,
@@ -753,7 +862,8 @@ public final class RIO {
                         DEFAULT_RANGE,
                         produce_log,
                         verbose,
-                        transfer_taxonomy );
+                        transfer_taxonomy,
+                        1 );
     }
 
     public final static RIO executeAnalysis( final IteratingPhylogenyParser p,
@@ -776,7 +886,39 @@ public final class RIO {
                         last,
                         produce_log,
                         verbose,
-                        transfer_taxonomy );
+                        transfer_taxonomy,
+                        1 );
+    }
+
+    /**
+     * Same as the corresponding method without number_of_threads, but with
+     * the gene trees (after the first one) being analyzed by number_of_threads
+     * threads. The results are the same as for one thread.
+     *
+     */
+    public final static RIO executeAnalysis( final IteratingPhylogenyParser p,
+                                             final Phylogeny species_tree,
+                                             final ALGORITHM algorithm,
+                                             final REROOTING rerooting,
+                                             final String outgroup,
+                                             final int first,
+                                             final int last,
+                                             final boolean produce_log,
+                                             final boolean verbose,
+                                             final boolean transfer_taxonomy,
+                                             final int number_of_threads )
+            throws IOException, SDIException, RIOException {
+        return new RIO( p,
+                        species_tree,
+                        algorithm,
+                        rerooting,
+                        outgroup,
+                        first,
+                        last,
+                        produce_log,
+                        verbose,
+                        transfer_taxonomy,
+                        number_of_threads );
     }
 
     public final static RIO executeAnalysis( final Phylogeny[] gene_trees, final Phylogeny species_tree )
@@ -837,22 +979,19 @@ public final class RIO {
                         transfer_taxonomy );
     }
 
-    private final static void calculateOrthologTable( final Phylogeny g, final boolean sort, final int counter )
+    private final static void checkGeneTree( final Phylogeny gt, final int i, final int gene_tree_ext_nodes )
             throws RIOException {
-        if ( counter == 0 ) {
-            final List<String> labels = new ArrayList<String>();
-            final Set<String> labels_set = new HashSet<String>();
-            for( final PhylogenyNode n : g.getExternalNodes() ) {
-                final String label = obtainLabel( labels_set, n );
-                labels_set.add( label );
-                labels.add( label );
-            }
-            if ( sort ) {
-                Collections.sort( labels );
-            }
-            _m = new IntMatrix( labels );
+        if ( gt.isEmpty() ) {
+            throw new RIOException( "gene tree #" + i + " is empty" );
+        }
+        if ( gt.getNumberOfExternalNodes() == 1 ) {
+            throw new RIOException( "gene tree #" + i + " has only one external node" );
+        }
+        if ( ( gene_tree_ext_nodes >= 0 ) && ( gene_tree_ext_nodes != gt.getNumberOfExternalNodes() ) ) {
+            throw new RIOException( "gene tree #" + i + " has a different number of external nodes ("
+                    + gt.getNumberOfExternalNodes() + ") than the preceding gene tree(s) (" + gene_tree_ext_nodes
+                    + ")" );
         }
-        updateCounts( _m, counter, g );
     }
 
     private final static void checkPreconditions( final IteratingPhylogenyParser p,
@@ -931,6 +1070,20 @@ public final class RIO {
         }
     }
 
+    private final static IntMatrix createOrthologTable( final Phylogeny g, final boolean sort ) throws RIOException {
+        final List<String> labels = new ArrayList<String>();
+        final Set<String> labels_set = new HashSet<String>();
+        for( final PhylogenyNode n : g.getExternalNodes() ) {
+            final String label = obtainLabel( labels_set, n );
+            labels_set.add( label );
+            labels.add( label );
+        }
+        if ( sort ) {
+            Collections.sort( labels );
+        }
+        return new IntMatrix( labels );
+    }
+
     private final static String obtainLabel( final Set<String> labels_set, final PhylogenyNode n ) throws RIOException {
         String label;
         if ( n.getNodeData().isHasSequence() && !ForesterUtil.isEmpty( n.getNodeData().getSequence().getName() ) ) {
@@ -988,29 +1141,289 @@ public final class RIO {
 
     private final static void updateCounts( final IntMatrix m, final int counter, final Phylogeny g )
             throws RIOException {
-        PhylogenyMethods.preOrderReId( g );
         final HashMap<String, PhylogenyNode> map = PhylogenyMethods.createNameToExtNodeMap( g );
-        for( int x = 0; x < m.size(); ++x ) {
+        final LCAIndex lca_index = new LCAIndex( g );
+        final int size = m.size();
+        final int[] indices = new int[ size ];
+        for( int x = 0; x < size; ++x ) {
             final String mx = m.getLabel( x );
             final PhylogenyNode nx = map.get( mx );
             if ( nx == null ) {
                 throw new RIOException( "node \"" + mx + "\" not present in gene tree #" + counter );
             }
-            String my;
-            PhylogenyNode ny;
-            for( int y = 0; y < m.size(); ++y ) {
-                my = m.getLabel( y );
-                ny = map.get( my );
-                if ( ny == null ) {
-                    throw new RIOException( "node \"" + my + "\" not present in gene tree #" + counter );
-                }
-                if ( !PhylogenyMethods.calculateLCAonTreeWithIdsInPreOrder( nx, ny ).isDuplication() ) {
+            indices[ x ] = lca_index.getIndex( nx );
+        }
+        for( int x = 0; x < size; ++x ) {
+            final int ix = indices[ x ];
+            for( int y = 0; y < size; ++y ) {
+                if ( !lca_index.getNode( lca_index.calculateLCA( ix, indices[ y ] ) ).isDuplication() ) {
                     m.inreaseByOne( x, y );
                 }
             }
         }
     }
 
+    /*
+     * A gene tree together with its index in the input and its index among
+     * the gene trees to analyze.
+     */
+    private final static class GeneTree {
+
+        private final int       _counter;
+        private final int       _index;
+        private final Phylogeny _phylogeny;
+
+        GeneTree( final Phylogeny phylogeny, final int index, final int counter ) {
+            _phylogeny = phylogeny;
+            _index = index;
+            _counter = counter;
+        }
+
+        final int getCounter() {
+            return _counter;
+        }
+
+        final int getIndex() {
+            return _index;
+        }
+
+        final Phylogeny getPhylogeny() {
+            return _phylogeny;
+        }
+    }
+
+    /*
+     * Hands out the gene trees to analyze (those in the range first to last),
+     * one at a time, to any number of threads. Reading stops after last.
+     */
+    private final static class GeneTreeSource {
+
+        private int                            _counter;
+        private final int                      _first;
+        private int                            _i;
+        private final int                      _last;
+        private final boolean                  _no_range;
+        private final IteratingPhylogenyParser _parser;
+        private boolean                        _stopped;
+        private final boolean                  _verbose;
+
+        GeneTreeSource( final IteratingPhylogenyParser parser,
+                        final boolean no_range,
+                        final int first,
+                        final int last,
+                        final boolean verbose ) {
+            _parser = parser;
+            _no_range = no_range;
+            _first = first;
+            _last = last;
+            _verbose = verbose;
+            _i = 0;
+            _counter = 0;
+            _stopped = false;
+        }
+
+        final synchronized int getNumberOfGeneTreesRead() {
+            return _i;
+        }
+
+        final synchronized int getNumberOfGeneTreesReturned() {
+            return _counter;
+        }
+
+        final synchronized GeneTree next() throws IOException {
+            while ( !_stopped && ( _no_range || ( _i <= _last ) ) && _parser.hasNext() ) {
+                final Phylogeny gt = _parser.next();
+                final int i = _i++;
+                if ( _no_range || ( i >= _first ) ) {
+                    if ( _verbose ) {
+                        System.out.print( "\r" + i );
+                    }
+                    return new GeneTree( gt, i, _counter++ );
+                }
+            }
+            return null;
+        }
+
+        final synchronized void stop() {
+            _stopped = true;
+        }
+    }
+
+    /*
+     * The results of analyzing a set of gene trees (all of them, or the share
+     * of one thread): the ortholog table, the duplications of each gene tree,
+     * and, for each number of duplications, the first gene tree with the
+     * smallest maximal distance to the root.
+     */
+    private final static class Results {
+
+        private final SortedMap<Integer, Integer> _duplications;
+        private final Map<Integer, Phylogeny>     _dup_to_tree_map;
+        // For each number of duplications: counter and maximal distance to
+        // root of the gene tree in _dup_to_tree_map.
+        private final Map<Integer, Integer>       _dup_to_tree_counter;
+        private final Map<Integer, Double>        _dup_to_tree_distance;
+        private IntMatrix                         _m;
+        private List<PhylogenyNode>               _removed_gene_tree_nodes;
+        private int                               _removed_gene_tree_nodes_counter;
+
+        Results() {
+            _duplications = new TreeMap<Integer, Integer>();
+            _dup_to_tree_map = new HashMap<Integer, Phylogeny>();
+            _dup_to_tree_counter = new HashMap<Integer, Integer>();
+            _dup_to_tree_distance = new HashMap<Integer, Double>();
+            _m = null;
+            _removed_gene_tree_nodes = null;
+            _removed_gene_tree_nodes_counter = -1;
+        }
+
+        final void addAssignedTree( final Phylogeny assigned_tree, final int dups, final int counter ) {
+            addDuplications( dups, counter );
+            addCandidate( dups, assigned_tree, counter, PhylogenyMethods.calculateMaxDistanceToRoot( assigned_tree ) );
+        }
+
+        final void addDuplications( final int dups, final int counter ) {
+            _duplications.put( counter, dups );
+        }
+
+        final Results createEmptyResults() {
+            final Results r = new Results();
+            if ( _m != null ) {
+                final List<String> labels = new ArrayList<String>();
+                for( int x = 0; x < _m.size(); ++x ) {
+                    labels.add( _m.getLabel( x ) );
+                }
+                r._m = new IntMatrix( labels );
+            }
+            return r;
+        }
+
+        /**
+         * Returns the duplications of each gene tree, in the order of
+         * the gene trees.
+         */
+        final List<Integer> getDuplications() {
+            return new ArrayList<Integer>( _duplications.values() );
+        }
+
+        final Map<Integer, Phylogeny> getDuplicationsToTreeMap() {
+            return _dup_to_tree_map.isEmpty() ? null : _dup_to_tree_map;
+        }
+
+        final IntMatrix getOrthologTable() {
+            return _m;
+        }
+
+        final List<PhylogenyNode> getRemovedGeneTreeNodes() {
+            return _removed_gene_tree_nodes;
+        }
+
+        final void merge( final Results other ) {
+            _duplications.putAll( other._duplications );
+            for( final Map.Entry<Integer, Phylogeny> e : other._dup_to_tree_map.entrySet() ) {
+                final int dups = e.getKey();
+                addCandidate( dups,
+                              e.getValue(),
+                              other._dup_to_tree_counter.get( dups ),
+                              other._dup_to_tree_distance.get( dups ) );
+            }
+            if ( other._m != null ) {
+                if ( _m == null ) {
+                    _m = other._m;
+                }
+                else {
+                    _m.add( other._m );
+                }
+            }
+            setRemovedGeneTreeNodes( other._removed_gene_tree_nodes, other._removed_gene_tree_nodes_counter );
+        }
+
+        /**
+         * Keeps the removed nodes of the last gene tree (as in analyzing the gene
+         * trees one after the other).
+         */
+        final void setRemovedGeneTreeNodes( final List<PhylogenyNode> removed_gene_tree_nodes, final int counter ) {
+            if ( ( removed_gene_tree_nodes != null ) && ( counter > _removed_gene_tree_nodes_counter ) ) {
+                _removed_gene_tree_nodes = removed_gene_tree_nodes;
+                _removed_gene_tree_nodes_counter = counter;
+            }
+        }
+
+        final void updateCounts( final Phylogeny analyzed_gt, final int counter ) throws RIOException {
+            if ( _m == null ) {
+                _m = createOrthologTable( analyzed_gt, true );
+            }
+            RIO.updateCounts( _m, counter, analyzed_gt );
+        }
+
+        private final void addCandidate( final int dups,
+                                         final Phylogeny tree,
+                                         final int counter,
+                                         final double distance ) {
+            if ( _dup_to_tree_map.containsKey( dups ) ) {
+                final double d = _dup_to_tree_distance.get( dups );
+                if ( ( distance > d ) || ( ( distance == d ) && ( counter > _dup_to_tree_counter.get( dups ) ) ) ) {
+                    return;
+                }
+            }
+            _dup_to_tree_map.put( dups, tree );
+            _dup_to_tree_counter.put( dups, counter );
+            _dup_to_tree_distance.put( dups, distance );
+        }
+    }
+
+    /*
+     * Analyzes gene trees from a shared source, using its own copy of
+     * the species tree and its own results.
+     */
+    private final class Worker implements Callable<Results> {
+
+        private final ALGORITHM      _algorithm;
+        private final int            _gene_tree_ext_nodes;
+        private final String         _outgroup;
+        private final Results        _results;
+        private final GeneTreeSource _source;
+        private final Phylogeny      _species_tree;
+        private final boolean        _transfer_taxonomy;
+
+        Worker( final GeneTreeSource source,
+                final Phylogeny species_tree,
+                final ALGORITHM algorithm,
+                final String outgroup,
+                final boolean transfer_taxonomy,
+                final int gene_tree_ext_nodes,
+                final Results results ) {
+            _source = source;
+            _species_tree = species_tree;
+            _algorithm = algorithm;
+            _outgroup = outgroup;
+            _transfer_taxonomy = transfer_taxonomy;
+            _gene_tree_ext_nodes = gene_tree_ext_nodes;
+            _results = results;
+        }
+
+        @Override
+        public final Results call() throws Exception {
+            try {
+                GeneTree g;
+                while ( ( g = _source.next() ) != null ) {
+                    analyzeGeneTree( g,
+                                     _species_tree,
+                                     _algorithm,
+                                     _outgroup,
+                                     _transfer_taxonomy,
+                                     _gene_tree_ext_nodes,
+                                     _results );
+                }
+            }
+            catch ( final Exception e ) {
+                _source.stop();
+                throw e;
+            }
+            return _results;
+        }
+    }
+
     public enum REROOTING {
                            NONE,
                            BY_ALGORITHM,
@@ -17,9 +17,11 @@ import java.util.TreeSet;
 import org.forester.datastructures.IntMatrix;
 import org.forester.io.parsers.IteratingPhylogenyParser;
 import org.forester.io.parsers.PhylogenyParser;
+import org.forester.io.parsers.binary.BinaryPhylogenyParser;
 import org.forester.io.parsers.nexus.NexusPhylogeniesParser;
 import org.forester.io.parsers.nhx.NHXParser;
 import org.forester.io.parsers.nhx.NHXParser.TAXONOMY_EXTRACTION;
+import org.forester.io.parsers.nhx.ParallelNHXParser;
 import org.forester.io.parsers.phyloxml.PhyloXmlDataFormatException;
 import org.forester.io.parsers.phyloxml.PhyloXmlParser;
 import org.forester.io.parsers.util.ParserUtils;
@@ -78,7 +80,8 @@ public final class RIOUtil {
                                               final boolean perform_gsdir_on_best_tree,
                                               final File outdir,
                                               final File best_trees_indir,
-                                              final String best_trees_suffix ) {
+                                              final String best_trees_suffix,
+                                              final int number_of_threads ) {
         try {
             final SortedMap<String, String> id_map;
             if ( perform_id_mapping ) {
@@ -87,39 +90,32 @@ public final class RIOUtil {
             else {
                 id_map = null;
             }
-            final RIO rio;
-            boolean iterating = false;
             final PhylogenyParser p = ParserUtils.createParserDependingOnFileType( gene_trees_file, true );
-            if ( p instanceof PhyloXmlParser ) {
-                rio = RIO.executeAnalysis( gene_trees_file,
-                                           species_tree_file,
-                                           algorithm,
-                                           rerooting,
-                                           outgroup,
-                                           gt_first,
-                                           gt_last,
-                                           logfile != null,
-                                           true,
-                                           transfer_taxonomy );
+            if ( p instanceof NHXParser ) {
+                final NHXParser nhx = ( NHXParser ) p;
+                nhx.setReplaceUnderscores( false );
+                nhx.setIgnoreQuotes( true );
+                nhx.setTaxonomyExtraction( TAXONOMY_EXTRACTION.AGGRESSIVE );
+            }
+            else if ( p instanceof NexusPhylogeniesParser ) {
+                final NexusPhylogeniesParser nex = ( NexusPhylogeniesParser ) p;
+                nex.setReplaceUnderscores( false );
+                nex.setIgnoreQuotes( true );
+                nex.setTaxonomyExtraction( TAXONOMY_EXTRACTION.AGGRESSIVE );
+            }
+            else if ( !( p instanceof PhyloXmlParser ) && !( p instanceof BinaryPhylogenyParser ) ) {
+                throw new RuntimeException( "unknown parser type: " + p );
+            }
+            // phyloXML gene trees are streamed as well, one tree at a time.
+            final IteratingPhylogenyParser ip;
+            if ( ( p instanceof NHXParser ) && ( number_of_threads > 1 ) ) {
+                ip = new ParallelNHXParser( ( NHXParser ) p, number_of_threads );
             }
             else {
-                iterating = true;
-                if ( p instanceof NHXParser ) {
-                    final NHXParser nhx = ( NHXParser ) p;
-                    nhx.setReplaceUnderscores( false );
-                    nhx.setIgnoreQuotes( true );
-                    nhx.setTaxonomyExtraction( TAXONOMY_EXTRACTION.AGGRESSIVE );
-                }
-                else if ( p instanceof NexusPhylogeniesParser ) {
-                    final NexusPhylogeniesParser nex = ( NexusPhylogeniesParser ) p;
-                    nex.setReplaceUnderscores( false );
-                    nex.setIgnoreQuotes( true );
-                    nex.setTaxonomyExtraction( TAXONOMY_EXTRACTION.AGGRESSIVE );
-                }
-                else {
-                    throw new RuntimeException( "unknown parser type: " + p );
-                }
-                final IteratingPhylogenyParser ip = ( IteratingPhylogenyParser ) p;
+                ip = ( IteratingPhylogenyParser ) p;
+            }
+            final RIO rio;
+            try {
                 ip.setSource( gene_trees_file );
                 rio = RIO.executeAnalysis( ip,
                                            species_tree_file,
@@ -130,20 +126,20 @@ public final class RIOUtil {
                                            gt_last,
                                            logfile != null,
                                            !use_gene_trees_dir,
-                                           transfer_taxonomy );
+                                           transfer_taxonomy,
+                                           number_of_threads );
+            }
+            finally {
+                if ( ip instanceof ParallelNHXParser ) {
+                    ( ( ParallelNHXParser ) ip ).close();
+                }
             }
             if ( !use_gene_trees_dir ) {
                 if ( algorithm == ALGORITHM.GSDIR ) {
                     System.out.println( "Taxonomy linking based on           :\t" + rio.getGSDIRtaxCompBase() );
                 }
             }
-            final IntMatrix m;
-            if ( iterating ) {
-                m = rio.getOrthologTable();
-            }
-            else {
-                m = RIO.calculateOrthologTable( rio.getAnalyzedGeneTrees(), true );
-            }
+            final IntMatrix m = rio.getOrthologTable();
             final GSDIR gsdir_for_best_tree;
             if ( perform_gsdir_on_best_tree ) {
                 gsdir_for_best_tree = analyzeConsensusTree( gene_trees_file,
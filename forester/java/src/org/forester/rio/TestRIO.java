@@ -4,6 +4,7 @@ package org.forester.rio;
 import java.io.File;
 
 import org.forester.datastructures.IntMatrix;
+import org.forester.io.parsers.nexus.NexusPhylogeniesParser;
 import org.forester.io.parsers.nhx.NHXParser;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyMethods;
@@ -21,13 +22,20 @@ public final class TestRIO {
             + "test_data" + ForesterUtil.getFileSeparator();
 
     public static void main( final String[] args ) {
+        boolean failed = false;
         if ( !testRIO_GSDIR() ) {
             System.out.println( "testRIO GSDIR failed" );
+            failed = true;
         }
         if ( !testRIO_GSDIR_Iterating() ) {
             System.out.println( "testRIO GSDIR iterating failed" );
+            failed = true;
         }
-        else {
+        if ( !testRIO_GSDIR_IteratingParallel() ) {
+            System.out.println( "testRIO GSDIR iterating parallel failed" );
+            failed = true;
+        }
+        if ( !failed ) {
             System.out.println( "OK" );
         }
     }
@@ -39,6 +47,9 @@ public final class TestRIO {
         if ( !testRIO_GSDIR_Iterating() ) {
             return false;
         }
+        if ( !testRIO_GSDIR_IteratingParallel() ) {
+            return false;
+        }
         return true;
     }
 
@@ -824,4 +835,85 @@ public final class TestRIO {
         }
         return true;
     }
-}
\ No newline at end of file
+
+    private static boolean testRIO_GSDIR_IteratingParallel() {
+        try {
+            final File gene_trees = new File( PATH_TO_TEST_DATA + "rio_mb_taxcode.run1.t" );
+            final File species_tree = new File( PATH_TO_TEST_DATA + "rio_tol_1.xml" );
+            final RIO r1 = RIO.executeAnalysis( createNexusParser( gene_trees ),
+                                                species_tree,
+                                                ALGORITHM.GSDIR,
+                                                REROOTING.BY_ALGORITHM,
+                                                "",
+                                                -1,
+                                                -1,
+                                                true,
+                                                false,
+                                                true,
+                                                1 );
+            final RIO r3 = RIO.executeAnalysis( createNexusParser( gene_trees ),
+                                                species_tree,
+                                                ALGORITHM.GSDIR,
+                                                REROOTING.BY_ALGORITHM,
+                                                "",
+                                                -1,
+                                                -1,
+                                                true,
+                                                false,
+                                                true,
+                                                3 );
+            if ( r1.getDuplicationsStatistics().getN() != 201 ) {
+                return false;
+            }
+            if ( !r1.getOrthologTable().toString().equals( r3.getOrthologTable().toString() ) ) {
+                return false;
+            }
+            if ( r1.getDuplicationsStatistics().getN() != r3.getDuplicationsStatistics().getN() ) {
+                return false;
+            }
+            for( int i = 0; i < r1.getDuplicationsStatistics().getN(); ++i ) {
+                if ( r1.getDuplicationsStatistics().getValue( i ) != r3.getDuplicationsStatistics().getValue( i ) ) {
+                    return false;
+                }
+            }
+            if ( !r1.getMinDuplicationsGeneTree().toNewHampshire()
+                    .equals( r3.getMinDuplicationsGeneTree().toNewHampshire() ) ) {
+                return false;
+            }
+            if ( r1.getExtNodesOfAnalyzedGeneTrees() != r3.getExtNodesOfAnalyzedGeneTrees() ) {
+                return false;
+            }
+            if ( r1.getRemovedGeneTreeNodes().size() != r3.getRemovedGeneTreeNodes().size() ) {
+                return false;
+            }
+            final RIO r3_range = RIO.executeAnalysis( createNexusParser( gene_trees ),
+                                                      species_tree,
+                                                      ALGORITHM.GSDIR,
+                                                      REROOTING.BY_ALGORITHM,
+                                                      "",
+                                                      10,
+                                                      99,
+                                                      true,
+                                                      false,
+                                                      true,
+                                                      3 );
+            if ( r3_range.getDuplicationsStatistics().getN() != 90 ) {
+                return false;
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static NexusPhylogeniesParser createNexusParser( final File f ) throws Exception {
+        final NexusPhylogeniesParser p = new NexusPhylogeniesParser();
+        p.setReplaceUnderscores( false );
+        p.setIgnoreQuotes( true );
+        p.setTaxonomyExtraction( NHXParser.TAXONOMY_EXTRACTION.AGGRESSIVE );
+        p.setSource( f );
+        return p;
+    }
+}
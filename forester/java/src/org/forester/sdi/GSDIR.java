@@ -25,10 +25,13 @@
 package org.forester.sdi;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
 
+import org.forester.phylogeny.LCAIndex;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyBranch;
 import org.forester.phylogeny.PhylogenyMethods;
@@ -39,8 +42,8 @@ import org.forester.util.BasicDescriptiveStatistics;
 
 public class GSDIR implements GSDII {
 
-    private final int                        _min_duplications_sum;
-    private final int                        _speciations_sum;
+    private int                              _min_duplications_sum;
+    private int                              _speciations_sum;
     private final BasicDescriptiveStatistics _duplications_sum_stats;
     private Phylogeny                        _min_duplications_sum_gene_tree;
     private final List<PhylogenyNode>        _stripped_gene_tree_nodes;
@@ -54,6 +57,20 @@ public class GSDIR implements GSDII {
                   final boolean strip_gene_tree,
                   final boolean strip_species_tree,
                   final boolean transfer_taxonomy ) throws SDIException {
+        this( gene_tree, species_tree, strip_gene_tree, strip_species_tree, transfer_taxonomy, true );
+    }
+
+    /**
+     * If incremental is false, the gene tree is re-rooted on each branch and
+     * analyzed from scratch each time (only intended for testing).
+     *
+     */
+    GSDIR( final Phylogeny gene_tree,
+           final Phylogeny species_tree,
+           final boolean strip_gene_tree,
+           final boolean strip_species_tree,
+           final boolean transfer_taxonomy,
+           final boolean incremental ) throws SDIException {
         final NodesLinkingResult nodes_linking_result = GSDI.linkNodesOfG( gene_tree,
                                                                            species_tree,
                                                                            strip_gene_tree,
@@ -75,42 +92,21 @@ public class GSDIR implements GSDII {
             gene_tree_branches_post_order.add( new PhylogenyBranch( gene_tree.getRoot().getChildNode1(), gene_tree
                                                                     .getRoot().getChildNode2() ) );
         }
-        int min_duplications_sum = Integer.MAX_VALUE;
-        int speciations_sum = 0;
         _duplications_sum_stats = new BasicDescriptiveStatistics();
-        for( final PhylogenyBranch branch : gene_tree_branches_post_order ) {
-            reRoot( branch, gene_tree );
-            PhylogenyMethods.preOrderReId( species_tree );
-            final GSDIsummaryResult gsdi_result = GSDI.geneTreePostOrderTraversal( gene_tree,
-                                                                                   true,
-                                                                                   min_duplications_sum );
-            if ( gsdi_result == null ) {
-                continue;
-            }
-            if ( gsdi_result.getDuplicationsSum() < min_duplications_sum ) {
-                min_duplications_sum = gsdi_result.getDuplicationsSum();
-                speciations_sum = gsdi_result.getSpeciationsSum();
-                _min_duplications_sum_gene_tree = gene_tree.copy();
-                if ( transfer_taxonomy ) {
-                    transferTaxonomy( _min_duplications_sum_gene_tree );
-                }
-            }
-            else if ( gsdi_result.getDuplicationsSum() == min_duplications_sum ) {
-                final List<Phylogeny> l = new ArrayList<Phylogeny>();
-                l.add( _min_duplications_sum_gene_tree );
-                l.add( gene_tree );
-                final int index = getIndexesOfShortestTree( l ).get( 0 );
-                if ( index == 1 ) {
-                    _min_duplications_sum_gene_tree = gene_tree.copy();
-                    if ( transfer_taxonomy ) {
-                        transferTaxonomy( _min_duplications_sum_gene_tree );
-                    }
-                }
-            }
-            _duplications_sum_stats.addValue( gsdi_result.getDuplicationsSum() );
+        PhylogenyMethods.preOrderReId( species_tree );
+        final int[] duplications_sums = incremental ? calculateDuplicationsSums( gene_tree,
+                                                                                 species_tree,
+                                                                                 gene_tree_branches_post_order )
+                : null;
+        if ( duplications_sums != null ) {
+            reRootOnMinDuplicationsBranch( gene_tree,
+                                           gene_tree_branches_post_order,
+                                           duplications_sums,
+                                           transfer_taxonomy );
+        }
+        else {
+            reRootOnEachBranch( gene_tree, species_tree, gene_tree_branches_post_order, transfer_taxonomy );
         }
-        _min_duplications_sum = min_duplications_sum;
-        _speciations_sum = speciations_sum;
     }
 
     public BasicDescriptiveStatistics getDuplicationsSumStats() {
@@ -215,6 +211,345 @@ public class GSDIR implements GSDII {
         }
     }
 
+    /**
+     * Re-roots the gene tree on each branch (in the given order) and keeps
+     * the first tree with the minimal sum of duplications or, if several
+     * trees have this sum, the shortest of them (see
+     * getIndexesOfShortestTree). Each tree is analyzed from scratch,
+     * traversals stop as soon as the current minimum is exceeded.
+     */
+    private final void reRootOnEachBranch( final Phylogeny gene_tree,
+                                           final Phylogeny species_tree,
+                                           final List<PhylogenyBranch> gene_tree_branches_post_order,
+                                           final boolean transfer_taxonomy ) throws SDIException {
+        int min_duplications_sum = Integer.MAX_VALUE;
+        int speciations_sum = 0;
+        for( final PhylogenyBranch branch : gene_tree_branches_post_order ) {
+            reRoot( branch, gene_tree );
+            PhylogenyMethods.preOrderReId( species_tree );
+            final GSDIsummaryResult gsdi_result = GSDI.geneTreePostOrderTraversal( gene_tree,
+                                                                                   true,
+                                                                                   min_duplications_sum );
+            if ( gsdi_result == null ) {
+                continue;
+            }
+            if ( gsdi_result.getDuplicationsSum() < min_duplications_sum ) {
+                min_duplications_sum = gsdi_result.getDuplicationsSum();
+                speciations_sum = gsdi_result.getSpeciationsSum();
+                _min_duplications_sum_gene_tree = gene_tree.copy();
+                if ( transfer_taxonomy ) {
+                    transferTaxonomy( _min_duplications_sum_gene_tree );
+                }
+            }
+            else if ( gsdi_result.getDuplicationsSum() == min_duplications_sum ) {
+                final List<Phylogeny> l = new ArrayList<Phylogeny>();
+                l.add( _min_duplications_sum_gene_tree );
+                l.add( gene_tree );
+                final int index = getIndexesOfShortestTree( l ).get( 0 );
+                if ( index == 1 ) {
+                    _min_duplications_sum_gene_tree = gene_tree.copy();
+                    if ( transfer_taxonomy ) {
+                        transferTaxonomy( _min_duplications_sum_gene_tree );
+                    }
+                }
+            }
+            _duplications_sum_stats.addValue( gsdi_result.getDuplicationsSum() );
+        }
+        _min_duplications_sum = min_duplications_sum;
+        _speciations_sum = speciations_sum;
+    }
+
+    /**
+     * Same result as reRootOnEachBranch, given the sums of duplications for
+     * each branch: the gene tree is still re-rooted on each branch in the
+     * same order (re-rooting only changes the nodes on the path to the
+     * previous root, and the order of child nodes depends on this history),
+     * but it is only analyzed if its sum of duplications is the minimum.
+     */
+    private final void reRootOnMinDuplicationsBranch( final Phylogeny gene_tree,
+                                                      final List<PhylogenyBranch> gene_tree_branches_post_order,
+                                                      final int[] duplications_sums,
+                                                      final boolean transfer_taxonomy ) throws SDIException {
+        int min_duplications_sum = Integer.MAX_VALUE;
+        for( final int duplications_sum : duplications_sums ) {
+            // Traversals which exceed the current minimum are not counted.
+            if ( duplications_sum <= min_duplications_sum ) {
+                _duplications_sum_stats.addValue( duplications_sum );
+                min_duplications_sum = duplications_sum;
+            }
+        }
+        double min_distance = 0;
+        int min_depth = 0;
+        for( int i = 0; i < duplications_sums.length; ++i ) {
+            reRoot( gene_tree_branches_post_order.get( i ), gene_tree );
+            if ( duplications_sums[ i ] == min_duplications_sum ) {
+                if ( _min_duplications_sum_gene_tree != null ) {
+                    // As getIndexesOfShortestTree, with the values for the
+                    // current minimal tree calculated when it was copied.
+                    if ( min_distance > 0 ) {
+                        if ( !( PhylogenyMethods.calculateMaxDistanceToRoot( gene_tree ) < min_distance ) ) {
+                            continue;
+                        }
+                    }
+                    else if ( !( PhylogenyMethods.calculateMaxDepth( gene_tree ) < min_depth ) ) {
+                        continue;
+                    }
+                }
+                GSDI.geneTreePostOrderTraversal( gene_tree, true, Integer.MAX_VALUE );
+                min_distance = PhylogenyMethods.calculateMaxDistanceToRoot( gene_tree );
+                min_depth = PhylogenyMethods.calculateMaxDepth( gene_tree );
+                _min_duplications_sum_gene_tree = gene_tree.copy();
+                if ( transfer_taxonomy ) {
+                    transferTaxonomy( _min_duplications_sum_gene_tree );
+                }
+            }
+        }
+        _min_duplications_sum = min_duplications_sum;
+        // The most parsimonious duplication model only knows speciations
+        // and duplications.
+        _speciations_sum = gene_tree.getNumberOfExternalNodes() - 1 - min_duplications_sum;
+    }
+
+    /**
+     * Calculates the sum of duplications of the gene tree rooted on each of
+     * the given branches, in linear time (apart from walking up the species
+     * tree at nodes mapped to non-bifurcating species tree nodes): for each
+     * node, the mapping and the number of duplications of the subtree below
+     * it (in the current rooting) and of the subtree above it (the rest of
+     * the tree, as seen from the node) are calculated once, the root placed
+     * on the branch of a node joins these two subtrees.
+     * For subtrees mapped to non-bifurcating species tree nodes, the set of
+     * children of the species tree node which contain external nodes of the
+     * subtree is calculated once as well (see obtainSpeciesChildren).
+     * <p>
+     * Returns null if the gene tree (regarded as unrooted) is not binary.
+     * <p>
+     * Preconditions: all external nodes of the gene tree are linked to the
+     * species tree.
+     */
+    private final static int[] calculateDuplicationsSums( final Phylogeny gene_tree,
+                                                          final Phylogeny species_tree,
+                                                          final List<PhylogenyBranch> branches ) {
+        final PhylogenyNode root = gene_tree.getRoot();
+        if ( ( root.getNumberOfDescendants() != 2 ) && ( root.getNumberOfDescendants() != 3 ) ) {
+            return null;
+        }
+        final LCAIndex gene_index = new LCAIndex( gene_tree );
+        final LCAIndex species_index = new LCAIndex( species_tree );
+        final int n = gene_index.getNumberOfNodes();
+        // The nodes below node i (in preorder) are i + 1 to i + sizes[ i ] - 1.
+        final int[] sizes = new int[ n ];
+        for( int i = n - 1; i >= 0; --i ) {
+            sizes[ i ] += 1;
+            if ( i > 0 ) {
+                sizes[ gene_index.getParent( i ) ] += sizes[ i ];
+            }
+        }
+        final int[] mappings_below = new int[ n ];
+        final int[] duplications_below = new int[ n ];
+        final List<Set<PhylogenyNode>> species_children_below = new ArrayList<Set<PhylogenyNode>>( Collections
+                .<Set<PhylogenyNode>> nCopies( n, null ) );
+        for( int i = n - 1; i > 0; --i ) {
+            final PhylogenyNode g = gene_index.getNode( i );
+            if ( g.isExternal() ) {
+                if ( g.getLink() == null ) {
+                    return null;
+                }
+                mappings_below[ i ] = species_index.getIndex( g.getLink() );
+                if ( g.getLink().getNumberOfDescendants() != 2 ) {
+                    species_children_below.set( i, Collections.singleton( obtainChildOfSpeciesNode( g.getLink(),
+                                                                                                    g.getLink() ) ) );
+                }
+            }
+            else {
+                if ( g.getNumberOfDescendants() != 2 ) {
+                    return null;
+                }
+                final int c1 = i + 1;
+                final int c2 = c1 + sizes[ c1 ];
+                mappings_below[ i ] = species_index.calculateLCA( mappings_below[ c1 ], mappings_below[ c2 ] );
+                duplications_below[ i ] = duplications_below[ c1 ]
+                        + duplications_below[ c2 ]
+                        + countDuplication( species_index,
+                                            mappings_below[ i ],
+                                            mappings_below[ c1 ],
+                                            species_children_below.get( c1 ),
+                                            mappings_below[ c2 ],
+                                            species_children_below.get( c2 ) );
+                species_children_below.set( i, obtainSpeciesChildren( species_index,
+                                                                      mappings_below[ i ],
+                                                                      mappings_below[ c1 ],
+                                                                      species_children_below.get( c1 ),
+                                                                      mappings_below[ c2 ],
+                                                                      species_children_below.get( c2 ) ) );
+            }
+        }
+        final int[] root_children = new int[ root.getNumberOfDescendants() ];
+        root_children[ 0 ] = 1;
+        for( int j = 1; j < root_children.length; ++j ) {
+            root_children[ j ] = root_children[ j - 1 ] + sizes[ root_children[ j - 1 ] ];
+        }
+        final int[] mappings_above = new int[ n ];
+        final int[] duplications_above = new int[ n ];
+        final List<Set<PhylogenyNode>> species_children_above = new ArrayList<Set<PhylogenyNode>>( Collections
+                .<Set<PhylogenyNode>> nCopies( n, null ) );
+        final int[] duplications_sums = new int[ n ];
+        for( int i = 1; i < n; ++i ) {
+            final int p = gene_index.getParent( i );
+            if ( p == 0 ) {
+                if ( root_children.length == 2 ) {
+                    final int other = root_children[ i == 1 ? 1 : 0 ];
+                    mappings_above[ i ] = mappings_below[ other ];
+                    duplications_above[ i ] = duplications_below[ other ];
+                    species_children_above.set( i, species_children_below.get( other ) );
+                }
+                else {
+                    int a = -1;
+                    int b = -1;
+                    for( final int c : root_children ) {
+                        if ( c != i ) {
+                            if ( a < 0 ) {
+                                a = c;
+                            }
+                            else {
+                                b = c;
+                            }
+                        }
+                    }
+                    mappings_above[ i ] = species_index.calculateLCA( mappings_below[ a ], mappings_below[ b ] );
+                    duplications_above[ i ] = duplications_below[ a ]
+                            + duplications_below[ b ]
+                            + countDuplication( species_index,
+                                                mappings_above[ i ],
+                                                mappings_below[ a ],
+                                                species_children_below.get( a ),
+                                                mappings_below[ b ],
+                                                species_children_below.get( b ) );
+                    species_children_above.set( i, obtainSpeciesChildren( species_index,
+                                                                          mappings_above[ i ],
+                                                                          mappings_below[ a ],
+                                                                          species_children_below.get( a ),
+                                                                          mappings_below[ b ],
+                                                                          species_children_below.get( b ) ) );
+                }
+            }
+            else {
+                final int sibling = ( i == ( p + 1 ) ) ? ( p + 1 + sizes[ p + 1 ] ) : ( p + 1 );
+                mappings_above[ i ] = species_index.calculateLCA( mappings_below[ sibling ], mappings_above[ p ] );
+                duplications_above[ i ] = duplications_below[ sibling ]
+                        + duplications_above[ p ]
+                        + countDuplication( species_index,
+                                            mappings_above[ i ],
+                                            mappings_below[ sibling ],
+                                            species_children_below.get( sibling ),
+                                            mappings_above[ p ],
+                                            species_children_above.get( p ) );
+                species_children_above.set( i, obtainSpeciesChildren( species_index,
+                                                                      mappings_above[ i ],
+                                                                      mappings_below[ sibling ],
+                                                                      species_children_below.get( sibling ),
+                                                                      mappings_above[ p ],
+                                                                      species_children_above.get( p ) ) );
+            }
+            duplications_sums[ i ] = duplications_below[ i ]
+                    + duplications_above[ i ]
+                    + countDuplication( species_index,
+                                        species_index.calculateLCA( mappings_below[ i ], mappings_above[ i ] ),
+                                        mappings_below[ i ],
+                                        species_children_below.get( i ),
+                                        mappings_above[ i ],
+                                        species_children_above.get( i ) );
+        }
+        final int[] branch_duplications_sums = new int[ branches.size() ];
+        for( int i = 0; i < branch_duplications_sums.length; ++i ) {
+            branch_duplications_sums[ i ] = duplications_sums[ gene_index.getIndex( branches.get( i ).getFirstNode() ) ];
+        }
+        return branch_duplications_sums;
+    }
+
+    /**
+     * Returns 1 if a gene tree node mapped to species tree node s, with child
+     * subtrees 1 and 2 mapped to s1 and s2, is a duplication (as determined
+     * by GSDI, with the most parsimonious duplication model), 0 otherwise.
+     * children1 and children2 are the sets of species children of the
+     * subtrees (see obtainSpeciesChildren), they are only used if s is not
+     * bifurcating.
+     */
+    private final static int countDuplication( final LCAIndex species_index,
+                                               final int s,
+                                               final int s1,
+                                               final Set<PhylogenyNode> children1,
+                                               final int s2,
+                                               final Set<PhylogenyNode> children2 ) {
+        if ( ( s1 != s ) && ( s2 != s ) ) {
+            return 0;
+        }
+        final PhylogenyNode species_node = species_index.getNode( s );
+        if ( species_node.getNumberOfDescendants() == 2 ) {
+            return 1;
+        }
+        final Set<PhylogenyNode> set = s1 == s ? children1 : Collections
+                .singleton( obtainChildOfSpeciesNode( species_index.getNode( s1 ), species_node ) );
+        if ( s2 != s ) {
+            return set.contains( obtainChildOfSpeciesNode( species_index.getNode( s2 ), species_node ) ) ? 1 : 0;
+        }
+        for( final PhylogenyNode n : children2 ) {
+            if ( set.contains( n ) ) {
+                return 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * For a subtree mapped to species tree node s, consisting of two parts
+     * mapped to s1 and s2 with the sets of species children children1 and
+     * children2, returns the set of children of s which contain (the links
+     * of) external nodes of the subtree, as obtained by
+     * obtainChildOfSpeciesNode for each external node, or null if s is
+     * bifurcating.
+     * An external node of a part mapped below s lies below the same child of
+     * s as the part, therefore only parts mapped to s itself contribute
+     * more than one child.
+     */
+    private final static Set<PhylogenyNode> obtainSpeciesChildren( final LCAIndex species_index,
+                                                                   final int s,
+                                                                   final int s1,
+                                                                   final Set<PhylogenyNode> children1,
+                                                                   final int s2,
+                                                                   final Set<PhylogenyNode> children2 ) {
+        final PhylogenyNode species_node = species_index.getNode( s );
+        if ( species_node.getNumberOfDescendants() == 2 ) {
+            return null;
+        }
+        final Set<PhylogenyNode> set = new HashSet<PhylogenyNode>();
+        if ( s1 == s ) {
+            set.addAll( children1 );
+        }
+        else {
+            set.add( obtainChildOfSpeciesNode( species_index.getNode( s1 ), species_node ) );
+        }
+        if ( s2 == s ) {
+            set.addAll( children2 );
+        }
+        else {
+            set.add( obtainChildOfSpeciesNode( species_index.getNode( s2 ), species_node ) );
+        }
+        return set;
+    }
+
+    // As in GSDI.determineEvent: the child of s above n, or the root
+    // of the species tree if n is not below s.
+    private final static PhylogenyNode obtainChildOfSpeciesNode( PhylogenyNode n, final PhylogenyNode s ) {
+        while ( ( n.getParent() != s ) && ( n.getParent() != null ) ) {
+            n = n.getParent();
+            if ( n.isRoot() ) {
+                break;
+            }
+        }
+        return n;
+    }
+
     private final static void transferTaxonomy( final Phylogeny gt ) {
         for( final PhylogenyNodeIterator it = gt.iteratorPostorder(); it.hasNext(); ) {
             GSDI.transferTaxonomy( it.next() );
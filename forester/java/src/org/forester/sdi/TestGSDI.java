@@ -25,9 +25,12 @@
 
 package org.forester.sdi;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Random;
 
 import org.forester.development.DevelopmentTools;
+import org.forester.io.parsers.nexus.NexusPhylogeniesParser;
 import org.forester.io.parsers.nhx.NHXParser;
 import org.forester.io.parsers.util.ParserUtils;
 import org.forester.phylogeny.Phylogeny;
@@ -44,16 +47,24 @@ public final class TestGSDI {
             + "test_data" + ForesterUtil.getFileSeparator();
 
     public static void main( final String[] args ) {
+        boolean failed = false;
         if ( !TestGSDI.testGSDI_against_binary_gene_tree() ) {
             System.out.println( "binary failed" );
+            failed = true;
         }
         if ( !TestGSDI.testGSDI_general() ) {
             System.out.println( "general failed" );
+            failed = true;
         }
         if ( !TestGSDI.testGSDIR_general() ) {
             System.out.println( "general re-rooting failed" );
+            failed = true;
         }
-        else {
+        if ( !TestGSDI.testGSDIR_incremental() ) {
+            System.out.println( "incremental re-rooting failed" );
+            failed = true;
+        }
+        if ( !failed ) {
             System.out.println( "OK" );
         }
     }
@@ -68,6 +79,9 @@ public final class TestGSDI {
         if ( !TestGSDI.testGSDIR_general() ) {
             return false;
         }
+        if ( !TestGSDI.testGSDIR_incremental() ) {
+            return false;
+        }
         return true;
     }
 
@@ -77,6 +91,32 @@ public final class TestGSDI {
         return p;
     }
 
+    private final static String createRandomGeneTree( final Random r, final int leaves, final int species ) {
+        if ( leaves == 1 ) {
+            return "[&&NHX:S=" + ( 1 + r.nextInt( species ) ) + "]" + ( r.nextBoolean() ? ":" + r.nextInt( 4 ) : "" );
+        }
+        final int l = 1 + r.nextInt( leaves - 1 );
+        return "(" + createRandomGeneTree( r, l, species ) + "," + createRandomGeneTree( r, leaves - l, species ) + ")"
+                + ( r.nextBoolean() ? ":" + r.nextInt( 4 ) : "" );
+    }
+
+    private final static boolean isEqual( final GSDIR a, final GSDIR b ) {
+        if ( ( a.getMinDuplicationsSum() != b.getMinDuplicationsSum() )
+                || ( a.getSpeciationsSum() != b.getSpeciationsSum() ) ) {
+            return false;
+        }
+        if ( a.getDuplicationsSumStats().getN() != b.getDuplicationsSumStats().getN() ) {
+            return false;
+        }
+        for( int i = 0; i < a.getDuplicationsSumStats().getN(); ++i ) {
+            if ( a.getDuplicationsSumStats().getValue( i ) != b.getDuplicationsSumStats().getValue( i ) ) {
+                return false;
+            }
+        }
+        return a.getMinDuplicationsSumGeneTree().toNewHampshireX()
+                .equals( b.getMinDuplicationsSumGeneTree().toNewHampshireX() );
+    }
+
     private final static Event getEvent( final Phylogeny p, final String n1, final String n2 ) {
         return PhylogenyMethods.calculateLCA( p.getNode( n1 ), p.getNode( n2 ) ).getNodeData().getEvent();
     }
@@ -1534,4 +1574,55 @@ public final class TestGSDI {
         }
         return true;
     }
+
+    private static boolean testGSDIR_incremental() {
+        try {
+            final String species_str = "(((((([&&NHX:S=1],[&&NHX:S=2]),"
+                    + "([&&NHX:S=3],[&&NHX:S=4],[&&NHX:S=5])),"
+                    + "([&&NHX:S=6],[&&NHX:S=7],[&&NHX:S=8],[&&NHX:S=9])),"
+                    + "([&&NHX:S=10],[&&NHX:S=11])),"
+                    + "([&&NHX:S=12],[&&NHX:S=13],[&&NHX:S=14])),"
+                    + "([&&NHX:S=15],([&&NHX:S=16],[&&NHX:S=17]),([&&NHX:S=18],[&&NHX:S=19],[&&NHX:S=20]),([&&NHX:S=21],[&&NHX:S=22],[&&NHX:S=23],[&&NHX:S=24])));";
+            final Random r = new Random( 42 );
+            for( int i = 0; i < 200; ++i ) {
+                final int species = ( i % 2 ) == 0 ? 24 : 3;
+                String gene_str = createRandomGeneTree( r, 2 + r.nextInt( 30 ), species );
+                if ( ( i % 3 ) == 0 ) {
+                    // Unrooted (trifurcating root).
+                    gene_str = "(" + createRandomGeneTree( r, 1 + r.nextInt( 5 ), species ) + ","
+                            + gene_str.substring( 1, gene_str.lastIndexOf( ')' ) ) + ")";
+                }
+                final Phylogeny g = createPhylogeny( gene_str + ";" );
+                final Phylogeny s = createPhylogeny( species_str );
+                final GSDIR inc = new GSDIR( g.copy(), s.copy(), false, false, true, true );
+                final GSDIR all = new GSDIR( g.copy(), s.copy(), false, false, true, false );
+                if ( !isEqual( inc, all ) ) {
+                    System.out.println( gene_str );
+                    return false;
+                }
+            }
+            final NexusPhylogeniesParser p = new NexusPhylogeniesParser();
+            p.setReplaceUnderscores( false );
+            p.setIgnoreQuotes( true );
+            p.setTaxonomyExtraction( NHXParser.TAXONOMY_EXTRACTION.AGGRESSIVE );
+            final Phylogeny[] gene_trees = ParserBasedPhylogenyFactory.getInstance()
+                    .create( new File( PATH_TO_TEST_DATA + "rio_mb_taxcode.run1.t" ), p );
+            final Phylogeny species_tree = ParserBasedPhylogenyFactory.getInstance()
+                    .create( new File( PATH_TO_TEST_DATA + "rio_tol_1.xml" ),
+                             ParserUtils.createParserDependingOnFileType( new File( PATH_TO_TEST_DATA
+                                     + "rio_tol_1.xml" ), true ) )[ 0 ];
+            for( int i = 0; i < gene_trees.length; i += 10 ) {
+                final GSDIR inc = new GSDIR( gene_trees[ i ].copy(), species_tree.copy(), true, true, true, true );
+                final GSDIR all = new GSDIR( gene_trees[ i ].copy(), species_tree.copy(), true, true, true, false );
+                if ( !isEqual( inc, all ) ) {
+                    return false;
+                }
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
 }
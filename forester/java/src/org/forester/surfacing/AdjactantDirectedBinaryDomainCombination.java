@@ -26,15 +26,15 @@
 
 package org.forester.surfacing;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.forester.protein.BasicDomain;
 import org.forester.protein.BinaryDomainCombination;
 
 public class AdjactantDirectedBinaryDomainCombination extends BasicBinaryDomainCombination {
 
-    final private static Map<Integer, AdjactantDirectedBinaryDomainCombination> ADDC_POOL = new HashMap<Integer, AdjactantDirectedBinaryDomainCombination>();
+    final private static Map<Integer, AdjactantDirectedBinaryDomainCombination> ADDC_POOL = new ConcurrentHashMap<Integer, AdjactantDirectedBinaryDomainCombination>();
 
     private AdjactantDirectedBinaryDomainCombination( final String n_terminal, final String c_terminal ) {
         super();
@@ -59,17 +59,19 @@ public class AdjactantDirectedBinaryDomainCombination extends BasicBinaryDomainC
     public final static AdjactantDirectedBinaryDomainCombination obtainInstance( final String n_terminal,
                                                                                  final String c_terminal ) {
         final int code = calcCode( BasicDomain.obtainIdAsShort( n_terminal ), BasicDomain.obtainIdAsShort( c_terminal ) );
-        if ( ADDC_POOL.containsKey( code ) ) {
-            return ADDC_POOL.get( code );
+        final AdjactantDirectedBinaryDomainCombination dc = ADDC_POOL.get( code );
+        if ( dc != null ) {
+            return dc;
         }
-        else {
-            final AdjactantDirectedBinaryDomainCombination dc = new AdjactantDirectedBinaryDomainCombination( n_terminal,
+        final AdjactantDirectedBinaryDomainCombination new_dc = new AdjactantDirectedBinaryDomainCombination( n_terminal,
                                                                                                               c_terminal );
-            ADDC_POOL.put( code, dc );
-            if ( VERBOSE && ( ( ADDC_POOL.size() % 100 ) == 0 ) ) {
-                System.out.println( " addc pool size: " + ADDC_POOL.size() );
-            }
-            return dc;
+        final AdjactantDirectedBinaryDomainCombination previous = ADDC_POOL.putIfAbsent( code, new_dc );
+        if ( previous != null ) {
+            return previous;
+        }
+        if ( VERBOSE && ( ( ADDC_POOL.size() % 100 ) == 0 ) ) {
+            System.out.println( " addc pool size: " + ADDC_POOL.size() );
         }
+        return new_dc;
     }
 }
@@ -26,8 +26,8 @@
 
 package org.forester.surfacing;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.forester.protein.BasicDomain;
 import org.forester.protein.BinaryDomainCombination;
@@ -36,8 +36,8 @@ import org.forester.util.ForesterUtil;
 public class BasicBinaryDomainCombination implements BinaryDomainCombination {
 
     final static boolean                                            VERBOSE = false;
-    final private static Map<Integer, BasicBinaryDomainCombination> DC_POOL = new HashMap<Integer, BasicBinaryDomainCombination>();
-    final private static Map<Integer, String>                       S_POOL  = new HashMap<Integer, String>();
+    final private static Map<Integer, BasicBinaryDomainCombination> DC_POOL = new ConcurrentHashMap<Integer, BasicBinaryDomainCombination>();
+    final private static Map<Integer, String>                       S_POOL  = new ConcurrentHashMap<Integer, String>();
     short                                                           _id0;
     short                                                           _id1;
 
@@ -171,14 +171,13 @@ public class BasicBinaryDomainCombination implements BinaryDomainCombination {
     @Override
     final public String toString() {
         final int code = calcCode( _id0, _id1 );
-        if ( S_POOL.containsKey( code ) ) {
-            return S_POOL.get( code );
-        }
-        else {
-            final String s = getId0() + SEPARATOR + getId1();
-            S_POOL.put( code, s );
+        final String s = S_POOL.get( code );
+        if ( s != null ) {
             return s;
         }
+        final String new_s = getId0() + SEPARATOR + getId1();
+        S_POOL.put( code, new_s );
+        return new_s;
     }
 
     public static BinaryDomainCombination obtainInstance( final String ids ) {
@@ -200,17 +199,19 @@ public class BasicBinaryDomainCombination implements BinaryDomainCombination {
         else {
             code = calcCode( BasicDomain.obtainIdAsShort( id1 ), BasicDomain.obtainIdAsShort( id0 ) );
         }
-        if ( DC_POOL.containsKey( code ) ) {
-            return DC_POOL.get( code );
-        }
-        else {
-            final BasicBinaryDomainCombination dc = new BasicBinaryDomainCombination( id0, id1 );
-            DC_POOL.put( code, dc );
-            if ( VERBOSE && ( ( DC_POOL.size() % 100 ) == 0 ) ) {
-                System.out.println( " dc pool size: " + DC_POOL.size() );
-            }
+        final BasicBinaryDomainCombination dc = DC_POOL.get( code );
+        if ( dc != null ) {
             return dc;
         }
+        final BasicBinaryDomainCombination new_dc = new BasicBinaryDomainCombination( id0, id1 );
+        final BasicBinaryDomainCombination previous = DC_POOL.putIfAbsent( code, new_dc );
+        if ( previous != null ) {
+            return previous;
+        }
+        if ( VERBOSE && ( ( DC_POOL.size() % 100 ) == 0 ) ) {
+            System.out.println( " dc pool size: " + DC_POOL.size() );
+        }
+        return new_dc;
     }
 
     final static int calcCode( final int id0, final int id1 ) {
@@ -26,15 +26,15 @@
 
 package org.forester.surfacing;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.forester.protein.BasicDomain;
 import org.forester.protein.BinaryDomainCombination;
 
 public class DirectedBinaryDomainCombination extends BasicBinaryDomainCombination {
 
-    final private static Map<Integer, DirectedBinaryDomainCombination> DDC_POOL = new HashMap<Integer, DirectedBinaryDomainCombination>();
+    final private static Map<Integer, DirectedBinaryDomainCombination> DDC_POOL = new ConcurrentHashMap<Integer, DirectedBinaryDomainCombination>();
 
     private DirectedBinaryDomainCombination( final String n_terminal, final String c_terminal ) {
         super();
@@ -58,16 +58,18 @@ public class DirectedBinaryDomainCombination extends BasicBinaryDomainCombinatio
 
     public final static DirectedBinaryDomainCombination obtainInstance( final String n_terminal, final String c_terminal ) {
         final int code = calcCode( BasicDomain.obtainIdAsShort( n_terminal ), BasicDomain.obtainIdAsShort( c_terminal ) );
-        if ( DDC_POOL.containsKey( code ) ) {
-            return DDC_POOL.get( code );
-        }
-        else {
-            final DirectedBinaryDomainCombination dc = new DirectedBinaryDomainCombination( n_terminal, c_terminal );
-            DDC_POOL.put( code, dc );
-            if ( VERBOSE && ( ( DDC_POOL.size() % 100 ) == 0 ) ) {
-                System.out.println( " ddc pool size: " + DDC_POOL.size() );
-            }
+        final DirectedBinaryDomainCombination dc = DDC_POOL.get( code );
+        if ( dc != null ) {
             return dc;
         }
+        final DirectedBinaryDomainCombination new_dc = new DirectedBinaryDomainCombination( n_terminal, c_terminal );
+        final DirectedBinaryDomainCombination previous = DDC_POOL.putIfAbsent( code, new_dc );
+        if ( previous != null ) {
+            return previous;
+        }
+        if ( VERBOSE && ( ( DDC_POOL.size() % 100 ) == 0 ) ) {
+            System.out.println( " ddc pool size: " + DDC_POOL.size() );
+        }
+        return new_dc;
     }
 }
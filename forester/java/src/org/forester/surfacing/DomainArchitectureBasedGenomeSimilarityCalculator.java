@@ -81,12 +81,8 @@ public class DomainArchitectureBasedGenomeSimilarityCalculator {
      * @return shared binary domain combinations based similarity score
      */
     public double calculateSharedBinaryDomainCombinationBasedGenomeSimilarityScore() {
-        final double t = getAllBinaryDomainCombinations().size();
-        final double s = getSharedBinaryDomainCombinations().size();
-        if ( t == 0.0 ) {
-            return MIN_SIMILARITY_SCORE;
-        }
-        return ( MAX_SIMILARITY_SCORE - ( ( t - s ) / t ) );
+        return calculateSimilarityScore( getAllBinaryDomainCombinations().size(),
+                                         getSharedBinaryDomainCombinations().size() );
     }
 
     /**
@@ -102,12 +98,7 @@ public class DomainArchitectureBasedGenomeSimilarityCalculator {
      * @return shared domains based similarity score
      */
     public double calculateSharedDomainsBasedGenomeSimilarityScore() {
-        final double t = getAllDomains().size();
-        final double s = getSharedDomains().size();
-        if ( t == 0.0 ) {
-            return MIN_SIMILARITY_SCORE;
-        }
-        return ( MAX_SIMILARITY_SCORE - ( ( t - s ) / t ) );
+        return calculateSimilarityScore( getAllDomains().size(), getSharedDomains().size() );
     }
 
     public void deleteAllDomainIdsToIgnore() {
@@ -232,6 +223,18 @@ public class DomainArchitectureBasedGenomeSimilarityCalculator {
         _domain_ids_to_ignore = domain_ids_to_ignore;
     }
 
+    /**
+     * 1 - ( ( t - s ) / t ), with t being the number of all (distinct) and s
+     * the number of shared (distinct) elements.
+     *
+     */
+    static double calculateSimilarityScore( final double t, final double s ) {
+        if ( t == 0.0 ) {
+            return MIN_SIMILARITY_SCORE;
+        }
+        return ( MAX_SIMILARITY_SCORE - ( ( t - s ) / t ) );
+    }
+
     private void forceRecalculation() {
         _all_domains = null;
         _shared_domains = null;
@@ -41,8 +41,12 @@ import org.forester.evoinference.matrix.character.BasicCharacterStateMatrix;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix.BinaryStates;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix.GainLossStates;
+import org.forester.evoinference.matrix.character.PackedBinaryStateMatrix;
+import org.forester.evoinference.matrix.character.PackedGainLossStateMatrix;
 import org.forester.evoinference.parsimony.DolloParsimony;
 import org.forester.evoinference.parsimony.FitchParsimony;
+import org.forester.evoinference.parsimony.PackedDolloParsimony;
+import org.forester.evoinference.parsimony.PackedFitchParsimony;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyNode;
 import org.forester.phylogeny.data.BinaryCharacters;
@@ -228,13 +232,19 @@ public final class DomainParsimonyCalculator {
         for( int i = 0; i < getGainLossMatrix().getNumberOfIdentifiers(); ++i ) {
             int gains = 0;
             int losses = 0;
-            for( int c = 0; c < getGainLossMatrix().getNumberOfCharacters(); ++c ) {
-                final GainLossStates s = getGainLossMatrix().getState( i, c );
-                if ( s == GainLossStates.GAIN ) {
-                    ++gains;
-                }
-                else if ( s == GainLossStates.LOSS ) {
-                    ++losses;
+            if ( getGainLossMatrix() instanceof PackedGainLossStateMatrix ) {
+                gains = ( ( PackedGainLossStateMatrix ) getGainLossMatrix() ).getNumberOfGains( i );
+                losses = ( ( PackedGainLossStateMatrix ) getGainLossMatrix() ).getNumberOfLosses( i );
+            }
+            else {
+                for( int c = 0; c < getGainLossMatrix().getNumberOfCharacters(); ++c ) {
+                    final GainLossStates s = getGainLossMatrix().getState( i, c );
+                    if ( s == GainLossStates.GAIN ) {
+                        ++gains;
+                    }
+                    else if ( s == GainLossStates.LOSS ) {
+                        ++losses;
+                    }
                 }
             }
             matrix.setState( i, 0, gains );
@@ -372,15 +382,18 @@ public final class DomainParsimonyCalculator {
 
     private void executeDolloParsimony( final boolean on_domain_presence ) {
         reset();
-        final DolloParsimony dollo = DolloParsimony.createInstance();
+        final PackedDolloParsimony dollo = PackedDolloParsimony.createInstance();
         dollo.setReturnGainLossMatrix( true );
         dollo.setReturnInternalStates( true );
-        CharacterStateMatrix<BinaryStates> states = null;
+        PackedBinaryStateMatrix states = null;
         if ( on_domain_presence ) {
-            states = createMatrixOfDomainPresenceOrAbsence();
+            states = ( PackedBinaryStateMatrix ) createMatrixOfDomainPresenceOrAbsence( getGenomeWideCombinableDomainsList(),
+                                                                                        getPositiveFilter(),
+                                                                                        true );
         }
         else {
-            states = createMatrixOfBinaryDomainCombinationPresenceOrAbsence();
+            states = ( PackedBinaryStateMatrix ) createMatrixOfBinaryDomainCombinationPresenceOrAbsence( getGenomeWideCombinableDomainsList(),
+                                                                                                         true );
         }
         dollo.execute( getPhylogeny(), states );
         setGainLossMatrix( dollo.getGainLossMatrix() );
@@ -399,7 +412,7 @@ public final class DomainParsimonyCalculator {
         if ( use_last ) {
             System.out.println( "   Fitch parsimony: use_last = true" );
         }
-        final FitchParsimony<BinaryStates> fitch = new FitchParsimony<BinaryStates>();
+        final PackedFitchParsimony fitch = new PackedFitchParsimony();
         fitch.setRandomize( randomize );
         if ( randomize ) {
             fitch.setRandomNumberSeed( random_number_seed );
@@ -407,14 +420,17 @@ public final class DomainParsimonyCalculator {
         fitch.setUseLast( use_last );
         fitch.setReturnGainLossMatrix( true );
         fitch.setReturnInternalStates( true );
-        CharacterStateMatrix<BinaryStates> states = null;
+        PackedBinaryStateMatrix states = null;
         if ( on_domain_presence ) {
-            states = createMatrixOfDomainPresenceOrAbsence( getGenomeWideCombinableDomainsList() );
+            states = ( PackedBinaryStateMatrix ) createMatrixOfDomainPresenceOrAbsence( getGenomeWideCombinableDomainsList(),
+                                                                                        null,
+                                                                                        true );
         }
         else {
-            states = createMatrixOfBinaryDomainCombinationPresenceOrAbsence( getGenomeWideCombinableDomainsList() );
+            states = ( PackedBinaryStateMatrix ) createMatrixOfBinaryDomainCombinationPresenceOrAbsence( getGenomeWideCombinableDomainsList(),
+                                                                                                         true );
         }
-        fitch.execute( getPhylogeny(), states, true );
+        fitch.execute( getPhylogeny(), states );
         setGainLossMatrix( fitch.getGainLossMatrix() );
         setBinaryInternalStatesMatrix( fitch.getInternalStatesMatrix() );
         setCost( fitch.getCost() );
@@ -543,8 +559,23 @@ public final class DomainParsimonyCalculator {
         }
         return new DomainParsimonyCalculator( phylogeny, gwcd_list, domain_id_to_secondary_features_map );
     }
-    @SuppressWarnings("unchecked")
     public static CharacterStateMatrix<BinaryStates> createMatrixOfBinaryDomainCombinationPresenceOrAbsence( final List<GenomeWideCombinableDomains> gwcd_list ) {
+        return createMatrixOfBinaryDomainCombinationPresenceOrAbsence( gwcd_list, false );
+    }
+
+    public static CharacterStateMatrix<BinaryStates> createMatrixOfDomainPresenceOrAbsence( final List<GenomeWideCombinableDomains> gwcd_list,
+                                                                                            final SortedSet<String> positive_filter ) {
+        return createMatrixOfDomainPresenceOrAbsence( gwcd_list, positive_filter, false );
+    }
+
+    /**
+     * If packed is true, the matrix is a PackedBinaryStateMatrix (one bit per
+     * state), otherwise a BasicCharacterStateMatrix.
+     *
+     */
+    @SuppressWarnings("unchecked")
+    static CharacterStateMatrix<BinaryStates> createMatrixOfBinaryDomainCombinationPresenceOrAbsence( final List<GenomeWideCombinableDomains> gwcd_list,
+                                                                                                      final boolean packed ) {
         if ( gwcd_list.isEmpty() ) {
             throw new IllegalArgumentException( "genome wide combinable domains list is empty" );
         }
@@ -561,8 +592,9 @@ public final class DomainParsimonyCalculator {
             ++identifier_index;
         }
         final int number_of_characters = all_binary_combinations.size();
-        final CharacterStateMatrix<CharacterStateMatrix.BinaryStates> matrix = new BasicCharacterStateMatrix<CharacterStateMatrix.BinaryStates>( number_of_identifiers,
-                number_of_characters );
+        final CharacterStateMatrix<CharacterStateMatrix.BinaryStates> matrix = createMatrix( number_of_identifiers,
+                                                                                             number_of_characters,
+                                                                                             packed );
         int character_index = 0;
         for( final BinaryDomainCombination bc : all_binary_combinations ) {
             matrix.setCharacter( character_index++, bc.toString() );
@@ -599,8 +631,14 @@ public final class DomainParsimonyCalculator {
         return matrix;
     }
 
-    public static CharacterStateMatrix<BinaryStates> createMatrixOfDomainPresenceOrAbsence( final List<GenomeWideCombinableDomains> gwcd_list,
-                                                                                            final SortedSet<String> positive_filter ) {
+    /**
+     * If packed is true, the matrix is a PackedBinaryStateMatrix (one bit per
+     * state), otherwise a BasicCharacterStateMatrix.
+     *
+     */
+    static CharacterStateMatrix<BinaryStates> createMatrixOfDomainPresenceOrAbsence( final List<GenomeWideCombinableDomains> gwcd_list,
+                                                                                     final SortedSet<String> positive_filter,
+                                                                                     final boolean packed ) {
         if ( gwcd_list.isEmpty() ) {
             throw new IllegalArgumentException( "genome wide combinable domains list is empty" );
         }
@@ -624,8 +662,9 @@ public final class DomainParsimonyCalculator {
                 }
             }
         }
-        final CharacterStateMatrix<CharacterStateMatrix.BinaryStates> matrix = new BasicCharacterStateMatrix<CharacterStateMatrix.BinaryStates>( number_of_identifiers,
-                number_of_characters );
+        final CharacterStateMatrix<CharacterStateMatrix.BinaryStates> matrix = createMatrix( number_of_identifiers,
+                                                                                             number_of_characters,
+                                                                                             packed );
         int character_index = 0;
         for( final String id : all_domain_ids ) {
             if ( positive_filter == null ) {
@@ -810,6 +849,15 @@ public final class DomainParsimonyCalculator {
         return matrix;
     }
 
+    private static CharacterStateMatrix<BinaryStates> createMatrix( final int number_of_identifiers,
+                                                                    final int number_of_characters,
+                                                                    final boolean packed ) {
+        if ( packed ) {
+            return new PackedBinaryStateMatrix( number_of_identifiers, number_of_characters );
+        }
+        return new BasicCharacterStateMatrix<BinaryStates>( number_of_identifiers, number_of_characters );
+    }
+
     private static int getStateSumDeltaOnNode( final String node_identifier,
                                                final CharacterStateMatrix<GainLossStates> gain_loss_matrix,
                                                final GainLossStates state ) {
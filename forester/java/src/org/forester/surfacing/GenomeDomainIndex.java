@@ -0,0 +1,281 @@
+// $Id:
+//
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2008-2009 Christian M. Zmasek
+// Copyright (C) 2008-2009 Burnham Institute for Medical Research
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+
+package org.forester.surfacing;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.forester.protein.BinaryDomainCombination;
+
+/*
+ * Index of the (distinct) domains and binary domain combinations of a list
+ * of genomes.
+ *
+ * Each domain id and each binary domain combination is mapped to a dense int
+ * (domain ids in alphabetical order, binary domain combinations in the order
+ * in which they are first encountered), and the domains and binary domain
+ * combinations of each genome are stored as bitsets (arrays of longs, without
+ * trailing zero words). This allows to calculate the shared domains and shared
+ * binary domain combinations based similarity scores (as calculated by
+ * DomainArchitectureBasedGenomeSimilarityCalculator) of any pair of genomes by
+ * counting bits, without creating any sets.
+ *
+ */
+public final class GenomeDomainIndex {
+
+    private final BinaryDomainCombination[] _binary_domain_combinations;
+    // Indices of the two domains of each binary domain combination.
+    private final int[]                     _binary_domain_combinations_id0;
+    private final int[]                     _binary_domain_combinations_id1;
+    // Bitsets of binary domain combinations, one per genome.
+    private final long[][]                  _binary_domain_combinations_bits;
+    private final String[]                  _domain_ids;
+    // Bitsets of domains, one per genome.
+    private final long[][]                  _domains_bits;
+    private final Map<String, Integer>      _domain_id_to_index;
+    private final boolean[]                 _empty;
+
+    public GenomeDomainIndex( final List<GenomeWideCombinableDomains> genomes ) {
+        final SortedSet<String> all_domain_ids = new TreeSet<String>();
+        for( final GenomeWideCombinableDomains genome : genomes ) {
+            all_domain_ids.addAll( genome.getAllDomainIds() );
+        }
+        _domain_ids = all_domain_ids.toArray( new String[ all_domain_ids.size() ] );
+        _domain_id_to_index = new HashMap<String, Integer>();
+        for( int i = 0; i < _domain_ids.length; ++i ) {
+            _domain_id_to_index.put( _domain_ids[ i ], i );
+        }
+        _domains_bits = new long[ genomes.size() ][];
+        _empty = new boolean[ genomes.size() ];
+        _binary_domain_combinations_bits = new long[ genomes.size() ][];
+        final Map<BinaryDomainCombination, Integer> binary_domain_combination_to_index = new HashMap<BinaryDomainCombination, Integer>();
+        final int[][] binary_domain_combinations = new int[ genomes.size() ][];
+        for( int g = 0; g < genomes.size(); ++g ) {
+            final GenomeWideCombinableDomains genome = genomes.get( g );
+            _empty[ g ] = genome.getSize() < 1;
+            final SortedSet<String> domain_ids = genome.getAllDomainIds();
+            final int[] domains = new int[ domain_ids.size() ];
+            int i = 0;
+            for( final String domain_id : domain_ids ) {
+                domains[ i++ ] = _domain_id_to_index.get( domain_id );
+            }
+            _domains_bits[ g ] = createBitset( domains );
+            final SortedSet<BinaryDomainCombination> bdcs = genome.toBinaryDomainCombinations();
+            binary_domain_combinations[ g ] = new int[ bdcs.size() ];
+            i = 0;
+            for( final BinaryDomainCombination bdc : bdcs ) {
+                Integer index = binary_domain_combination_to_index.get( bdc );
+                if ( index == null ) {
+                    index = binary_domain_combination_to_index.size();
+                    binary_domain_combination_to_index.put( bdc, index );
+                }
+                binary_domain_combinations[ g ][ i++ ] = index;
+            }
+        }
+        _binary_domain_combinations = new BinaryDomainCombination[ binary_domain_combination_to_index.size() ];
+        for( final Map.Entry<BinaryDomainCombination, Integer> e : binary_domain_combination_to_index.entrySet() ) {
+            _binary_domain_combinations[ e.getValue() ] = e.getKey();
+        }
+        _binary_domain_combinations_id0 = new int[ _binary_domain_combinations.length ];
+        _binary_domain_combinations_id1 = new int[ _binary_domain_combinations.length ];
+        for( int i = 0; i < _binary_domain_combinations.length; ++i ) {
+            _binary_domain_combinations_id0[ i ] = getDomainIndex( _binary_domain_combinations[ i ].getId0() );
+            _binary_domain_combinations_id1[ i ] = getDomainIndex( _binary_domain_combinations[ i ].getId1() );
+        }
+        for( int g = 0; g < genomes.size(); ++g ) {
+            _binary_domain_combinations_bits[ g ] = createBitset( binary_domain_combinations[ g ] );
+        }
+    }
+
+    /**
+     * Same as
+     * DomainArchitectureBasedGenomeSimilarityCalculator.calculateSharedBinaryDomainCombinationBasedGenomeSimilarityScore()
+     * for genomes i and j.
+     *
+     */
+    public final double calculateSharedBinaryDomainCombinationBasedGenomeSimilarityScore( final int i, final int j ) {
+        checkGenomes( i, j );
+        return calculateSimilarityScore( _binary_domain_combinations_bits[ i ], _binary_domain_combinations_bits[ j ] );
+    }
+
+    /**
+     * Same as
+     * DomainArchitectureBasedGenomeSimilarityCalculator.calculateSharedBinaryDomainCombinationBasedGenomeSimilarityScore()
+     * for genomes i and j, ignoring the binary domain combinations in the
+     * given mask (as created by createBinaryDomainCombinationsMask).
+     *
+     */
+    public final double calculateSharedBinaryDomainCombinationBasedGenomeSimilarityScore( final int i,
+                                                                                          final int j,
+                                                                                          final long[] binary_domain_combinations_mask ) {
+        checkGenomes( i, j );
+        return calculateSimilarityScore( _binary_domain_combinations_bits[ i ],
+                                         _binary_domain_combinations_bits[ j ],
+                                         binary_domain_combinations_mask );
+    }
+
+    /**
+     * Same as
+     * DomainArchitectureBasedGenomeSimilarityCalculator.calculateSharedDomainsBasedGenomeSimilarityScore()
+     * for genomes i and j.
+     *
+     */
+    public final double calculateSharedDomainsBasedGenomeSimilarityScore( final int i, final int j ) {
+        checkGenomes( i, j );
+        return calculateSimilarityScore( _domains_bits[ i ], _domains_bits[ j ] );
+    }
+
+    /**
+     * Same as
+     * DomainArchitectureBasedGenomeSimilarityCalculator.calculateSharedDomainsBasedGenomeSimilarityScore()
+     * for genomes i and j, ignoring the domains in the given mask (as created
+     * by createDomainsMask).
+     *
+     */
+    public final double calculateSharedDomainsBasedGenomeSimilarityScore( final int i,
+                                                                          final int j,
+                                                                          final long[] domains_mask ) {
+        checkGenomes( i, j );
+        return calculateSimilarityScore( _domains_bits[ i ], _domains_bits[ j ], domains_mask );
+    }
+
+    /**
+     * Returns a mask of all binary domain combinations containing at least
+     * one of the domains in the given mask.
+     *
+     */
+    public final long[] createBinaryDomainCombinationsMask( final long[] domains_mask ) {
+        final long[] mask = new long[ calculateNumberOfWords( _binary_domain_combinations.length ) ];
+        for( int i = 0; i < _binary_domain_combinations.length; ++i ) {
+            if ( isSet( domains_mask, _binary_domain_combinations_id0[ i ] )
+                    || isSet( domains_mask, _binary_domain_combinations_id1[ i ] ) ) {
+                mask[ i >>> 6 ] |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Returns an empty mask of domains, to be filled with setInMask.
+     *
+     */
+    public final long[] createDomainsMask() {
+        return new long[ calculateNumberOfWords( _domain_ids.length ) ];
+    }
+
+    public final BinaryDomainCombination getBinaryDomainCombination( final int i ) {
+        return _binary_domain_combinations[ i ];
+    }
+
+    public final String getDomainId( final int i ) {
+        return _domain_ids[ i ];
+    }
+
+    /**
+     * Returns the index of a domain id, -1 if not present in any genome.
+     *
+     */
+    public final int getDomainIndex( final String domain_id ) {
+        final Integer i = _domain_id_to_index.get( domain_id );
+        return i == null ? -1 : i;
+    }
+
+    public final int getNumberOfBinaryDomainCombinations() {
+        return _binary_domain_combinations.length;
+    }
+
+    public final int getNumberOfDomains() {
+        return _domain_ids.length;
+    }
+
+    public final int getNumberOfGenomes() {
+        return _domains_bits.length;
+    }
+
+    // Same check as in the DomainArchitectureBasedGenomeSimilarityCalculator constructor.
+    private final void checkGenomes( final int i, final int j ) {
+        if ( _empty[ i ] || _empty[ j ] ) {
+            throw new IllegalArgumentException( "attempt to compare null or empty combinable domains collection" );
+        }
+    }
+
+    public final static boolean isSet( final long[] mask, final int i ) {
+        return ( i >= 0 ) && ( ( mask[ i >>> 6 ] & ( 1L << i ) ) != 0 );
+    }
+
+    public final static void setInMask( final long[] mask, final int i ) {
+        mask[ i >>> 6 ] |= 1L << i;
+    }
+
+    private final static int calculateNumberOfWords( final int bits ) {
+        return ( bits + 63 ) >>> 6;
+    }
+
+    private final static double calculateSimilarityScore( final long[] a, final long[] b ) {
+        final long[] longer = a.length >= b.length ? a : b;
+        final long[] shorter = a.length >= b.length ? b : a;
+        int union = 0;
+        int intersection = 0;
+        for( int w = 0; w < shorter.length; ++w ) {
+            union += Long.bitCount( shorter[ w ] | longer[ w ] );
+            intersection += Long.bitCount( shorter[ w ] & longer[ w ] );
+        }
+        for( int w = shorter.length; w < longer.length; ++w ) {
+            union += Long.bitCount( longer[ w ] );
+        }
+        return DomainArchitectureBasedGenomeSimilarityCalculator.calculateSimilarityScore( union, intersection );
+    }
+
+    private final static double calculateSimilarityScore( final long[] a, final long[] b, final long[] mask ) {
+        final long[] longer = a.length >= b.length ? a : b;
+        final long[] shorter = a.length >= b.length ? b : a;
+        int union = 0;
+        int intersection = 0;
+        for( int w = 0; w < shorter.length; ++w ) {
+            union += Long.bitCount( ( shorter[ w ] | longer[ w ] ) & ~mask[ w ] );
+            intersection += Long.bitCount( shorter[ w ] & longer[ w ] & ~mask[ w ] );
+        }
+        for( int w = shorter.length; w < longer.length; ++w ) {
+            union += Long.bitCount( longer[ w ] & ~mask[ w ] );
+        }
+        return DomainArchitectureBasedGenomeSimilarityCalculator.calculateSimilarityScore( union, intersection );
+    }
+
+    private final static long[] createBitset( final int[] indices ) {
+        int max = -1;
+        for( final int i : indices ) {
+            max = Math.max( max, i );
+        }
+        final long[] bits = new long[ calculateNumberOfWords( max + 1 ) ];
+        for( final int i : indices ) {
+            bits[ i >>> 6 ] |= 1L << i;
+        }
+        return bits;
+    }
+}
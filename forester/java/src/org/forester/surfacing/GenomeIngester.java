@@ -0,0 +1,277 @@
+// $Id:
+//
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2008-2009 Christian M. Zmasek
+// Copyright (C) 2008-2009 Burnham Institute for Medical Research
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+
+package org.forester.surfacing;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.forester.go.GoId;
+import org.forester.io.parsers.HmmscanPerDomainTableParser;
+import org.forester.protein.BinaryDomainCombination.DomainCombinationType;
+import org.forester.protein.Protein;
+import org.forester.species.BasicSpecies;
+import org.forester.util.DescriptiveStatistics;
+
+/*
+ * Parses the hmmscan per-domain tables of several genomes concurrently, and
+ * reduces each genome to its genome wide combinable domains.
+ *
+ * The parsers have to be fully configured before they are handed over.
+ * Genomes are processed on a pool of number_of_threads threads, and their
+ * results are returned by next() in input order. At most number_of_threads
+ * genomes are being processed, or are waiting to be retrieved, at any time.
+ *
+ * The statistics by binary domain combination (protein lengths and numbers
+ * of domains) are collected separately for each genome, so that they can
+ * be merged, in input order, into the same statistics as sequential
+ * processing would produce.
+ *
+ */
+public final class GenomeIngester {
+
+    private final boolean                           _collect_dc_statistics;
+    private final boolean                           _create_combinable_domains;
+    private final DomainCombinationType             _dc_type;
+    private final Map<String, List<GoId>>           _domain_id_to_go_ids_map;
+    private final ExecutorService                   _executor;
+    private final boolean                           _ignore_combination_with_same;
+    private final List<HmmscanPerDomainTableParser> _parsers;
+    private final Deque<Future<IngestedGenome>>     _pending;
+    private int                                     _submitted;
+
+    /**
+     * @param parsers the configured parsers, one per genome
+     * @param create_combinable_domains whether to create the genome wide combinable domains of each genome
+     * @param ignore_combination_with_same
+     * @param domain_id_to_go_ids_map
+     * @param dc_type
+     * @param collect_dc_statistics whether to collect protein length and domain number statistics by binary domain combination
+     * @param number_of_threads
+     */
+    public GenomeIngester( final List<HmmscanPerDomainTableParser> parsers,
+                           final boolean create_combinable_domains,
+                           final boolean ignore_combination_with_same,
+                           final Map<String, List<GoId>> domain_id_to_go_ids_map,
+                           final DomainCombinationType dc_type,
+                           final boolean collect_dc_statistics,
+                           final int number_of_threads ) {
+        if ( number_of_threads < 1 ) {
+            throw new IllegalArgumentException( "number of threads is out of range: " + number_of_threads );
+        }
+        _parsers = parsers;
+        _create_combinable_domains = create_combinable_domains;
+        _ignore_combination_with_same = ignore_combination_with_same;
+        _domain_id_to_go_ids_map = domain_id_to_go_ids_map;
+        _dc_type = dc_type;
+        _collect_dc_statistics = collect_dc_statistics;
+        _executor = Executors.newFixedThreadPool( number_of_threads );
+        _pending = new ArrayDeque<Future<IngestedGenome>>();
+        _submitted = 0;
+        while ( ( _submitted < _parsers.size() ) && ( _pending.size() < number_of_threads ) ) {
+            submitNext();
+        }
+    }
+
+    /**
+     * Stops the threads of this ingester; genomes not yet retrieved are
+     * discarded.
+     *
+     */
+    public final void close() {
+        _executor.shutdownNow();
+    }
+
+    public final boolean hasNext() {
+        return !_pending.isEmpty();
+    }
+
+    /**
+     * Returns the result for the next genome (in input order), waiting for
+     * it to be processed if necessary.
+     *
+     * @return the next ingested genome
+     * @throws IOException if parsing of the hmmscan table failed
+     */
+    public final IngestedGenome next() throws IOException {
+        if ( _pending.isEmpty() ) {
+            throw new NoSuchElementException( "all genomes have been retrieved" );
+        }
+        final Future<IngestedGenome> f = _pending.removeFirst();
+        if ( _submitted < _parsers.size() ) {
+            submitNext();
+        }
+        else if ( _pending.isEmpty() ) {
+            _executor.shutdown();
+        }
+        try {
+            return f.get();
+        }
+        catch ( final InterruptedException e ) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new IOException( "interrupted: " + e.getMessage() );
+        }
+        catch ( final ExecutionException e ) {
+            close();
+            final Throwable cause = e.getCause();
+            if ( cause instanceof IOException ) {
+                throw ( IOException ) cause;
+            }
+            else if ( cause instanceof RuntimeException ) {
+                throw ( RuntimeException ) cause;
+            }
+            else if ( cause instanceof Error ) {
+                throw ( Error ) cause;
+            }
+            throw new IOException( cause.toString() );
+        }
+    }
+
+    private final void submitNext() {
+        final HmmscanPerDomainTableParser parser = _parsers.get( _submitted++ );
+        _pending.addLast( _executor.submit( new Callable<IngestedGenome>() {
+
+            @Override
+            public IngestedGenome call() throws IOException {
+                return ingest( parser );
+            }
+        } ) );
+    }
+
+    private final IngestedGenome ingest( final HmmscanPerDomainTableParser parser ) throws IOException {
+        final List<Protein> proteins = parser.parse();
+        GenomeWideCombinableDomains gwcd = null;
+        Map<String, DescriptiveStatistics> protein_length_stats_by_dc = null;
+        Map<String, DescriptiveStatistics> domain_number_stats_by_dc = null;
+        if ( _create_combinable_domains ) {
+            if ( _collect_dc_statistics ) {
+                // Insertion ordered, for merging in the same order as
+                // sequential processing.
+                protein_length_stats_by_dc = new LinkedHashMap<String, DescriptiveStatistics>();
+                domain_number_stats_by_dc = new LinkedHashMap<String, DescriptiveStatistics>();
+            }
+            gwcd = BasicGenomeWideCombinableDomains.createInstance( proteins,
+                                                                    _ignore_combination_with_same,
+                                                                    new BasicSpecies( parser.getSpecies() ),
+                                                                    _domain_id_to_go_ids_map,
+                                                                    _dc_type,
+                                                                    protein_length_stats_by_dc,
+                                                                    domain_number_stats_by_dc );
+        }
+        return new IngestedGenome( parser,
+                                   proteins,
+                                   gwcd,
+                                   protein_length_stats_by_dc,
+                                   domain_number_stats_by_dc );
+    }
+
+    public final static class IngestedGenome {
+
+        private final Map<String, DescriptiveStatistics> _domain_number_stats_by_dc;
+        private final GenomeWideCombinableDomains        _gwcd;
+        private final HmmscanPerDomainTableParser        _parser;
+        private final Map<String, DescriptiveStatistics> _protein_length_stats_by_dc;
+        private final List<Protein>                      _proteins;
+
+        IngestedGenome( final HmmscanPerDomainTableParser parser,
+                        final List<Protein> proteins,
+                        final GenomeWideCombinableDomains gwcd,
+                        final Map<String, DescriptiveStatistics> protein_length_stats_by_dc,
+                        final Map<String, DescriptiveStatistics> domain_number_stats_by_dc ) {
+            _parser = parser;
+            _proteins = proteins;
+            _gwcd = gwcd;
+            _protein_length_stats_by_dc = protein_length_stats_by_dc;
+            _domain_number_stats_by_dc = domain_number_stats_by_dc;
+        }
+
+        /**
+         * Adds the statistics by binary domain combination of this genome to
+         * the given (overall) statistics. Does nothing if the statistics were
+         * not collected.
+         *
+         * @param protein_length_stats_by_dc
+         * @param domain_number_stats_by_dc
+         */
+        public final void addDcStatisticsTo( final Map<String, DescriptiveStatistics> protein_length_stats_by_dc,
+                                             final Map<String, DescriptiveStatistics> domain_number_stats_by_dc ) {
+            if ( _protein_length_stats_by_dc != null ) {
+                addAll( _protein_length_stats_by_dc, protein_length_stats_by_dc );
+            }
+            if ( _domain_number_stats_by_dc != null ) {
+                addAll( _domain_number_stats_by_dc, domain_number_stats_by_dc );
+            }
+        }
+
+        /**
+         * Returns the genome wide combinable domains, or null if they were not
+         * created.
+         *
+         */
+        public final GenomeWideCombinableDomains getGenomeWideCombinableDomains() {
+            return _gwcd;
+        }
+
+        /**
+         * Returns the parser which parsed this genome, for its statistics.
+         *
+         */
+        public final HmmscanPerDomainTableParser getParser() {
+            return _parser;
+        }
+
+        public final List<Protein> getProteins() {
+            return _proteins;
+        }
+
+        private final static void addAll( final Map<String, DescriptiveStatistics> from,
+                                          final Map<String, DescriptiveStatistics> to ) {
+            for( final Map.Entry<String, DescriptiveStatistics> e : from.entrySet() ) {
+                DescriptiveStatistics stats = to.get( e.getKey() );
+                if ( stats == null ) {
+                    stats = e.getValue();
+                    to.put( e.getKey(), stats );
+                }
+                else {
+                    final DescriptiveStatistics values = e.getValue();
+                    for( int i = 0; i < values.getN(); ++i ) {
+                        stats.addValue( values.getValue( i ) );
+                    }
+                }
+            }
+        }
+    }
+}
@@ -36,7 +36,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.forester.evoinference.matrix.distance.BasicSymmetricalDistanceMatrix;
 import org.forester.evoinference.matrix.distance.DistanceMatrix;
@@ -99,6 +100,7 @@ public class PairwiseGenomeComparator {
         final BasicSymmetricalDistanceMatrix domain_distance_scores_means = new BasicSymmetricalDistanceMatrix( number_of_genomes );
         final BasicSymmetricalDistanceMatrix shared_domains_based_distances = new BasicSymmetricalDistanceMatrix( number_of_genomes );
         final BasicSymmetricalDistanceMatrix shared_binary_combinations_based_distances = new BasicSymmetricalDistanceMatrix( number_of_genomes );
+        final GenomeDomainIndex genome_domain_index = new GenomeDomainIndex( list_of_genome_wide_combinable_domains );
         if ( verbose ) {
             System.out.println();
             System.out.println( "Pairwise genome distances:" );
@@ -150,9 +152,10 @@ public class PairwiseGenomeComparator {
                 final DescriptiveStatistics stats = SurfacingUtil
                         .calculateDescriptiveStatisticsForMeanValues( similarities );
                 final String species_j = species[ j ].getSpeciesId();
-                final DomainArchitectureBasedGenomeSimilarityCalculator genome_similarity_calculator = new DomainArchitectureBasedGenomeSimilarityCalculator( list_of_genome_wide_combinable_domains
-                        .get( i ), list_of_genome_wide_combinable_domains.get( j ) );
-                genome_similarity_calculator.setAllowDomainsToBeIgnored( false );
+                if ( list_of_genome_wide_combinable_domains.get( i ).getSpecies()
+                        .equals( list_of_genome_wide_combinable_domains.get( j ).getSpecies() ) ) {
+                    throw new IllegalArgumentException( "attempt to compare combinable domains collection from the same species" );
+                }
                 double dissimilarity_score_mean;
                 if ( stats.getN() < 1 ) {
                     // No domains in common
@@ -162,9 +165,9 @@ public class PairwiseGenomeComparator {
                     dissimilarity_score_mean = 1.0 - stats.arithmeticMean();
                 }
                 final double shared_domains_based_genome_distance = 1.0
-                        - genome_similarity_calculator.calculateSharedDomainsBasedGenomeSimilarityScore();
-                final double shared_binary_combinations_based_genome_distance = 1.0 - genome_similarity_calculator
-                        .calculateSharedBinaryDomainCombinationBasedGenomeSimilarityScore();
+                        - genome_domain_index.calculateSharedDomainsBasedGenomeSimilarityScore( i, j );
+                final double shared_binary_combinations_based_genome_distance = 1.0 - genome_domain_index
+                        .calculateSharedBinaryDomainCombinationBasedGenomeSimilarityScore( i, j );
                 domain_distance_scores_means.setValue( i, j, dissimilarity_score_mean );
                 shared_domains_based_distances.setValue( i, j, shared_domains_based_genome_distance );
                 shared_binary_combinations_based_distances
@@ -239,6 +242,35 @@ public class PairwiseGenomeComparator {
                                                      final int number_of_resamplings,
                                                      final double jacknife_ratio,
                                                      final long random_seed ) {
+        performPairwiseComparisonsJacknifed( species,
+                                             number_of_genomes,
+                                             list_of_genome_wide_combinable_domains,
+                                             verbose,
+                                             number_of_resamplings,
+                                             jacknife_ratio,
+                                             random_seed,
+                                             Runtime.getRuntime().availableProcessors() );
+    }
+
+    /**
+     * Calculates shared domains and shared binary domain combinations based
+     * distances for number_of_resamplings jacknife resamplings, each ignoring a
+     * randomly picked fraction (jacknife_ratio) of all domains.
+     * <p>
+     * Resamplings are performed in parallel by number_of_threads threads.
+     * Resampling r uses its own random number generator, seeded with the r-th
+     * long drawn from a generator seeded with random_seed, so the results do not
+     * depend on the number of threads.
+     *
+     */
+    public void performPairwiseComparisonsJacknifed( final Species[] species,
+                                                     final int number_of_genomes,
+                                                     final List<GenomeWideCombinableDomains> list_of_genome_wide_combinable_domains,
+                                                     final boolean verbose,
+                                                     final int number_of_resamplings,
+                                                     final double jacknife_ratio,
+                                                     final long random_seed,
+                                                     final int number_of_threads ) {
         init();
         if ( number_of_resamplings < 2 ) {
             throw new IllegalArgumentException( "attempt to perform jacknife resampling with less than 2 resamplings" );
@@ -249,50 +281,41 @@ public class PairwiseGenomeComparator {
         else if ( jacknife_ratio >= 1.0 ) {
             throw new IllegalArgumentException( "attempt to perform jacknife resampling with jacknife ratio 1.0 or more" );
         }
-        final String[] all_unique_domain_ids = getAllUniqueDomainIdAsArray( list_of_genome_wide_combinable_domains );
+        if ( number_of_threads < 1 ) {
+            throw new IllegalArgumentException( "number of threads is out of range: " + number_of_threads );
+        }
+        final GenomeDomainIndex genome_domain_index = new GenomeDomainIndex( list_of_genome_wide_combinable_domains );
         if ( verbose ) {
             System.out.println();
-            System.out.println( "Jacknife: total of domains: " + all_unique_domain_ids.length );
+            System.out.println( "Jacknife: total of domains: " + genome_domain_index.getNumberOfDomains() );
         }
         if ( verbose ) {
             System.out.print( "resampling " );
         }
-        final Random generator = new Random( random_seed );
+        final String[] species_ids = new String[ number_of_genomes ];
+        for( int i = 0; i < number_of_genomes; ++i ) {
+            species_ids[ i ] = species[ i ].getSpeciesId();
+        }
+        final BasicSymmetricalDistanceMatrix[] shared_domains_based_distances = new BasicSymmetricalDistanceMatrix[ number_of_resamplings ];
+        final BasicSymmetricalDistanceMatrix[] shared_binary_combinations_based_distances = new BasicSymmetricalDistanceMatrix[ number_of_resamplings ];
+        final ForkJoinPool pool = new ForkJoinPool( number_of_threads );
+        try {
+            pool.invoke( new JacknifeTask( genome_domain_index,
+                                           species_ids,
+                                           jacknife_ratio,
+                                           createReplicateSeeds( number_of_resamplings, random_seed ),
+                                           shared_domains_based_distances,
+                                           shared_binary_combinations_based_distances,
+                                           verbose,
+                                           0,
+                                           number_of_resamplings ) );
+        }
+        finally {
+            pool.shutdown();
+        }
         for( int r = 0; r < number_of_resamplings; ++r ) {
-            if ( verbose ) {
-                System.out.print( " " + r );
-            }
-            final SortedSet<String> domain_ids_to_ignore = randomlyPickDomainIds( all_unique_domain_ids,
-                                                                                  jacknife_ratio,
-                                                                                  generator );
-            final BasicSymmetricalDistanceMatrix shared_domains_based_distances = new BasicSymmetricalDistanceMatrix( number_of_genomes );
-            final BasicSymmetricalDistanceMatrix shared_binary_combinations_based_distances = new BasicSymmetricalDistanceMatrix( number_of_genomes );
-            for( int i = 0; i < number_of_genomes; ++i ) {
-                final String species_i = species[ i ].getSpeciesId();
-                shared_domains_based_distances.setIdentifier( i, species_i );
-                shared_binary_combinations_based_distances.setIdentifier( i, species_i );
-                for( int j = 0; j < i; ++j ) {
-                    final List<GenomeWideCombinableDomains> genome_pair = new ArrayList<>( 2 );
-                    genome_pair.add( list_of_genome_wide_combinable_domains.get( i ) );
-                    genome_pair.add( list_of_genome_wide_combinable_domains.get( j ) );
-                    final DomainArchitectureBasedGenomeSimilarityCalculator genome_simiarity_calculator = new DomainArchitectureBasedGenomeSimilarityCalculator( list_of_genome_wide_combinable_domains
-                            .get( i ), list_of_genome_wide_combinable_domains.get( j ) );
-                    genome_simiarity_calculator.setAllowDomainsToBeIgnored( true );
-                    genome_simiarity_calculator.setDomainIdsToIgnore( domain_ids_to_ignore );
-                    shared_domains_based_distances
-                            .setValue( i,
-                                       j,
-                                       1.0 - genome_simiarity_calculator
-                                               .calculateSharedDomainsBasedGenomeSimilarityScore() );
-                    shared_binary_combinations_based_distances
-                            .setValue( i,
-                                       j,
-                                       1.0 - genome_simiarity_calculator
-                                               .calculateSharedBinaryDomainCombinationBasedGenomeSimilarityScore() );
-                }
-            }
-            getSharedDomainsBasedDistances().add( shared_domains_based_distances );
-            getSharedBinaryCombinationsBasedDistances().add( shared_binary_combinations_based_distances );
+            getSharedDomainsBasedDistances().add( shared_domains_based_distances[ r ] );
+            getSharedBinaryCombinationsBasedDistances().add( shared_binary_combinations_based_distances[ r ] );
         }
         if ( verbose ) {
             System.out.println();
@@ -305,33 +328,129 @@ public class PairwiseGenomeComparator {
         _shared_binary_combinations_based_distances = new ArrayList<>();
     }
 
-    static private String[] getAllUniqueDomainIdAsArray( final List<GenomeWideCombinableDomains> list_of_genome_wide_combinable_domains ) {
-        String[] all_domain_ids_array;
-        final SortedSet<String> all_domain_ids = new TreeSet<>();
-        for( final GenomeWideCombinableDomains genome_wide_combinable_domains : list_of_genome_wide_combinable_domains ) {
-            final SortedSet<String> all_domains = genome_wide_combinable_domains.getAllDomainIds();
-            for( final String domain : all_domains ) {
-                all_domain_ids.add( domain );
-            }
-        }
-        all_domain_ids_array = new String[ all_domain_ids.size() ];
-        int n = 0;
-        for( final String domain_id : all_domain_ids ) {
-            all_domain_ids_array[ n++ ] = domain_id;
+    final static long[] createReplicateSeeds( final int number_of_resamplings, final long random_seed ) {
+        final Random generator = new Random( random_seed );
+        final long[] seeds = new long[ number_of_resamplings ];
+        for( int r = 0; r < number_of_resamplings; ++r ) {
+            seeds[ r ] = generator.nextLong();
         }
-        return all_domain_ids_array;
+        return seeds;
     }
 
-    static private SortedSet<String> randomlyPickDomainIds( final String[] all_domain_ids_array,
-                                                            final double jacknife_ratio,
-                                                            final Random generator ) {
-        final int size = all_domain_ids_array.length;
-        final SortedSet<String> random_domain_ids = new TreeSet<>();
+    /**
+     * Returns a mask of randomly picked domains (jacknife_ratio of all domains
+     * of the index).
+     *
+     */
+    final static long[] randomlyPickDomains( final GenomeDomainIndex genome_domain_index,
+                                             final double jacknife_ratio,
+                                             final Random generator ) {
+        final int size = genome_domain_index.getNumberOfDomains();
+        final long[] mask = genome_domain_index.createDomainsMask();
         final int number_of_ids_pick = ForesterUtil.roundToInt( jacknife_ratio * size );
-        while ( random_domain_ids.size() < number_of_ids_pick ) {
+        int picked = 0;
+        while ( picked < number_of_ids_pick ) {
             final int r = generator.nextInt( size );
-            random_domain_ids.add( all_domain_ids_array[ r ] );
+            if ( !GenomeDomainIndex.isSet( mask, r ) ) {
+                GenomeDomainIndex.setInMask( mask, r );
+                ++picked;
+            }
+        }
+        return mask;
+    }
+
+    private final static class JacknifeTask extends RecursiveAction {
+
+        private static final long                      serialVersionUID = 1L;
+        private final int                              _from;
+        private final GenomeDomainIndex                _genome_domain_index;
+        private final double                           _jacknife_ratio;
+        private final long[]                           _seeds;
+        private final BasicSymmetricalDistanceMatrix[] _shared_binary_combinations_based_distances;
+        private final BasicSymmetricalDistanceMatrix[] _shared_domains_based_distances;
+        private final String[]                         _species_ids;
+        private final int                              _to;
+        private final boolean                          _verbose;
+
+        JacknifeTask( final GenomeDomainIndex genome_domain_index,
+                      final String[] species_ids,
+                      final double jacknife_ratio,
+                      final long[] seeds,
+                      final BasicSymmetricalDistanceMatrix[] shared_domains_based_distances,
+                      final BasicSymmetricalDistanceMatrix[] shared_binary_combinations_based_distances,
+                      final boolean verbose,
+                      final int from,
+                      final int to ) {
+            _genome_domain_index = genome_domain_index;
+            _species_ids = species_ids;
+            _jacknife_ratio = jacknife_ratio;
+            _seeds = seeds;
+            _shared_domains_based_distances = shared_domains_based_distances;
+            _shared_binary_combinations_based_distances = shared_binary_combinations_based_distances;
+            _verbose = verbose;
+            _from = from;
+            _to = to;
+        }
+
+        @Override
+        protected final void compute() {
+            if ( ( _to - _from ) == 1 ) {
+                final int r = _from;
+                final long[] domains_mask = randomlyPickDomains( _genome_domain_index,
+                                                                 _jacknife_ratio,
+                                                                 new Random( _seeds[ r ] ) );
+                final long[] binary_domain_combinations_mask = _genome_domain_index
+                        .createBinaryDomainCombinationsMask( domains_mask );
+                final int number_of_genomes = _species_ids.length;
+                final BasicSymmetricalDistanceMatrix shared_domains_based_distances = new BasicSymmetricalDistanceMatrix( number_of_genomes );
+                final BasicSymmetricalDistanceMatrix shared_binary_combinations_based_distances = new BasicSymmetricalDistanceMatrix( number_of_genomes );
+                for( int i = 0; i < number_of_genomes; ++i ) {
+                    shared_domains_based_distances.setIdentifier( i, _species_ids[ i ] );
+                    shared_binary_combinations_based_distances.setIdentifier( i, _species_ids[ i ] );
+                    for( int j = 0; j < i; ++j ) {
+                        shared_domains_based_distances
+                                .setValue( i,
+                                           j,
+                                           1.0 - _genome_domain_index
+                                                   .calculateSharedDomainsBasedGenomeSimilarityScore( i,
+                                                                                                      j,
+                                                                                                      domains_mask ) );
+                        shared_binary_combinations_based_distances
+                                .setValue( i,
+                                           j,
+                                           1.0 - _genome_domain_index
+                                                   .calculateSharedBinaryDomainCombinationBasedGenomeSimilarityScore( i,
+                                                                                                                      j,
+                                                                                                                      binary_domain_combinations_mask ) );
+                    }
+                }
+                _shared_domains_based_distances[ r ] = shared_domains_based_distances;
+                _shared_binary_combinations_based_distances[ r ] = shared_binary_combinations_based_distances;
+                if ( _verbose ) {
+                    System.out.print( " " + r );
+                }
+            }
+            else {
+                final int mid = ( _from + _to ) >>> 1;
+                invokeAll( new JacknifeTask( _genome_domain_index,
+                                             _species_ids,
+                                             _jacknife_ratio,
+                                             _seeds,
+                                             _shared_domains_based_distances,
+                                             _shared_binary_combinations_based_distances,
+                                             _verbose,
+                                             _from,
+                                             mid ),
+                           new JacknifeTask( _genome_domain_index,
+                                             _species_ids,
+                                             _jacknife_ratio,
+                                             _seeds,
+                                             _shared_domains_based_distances,
+                                             _shared_binary_combinations_based_distances,
+                                             _verbose,
+                                             mid,
+                                             _to ) );
+            }
         }
-        return random_domain_ids;
     }
 }
@@ -70,6 +70,7 @@ import org.forester.io.parsers.nexus.NexusConstants;
 import org.forester.io.parsers.phyloxml.PhyloXmlUtil;
 import org.forester.io.parsers.util.ParserUtils;
 import org.forester.io.writers.PhylogenyWriter;
+import org.forester.phylogeny.LCAIndex;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyMethods;
 import org.forester.phylogeny.PhylogenyNode;
@@ -2877,6 +2878,7 @@ public final class SurfacingUtil {
             out_dc_for_go_mapping_unique.close();
             final SortedMap<String, Integer> lca_rank_counts = new TreeMap<>();
             final SortedMap<String, Integer> lca_ancestor_species_counts = new TreeMap<>();
+            final LCAIndex lca_index = new LCAIndex( local_phylogeny_l );
             for( final String dc : more_than_once ) {
                 final List<PhylogenyNode> nodes = new ArrayList<>();
                 for( final PhylogenyNodeIterator it = local_phylogeny_l.iteratorExternalForward(); it.hasNext(); ) {
@@ -2887,7 +2889,7 @@ public final class SurfacingUtil {
                 }
                 for( int i = 0; i < ( nodes.size() - 1 ); ++i ) {
                     for( int j = i + 1; j < nodes.size(); ++j ) {
-                        final PhylogenyNode lca = PhylogenyMethods.calculateLCA( nodes.get( i ), nodes.get( j ) );
+                        final PhylogenyNode lca = lca_index.calculateLCA( nodes.get( i ), nodes.get( j ) );
                         String rank = "unknown";
                         if ( lca.getNodeData().isHasTaxonomy()
                                 && !ForesterUtil.isEmpty( lca.getNodeData().getTaxonomy().getRank() ) ) {
@@ -42,6 +42,8 @@ import org.forester.evoinference.matrix.character.CharacterStateMatrix;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix.BinaryStates;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix.GainLossStates;
 import org.forester.io.parsers.HmmPfamOutputParser;
+import org.forester.io.parsers.HmmscanPerDomainTableParser;
+import org.forester.io.parsers.HmmscanPerDomainTableParser.INDIVIDUAL_SCORE_CUTOFF;
 import org.forester.io.parsers.nhx.NHXParser;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyNode;
@@ -56,6 +58,8 @@ import org.forester.protein.Protein;
 import org.forester.protein.ProteinId;
 import org.forester.species.BasicSpecies;
 import org.forester.species.Species;
+import org.forester.surfacing.GenomeWideCombinableDomains.GenomeWideCombinableDomainsSortOrder;
+import org.forester.util.DescriptiveStatistics;
 import org.forester.util.ForesterUtil;
 
 @SuppressWarnings( "unused")
@@ -92,6 +96,18 @@ public class TestSurfacing {
             return false;
         }
         System.out.println( "OK." );
+        System.out.print( "  Genome domain index and jacknife: " );
+        if ( !TestSurfacing.testGenomeDomainIndex() ) {
+            System.out.println( "failed." );
+            return false;
+        }
+        System.out.println( "OK." );
+        System.out.print( "  Genome ingester: " );
+        if ( !TestSurfacing.testGenomeIngester( test_dir ) ) {
+            System.out.println( "failed." );
+            return false;
+        }
+        System.out.println( "OK." );
         System.out.print( "  Hmmpfam output parser: " );
         if ( !TestSurfacing.testHmmPfamOutputParser( test_dir ) ) {
             System.out.println( "failed." );
@@ -2536,6 +2552,132 @@ public class TestSurfacing {
         return true;
     }
 
+    private static boolean testGenomeDomainIndex() {
+        try {
+            final java.util.Random r = new java.util.Random( 7 );
+            final String[] species = { "eel", "rat", "cow", "dog", "ant" };
+            for( final boolean ignore_combination_with_same : new boolean[] { false, true } ) {
+                final List<GenomeWideCombinableDomains> genomes = new ArrayList<GenomeWideCombinableDomains>();
+                for( final String sp : species ) {
+                    final List<Protein> proteins = new ArrayList<Protein>();
+                    for( int p = 0; p < 40; ++p ) {
+                        final Protein protein = new BasicProtein( Integer.toString( p ), sp, 0 );
+                        final int domains = r.nextInt( 4 );
+                        for( int d = 0; d < domains; ++d ) {
+                            protein.addProteinDomain( new BasicDomain( "d" + r.nextInt( 150 ),
+                                                                       23,
+                                                                       25,
+                                                                       ( short ) 1,
+                                                                       ( short ) 4,
+                                                                       0.1,
+                                                                       -12 ) );
+                        }
+                        proteins.add( protein );
+                    }
+                    genomes.add( BasicGenomeWideCombinableDomains
+                            .createInstance( proteins, ignore_combination_with_same, new BasicSpecies( sp ) ) );
+                }
+                final GenomeDomainIndex index = new GenomeDomainIndex( genomes );
+                if ( index.getNumberOfGenomes() != species.length ) {
+                    return false;
+                }
+                for( int i = 0; i < species.length; ++i ) {
+                    for( int j = 0; j < species.length; ++j ) {
+                        if ( i == j ) {
+                            continue;
+                        }
+                        final DomainArchitectureBasedGenomeSimilarityCalculator calc = new DomainArchitectureBasedGenomeSimilarityCalculator( genomes
+                                .get( i ), genomes.get( j ) );
+                        if ( calc.calculateSharedDomainsBasedGenomeSimilarityScore() != index
+                                .calculateSharedDomainsBasedGenomeSimilarityScore( i, j ) ) {
+                            return false;
+                        }
+                        if ( calc.calculateSharedBinaryDomainCombinationBasedGenomeSimilarityScore() != index
+                                .calculateSharedBinaryDomainCombinationBasedGenomeSimilarityScore( i, j ) ) {
+                            return false;
+                        }
+                    }
+                }
+                if ( ( index.getDomainIndex( "x" ) != -1 )
+                        || !index.getDomainId( index.getDomainIndex( "d1" ) ).equals( "d1" ) ) {
+                    return false;
+                }
+                final Species[] sp = new Species[ species.length ];
+                for( int i = 0; i < species.length; ++i ) {
+                    sp[ i ] = genomes.get( i ).getSpecies();
+                }
+                final PairwiseGenomeComparator pgc1 = new PairwiseGenomeComparator();
+                pgc1.performPairwiseComparisonsJacknifed( sp, sp.length, genomes, false, 5, 0.3, 11, 1 );
+                final PairwiseGenomeComparator pgc3 = new PairwiseGenomeComparator();
+                pgc3.performPairwiseComparisonsJacknifed( sp, sp.length, genomes, false, 5, 0.3, 11, 3 );
+                final long[] seeds = PairwiseGenomeComparator.createReplicateSeeds( 5, 11 );
+                for( int rep = 0; rep < 5; ++rep ) {
+                    if ( !pgc1.getSharedDomainsBasedDistances().get( rep ).toString()
+                            .equals( pgc3.getSharedDomainsBasedDistances().get( rep ).toString() ) ) {
+                        return false;
+                    }
+                    final long[] mask = PairwiseGenomeComparator.randomlyPickDomains( index, 0.3, new java.util.Random( seeds[ rep ] ) );
+                    final Set<String> ignore = new HashSet<String>();
+                    for( int d = 0; d < index.getNumberOfDomains(); ++d ) {
+                        if ( GenomeDomainIndex.isSet( mask, d ) ) {
+                            ignore.add( index.getDomainId( d ) );
+                        }
+                    }
+                    if ( ignore.size() != ForesterUtil.roundToInt( 0.3 * index.getNumberOfDomains() ) ) {
+                        return false;
+                    }
+                    for( int i = 0; i < species.length; ++i ) {
+                        for( int j = 0; j < i; ++j ) {
+                            final DomainArchitectureBasedGenomeSimilarityCalculator calc = new DomainArchitectureBasedGenomeSimilarityCalculator( genomes
+                                    .get( i ), genomes.get( j ) );
+                            calc.setAllowDomainsToBeIgnored( true );
+                            calc.setDomainIdsToIgnore( ignore );
+                            if ( pgc3.getSharedDomainsBasedDistances().get( rep ).getValue( i, j ) != ( 1.0 - calc
+                                    .calculateSharedDomainsBasedGenomeSimilarityScore() ) ) {
+                                return false;
+                            }
+                            if ( pgc3.getSharedBinaryCombinationsBasedDistances().get( rep ).getValue( i, j ) != ( 1.0 - calc
+                                    .calculateSharedBinaryDomainCombinationBasedGenomeSimilarityScore() ) ) {
+                                return false;
+                            }
+                        }
+                    }
+                }
+            }
+            // A genome without domains cannot be compared.
+            final List<GenomeWideCombinableDomains> genomes = new ArrayList<GenomeWideCombinableDomains>();
+            final Protein protein = new BasicProtein( "0", "eel", 0 );
+            protein.addProteinDomain( new BasicDomain( "d0", 23, 25, ( short ) 1, ( short ) 4, 0.1, -12 ) );
+            final List<Protein> proteins = new ArrayList<Protein>();
+            proteins.add( protein );
+            genomes.add( BasicGenomeWideCombinableDomains.createInstance( proteins, false, new BasicSpecies( "eel" ) ) );
+            genomes.add( BasicGenomeWideCombinableDomains.createInstance( new ArrayList<Protein>(),
+                                                                          false,
+                                                                          new BasicSpecies( "rat" ) ) );
+            final GenomeDomainIndex index = new GenomeDomainIndex( genomes );
+            try {
+                index.calculateSharedDomainsBasedGenomeSimilarityScore( 1, 0 );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // Expected.
+            }
+            try {
+                index.calculateSharedBinaryDomainCombinationBasedGenomeSimilarityScore( 0, 1, index
+                        .createBinaryDomainCombinationsMask( index.createDomainsMask() ) );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // Expected.
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
     private static boolean testDomainArchitectureBasedGenomeSimilarityCalculator() {
         try {
             final Domain a = new BasicDomain( "a", 23, 25, ( short ) 1, ( short ) 4, 0.1, -12 );
@@ -4540,6 +4682,104 @@ public class TestSurfacing {
         return true;
     }
 
+    private static boolean testGenomeIngester( final File test_dir ) {
+        try {
+            final String[] files = { "hmmscan30b3_output_1", "hmmscan30b3_output_2" };
+            final String[] species = { "eel", "rat", "cow", "dog", "ant", "bee", "fly" };
+            for( final DomainCombinationType dc_type : new DomainCombinationType[] { DomainCombinationType.BASIC,
+                    DomainCombinationType.DIRECTED_ADJACTANT } ) {
+                final List<HmmscanPerDomainTableParser> parsers = new ArrayList<HmmscanPerDomainTableParser>();
+                for( int i = 0; i < species.length; ++i ) {
+                    parsers.add( new HmmscanPerDomainTableParser( new File( test_dir + ForesterUtil.getFileSeparator()
+                            + files[ i % 2 ] ), species[ i ], INDIVIDUAL_SCORE_CUTOFF.NONE ) );
+                }
+                final GenomeIngester ingester = new GenomeIngester( parsers, true, false, null, dc_type, true, 3 );
+                final Map<String, DescriptiveStatistics> protein_length_stats = new HashMap<String, DescriptiveStatistics>();
+                final Map<String, DescriptiveStatistics> domain_number_stats = new HashMap<String, DescriptiveStatistics>();
+                final Map<String, DescriptiveStatistics> protein_length_stats_seq = new HashMap<String, DescriptiveStatistics>();
+                final Map<String, DescriptiveStatistics> domain_number_stats_seq = new HashMap<String, DescriptiveStatistics>();
+                for( int i = 0; i < species.length; ++i ) {
+                    if ( !ingester.hasNext() ) {
+                        return false;
+                    }
+                    final GenomeIngester.IngestedGenome g = ingester.next();
+                    g.addDcStatisticsTo( protein_length_stats, domain_number_stats );
+                    if ( g.getParser() != parsers.get( i ) ) {
+                        return false;
+                    }
+                    final HmmscanPerDomainTableParser p = new HmmscanPerDomainTableParser( new File( test_dir
+                            + ForesterUtil.getFileSeparator() + files[ i % 2 ] ), species[ i ], INDIVIDUAL_SCORE_CUTOFF.NONE );
+                    final List<Protein> proteins = p.parse();
+                    final GenomeWideCombinableDomains gwcd = BasicGenomeWideCombinableDomains
+                            .createInstance( proteins,
+                                             false,
+                                             new BasicSpecies( species[ i ] ),
+                                             null,
+                                             dc_type,
+                                             protein_length_stats_seq,
+                                             domain_number_stats_seq );
+                    if ( ( g.getProteins().size() != proteins.size() )
+                            || ( g.getParser().getDomainsStored() != p.getDomainsStored() )
+                            || ( g.getParser().getProteinsEncountered() != p.getProteinsEncountered() ) ) {
+                        return false;
+                    }
+                    for( int j = 0; j < proteins.size(); ++j ) {
+                        if ( !g.getProteins().get( j ).getProteinId().equals( proteins.get( j ).getProteinId() )
+                                || !g.getProteins().get( j ).getSpecies().equals( new BasicSpecies( species[ i ] ) ) ) {
+                            return false;
+                        }
+                    }
+                    final GenomeWideCombinableDomains g_gwcd = g.getGenomeWideCombinableDomains();
+                    if ( !g_gwcd.getSpecies().equals( gwcd.getSpecies() )
+                            || !g_gwcd.toBinaryDomainCombinations().equals( gwcd.toBinaryDomainCombinations() )
+                            || !g_gwcd
+                                    .toStringBuilder( GenomeWideCombinableDomainsSortOrder.ALPHABETICAL_KEY_ID )
+                                    .toString()
+                                    .equals( gwcd.toStringBuilder( GenomeWideCombinableDomainsSortOrder.ALPHABETICAL_KEY_ID )
+                                            .toString() ) ) {
+                        return false;
+                    }
+                }
+                if ( ingester.hasNext() ) {
+                    return false;
+                }
+                if ( protein_length_stats.isEmpty() || !isEqual( protein_length_stats, protein_length_stats_seq )
+                        || !isEqual( domain_number_stats, domain_number_stats_seq ) ) {
+                    return false;
+                }
+            }
+            final GenomeIngester no_gwcd = new GenomeIngester( new ArrayList<HmmscanPerDomainTableParser>(),
+                                                               false,
+                                                               false,
+                                                               null,
+                                                               DomainCombinationType.BASIC,
+                                                               false,
+                                                               1 );
+            if ( no_gwcd.hasNext() ) {
+                return false;
+            }
+            no_gwcd.close();
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isEqual( final Map<String, DescriptiveStatistics> a,
+                                    final Map<String, DescriptiveStatistics> b ) {
+        if ( !a.keySet().equals( b.keySet() ) ) {
+            return false;
+        }
+        for( final String key : a.keySet() ) {
+            if ( !a.get( key ).getData().equals( b.get( key ).getData() ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static boolean testHmmPfamOutputParser( final File test_dir ) {
         try {
             final HmmPfamOutputParser parser = new HmmPfamOutputParser( new File( test_dir
@@ -25,18 +25,29 @@
 package org.forester.test;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import java.net.URL;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.SortedSet;
 
@@ -47,31 +58,46 @@ import org.forester.archaeopteryx.webservices.WebserviceUtil;
 import org.forester.clade_analysis.CladeAnalysisTest;
 import org.forester.development.DevelopmentTools;
 import org.forester.evoinference.TestPhylogenyReconstruction;
+import org.forester.evoinference.distance.PairwiseDistanceCalculator;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix;
 import org.forester.evoinference.matrix.character.CharacterStateMatrix.BinaryStates;
 import org.forester.go.TestGo;
+import org.forester.io.parsers.FastaIndex;
 import org.forester.io.parsers.FastaParser;
+import org.forester.io.parsers.IndexedFastaReader;
+import org.forester.io.parsers.IteratingFastaParser;
 import org.forester.io.parsers.GeneralMsaParser;
 import org.forester.io.parsers.HmmscanPerDomainTableParser;
 import org.forester.io.parsers.HmmscanPerDomainTableParser.INDIVIDUAL_SCORE_CUTOFF;
+import org.forester.io.parsers.PhylogenyParser;
+import org.forester.io.parsers.binary.BinaryPhylogenyParser;
 import org.forester.io.parsers.nexus.NexusBinaryStatesMatrixParser;
 import org.forester.io.parsers.nexus.NexusCharactersParser;
 import org.forester.io.parsers.nexus.NexusPhylogeniesParser;
+import org.forester.io.parsers.nhx.NHXFormatException;
 import org.forester.io.parsers.nhx.NHXParser;
 import org.forester.io.parsers.nhx.NHXParser.TAXONOMY_EXTRACTION;
+import org.forester.io.parsers.nhx.ParallelNHXParser;
 import org.forester.io.parsers.phyloxml.PhyloXmlParser;
 import org.forester.io.parsers.tol.TolParser;
+import org.forester.io.parsers.util.LineTokenizer;
 import org.forester.io.parsers.util.ParserUtils;
+import org.forester.io.parsers.util.PhylogenyParserException;
+import org.forester.io.writers.BinaryPhylogenyWriter;
 import org.forester.io.writers.PhylogenyWriter;
 import org.forester.io.writers.SequenceWriter;
 import org.forester.msa.BasicMsa;
+import org.forester.msa.CompactMsa;
 import org.forester.msa.DeleteableMsa;
+import org.forester.msa.IncrementalMsaStatistics;
 import org.forester.msa.Mafft;
 import org.forester.msa.Msa;
 import org.forester.msa.Msa.MSA_FORMAT;
 import org.forester.msa.MsaInferrer;
+import org.forester.msa.MsaFormatException;
 import org.forester.msa.MsaMethods;
 import org.forester.pccx.TestPccx;
+import org.forester.phylogeny.LCAIndex;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyBranch;
 import org.forester.phylogeny.PhylogenyMethods;
@@ -112,6 +138,7 @@ import org.forester.species.BasicSpecies;
 import org.forester.species.Species;
 import org.forester.surfacing.TestSurfacing;
 import org.forester.tools.ConfidenceAssessor;
+import org.forester.tools.SplitIndex;
 import org.forester.tools.SupportCount;
 import org.forester.tools.TreeSplitMatrix;
 import org.forester.util.AsciiHistogram;
@@ -282,6 +309,15 @@ public final class Test {
             System.out.println( "failed." );
             failed++;
         }
+        System.out.print( "Line tokenizer: " );
+        if ( testLineTokenizer() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
         System.out.print( "Hmmscan output parser: " );
         if ( testHmmscanOutputParser() ) {
             System.out.println( "OK." );
@@ -435,6 +471,33 @@ public final class Test {
             System.out.println( "failed." );
             failed++;
         }
+        System.out.print( "NHX parsing (plain Newick labels): " );
+        if ( Test.testNHXParsingPlainNewickLabels() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
+        System.out.print( "NHX parsing (parallel): " );
+        if ( Test.testNHXParsingParallel() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
+        System.out.print( "Binary phylogeny format: " );
+        if ( Test.testBinaryPhylogenyFormat() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
         System.out.print( "Nexus characters parsing: " );
         if ( Test.testNexusCharactersParsing() ) {
             System.out.println( "OK." );
@@ -516,6 +579,24 @@ public final class Test {
             System.out.println( "failed." );
             failed++;
         }
+        System.out.print( "Iterating phyloXML parsing: " );
+        if ( Test.testIteratingPhyloXMLparsing() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
+        System.out.print( "phyloXML direct mapping: " );
+        if ( Test.testPhyloXMLdirectMapping() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
         System.out.print( "phyloXML Distribution Element: " );
         if ( Test.testPhyloXMLparsingOfDistributionElement() ) {
             System.out.println( "OK." );
@@ -732,6 +813,15 @@ public final class Test {
             System.out.println( "failed." );
             failed++;
         }
+        System.out.print( "LCA index: " );
+        if ( Test.testLCAIndex() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
         System.out.print( "Calculation of distance between nodes: " );
         if ( Test.testGetDistance() ) {
             System.out.println( "OK." );
@@ -879,6 +969,15 @@ public final class Test {
             System.out.println( "failed." );
             failed++;
         }
+        System.out.print( "Split index: " );
+        if ( Test.testSplitIndex() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
         System.out.print( "Basic table: " );
         if ( Test.testBasicTable() ) {
             System.out.println( "OK." );
@@ -924,6 +1023,24 @@ public final class Test {
             System.out.println( "failed." );
             failed++;
         }
+        System.out.print( "Iterating fasta parser: " );
+        if ( Test.testIteratingFastaParser() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
+        System.out.print( "Fasta index: " );
+        if ( Test.testFastaIndex() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
         System.out.print( "Creation of balanced phylogeny: " );
         if ( Test.testCreateBalancedPhylogeny() ) {
             System.out.println( "OK." );
@@ -996,6 +1113,24 @@ public final class Test {
             System.out.println( "failed." );
             failed++;
         }
+        System.out.print( "Compact MSA: " );
+        if ( Test.testCompactMsa() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
+        System.out.print( "Incremental MSA statistics: " );
+        if ( Test.testIncrementalMsaStatistics() ) {
+            System.out.println( "OK." );
+            succeeded++;
+        }
+        else {
+            System.out.println( "failed." );
+            failed++;
+        }
         System.out.print( "MSA entropy: " );
         if ( Test.testMsaEntropy() ) {
             System.out.println( "OK." );
@@ -2985,6 +3120,180 @@ public final class Test {
         return true;
     }
 
+    private static boolean testIteratingPhyloXMLparsing() {
+        try {
+            final File in = new File( Test.PATH_TO_TEST_DATA + "phyloxml_test_t1.xml" );
+            final PhyloXmlParser p = PhyloXmlParser.createPhyloXmlParser();
+            p.setSource( in );
+            final Phylogeny[] phys = p.parse();
+            if ( phys.length != 4 ) {
+                return false;
+            }
+            final File zip = File.createTempFile( "phyloxml_test_t1", ".zip" );
+            zip.deleteOnExit();
+            final ZipOutputStream zos = new ZipOutputStream( new FileOutputStream( zip ) );
+            zos.putNextEntry( new ZipEntry( "phyloxml_test_t1.xml" ) );
+            final FileInputStream fis = new FileInputStream( in );
+            final byte[] buffer = new byte[ 1024 ];
+            int n;
+            while ( ( n = fis.read( buffer ) ) > 0 ) {
+                zos.write( buffer, 0, n );
+            }
+            fis.close();
+            zos.closeEntry();
+            zos.close();
+            final PhylogenyWriter w = new PhylogenyWriter();
+            for( int source = 0; source < 3; ++source ) {
+                if ( source == 0 ) {
+                    p.setSource( in );
+                }
+                else if ( source == 1 ) {
+                    p.setSource( zip );
+                }
+                else {
+                    p.setZippedInputstream( true );
+                    p.setSource( new FileInputStream( zip ) );
+                }
+                int i = 0;
+                while ( p.hasNext() ) {
+                    final Phylogeny phy = p.next();
+                    if ( i >= phys.length ) {
+                        return false;
+                    }
+                    if ( !w.toPhyloXML( phy, 0 ).toString().equals( w.toPhyloXML( phys[ i ], 0 ).toString() ) ) {
+                        return false;
+                    }
+                    ++i;
+                }
+                if ( i != phys.length ) {
+                    return false;
+                }
+                if ( p.next() != null ) {
+                    return false;
+                }
+            }
+            p.setZippedInputstream( false );
+            // Restarting, and stopping before the end.
+            p.setSource( in );
+            if ( !p.next().getName().equals( phys[ 0 ].getName() ) ) {
+                return false;
+            }
+            p.reset();
+            if ( !p.next().getName().equals( phys[ 0 ].getName() ) ) {
+                return false;
+            }
+            if ( !p.next().getName().equals( phys[ 1 ].getName() ) ) {
+                return false;
+            }
+            p.setSource( new StringBuffer( "<phyloxml><phylogeny><clade><name>A</name></clade></phylogeny><phylogeny>" ) );
+            if ( !p.next().getNode( "A" ).getName().equals( "A" ) ) {
+                return false;
+            }
+            try {
+                p.next();
+                return false;
+            }
+            catch ( final PhylogenyParserException e ) {
+                // Expected.
+            }
+            if ( p.hasNext() ) {
+                return false;
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean testPhyloXMLdirectMapping() {
+        try {
+            final PhylogenyWriter w = new PhylogenyWriter();
+            final File[] files = new File( Test.PATH_TO_TEST_DATA ).listFiles();
+            int compared = 0;
+            for( final File file : files ) {
+                if ( !file.getName().endsWith( ".xml" ) ) {
+                    continue;
+                }
+                final PhyloXmlParser p = PhyloXmlParser.createPhyloXmlParser();
+                p.setSource( file );
+                Phylogeny[] phys = null;
+                try {
+                    phys = p.parse();
+                }
+                catch ( final PhylogenyParserException e ) {
+                    // Checked below.
+                }
+                p.setDirectMapping( true );
+                p.setSource( file );
+                Phylogeny[] direct_phys = null;
+                try {
+                    direct_phys = p.parse();
+                }
+                catch ( final PhylogenyParserException e ) {
+                    // Checked below.
+                }
+                if ( ( phys == null ) || ( direct_phys == null ) ) {
+                    if ( phys != direct_phys ) {
+                        return false;
+                    }
+                    continue;
+                }
+                if ( phys.length != direct_phys.length ) {
+                    return false;
+                }
+                for( int i = 0; i < phys.length; ++i ) {
+                    if ( phys[ i ].isEmpty() || direct_phys[ i ].isEmpty() ) {
+                        if ( phys[ i ].isEmpty() != direct_phys[ i ].isEmpty() ) {
+                            return false;
+                        }
+                    }
+                    else if ( !w.toPhyloXML( phys[ i ], 0 ).toString()
+                            .equals( w.toPhyloXML( direct_phys[ i ], 0 ).toString() ) ) {
+                        return false;
+                    }
+                }
+                ++compared;
+            }
+            if ( compared < 20 ) {
+                return false;
+            }
+            final PhyloXmlParser p = PhyloXmlParser.createPhyloXmlParser();
+            p.setDirectMapping( true );
+            p.setSource( new File( Test.PATH_TO_TEST_DATA + "phyloxml_test_1.xml" ) );
+            final Phylogeny phy = p.next();
+            if ( !phy.getName().equals( "tree 0" ) ) {
+                return false;
+            }
+            if ( !phy.getDescription().equals( "test phylogeny" ) ) {
+                return false;
+            }
+            if ( !isEqual( phy.getNode( "root node" ).getDistanceToParent(), 0.1 ) ) {
+                return false;
+            }
+            if ( !phy.getNode( "root node" ).getNodeData().getTaxonomy().getTaxonomyCode().equals( "ECDYS" ) ) {
+                return false;
+            }
+            if ( phy.getRelevantSequenceRelationTypes().size() < 1 ) {
+                return false;
+            }
+            p.setSource( new StringBuffer( "<phyloxml><phylogeny><clade><name> a\n\t b </name><branch_length>\n 2.5 </branch_length></clade></phylogeny></phyloxml>" ) );
+            final Phylogeny phy2 = p.next();
+            if ( !phy2.getRoot().getName().equals( "a b" ) ) {
+                return false;
+            }
+            if ( !isEqual( phy2.getRoot().getDistanceToParent(), 2.5 ) ) {
+                return false;
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
     private static boolean testPhyloXMLparsingValidating() {
         try {
             final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
@@ -3660,6 +3969,144 @@ public final class Test {
         return true;
     }
 
+    private static String createRandomNewick( final List<String> names, final Random r ) {
+        final List<String> clades = new ArrayList<String>( names );
+        while ( clades.size() > 1 ) {
+            final String a = clades.remove( r.nextInt( clades.size() ) );
+            final String b = clades.remove( r.nextInt( clades.size() ) );
+            if ( ( clades.size() > 0 ) && r.nextBoolean() ) {
+                final String c = clades.remove( r.nextInt( clades.size() ) );
+                clades.add( "(" + a + "," + b + "," + c + ")" );
+            }
+            else {
+                clades.add( "(" + a + "," + b + ")" );
+            }
+        }
+        return clades.get( 0 ) + ";";
+    }
+
+    private static boolean testSplitIndex() {
+        try {
+            final Random r = new Random( 1 );
+            final List<String> names = new ArrayList<String>();
+            for( int i = 0; i < 150; ++i ) {
+                names.add( "n" + i );
+            }
+            for( int t = 0; t < 6; ++t ) {
+                final boolean strict = t < 3;
+                final Phylogeny target = ParserBasedPhylogenyFactory.getInstance()
+                        .create( createRandomNewick( names, r ), new NHXParser() )[ 0 ];
+                final Phylogeny[] evaluators = new Phylogeny[ 8 ];
+                for( int e = 0; e < evaluators.length; ++e ) {
+                    final List<String> ev_names = new ArrayList<String>( names );
+                    if ( !strict ) {
+                        for( int i = 0; i < 20; ++i ) {
+                            ev_names.remove( r.nextInt( ev_names.size() ) );
+                        }
+                        ev_names.add( "x" + e );
+                    }
+                    // Evaluators partially derived from the target, to have some matching splits:
+                    if ( e % 2 == 0 ) {
+                        evaluators[ e ] = target.copy();
+                        if ( !strict ) {
+                            evaluators[ e ].deleteSubtree( evaluators[ e ].getNode( "n7" ), true );
+                        }
+                    }
+                    else {
+                        evaluators[ e ] = ParserBasedPhylogenyFactory.getInstance()
+                                .create( createRandomNewick( ev_names, r ), new NHXParser() )[ 0 ];
+                    }
+                }
+                ConfidenceAssessor.evaluate( "bootstrap", evaluators, target, strict, 1 );
+                // Reference counts (as previously calculated via TreeSplitMatrix):
+                for( final PhylogenyNodeIterator it = target.iteratorPostorder(); it.hasNext(); ) {
+                    final PhylogenyNode node = it.next();
+                    if ( !node.isExternal() && !node.isRoot() ) {
+                        if ( node.getParent().isRoot()
+                                && ( target.getRoot().getNumberOfDescendants() == 2 )
+                                && ( target.getRoot().getChildNode1().isExternal() || target.getRoot()
+                                        .getChildNode2().isExternal() ) ) {
+                            continue;
+                        }
+                        int count = 0;
+                        for( final Phylogeny evaluator : evaluators ) {
+                            if ( new TreeSplitMatrix( evaluator, strict, target )
+                                    .match( new HashSet<PhylogenyNode>( node.getAllExternalDescendants() ) ) ) {
+                                ++count;
+                            }
+                        }
+                        if ( node.getBranchData().getConfidence( 0 ).getValue() != count ) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            final Phylogeny p0 = ParserBasedPhylogenyFactory.getInstance()
+                    .create( "(((A,B)ab,(C,D)cd)abcd,E,F)", new NHXParser() )[ 0 ];
+            final Map<String, Integer> leaf_index = SplitIndex.createLeafIndex( p0 );
+            final SplitIndex s0 = new SplitIndex( p0, leaf_index, false, true );
+            final SplitIndex s1 = new SplitIndex( ParserBasedPhylogenyFactory.getInstance()
+                    .create( "((E,F,(C,D)),A,B)", new NHXParser() )[ 0 ], leaf_index, false, false );
+            final SplitIndex s2 = new SplitIndex( ParserBasedPhylogenyFactory.getInstance()
+                    .create( "((E,F,(C,D)),A,B)", new NHXParser() )[ 0 ], leaf_index, false, true );
+            int found = 0;
+            for( int i = 0; i < s1.getNumberOfNodes(); ++i ) {
+                final int j = s0.find( s1, i );
+                if ( j >= 0 ) {
+                    ++found;
+                    if ( s1.getNode( i ).getAllExternalDescendants().size() == 4 ) {
+                        if ( !s0.getNode( j ).getName().equals( "ab" ) ) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            // Unrooted: all 9 clusters of s1 are splits of s0.
+            if ( found != 9 ) {
+                return false;
+            }
+            final SplitIndex s3 = new SplitIndex( p0, leaf_index, false, false );
+            if ( s3.find( s1, 0 ) != 0 ) {
+                return false;
+            }
+            if ( s3.getNumberOfLeaves() != 6 ) {
+                return false;
+            }
+            try {
+                s0.find( s2, 0 );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // expected
+            }
+            try {
+                new SplitIndex( ParserBasedPhylogenyFactory.getInstance().create( "((A,B),A)", new NHXParser() )[ 0 ],
+                                leaf_index,
+                                false,
+                                false );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // expected
+            }
+            final SplitIndex s4 = new SplitIndex( ParserBasedPhylogenyFactory.getInstance()
+                    .create( "((A,B),(X,Y))", new NHXParser() )[ 0 ], leaf_index, false, false );
+            final SplitIndex s5 = new SplitIndex( ParserBasedPhylogenyFactory.getInstance()
+                    .create( "((A,B),(X,Y))", new NHXParser() )[ 0 ], leaf_index, true, false );
+            if ( ( s4.getNumberOfLeaves() != 4 ) || ( s5.getNumberOfLeaves() != 2 ) ) {
+                return false;
+            }
+            if ( s3.containsAll( s4, 0 ) || !s3.containsAll( s5, 0 ) ) {
+                return false;
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
     private static boolean testConfidenceAssessor() {
         try {
             final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
@@ -3741,6 +4188,42 @@ public final class Test {
             if ( !isEqual( t4.getNode( "abcde" ).getBranchData().getConfidence( 0 ).getValue(), 1 ) ) {
                 return false;
             }
+            // Streaming:
+            final String ev1_str = "((((A,B),C),D),E);((A,B),((E,D),C));(((A,B),C),(E,D));(A,(((E,D),C),B));(B,(A,((E,D),C)));(C,((E,D),(A,B)));(D,(E,((A,B),C)));";
+            final Phylogeny t5 = factory.create( "((((A,B)ab,C)abc,D)abcd,E)abcde", new NHXParser() )[ 0 ];
+            final NHXParser p5 = new NHXParser();
+            p5.setSource( ev1_str );
+            if ( ConfidenceAssessor.evaluate( "bootstrap", p5, t5, true, 1, 0, 0 ) != 7 ) {
+                return false;
+            }
+            if ( !isEqual( t5.getNode( "ab" ).getBranchData().getConfidence( 0 ).getValue(), 7 ) ) {
+                return false;
+            }
+            if ( !isEqual( t5.getNode( "abc" ).getBranchData().getConfidence( 0 ).getValue(), 7 ) ) {
+                return false;
+            }
+            final Phylogeny t6 = factory.create( "((((A,B)ab,C)abc,D)abcd,E)abcde", new NHXParser() )[ 0 ];
+            final NHXParser p6 = new NHXParser();
+            p6.setSource( ev1_str );
+            if ( ConfidenceAssessor.evaluate( "bootstrap", p6, t6, false, 0.5, 1, 3 ) != 3 ) {
+                return false;
+            }
+            if ( !isEqual( t6.getNode( "abc" ).getBranchData().getConfidence( 0 ).getValue(), 1.5 ) ) {
+                return false;
+            }
+            if ( !isEqual( t6.getNode( "ab" ).getBranchData().getConfidence( 0 ).getValue(), 1.5 ) ) {
+                return false;
+            }
+            final Phylogeny t7 = factory.create( "((((A,B)ab,C)abc,D)abcd,E)abcde", new NHXParser() )[ 0 ];
+            final NHXParser p7 = new NHXParser();
+            p7.setSource( ev1_str );
+            try {
+                ConfidenceAssessor.evaluate( "bootstrap", p7, t7, false, 1, 2, 7 );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // expected
+            }
         }
         catch ( final Exception e ) {
             e.printStackTrace();
@@ -5600,19 +6083,161 @@ public final class Test {
         return true;
     }
 
-    private static boolean testGenbankAccessorParsing() {
-        //The format for GenBank Accession numbers are:
-        //Nucleotide: 1 letter + 5 numerals OR 2 letters + 6 numerals
-        //Protein:    3 letters + 5 numerals
-        //http://www.ncbi.nlm.nih.gov/Sequin/acc.html
-        if ( !SequenceAccessionTools.parseGenbankAccessorFromString( "AY423861" ).equals( "AY423861" ) ) {
-            return false;
+    private static boolean testIteratingFastaParser() {
+        try {
+            final IteratingFastaParser p0 = new IteratingFastaParser( new File( PATH_TO_TEST_DATA + "fasta_0.fasta" ) );
+            final String[] ids_0 = { "one dumb", "two dumb", "three dumb", "four dumb", "five dumb" };
+            final String[] seqs_0 = { "ACGTGKXFMFDMXEXXXSFMFMF", "DKXASDFXSFXFKFKSXDFKSLX", "SXDFKSXLFSFPWEXPROWXERR",
+                    "AAAAAAAAAAAAAAAAAAAAAAA", "DDDDDDDDDDDDDDDDDDDDAXF" };
+            for( int i = 0; i < ids_0.length; ++i ) {
+                if ( !p0.hasNext() ) {
+                    return false;
+                }
+                final MolecularSequence seq = p0.next();
+                if ( !seq.getIdentifier().equals( ids_0[ i ] ) || !seq.getMolecularSequenceAsString().equals( seqs_0[ i ] ) ) {
+                    return false;
+                }
+            }
+            if ( p0.hasNext() ) {
+                return false;
+            }
+            final String s = "ignored\r\n>  one \r\nac gt\r\n\r\n123 4\r\n\tn-.\n>two\n> \n>three\rww\r>\u00e9\n  x\n";
+            final IteratingFastaParser p1 = new IteratingFastaParser( new ByteArrayInputStream( s.getBytes( "UTF-8" ) ) );
+            final String[] ids = { "one", "three", "\u00e9" };
+            final String[] seqs = { "ACGTN--", "WW", "X" };
+            for( int i = 0; i < ids.length; ++i ) {
+                if ( !p1.hasNext() ) {
+                    return false;
+                }
+                final MolecularSequence seq = p1.next();
+                if ( !seq.getIdentifier().equals( ids[ i ] ) || !seq.getMolecularSequenceAsString().equals( seqs[ i ] ) ) {
+                    return false;
+                }
+            }
+            if ( p1.hasNext() ) {
+                return false;
+            }
+            try {
+                final IteratingFastaParser p2 = new IteratingFastaParser( new ByteArrayInputStream( ">a\nac\n> \nac\n"
+                        .getBytes() ) );
+                p2.next();
+                return false;
+            }
+            catch ( final MsaFormatException e ) {
+                // expected
+            }
         }
-        if ( !SequenceAccessionTools.parseGenbankAccessorFromString( ".AY423861.2" ).equals( "AY423861.2" ) ) {
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
             return false;
         }
-        if ( !SequenceAccessionTools.parseGenbankAccessorFromString( "345_.AY423861.24_345" )
-                .equals( "AY423861.24" ) ) {
+        return true;
+    }
+
+    private static boolean testFastaIndex() {
+        try {
+            final File fasta = File.createTempFile( "forester_fasta_index", ".fasta" );
+            fasta.deleteOnExit();
+            final File fai = new File( fasta.getPath() + FastaIndex.SUFFIX );
+            fai.deleteOnExit();
+            // A samtools index (with other identifiers) is not used.
+            final File samtools_fai = new File( fasta.getPath() + ".fai" );
+            samtools_fai.deleteOnExit();
+            final String s = "ignored\r\n>  one \r\nacg\r\n\r\n123 4\r\n\tn-.\n>two\n>three\rww\r>\u00e9\n  x\n"
+                    + ">four\nACGTACGTAC\nACGTACGTAC\nACG\n>five\nACGTACGTAC\nACGTACG\n\n1\nAC\n";
+            final Writer w = new OutputStreamWriter( new FileOutputStream( fasta ), "UTF-8" );
+            w.write( s );
+            w.close();
+            final Writer w_samtools = new FileWriter( samtools_fai );
+            w_samtools.write( "one\t6\t0\t3\t5\n" );
+            w_samtools.close();
+            final List<MolecularSequence> seqs = FastaParser.parse( fasta );
+            final FastaIndex index = FastaIndex.createInstance( fasta );
+            if ( ( index.getNumberOfSequences() != 5 ) || ( seqs.size() != 5 ) || index.contains( "two" ) ) {
+                return false;
+            }
+            if ( ( index.getLength( 3 ) != 23 ) || ( index.getLineBases( 3 ) != 10 )
+                    || ( index.getLineBytes( 3 ) != 11 ) || ( index.getOffset( 0 ) != 18 ) ) {
+                return false;
+            }
+            index.write( fai );
+            final FastaIndex index2 = FastaIndex.read( fai );
+            final StringWriter sw1 = new StringWriter();
+            final StringWriter sw2 = new StringWriter();
+            index.write( sw1 );
+            index2.write( sw2 );
+            if ( !sw1.toString().equals( sw2.toString() ) ) {
+                return false;
+            }
+            final IndexedFastaReader r = new IndexedFastaReader( fasta );
+            for( int i = seqs.size() - 1; i >= 0; --i ) {
+                final MolecularSequence seq = r.getSequence( seqs.get( i ).getIdentifier() );
+                if ( !seq.getIdentifier().equals( seqs.get( i ).getIdentifier() )
+                        || !seq.getMolecularSequenceAsString().equals( seqs.get( i ).getMolecularSequenceAsString() ) ) {
+                    return false;
+                }
+            }
+            final Map<String, String> map = r.asMap();
+            if ( ( map.size() != 5 ) || !map.get( "one" ).equals( "ACGN--" ) || !map.get( "\u00e9" ).equals( "X" )
+                    || ( map.get( "two" ) != null ) || !map.containsKey( "five" ) ) {
+                return false;
+            }
+            final Phylogeny phy = ParserBasedPhylogenyFactory.getInstance()
+                    .create( "((four,five),(x,three))", new NHXParser() )[ 0 ];
+            if ( PhylogenyMethods.addMolecularSeqsToTree( phy, r ) != 3 ) {
+                return false;
+            }
+            if ( !phy.getNode( "five" ).getNodeData().getSequence().getMolecularSequence().equals( "ACGTACGTACACGTACGAC" )
+                    || phy.getNode( "x" ).getNodeData().isHasSequence() ) {
+                return false;
+            }
+            r.close();
+            final File tabs = File.createTempFile( "forester_fasta_index", ".fasta" );
+            tabs.deleteOnExit();
+            final File tabs_fai = new File( tabs.getPath() + FastaIndex.SUFFIX );
+            tabs_fai.deleteOnExit();
+            final Writer w1 = new FileWriter( tabs );
+            w1.write( ">a\tb\\t c\nAC\n>\\\nAC\n" );
+            w1.close();
+            FastaIndex.createInstance( tabs ).write( tabs_fai );
+            final FastaIndex tabs_index = FastaIndex.read( tabs_fai );
+            if ( ( tabs_index.getNumberOfSequences() != 2 ) || !tabs_index.contains( "a\tb\\t c" )
+                    || !tabs_index.contains( "\\" ) || ( tabs_index.getOffset( 1 ) != 15 ) ) {
+                return false;
+            }
+            final File dup = File.createTempFile( "forester_fasta_index", ".fasta" );
+            dup.deleteOnExit();
+            final Writer w2 = new FileWriter( dup );
+            w2.write( ">a\nAC\n>b\nAC\n>a\nAC\n" );
+            w2.close();
+            try {
+                FastaIndex.createInstance( dup );
+                return false;
+            }
+            catch ( final IOException e ) {
+                // expected
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean testGenbankAccessorParsing() {
+        //The format for GenBank Accession numbers are:
+        //Nucleotide: 1 letter + 5 numerals OR 2 letters + 6 numerals
+        //Protein:    3 letters + 5 numerals
+        //http://www.ncbi.nlm.nih.gov/Sequin/acc.html
+        if ( !SequenceAccessionTools.parseGenbankAccessorFromString( "AY423861" ).equals( "AY423861" ) ) {
+            return false;
+        }
+        if ( !SequenceAccessionTools.parseGenbankAccessorFromString( ".AY423861.2" ).equals( "AY423861.2" ) ) {
+            return false;
+        }
+        if ( !SequenceAccessionTools.parseGenbankAccessorFromString( "345_.AY423861.24_345" )
+                .equals( "AY423861.24" ) ) {
             return false;
         }
         if ( SequenceAccessionTools.parseGenbankAccessorFromString( "AAY423861" ) != null ) {
@@ -6171,6 +6796,71 @@ public final class Test {
         return true;
     }
 
+    private static boolean testLCAIndex() {
+        try {
+            final Random r = new Random( 2 );
+            final List<String> names = new ArrayList<String>();
+            for( int i = 0; i < 60; ++i ) {
+                names.add( "n" + i );
+            }
+            final List<Phylogeny> phys = new ArrayList<Phylogeny>();
+            phys.add( NHXParser.parse( "a" )[ 0 ] );
+            phys.add( NHXParser.parse( "(((a)b)c)" )[ 0 ] );
+            phys.add( NHXParser.parse( "((((A,B)ab,C)abc,(D,(E)e)de)abcde,((F)f,G)fg)r" )[ 0 ] );
+            for( int i = 0; i < 4; ++i ) {
+                phys.add( NHXParser.parse( createRandomNewick( names, r ) )[ 0 ] );
+            }
+            for( final Phylogeny p : phys ) {
+                final LCAIndex lca_index = new LCAIndex( p );
+                final List<PhylogenyNode> nodes = new ArrayList<PhylogenyNode>();
+                for( final PhylogenyNodeIterator it = p.iteratorPreorder(); it.hasNext(); ) {
+                    nodes.add( it.next() );
+                }
+                if ( lca_index.getNumberOfNodes() != nodes.size() ) {
+                    return false;
+                }
+                for( final PhylogenyNode n1 : nodes ) {
+                    if ( lca_index.getDepth( n1 ) != n1.calculateDepth() ) {
+                        return false;
+                    }
+                    final int i1 = lca_index.getIndex( n1 );
+                    if ( lca_index.getNode( i1 ) != n1 ) {
+                        return false;
+                    }
+                    if ( n1.isRoot() ? lca_index.getParent( i1 ) != -1
+                            : lca_index.getNode( lca_index.getParent( i1 ) ) != n1.getParent() ) {
+                        return false;
+                    }
+                    for( final PhylogenyNode n2 : nodes ) {
+                        if ( lca_index.calculateLCA( n1, n2 ) != PhylogenyMethods.calculateLCA( n1, n2 ) ) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            final Phylogeny p = NHXParser.parse( "((A:1,B:2)ab:3,(C:4,D:5)cd:6)r" )[ 0 ];
+            final LCAIndex lca_index = new LCAIndex( p );
+            if ( !isEqual( PhylogenyMethods.calculateDistance( p.getNode( "A" ), p.getNode( "D" ), lca_index ), 15 ) ) {
+                return false;
+            }
+            if ( !isEqual( PhylogenyMethods.calculateDistance( p.getNode( "B" ), p.getNode( "ab" ), lca_index ), 2 ) ) {
+                return false;
+            }
+            try {
+                lca_index.getIndex( NHXParser.parse( "(A,B)" )[ 0 ].getNode( "A" ) );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // expected
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
     private static boolean testGetLCA2() {
         try {
             final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
@@ -6500,6 +7190,101 @@ public final class Test {
         return true;
     }
 
+    private static boolean testLineTokenizer() {
+        try {
+            final String[] lines = { "Ion_trans  PF00520.24   201 6.3e-169  -12  0.00053", "", "  a\tb  ",
+                    "#x y", "a\u000Bb\fc", "1.1 1e-41 3E+22 -0 +5 1.5e-320 1e400" };
+            final StringBuilder sb = new StringBuilder();
+            for( int i = 0; i < lines.length; ++i ) {
+                sb.append( lines[ i ] );
+                sb.append( i % 2 == 0 ? "\n" : "\r\n" );
+            }
+            sb.append( "last" );
+            LineTokenizer t = new LineTokenizer( new ByteArrayInputStream( sb.toString().getBytes( "UTF-8" ) ),
+                                                 Charset.forName( "UTF-8" ),
+                                                 20 );
+            for( final String line : lines ) {
+                if ( !t.nextLine() || !t.getLine().equals( line ) ) {
+                    return false;
+                }
+                if ( t.isEmpty() != line.isEmpty() ) {
+                    return false;
+                }
+                if ( t.startsWith( '#' ) != line.startsWith( "#" ) ) {
+                    return false;
+                }
+                final String[] fields = line.split( "\\s+" );
+                if ( !line.isEmpty() && ( t.getNumberOfFields() != fields.length ) ) {
+                    return false;
+                }
+                for( int i = 0; i < t.getNumberOfFields(); ++i ) {
+                    if ( !t.getField( i ).equals( fields[ i ] ) || !t.fieldEquals( i, fields[ i ] ) ) {
+                        return false;
+                    }
+                }
+            }
+            if ( !t.nextLine() || !t.getLine().equals( "last" ) || t.nextLine() ) {
+                return false;
+            }
+            // Numbers:
+            t = new LineTokenizer( new ByteArrayInputStream( ( lines[ 0 ] + "\n" + lines[ 5 ] ).getBytes( "UTF-8" ) ),
+                                   Charset.forName( "UTF-8" ),
+                                   3 );
+            t.nextLine();
+            if ( ( t.getNumberOfFields() != 3 ) || ( t.parseInt( 2 ) != 201 ) ) {
+                return false;
+            }
+            if ( t.getFieldAsCachedString( 0 ) != t.getFieldAsCachedString( 0 ) ) {
+                return false;
+            }
+            try {
+                t.parseInt( 1 );
+                return false;
+            }
+            catch ( final NumberFormatException e ) {
+                // expected
+            }
+            t = new LineTokenizer( new ByteArrayInputStream( lines[ 5 ].getBytes( "UTF-8" ) ),
+                                   Charset.forName( "UTF-8" ),
+                                   20 );
+            t.nextLine();
+            for( int i = 0; i < t.getNumberOfFields(); ++i ) {
+                if ( Double.doubleToLongBits( t.parseDouble( i ) ) != Double.doubleToLongBits( Double.parseDouble( t
+                        .getField( i ) ) ) ) {
+                    return false;
+                }
+            }
+            final Random r = new Random( 11 );
+            final StringBuilder numbers = new StringBuilder();
+            for( int i = 0; i < 10000; ++i ) {
+                numbers.append( r.nextInt( 1000 ) );
+                numbers.append( '.' );
+                numbers.append( r.nextInt( 100 ) );
+                numbers.append( 'e' );
+                numbers.append( r.nextInt( 640 ) - 320 );
+                numbers.append( ' ' );
+                numbers.append( r.nextDouble() * Math.pow( 10, r.nextInt( 600 ) - 300 ) );
+                numbers.append( '\n' );
+            }
+            t = new LineTokenizer( new ByteArrayInputStream( numbers.toString().getBytes( "UTF-8" ) ),
+                                   Charset.forName( "UTF-8" ),
+                                   2 );
+            while ( t.nextLine() ) {
+                for( int i = 0; i < 2; ++i ) {
+                    if ( Double.doubleToLongBits( t.parseDouble( i ) ) != Double.doubleToLongBits( Double
+                            .parseDouble( t.getField( i ) ) ) ) {
+                        return false;
+                    }
+                }
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
     private static boolean testHmmscanOutputParser() {
         final String test_dir = Test.PATH_TO_TEST_DATA;
         try {
@@ -6980,6 +7765,226 @@ public final class Test {
         return true;
     }
 
+    private static boolean testCompactMsa() {
+        try {
+            final List<MolecularSequence> l0 = new ArrayList<>();
+            l0.add( new BasicSequence( "a", "ACGT-N?RacgtACGTACGTACGTACGTACGTACGTACGTAC", MolecularSequence.TYPE.DNA ) );
+            l0.add( new BasicSequence( "b", "TTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTT", MolecularSequence.TYPE.DNA ) );
+            l0.add( new BasicSequence( "c", "------------------------------------------", MolecularSequence.TYPE.DNA ) );
+            final CompactMsa c0 = CompactMsa.createInstance( l0 );
+            if ( !isEqual( BasicMsa.createInstance( l0 ), c0 ) ) {
+                return false;
+            }
+            if ( ( c0.getResidueAt( 0, 7 ) != 'R' ) || ( c0.getResidueAt( 0, 8 ) != 'a' )
+                    || ( c0.getResidueAt( 0, 5 ) != 'N' ) || !c0.isGapAt( 2, 41 ) ) {
+                return false;
+            }
+            c0.setResidueAt( 0, 7, 'G' );
+            c0.setResidueAt( 1, 40, 'y' );
+            c0.setResidueAt( 1, 2, '-' );
+            c0.setResidueAt( 0, 8, 'c' );
+            c0.setResidueAt( 0, 9, 'A' );
+            if ( !c0.getSequenceAsString( 0 ).toString().equals( "ACGT-N?GcAgtACGTACGTACGTACGTACGTACGTACGTAC" )
+                    || !c0.getSequenceAsString( 1 ).toString().equals( "TT-TTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTTyT" ) ) {
+                return false;
+            }
+            if ( !c0.getSequence( "c" ).getMolecularSequenceAsString().equals( "------------------------------------------" ) ) {
+                return false;
+            }
+            final CompactMsa c1 = new CompactMsa( 2, 3, MolecularSequence.TYPE.RNA );
+            c1.setIdentifier( 0, "x" );
+            c1.setIdentifier( 1, "y" );
+            c1.setResidueAt( 1, 1, 'U' );
+            if ( !c1.getSequenceAsString( 0 ).toString().equals( "---" )
+                    || !c1.getSequenceAsString( 1 ).toString().equals( "-U-" ) ) {
+                return false;
+            }
+            try {
+                c1.setIdentifier( 1, "x" );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // expected
+            }
+            c1.setIdentifier( 1, "z" );
+            c1.setIdentifier( 0, "y" );
+            if ( !c1.getIdentifier( 0 ).equals( "y" ) || !c1.getIdentifier( 1 ).equals( "z" ) ) {
+                return false;
+            }
+            final CompactMsa.Builder builder = new CompactMsa.Builder( MolecularSequence.TYPE.DNA );
+            builder.add( "x", "acgtnNRY-".toCharArray() );
+            builder.add( new BasicSequence( "y", "ACGTNnry?", MolecularSequence.TYPE.DNA ) );
+            try {
+                builder.add( "x", "ACGTACGTA".toCharArray() );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // expected
+            }
+            try {
+                builder.add( "z", "ACGT".toCharArray() );
+                return false;
+            }
+            catch ( final IllegalArgumentException e ) {
+                // expected
+            }
+            final CompactMsa c2 = builder.build();
+            if ( ( c2.getNumberOfSequences() != 2 ) || !c2.getSequenceAsString( 0 ).toString().equals( "acgtnNRY-" )
+                    || !c2.getSequenceAsString( 1 ).toString().equals( "ACGTNnry?" ) || ( c2.getResidueAt( 0, 3 ) != 't' )
+                    || ( c2.getResidueAt( 1, 5 ) != 'n' ) || ( c2.getColumn( 6, new char[ 2 ] )[ 1 ] != 'r' ) ) {
+                return false;
+            }
+            c2.setResidueAt( 0, 0, 'A' );
+            c2.setResidueAt( 0, 7, 'y' );
+            c2.setResidueAt( 1, 4, 'g' );
+            c2.setResidueAt( 1, 6, 'A' );
+            if ( !c2.getSequenceAsString( 0 ).toString().equals( "AcgtnNRy-" )
+                    || !c2.getSequenceAsString( 1 ).toString().equals( "ACGTgnAy?" ) ) {
+                return false;
+            }
+            final Msa fasta_msa = FastaParser.parseMsa( new FileInputStream( PATH_TO_TEST_DATA + "fasta_0.fasta" ) );
+            final CompactMsa fasta_c = FastaParser.parseCompactMsa( new FileInputStream( PATH_TO_TEST_DATA
+                    + "fasta_0.fasta" ), MolecularSequence.TYPE.AA );
+            if ( !isEqual( fasta_msa, fasta_c ) ) {
+                return false;
+            }
+            final Random r = new Random( 3 );
+            final MolecularSequence.TYPE[] types = { MolecularSequence.TYPE.DNA, MolecularSequence.TYPE.RNA,
+                    MolecularSequence.TYPE.AA, MolecularSequence.TYPE.GENERAL };
+            final String[] alphabets = { "ACGT-NRYacgt?", "ACGU-NTu", "ACDEFGHIKLMNPQRSTVWY-XBZ*?.ac", "01-?\u4e00A" };
+            for( int t = 0; t < 20; ++t ) {
+                final int type = t % types.length;
+                final int rows = 1 + r.nextInt( 10 );
+                final int length = 1 + r.nextInt( 150 );
+                final List<MolecularSequence> l = new ArrayList<>();
+                for( int row = 0; row < rows; ++row ) {
+                    final char[] s = new char[ length ];
+                    for( int col = 0; col < length; ++col ) {
+                        s[ col ] = alphabets[ type ].charAt( r.nextInt( alphabets[ type ].length() ) );
+                    }
+                    l.add( new BasicSequence( "s" + row, s, types[ type ] ) );
+                }
+                final Msa b = BasicMsa.createInstance( l );
+                final CompactMsa c = CompactMsa.createInstance( b );
+                if ( !isEqual( b, c ) ) {
+                    return false;
+                }
+                for( int i = 0; i < length; ++i ) {
+                    final int row = r.nextInt( rows );
+                    final int col = r.nextInt( length );
+                    final char residue = alphabets[ type ].charAt( r.nextInt( alphabets[ type ].length() ) );
+                    b.setResidueAt( row, col, residue );
+                    c.setResidueAt( row, col, residue );
+                }
+                if ( !isEqual( b, c ) || ( MsaMethods.calcGapRatio( b ) != MsaMethods.calcGapRatio( c ) ) ) {
+                    return false;
+                }
+                if ( !b.toString().equals( c.toString() ) ) {
+                    return false;
+                }
+                if ( !PairwiseDistanceCalculator.calcKimuraDistances( b ).toString()
+                        .equals( PairwiseDistanceCalculator.calcKimuraDistances( c ).toString() ) ) {
+                    return false;
+                }
+                if ( !isEqual( b, DeleteableMsa.createInstance( c ) ) ) {
+                    return false;
+                }
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean testIncrementalMsaStatistics() {
+        try {
+            final Random r = new Random( 7 );
+            final String alphabet = "ACDEFGHIKLMNPQRSTVWY-----X";
+            for( int t = 0; t < 20; ++t ) {
+                final int rows = 2 + r.nextInt( 20 );
+                final int length = 1 + r.nextInt( 100 );
+                final List<MolecularSequence> l = new ArrayList<>();
+                for( int row = 0; row < rows; ++row ) {
+                    final char[] s = new char[ length ];
+                    for( int col = 0; col < length; ++col ) {
+                        s[ col ] = alphabet.charAt( r.nextInt( alphabet.length() ) );
+                    }
+                    l.add( new BasicSequence( "s" + row, s, MolecularSequence.TYPE.AA ) );
+                }
+                final DeleteableMsa msa = DeleteableMsa.createInstance( l );
+                final IncrementalMsaStatistics stats = msa.getStatistics();
+                while ( ( msa.getNumberOfSequences() > 1 ) && ( msa.getLength() > 1 ) ) {
+                    if ( !isEqual( msa, stats ) ) {
+                        return false;
+                    }
+                    final int op = r.nextInt( 3 );
+                    if ( op == 0 ) {
+                        msa.deleteRow( msa.getIdentifier( r.nextInt( msa.getNumberOfSequences() ) ), false );
+                    }
+                    else if ( op == 1 ) {
+                        msa.deleteColumn( r.nextInt( msa.getLength() ) );
+                    }
+                    else {
+                        msa.deleteGapOnlyColumns();
+                    }
+                }
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isEqual( final DeleteableMsa msa, final IncrementalMsaStatistics stats ) {
+        if ( ( stats.getNumberOfSequences() != msa.getNumberOfSequences() ) || ( stats.getLength() != msa.getLength() ) ) {
+            return false;
+        }
+        final int[] gap_sums = MsaMethods.calcGapSumsPerColumn( msa );
+        for( int col = 0; col < msa.getLength(); ++col ) {
+            if ( stats.getNumberOfGaps( col ) != gap_sums[ col ] ) {
+                return false;
+            }
+        }
+        return ( Math.abs( stats.getGapRatio() - MsaMethods.calcGapRatio( msa ) ) < 1E-9 )
+                && ( Math.abs( stats.getAverageNumberOfGaps()
+                        - MsaMethods.calcNumberOfGapsStats( msa ).arithmeticMean() ) < 1E-9 )
+                && ( Math.abs( stats.getNormalizedShannonsEntropy( 7 )
+                        - MsaMethods.calcNormalizedShannonsEntropy( 7, msa ) ) < 1E-9 )
+                && ( Math.abs( stats.getNormalizedShannonsEntropy( 21 )
+                        - MsaMethods.calcNormalizedShannonsEntropy( 21, msa ) ) < 1E-9 );
+    }
+
+    private static boolean isEqual( final Msa m1, final Msa m2 ) {
+        if ( ( m1.getNumberOfSequences() != m2.getNumberOfSequences() ) || ( m1.getLength() != m2.getLength() )
+                || ( m1.getType() != m2.getType() ) ) {
+            return false;
+        }
+        for( int row = 0; row < m1.getNumberOfSequences(); ++row ) {
+            if ( !m1.getIdentifier( row ).equals( m2.getIdentifier( row ) )
+                    || !Arrays.equals( m1.getRow( row, new char[ m1.getLength() ] ),
+                                       m2.getRow( row, new char[ m2.getLength() ] ) ) ) {
+                return false;
+            }
+            for( int col = 0; col < m1.getLength(); ++col ) {
+                if ( m1.getResidueAt( row, col ) != m2.getResidueAt( row, col ) ) {
+                    return false;
+                }
+            }
+        }
+        for( int col = 0; col < m1.getLength(); ++col ) {
+            if ( !Arrays.equals( m1.getColumn( col, new char[ m1.getNumberOfSequences() ] ),
+                                 m2.getColumn( col, new char[ m2.getNumberOfSequences() ] ) )
+                    || !m1.getColumnAt( col ).equals( m2.getColumnAt( col ) ) ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private static boolean testDeleteableMsa() {
         try {
             final MolecularSequence s0 = BasicSequence.createAaSequence( "a", "AAAA" );
@@ -10514,6 +11519,374 @@ public final class Test {
         return true;
     }
 
+    private static boolean testBinaryPhylogenyFormat() {
+        try {
+            final String[] files = { "phyloxml_test_t1.xml", "phyloxml_distribution.xml", "chars.xml",
+                    "special_characters.xml", "rio_Bcl-2_e1_20_mafft_05_40_fme.xml", "amphi_frost.xml" };
+            final PhylogenyWriter w = new PhylogenyWriter();
+            for( final String file : files ) {
+                final PhyloXmlParser xml_parser = PhyloXmlParser.createPhyloXmlParser();
+                xml_parser.setSource( new File( Test.PATH_TO_TEST_DATA + file ) );
+                final Phylogeny[] phys = xml_parser.parse();
+                final ByteArrayOutputStream os = new ByteArrayOutputStream();
+                new BinaryPhylogenyWriter().toBinary( os, phys );
+                final BinaryPhylogenyParser p = new BinaryPhylogenyParser();
+                p.setSource( os.toByteArray() );
+                if ( p.getNumberOfPhylogenies() != phys.length ) {
+                    return false;
+                }
+                final Phylogeny[] phys2 = p.parse();
+                if ( phys2.length != phys.length ) {
+                    return false;
+                }
+                for( int i = 0; i < phys.length; ++i ) {
+                    if ( phys[ i ].isEmpty() ) {
+                        if ( !phys2[ i ].isEmpty() ) {
+                            return false;
+                        }
+                        continue;
+                    }
+                    if ( !w.toPhyloXML( phys[ i ], 0 ).toString().equals( w.toPhyloXML( phys2[ i ], 0 ).toString() ) ) {
+                        return false;
+                    }
+                }
+            }
+            // Memory-mapped file, recognized by its contents.
+            final Phylogeny t = ParserBasedPhylogenyFactory.getInstance()
+                    .create( "((A:1,B:2)ab:3[&&NHX:B=90],(C,D)cd)r;", new NHXParser() )[ 0 ];
+            t.getNode( "C" ).setCollapse( true );
+            t.getNode( "D" ).setName( "d\u00e9j\u00e0 vu" );
+            final File f = File.createTempFile( "binary_phylogeny", ".bin" );
+            f.delete();
+            f.deleteOnExit();
+            new BinaryPhylogenyWriter().toBinary( f, new Phylogeny[] { t, new Phylogeny(), t } );
+            final PhylogenyParser parser = ParserUtils.createParserDependingFileContents( f, false );
+            if ( !( parser instanceof BinaryPhylogenyParser ) ) {
+                return false;
+            }
+            final Phylogeny[] phys3 = ParserBasedPhylogenyFactory.getInstance().create( f, parser );
+            if ( phys3.length != 3 ) {
+                return false;
+            }
+            if ( !phys3[ 0 ].toNewHampshireX().equals( t.toNewHampshireX() ) ) {
+                return false;
+            }
+            if ( !phys3[ 1 ].isEmpty() ) {
+                return false;
+            }
+            if ( !phys3[ 2 ].getNode( "C" ).isCollapse() || phys3[ 2 ].getNode( "A" ).isCollapse() ) {
+                return false;
+            }
+            if ( phys3[ 2 ].getNode( "cd" ).getChildNode( 1 ) != phys3[ 2 ].getNode( "d\u00e9j\u00e0 vu" ) ) {
+                return false;
+            }
+            if ( !isEqual( phys3[ 2 ].getNode( "ab" ).getBranchData().getConfidence( 0 ).getValue(), 90 ) ) {
+                return false;
+            }
+            // Stream, as used when reading from a URL; parse() must be repeatable.
+            final Phylogeny[] phys4 = ParserBasedPhylogenyFactory.getInstance()
+                    .create( new FileInputStream( f ), new BinaryPhylogenyParser() );
+            if ( phys4.length != 3 ) {
+                return false;
+            }
+            if ( !phys4[ 2 ].toNewHampshireX().equals( t.toNewHampshireX() ) ) {
+                return false;
+            }
+            final BinaryPhylogenyParser sp = new BinaryPhylogenyParser();
+            sp.setSource( new ByteArrayInputStream( new BinaryPhylogenyWriter().toBinary( t ) ) );
+            if ( sp.parse().length != 1 ) {
+                return false;
+            }
+            final Phylogeny[] phys5 = sp.parse();
+            if ( ( phys5.length != 1 ) || !phys5[ 0 ].toNewHampshireX().equals( t.toNewHampshireX() ) ) {
+                return false;
+            }
+            // Truncated data, and data in other formats.
+            final byte[] b = new BinaryPhylogenyWriter().toBinary( t );
+            final BinaryPhylogenyParser p = new BinaryPhylogenyParser();
+            p.setSource( Arrays.copyOf( b, b.length - 10 ) );
+            try {
+                p.next();
+                return false;
+            }
+            catch ( final PhylogenyParserException e ) {
+                // Expected.
+            }
+            // Negative number of strings (at 18), and negative length of the first string (at 22).
+            for( final int offset : new int[] { 18, 22 } ) {
+                final byte[] c = Arrays.copyOf( b, b.length );
+                Arrays.fill( c, offset, offset + 4, ( byte ) 0xFF );
+                p.setSource( c );
+                try {
+                    p.next();
+                    return false;
+                }
+                catch ( final PhylogenyParserException e ) {
+                    // Expected.
+                }
+            }
+            try {
+                p.setSource( "(a,b);".getBytes() );
+                return false;
+            }
+            catch ( final PhylogenyParserException e ) {
+                // Expected.
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean testNHXParsingParallel() {
+        try {
+            // Semicolons in quotes, comments and annotations, trees not
+            // terminated by a semicolon, and empty chunks.
+            final String nhx = "((a:1,'b;c':2)x:3,\"d;(e\":4)r1;\n;\n(f[comment; (],g[&&NHX:S=Homo])r2;"
+                    + "(h,i)r3 (j,k)r4; [just a comment];((l,m),n)r5;;";
+            final NHXParser nhx_parser = new NHXParser();
+            nhx_parser.setTaxonomyExtraction( TAXONOMY_EXTRACTION.AGGRESSIVE );
+            nhx_parser.setSource( nhx );
+            final Phylogeny[] expected = nhx_parser.parse();
+            if ( expected.length != 5 ) {
+                return false;
+            }
+            for( int threads = 1; threads <= 4; ++threads ) {
+                final ParallelNHXParser p = new ParallelNHXParser( nhx_parser, threads );
+                p.setSource( nhx );
+                final Phylogeny[] phys = p.parse();
+                if ( phys.length != expected.length ) {
+                    return false;
+                }
+                for( int i = 0; i < phys.length; ++i ) {
+                    if ( !phys[ i ].toNewHampshireX().equals( expected[ i ].toNewHampshireX() ) ) {
+                        return false;
+                    }
+                }
+                // parse() resets, like NHXParser.
+                if ( !p.hasNext() ) {
+                    return false;
+                }
+                final Phylogeny[] phys2 = p.parse();
+                if ( ( phys2.length != expected.length )
+                        || !phys2[ 4 ].toNewHampshireX().equals( expected[ 4 ].toNewHampshireX() ) ) {
+                    return false;
+                }
+                p.close();
+            }
+            if ( !expected[ 0 ].getNode( "b;c" ).getParent().getName().equals( "x" ) ) {
+                return false;
+            }
+            if ( !expected[ 1 ].getNode( "g" ).getNodeData().getTaxonomy().getScientificName().equals( "Homo" ) ) {
+                return false;
+            }
+            // Many trees from a file, in order.
+            final File f = File.createTempFile( "nhx_parallel", ".nh" );
+            f.deleteOnExit();
+            final FileWriter fw = new FileWriter( f );
+            for( int i = 0; i < 500; ++i ) {
+                fw.write( "((a" + i + ":1,b:2):" + i + ",(c,'d;" + i + "'))t" + i + ";\n" );
+            }
+            fw.close();
+            final ParallelNHXParser p1 = new ParallelNHXParser( new NHXParser(), 3 );
+            p1.setSource( f );
+            int i = 0;
+            while ( p1.hasNext() ) {
+                final Phylogeny phy = p1.next();
+                if ( !phy.getRoot().getName().equals( "t" + i ) ) {
+                    return false;
+                }
+                if ( !isEqual( phy.getNode( "a" + i ).getParent().getDistanceToParent(), i ) ) {
+                    return false;
+                }
+                if ( phy.getNodes( "d;" + i ).size() != 1 ) {
+                    return false;
+                }
+                ++i;
+            }
+            if ( i != 500 ) {
+                return false;
+            }
+            p1.reset();
+            if ( !p1.next().getRoot().getName().equals( "t0" ) ) {
+                return false;
+            }
+            p1.close();
+            // The trees before a malformed one are returned before the error.
+            final ParallelNHXParser p2 = new ParallelNHXParser( new NHXParser(), 2 );
+            p2.setSource( "(a,b)t0;(c,d)t1;(e:1:2,f)t2;(g,h)t3;" );
+            if ( !p2.next().getRoot().getName().equals( "t0" ) ) {
+                return false;
+            }
+            if ( !p2.next().getRoot().getName().equals( "t1" ) ) {
+                return false;
+            }
+            if ( !p2.hasNext() ) {
+                return false;
+            }
+            try {
+                p2.next();
+                return false;
+            }
+            catch ( final NHXFormatException e ) {
+                // Expected.
+            }
+            if ( p2.hasNext() ) {
+                return false;
+            }
+            // The trees read before a failed read are returned before the error.
+            final byte[] b = "(a,b)t0;(c,d)t1;(e,f)t2;".getBytes();
+            final InputStream failing = new InputStream() {
+
+                private int _i = 0;
+
+                @Override
+                public int read() throws IOException {
+                    if ( _i >= b.length ) {
+                        throw new IOException( "read failed" );
+                    }
+                    return b[ _i++ ];
+                }
+            };
+            final ParallelNHXParser p3 = new ParallelNHXParser( new NHXParser(), 2 );
+            p3.setSource( failing );
+            for( int j = 0; j < 3; ++j ) {
+                if ( !p3.next().getRoot().getName().equals( "t" + j ) ) {
+                    return false;
+                }
+            }
+            try {
+                p3.next();
+                return false;
+            }
+            catch ( final IOException e ) {
+                if ( !e.getMessage().equals( "read failed" ) ) {
+                    return false;
+                }
+            }
+            if ( p3.hasNext() ) {
+                return false;
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean testNHXParsingPlainNewickLabels() {
+        try {
+            final String nh = "((A:1.5,B_c:2,'x:y':3,C[&&NHX:S=Homo:D=Y]:4,'d e':5)0.9:0.1,:7,E.coli,F:)root;";
+            final Phylogeny p0 = NHXParser.parse( nh )[ 0 ];
+            if ( !isEqual( p0.getNode( "A" ).getDistanceToParent(), 1.5 ) ) {
+                return false;
+            }
+            if ( !isEqual( p0.getNode( "B_c" ).getDistanceToParent(), 2 ) ) {
+                return false;
+            }
+            if ( !isEqual( p0.getNode( "x:y" ).getDistanceToParent(), 3 ) ) {
+                return false;
+            }
+            if ( !p0.getNode( "C" ).getNodeData().getTaxonomy().getScientificName().equals( "Homo" ) ) {
+                return false;
+            }
+            if ( !p0.getNode( "C" ).getNodeData().getEvent().isDuplication() ) {
+                return false;
+            }
+            if ( !isEqual( p0.getNode( "d e" ).getDistanceToParent(), 5 ) ) {
+                return false;
+            }
+            if ( !isEqual( p0.getNode( "A" ).getParent().getDistanceToParent(), 0.1 ) ) {
+                return false;
+            }
+            if ( !p0.getNode( "A" ).getParent().getName().equals( "0.9" ) ) {
+                return false;
+            }
+            if ( p0.getNode( "E.coli" ).getDistanceToParent() != PhylogenyDataUtil.BRANCH_LENGTH_DEFAULT ) {
+                return false;
+            }
+            if ( p0.getNode( "F" ).getDistanceToParent() != PhylogenyDataUtil.BRANCH_LENGTH_DEFAULT ) {
+                return false;
+            }
+            if ( !isEqual( p0.getRoot().getChildNode( 1 ).getDistanceToParent(), 7 ) ) {
+                return false;
+            }
+            if ( !p0.getRoot().getName().equals( "root" ) ) {
+                return false;
+            }
+            final NHXParser p1 = new NHXParser();
+            p1.setReplaceUnderscores( true );
+            p1.setSource( "(A__b:1,c_d:2);" );
+            final Phylogeny phy1 = p1.next();
+            if ( !phy1.getRoot().getChildNode( 0 ).getName().equals( "A b" ) ) {
+                return false;
+            }
+            if ( !phy1.getRoot().getChildNode( 1 ).getName().equals( "c d" ) ) {
+                return false;
+            }
+            final NHXParser p2 = new NHXParser();
+            p2.setTaxonomyExtraction( TAXONOMY_EXTRACTION.PFAM_STYLE_RELAXED );
+            p2.setSource( "(BCL2_HUMAN:1,MOUSE:2);" );
+            final Phylogeny phy2 = p2.next();
+            if ( !phy2.getNode( "BCL2_HUMAN" ).getNodeData().getTaxonomy().getTaxonomyCode().equals( "HUMAN" ) ) {
+                return false;
+            }
+            try {
+                NHXParser.parse( "(A:1:2,B:3);" );
+                return false;
+            }
+            catch ( final NHXFormatException e ) {
+                // Expected.
+            }
+            try {
+                NHXParser.parse( "(A:x,B:3);" );
+                return false;
+            }
+            catch ( final NHXFormatException e ) {
+                // Expected.
+            }
+            // Labels spanning the boundaries of the read buffer.
+            final StringBuilder sb = new StringBuilder( "(" );
+            for( int i = 0; i < 5000; ++i ) {
+                if ( i > 0 ) {
+                    sb.append( ',' );
+                }
+                sb.append( "n" + i + ":" + i + ".25" );
+            }
+            sb.append( ");" );
+            final File f = File.createTempFile( "nhx_plain_newick", ".nh" );
+            f.deleteOnExit();
+            final FileWriter fw = new FileWriter( f );
+            fw.write( sb.toString() );
+            fw.write( sb.toString() );
+            fw.close();
+            final NHXParser p3 = new NHXParser();
+            p3.setSource( f );
+            final Phylogeny[] phys3 = p3.parse();
+            if ( phys3.length != 2 ) {
+                return false;
+            }
+            for( final Phylogeny phy3 : phys3 ) {
+                if ( phy3.getNumberOfExternalNodes() != 5000 ) {
+                    return false;
+                }
+                for( int i = 0; i < 5000; ++i ) {
+                    if ( !isEqual( phy3.getNode( "n" + i ).getDistanceToParent(), i + 0.25 ) ) {
+                        return false;
+                    }
+                }
+            }
+        }
+        catch ( final Exception e ) {
+            e.printStackTrace( System.out );
+            return false;
+        }
+        return true;
+    }
+
     private static boolean testNHXParsingQuotes() {
         try {
             final PhylogenyFactory factory = ParserBasedPhylogenyFactory.getInstance();
@@ -0,0 +1,169 @@
+// $Id:
+//
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.forester.phylogeny.Phylogeny;
+import org.forester.phylogeny.PhylogenyNode;
+import org.forester.phylogeny.data.Confidence;
+
+/*
+ * Counts, for each internal node of a target phylogeny, how many evaluator
+ * phylogenies contain the corresponding split. Evaluators are added one at
+ * a time (and may be discarded afterwards), from any number of threads.
+ * Once all evaluators have been added, the counts are written to the target
+ * as confidence values.
+ *
+ * This gives the same results as ConfidenceAssessor.evaluate (which uses this
+ * class), without the need to hold all evaluators in memory. Splits are
+ * compared as bitsets (see SplitIndex), external nodes are identified by
+ * their names.
+ *
+ */
+public final class ConfidenceAccumulator {
+
+    private final AtomicIntegerArray   _counts;
+    private final Map<String, Integer> _leaf_index;
+    // Positions (in _target_splits) of the nodes to assess.
+    private final int[]                _nodes;
+    private final AtomicInteger        _number_of_evaluators;
+    private final int                  _number_of_external_nodes;
+    private final boolean              _strict;
+    private final Phylogeny            _target;
+    private final SplitIndex           _target_splits;
+
+    public ConfidenceAccumulator( final Phylogeny target, final boolean strict ) {
+        if ( ( target == null ) || target.isEmpty() ) {
+            throw new IllegalArgumentException( "attempt to assess confidence values on null or empty target" );
+        }
+        _target = target;
+        _strict = strict;
+        _leaf_index = SplitIndex.createLeafIndex( target );
+        // Not taken from target in add(), as it is computed lazily (and
+        // therefore not thread-safe).
+        _number_of_external_nodes = target.getNumberOfExternalNodes();
+        _target_splits = new SplitIndex( target, _leaf_index, false, false );
+        final List<Integer> nodes = new ArrayList<Integer>();
+        for( int i = _target_splits.getNumberOfNodes() - 1; i >= 0; --i ) {
+            final PhylogenyNode node = _target_splits.getNode( i );
+            if ( !node.isExternal() && !node.isRoot() ) {
+                if ( node.getParent().isRoot()
+                        && ( target.getRoot().getNumberOfDescendants() == 2 )
+                        && ( target.getRoot().getChildNode1().isExternal() || target.getRoot().getChildNode2()
+                                .isExternal() ) ) {
+                    continue;
+                }
+                nodes.add( i );
+            }
+        }
+        _nodes = new int[ nodes.size() ];
+        for( int i = 0; i < _nodes.length; ++i ) {
+            _nodes[ i ] = nodes.get( i );
+        }
+        _counts = new AtomicIntegerArray( _nodes.length );
+        _number_of_evaluators = new AtomicInteger( 0 );
+    }
+
+    /**
+     * Counts the splits of the target which are present in the given evaluator.
+     * This method is thread-safe; the evaluator is not retained.
+     * <p>
+     * If strict, all external nodes of the target need to be present in the
+     * evaluator; otherwise, a split of the target is counted if it is
+     * present in the evaluator when only their common external nodes are
+     * considered, and if all of its external nodes are present in the evaluator.
+     *
+     * @param evaluator
+     */
+    public final void add( final Phylogeny evaluator ) {
+        if ( _strict ) {
+            if ( evaluator.getNumberOfExternalNodes() != _number_of_external_nodes ) {
+                throw new IllegalArgumentException( "evaluator does not have the same number of external nodes ["
+                        + evaluator.getNumberOfExternalNodes() + "] than the corresponding target ["
+                        + _number_of_external_nodes + "]" );
+            }
+        }
+        final SplitIndex s = new SplitIndex( evaluator, _leaf_index, !_strict, true );
+        for( int i = 0; i < _nodes.length; ++i ) {
+            if ( _strict && !s.containsAll( _target_splits, _nodes[ i ] ) ) {
+                throw new IllegalArgumentException( "external nodes of target and evaluator do not match" );
+            }
+            if ( s.find( _target_splits, _nodes[ i ] ) >= 0 ) {
+                _counts.incrementAndGet( i );
+            }
+        }
+        _number_of_evaluators.incrementAndGet();
+    }
+
+    /**
+     * Adds, for each assessed node of the target, value times the number of
+     * evaluators containing its split to the confidence of the given type
+     * (which is created, with a value of zero, if not present).
+     *
+     * @param confidence_type
+     * @param value
+     */
+    public final void apply( final String confidence_type, final double value ) {
+        for( int i = 0; i < _nodes.length; ++i ) {
+            final Confidence c = obtainConfidence( _target_splits.getNode( _nodes[ i ] ), confidence_type );
+            final int count = _counts.get( i );
+            for( int j = 0; j < count; ++j ) {
+                c.setValue( c.getValue() + value );
+            }
+        }
+    }
+
+    public final int getNumberOfEvaluators() {
+        return _number_of_evaluators.get();
+    }
+
+    public final Phylogeny getTarget() {
+        return _target;
+    }
+
+    private final static Confidence obtainConfidence( final PhylogenyNode n, final String confidence_type ) {
+        final List<Confidence> confidences = n.getBranchData().getConfidences();
+        Confidence match = null;
+        for( final Confidence confidence : confidences ) {
+            if ( confidence.getType().equals( confidence_type ) ) {
+                if ( match != null ) {
+                    throw new IllegalArgumentException( "confidence [" + confidence_type + "] is not unique" );
+                }
+                match = confidence;
+            }
+        }
+        if ( match == null ) {
+            match = new Confidence( 0, confidence_type );
+            confidences.add( match );
+        }
+        return match;
+    }
+}
@@ -26,12 +26,13 @@
 
 package org.forester.tools;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
+import org.forester.io.parsers.IteratingPhylogenyParser;
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyNode;
 import org.forester.phylogeny.data.Confidence;
@@ -44,16 +45,59 @@ public final class ConfidenceAssessor {
         // Hidden constructor.
     }
 
-    private final static void addExternalNodesToMap( final Map<PhylogenyNode, Set<PhylogenyNode>> node_to_ext_nodes_map,
-                                                     final PhylogenyNode node ) {
-        final Set<PhylogenyNode> ex_descs = new HashSet<PhylogenyNode>();
-        for( final PhylogenyNode n : node.getAllExternalDescendants() ) {
-            if ( ex_descs.contains( n ) ) {
-                throw new IllegalArgumentException( "node [" + n.toString() + "] of target is not unique" );
+    /**
+     * Adds evaluators, read one at a time from an iterating parser, to each of
+     * the given accumulators. Only one evaluator (plus the one the parser
+     * might have read ahead) is in memory at any time.
+     * <p>
+     * Evaluators first to last (0-based, inclusive) are used; if last is
+     * zero, all evaluators from first on are used. Reading stops after
+     * evaluator last.
+     *
+     * @param evaluators the parser to read the evaluators from (with its source already set)
+     * @param accumulators the accumulators (for one or more targets)
+     * @param first the first evaluator to use
+     * @param last the last evaluator to use, or zero for all
+     * @return the number of evaluators used
+     * @throws IOException
+     */
+    public final static int accumulate( final IteratingPhylogenyParser evaluators,
+                                        final List<ConfidenceAccumulator> accumulators,
+                                        final int first,
+                                        final int last ) throws IOException {
+        if ( ( first < 0 ) || ( last < 0 ) ) {
+            throw new IllegalArgumentException( "attempt to set first or last evaluator topology to use to a number less than zero" );
+        }
+        if ( ( last != 0 ) && ( last <= first ) ) {
+            throw new IllegalArgumentException( "illegal value for last evaluator topology to use" );
+        }
+        int counter = 0;
+        int used = 0;
+        while ( evaluators.hasNext() ) {
+            if ( ( last != 0 ) && ( counter > last ) ) {
+                break;
+            }
+            final Phylogeny evaluator = evaluators.next();
+            if ( counter >= first ) {
+                for( final ConfidenceAccumulator accumulator : accumulators ) {
+                    try {
+                        accumulator.add( evaluator );
+                    }
+                    catch ( final IllegalArgumentException e ) {
+                        throw new IllegalArgumentException( "evaluator #" + counter + ": " + e.getMessage() );
+                    }
+                }
+                ++used;
             }
-            ex_descs.add( n );
+            ++counter;
+        }
+        if ( ( last != 0 ) && ( counter <= last ) ) {
+            throw new IllegalArgumentException( "illegal value for last evaluator topology to use" );
+        }
+        if ( used < 1 ) {
+            throw new IllegalArgumentException( "need at least one evaluator topology" );
         }
-        node_to_ext_nodes_map.put( node, ex_descs );
+        return used;
     }
 
     private final static void checkPreconditions( final String confidence_type,
@@ -68,17 +112,23 @@ public final class ConfidenceAssessor {
         if ( evaluators.length < 1 ) {
             throw new IllegalArgumentException( "need at least one evaluator topology" );
         }
+        if ( ( first != 0 ) || ( last != 0 ) ) {
+            if ( ( last >= evaluators.length ) || ( last <= first ) ) {
+                throw new IllegalArgumentException( "illegal value for last evaluator topology to use" );
+            }
+        }
+        checkPreconditions( confidence_type, target, value );
+    }
+
+    private final static void checkPreconditions( final String confidence_type,
+                                                  final Phylogeny target,
+                                                  final double value ) {
         if ( ForesterUtil.isEmpty( confidence_type ) ) {
             throw new IllegalArgumentException( "attempt to use empty confidence type" );
         }
         if ( value <= 0 ) {
             throw new IllegalArgumentException( "attempt to use zero or negative \'count value\'" );
         }
-        if ( ( first != 0 ) || ( last != 0 ) ) {
-            if ( ( last >= evaluators.length ) || ( last <= first ) ) {
-                throw new IllegalArgumentException( "illegal value for last evaluator topology to use" );
-            }
-        }
         final Set<PhylogenyNode> nodes = new HashSet<PhylogenyNode>();
         for( final PhylogenyNodeIterator it = target.iteratorPostorder(); it.hasNext(); ) {
             final PhylogenyNode node = it.next();
@@ -122,7 +172,7 @@ public final class ConfidenceAssessor {
             all = false;
         }
         int counter = 0;
-        final Map<PhylogenyNode, Set<PhylogenyNode>> node_to_ext_nodes_map = new HashMap<PhylogenyNode, Set<PhylogenyNode>>();
+        final ConfidenceAccumulator accumulator = new ConfidenceAccumulator( target, strict );
         for( final Phylogeny evaluator : evaluators ) {
             if ( all || ( ( counter >= first ) && ( counter <= last ) ) ) {
                 if ( strict ) {
@@ -133,46 +183,32 @@ public final class ConfidenceAssessor {
                                                             + target.getNumberOfExternalNodes() + "]" );
                     }
                 }
-                final TreeSplitMatrix s = new TreeSplitMatrix( evaluator, strict, target );
-                for( final PhylogenyNodeIterator it = target.iteratorPostorder(); it.hasNext(); ) {
-                    final PhylogenyNode node = it.next();
-                    if ( !node.isExternal() && !node.isRoot() ) {
-                        if ( node.getParent().isRoot()
-                                && ( target.getRoot().getNumberOfDescendants() == 2 )
-                                && ( target.getRoot().getChildNode1().isExternal() || target.getRoot().getChildNode2()
-                                        .isExternal() ) ) {
-                            continue;
-                        }
-                        if ( !node_to_ext_nodes_map.containsKey( node ) ) {
-                            addExternalNodesToMap( node_to_ext_nodes_map, node );
-                        }
-                        final Set<PhylogenyNode> ex_descs = node_to_ext_nodes_map.get( node );
-                        final Confidence c = ConfidenceAssessor.obtainConfidence( node, confidence_type );
-                        if ( s.match( ex_descs ) ) {
-                            c.setValue( c.getValue() + value );
-                        }
-                    }
-                }
+                accumulator.add( evaluator );
             }
             ++counter;
         }
+        accumulator.apply( confidence_type, value );
     }
 
-    private final static Confidence obtainConfidence( final PhylogenyNode n, final String confidence_type ) {
-        final List<Confidence> confidences = n.getBranchData().getConfidences();
-        Confidence match = null;
-        for( final Confidence confidence : confidences ) {
-            if ( confidence.getType().equals( confidence_type ) ) {
-                if ( match != null ) {
-                    throw new IllegalArgumentException( "confidence [" + confidence_type + "] is not unique" );
-                }
-                match = confidence;
-            }
-        }
-        if ( match == null ) {
-            match = new Confidence( 0, confidence_type );
-            confidences.add( match );
-        }
-        return match;
+    /**
+     * Streaming version of evaluate: evaluators are read one at a time from
+     * the given parser, so that they never need to be all in memory.
+     *
+     * @see #accumulate(IteratingPhylogenyParser, List, int, int)
+     * @return the number of evaluators used
+     * @throws IOException
+     */
+    public final static int evaluate( final String confidence_type,
+                                      final IteratingPhylogenyParser evaluators,
+                                      final Phylogeny target,
+                                      final boolean strict,
+                                      final double value,
+                                      final int first,
+                                      final int last ) throws IOException {
+        checkPreconditions( confidence_type, target, value );
+        final ConfidenceAccumulator accumulator = new ConfidenceAccumulator( target, strict );
+        final int n = accumulate( evaluators, Collections.singletonList( accumulator ), first, last );
+        accumulator.apply( confidence_type, value );
+        return n;
     }
 }
@@ -0,0 +1,329 @@
+// $Id:
+//
+// FORESTER -- software libraries and applications
+// for evolutionary biology research and applications.
+//
+// Copyright (C) 2014 Christian M. Zmasek
+// All rights reserved
+//
+// This library is free software; you can redistribute it and/or
+// modify it under the terms of the GNU Lesser General Public
+// License as published by the Free Software Foundation; either
+// version 2.1 of the License, or (at your option) any later version.
+//
+// This library is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+// Lesser General Public License for more details.
+//
+// You should have received a copy of the GNU Lesser General Public
+// License along with this library; if not, write to the Free Software
+// Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA
+//
+// Contact: phylosoft @ gmail . com
+// WWW: https://sites.google.com/site/cmzmasek/home/software/forester
+
+package org.forester.tools;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.forester.phylogeny.Phylogeny;
+import org.forester.phylogeny.PhylogenyNode;
+import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
+
+/*
+ * Index of the clusters (the sets of external nodes below each node) of a
+ * phylogeny, for fast comparisons of topologies.
+ *
+ * External nodes are identified by their names, which are mapped to bit
+ * positions by a leaf index shared by all phylogenies to be compared (see
+ * createLeafIndex). The cluster of each node is stored as a bitset (a
+ * stretch of longs in one array) together with a 64-bit fingerprint (the xor
+ * of a fixed random value per bit position), so that a cluster can be looked
+ * up in (expected) constant time plus one bitset comparison.
+ *
+ * If unrooted is set, clusters are stored as splits (bipartitions) of the
+ * external nodes of the phylogeny: a cluster and its complement are
+ * considered the same.
+ *
+ */
+public final class SplitIndex {
+
+    private final long[]          _bits;
+    private final long[]          _fingerprints;
+    // The union of all clusters, i.e. the external nodes.
+    private final long[]          _leaves;
+    private final long            _leaves_fingerprint;
+    private final PhylogenyNode[] _nodes;
+    private final int             _number_of_leaves;
+    // Lowest bit position in _leaves, clusters containing it are stored
+    // complemented if unrooted.
+    private final int             _pivot;
+    private final long[]          _table_keys;
+    private final int[]           _table_values;
+    private final boolean         _unrooted;
+    private final int             _words;
+
+    /**
+     * Creates the index of the clusters of a phylogeny.
+     * <p>
+     * External nodes whose names are not in the leaf index are either ignored
+     * (as if they were not present), or are assigned bit positions following
+     * the ones of the leaf index (in which case clusters containing them cannot
+     * be equal to a cluster made up only of leaf index names).
+     *
+     * @param phy the phylogeny to index
+     * @param leaf_index mapping of external node names to bit positions
+     * @param ignore_unknown_leaves whether to ignore external nodes not in the leaf index
+     * @param unrooted whether to treat clusters as splits
+     * @throws IllegalArgumentException if an external node name appears more than once
+     */
+    public SplitIndex( final Phylogeny phy,
+                       final Map<String, Integer> leaf_index,
+                       final boolean ignore_unknown_leaves,
+                       final boolean unrooted ) {
+        _unrooted = unrooted;
+        final List<PhylogenyNode> nodes = new ArrayList<PhylogenyNode>();
+        for( final PhylogenyNodeIterator it = phy.iteratorPreorder(); it.hasNext(); ) {
+            nodes.add( it.next() );
+        }
+        final int n = nodes.size();
+        _nodes = nodes.toArray( new PhylogenyNode[ n ] );
+        final int[] leaf = new int[ n ];
+        Map<String, Integer> unknown_leaves = null;
+        for( int i = 0; i < n; ++i ) {
+            leaf[ i ] = -1;
+            if ( _nodes[ i ].isExternal() ) {
+                final String name = _nodes[ i ].getName();
+                final Integer index = leaf_index.get( name );
+                if ( index != null ) {
+                    leaf[ i ] = index;
+                }
+                else if ( !ignore_unknown_leaves ) {
+                    if ( unknown_leaves == null ) {
+                        unknown_leaves = new HashMap<String, Integer>();
+                    }
+                    if ( !unknown_leaves.containsKey( name ) ) {
+                        unknown_leaves.put( name, leaf_index.size() + unknown_leaves.size() );
+                    }
+                    leaf[ i ] = unknown_leaves.get( name );
+                }
+            }
+        }
+        final int bit_positions = leaf_index.size() + ( unknown_leaves == null ? 0 : unknown_leaves.size() );
+        _words = Math.max( 1, ( bit_positions + 63 ) >>> 6 );
+        _bits = new long[ n * _words ];
+        _fingerprints = new long[ n ];
+        _leaves = new long[ _words ];
+        final Map<PhylogenyNode, Integer> positions = new IdentityHashMap<PhylogenyNode, Integer>( n );
+        for( int i = 0; i < n; ++i ) {
+            positions.put( _nodes[ i ], i );
+        }
+        // Reverse preorder: all descendants of a node are done before the node.
+        for( int i = n - 1; i >= 0; --i ) {
+            final int offset = i * _words;
+            if ( leaf[ i ] >= 0 ) {
+                final int w = leaf[ i ] >>> 6;
+                final long b = 1L << leaf[ i ];
+                if ( ( _leaves[ w ] & b ) != 0 ) {
+                    throw new IllegalArgumentException( "node [" + _nodes[ i ].getName() + "] is not unique" );
+                }
+                _leaves[ w ] |= b;
+                _bits[ offset + w ] |= b;
+                _fingerprints[ i ] = calcFingerprint( leaf[ i ] );
+            }
+            final PhylogenyNode node = _nodes[ i ];
+            for( int c = 0; c < node.getNumberOfDescendants(); ++c ) {
+                final int child = positions.get( node.getChildNode( c ) );
+                final int child_offset = child * _words;
+                for( int w = 0; w < _words; ++w ) {
+                    _bits[ offset + w ] |= _bits[ child_offset + w ];
+                }
+                _fingerprints[ i ] ^= _fingerprints[ child ];
+            }
+        }
+        int number_of_leaves = 0;
+        long leaves_fingerprint = 0;
+        int pivot = -1;
+        for( int w = 0; w < _words; ++w ) {
+            final long l = _leaves[ w ];
+            number_of_leaves += Long.bitCount( l );
+            if ( ( pivot < 0 ) && ( l != 0 ) ) {
+                pivot = ( w << 6 ) + Long.numberOfTrailingZeros( l );
+            }
+            for( long r = l; r != 0; r &= r - 1 ) {
+                leaves_fingerprint ^= calcFingerprint( ( w << 6 ) + Long.numberOfTrailingZeros( r ) );
+            }
+        }
+        _number_of_leaves = number_of_leaves;
+        _leaves_fingerprint = leaves_fingerprint;
+        _pivot = pivot;
+        if ( _unrooted && ( _pivot >= 0 ) ) {
+            for( int i = 0; i < n; ++i ) {
+                final int offset = i * _words;
+                if ( isSet( _bits, offset, _words, _pivot ) ) {
+                    for( int w = 0; w < _words; ++w ) {
+                        _bits[ offset + w ] = _leaves[ w ] & ~_bits[ offset + w ];
+                    }
+                    _fingerprints[ i ] ^= _leaves_fingerprint;
+                }
+            }
+        }
+        int table_size = 2;
+        while ( table_size < ( 2 * n ) ) {
+            table_size <<= 1;
+        }
+        _table_keys = new long[ table_size ];
+        _table_values = new int[ table_size ];
+        // Reverse preorder, so that of several nodes with the same cluster
+        // (nodes with one descendant) the one furthest from the root is found.
+        for( int i = n - 1; i >= 0; --i ) {
+            int slot = calcSlot( _fingerprints[ i ] );
+            while ( _table_values[ slot ] != 0 ) {
+                slot = ( slot + 1 ) & ( table_size - 1 );
+            }
+            _table_keys[ slot ] = _fingerprints[ i ];
+            _table_values[ slot ] = i + 1;
+        }
+    }
+
+    /**
+     * Returns whether all external nodes of the cluster of node i of query
+     * are external nodes of the phylogeny indexed by this.
+     *
+     */
+    public final boolean containsAll( final SplitIndex query, final int i ) {
+        final int offset = i * query._words;
+        for( int w = 0; w < query._words; ++w ) {
+            final long q = query._bits[ offset + w ];
+            if ( w < _words ) {
+                if ( ( q & ~_leaves[ w ] ) != 0 ) {
+                    return false;
+                }
+            }
+            else if ( q != 0 ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the position (as used by getNode) of a node of the phylogeny
+     * indexed by this whose cluster (or split, if unrooted) is equal to the
+     * cluster of node i of query, or -1 if there is none.
+     * <p>
+     * query needs to be rooted and based on the same leaf index as this.
+     *
+     */
+    public final int find( final SplitIndex query, final int i ) {
+        if ( query._unrooted ) {
+            throw new IllegalArgumentException( "attempt to look up cluster of unrooted split index" );
+        }
+        if ( !containsAll( query, i ) ) {
+            return -1;
+        }
+        final int offset = i * query._words;
+        long fingerprint = query._fingerprints[ i ];
+        boolean complement = false;
+        if ( _unrooted && ( _pivot >= 0 ) && isSet( query._bits, offset, query._words, _pivot ) ) {
+            complement = true;
+            fingerprint ^= _leaves_fingerprint;
+        }
+        int slot = calcSlot( fingerprint );
+        while ( _table_values[ slot ] != 0 ) {
+            if ( _table_keys[ slot ] == fingerprint ) {
+                final int node = _table_values[ slot ] - 1;
+                if ( isEqual( node, query._bits, offset, query._words, complement ) ) {
+                    return node;
+                }
+            }
+            slot = ( slot + 1 ) & ( _table_keys.length - 1 );
+        }
+        return -1;
+    }
+
+    public final PhylogenyNode getNode( final int i ) {
+        return _nodes[ i ];
+    }
+
+    public final int getNumberOfLeaves() {
+        return _number_of_leaves;
+    }
+
+    /**
+     * Returns the number of external nodes in the cluster (or split, if
+     * unrooted) of node i.
+     *
+     */
+    public final int getNumberOfLeaves( final int i ) {
+        final int offset = i * _words;
+        int c = 0;
+        for( int w = 0; w < _words; ++w ) {
+            c += Long.bitCount( _bits[ offset + w ] );
+        }
+        return c;
+    }
+
+    public final int getNumberOfNodes() {
+        return _nodes.length;
+    }
+
+    private final int calcSlot( final long fingerprint ) {
+        return ( int ) ( fingerprint ^ ( fingerprint >>> 32 ) ) & ( _table_keys.length - 1 );
+    }
+
+    private final boolean isEqual( final int node,
+                                   final long[] bits,
+                                   final int offset,
+                                   final int words,
+                                   final boolean complement ) {
+        final int node_offset = node * _words;
+        for( int w = 0; w < _words; ++w ) {
+            long q = w < words ? bits[ offset + w ] : 0;
+            if ( complement ) {
+                q = _leaves[ w ] & ~q;
+            }
+            if ( _bits[ node_offset + w ] != q ) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Maps the names of the external nodes of a phylogeny to bit positions
+     * 0 to n-1.
+     *
+     * @param phy the phylogeny
+     * @return the mapping of external node names to bit positions
+     * @throws IllegalArgumentException if an external node name appears more than once
+     */
+    public final static Map<String, Integer> createLeafIndex( final Phylogeny phy ) {
+        final Map<String, Integer> leaf_index = new HashMap<String, Integer>();
+        for( final PhylogenyNodeIterator it = phy.iteratorExternalForward(); it.hasNext(); ) {
+            final PhylogenyNode n = it.next();
+            if ( leaf_index.containsKey( n.getName() ) ) {
+                throw new IllegalArgumentException( "node [" + n.toString() + "] of target is not unique" );
+            }
+            leaf_index.put( n.getName(), leaf_index.size() );
+        }
+        return leaf_index;
+    }
+
+    private final static long calcFingerprint( final int leaf ) {
+        // SplitMix64 finalizer.
+        long z = ( leaf + 1L ) * 0x9E3779B97F4A7C15L;
+        z = ( z ^ ( z >>> 30 ) ) * 0xBF58476D1CE4E5B9L;
+        z = ( z ^ ( z >>> 27 ) ) * 0x94D049BB133111EBL;
+        return z ^ ( z >>> 31 );
+    }
+
+    private final static boolean isSet( final long[] bits, final int offset, final int words, final int bit ) {
+        return ( ( bit >>> 6 ) < words ) && ( ( bits[ offset + ( bit >>> 6 ) ] & ( 1L << bit ) ) != 0 );
+    }
+}
@@ -29,13 +29,11 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
 
 import org.forester.phylogeny.Phylogeny;
 import org.forester.phylogeny.PhylogenyMethods;
 import org.forester.phylogeny.PhylogenyMethods.DESCENDANT_SORT_PRIORITY;
 import org.forester.phylogeny.PhylogenyNode;
-import org.forester.phylogeny.iterators.PhylogenyNodeIterator;
 
 /*
  * A simple class containing a static method to evaluate the topology of a given
@@ -64,11 +62,10 @@ public final class SupportCount {
             phylogeny.reRoot( phylogeny.getNode( child0_name ) );
             evaluator_phylogeny.reRoot( evaluator_phylogeny.getNode( child0_name ) );
         }
-        final Map<Long, ArrayList<String>> phylogeny_external_names_per_node = SupportCount
-                .extractExternalNamesPerNode( phylogeny );
-        return ( SupportCount.compare( phylogeny,
+        final Map<String, Integer> leaf_index = SplitIndex.createLeafIndex( phylogeny );
+        return ( SupportCount.compare( new SplitIndex( phylogeny, leaf_index, false, false ),
                                        evaluator_phylogeny,
-                                       phylogeny_external_names_per_node,
+                                       leaf_index,
                                        update_support_in_phylogeny,
                                        -1 ) );
     }
@@ -86,52 +83,47 @@ public final class SupportCount {
      * incompatible topologies.
      *
      *
-     * @param phylogeny
+     * @param phylogeny_splits
+     *            the clusters of phylogeny
      * @param evaluator_phylogeny
-     * @param external_names_per_node
+     * @param leaf_index
+     *            the leaf index phylogeny_splits is based on
      * @param update_support_in_phylogeny
      *            set to true to update support values in phylogeny, otherwise,
      *            just calculation of the "average bootstrap similarity"
      * @return a measure of the similarity ("average bootstrap similarity")
      *         between phylogeny and evaluator_phylogeny
      */
-    private static double compare( final Phylogeny phylogeny,
+    private static double compare( final SplitIndex phylogeny_splits,
                                    final Phylogeny evaluator_phylogeny,
-                                   final Map<Long, ArrayList<String>> phylogeny_external_names_per_node,
+                                   final Map<String, Integer> leaf_index,
                                    final boolean update_support_in_phylogeny,
                                    final double similarity_threshold ) {
         int matching_branches = 0;
         int phylogeny_total_internal_branches = 0;
-        for( final PhylogenyNodeIterator it = phylogeny.iteratorPostorder(); it.hasNext(); ) {
-            if ( !it.next().isExternal() ) {
+        for( int i = 0; i < phylogeny_splits.getNumberOfNodes(); ++i ) {
+            if ( !phylogeny_splits.getNode( i ).isExternal() ) {
                 ++phylogeny_total_internal_branches;
             }
         }
         final Map<PhylogenyNode, Double> support_values = new HashMap<PhylogenyNode, Double>();
-        E: for( final PhylogenyNodeIterator evaluator_phylogeny_it = evaluator_phylogeny.iteratorPostorder(); evaluator_phylogeny_it
-                .hasNext(); ) {
-            final List<String> c1 = new ArrayList<String>();
-            for( final Object element : evaluator_phylogeny_it.next().getAllExternalDescendants() ) {
-                c1.add( ( ( PhylogenyNode ) element ).getName() );
-            }
-            for( final Long id : phylogeny_external_names_per_node.keySet() ) {
-                final List<String> c2 = phylogeny_external_names_per_node.get( id );
-                if ( ( c2.size() == c1.size() ) && c2.containsAll( c1 ) ) {
-                    if ( c2.size() > 1 ) {
-                        matching_branches++;
+        final SplitIndex evaluator_splits = new SplitIndex( evaluator_phylogeny, leaf_index, false, false );
+        for( int i = 0; i < evaluator_splits.getNumberOfNodes(); ++i ) {
+            final int j = phylogeny_splits.find( evaluator_splits, i );
+            if ( j >= 0 ) {
+                if ( phylogeny_splits.getNumberOfLeaves( j ) > 1 ) {
+                    matching_branches++;
+                }
+                if ( update_support_in_phylogeny ) {
+                    final PhylogenyNode node = phylogeny_splits.getNode( j );
+                    double d = PhylogenyMethods.getConfidenceValue( node );
+                    if ( d < 1.0 ) {
+                        d = 1.0;
                     }
-                    if ( update_support_in_phylogeny ) {
-                        final PhylogenyNode node = phylogeny.getNode( id.intValue() );
-                        double d = PhylogenyMethods.getConfidenceValue( node );
-                        if ( d < 1.0 ) {
-                            d = 1.0;
-                        }
-                        else {
-                            ++d;
-                        }
-                        support_values.put( node, Double.valueOf( d ) );
+                    else {
+                        ++d;
                     }
-                    continue E;
+                    support_values.put( node, Double.valueOf( d ) );
                 }
             }
         }
@@ -181,8 +173,8 @@ public final class SupportCount {
         }
         final String child0_name = phylogeny.getFirstExternalNode().getName();
         phylogeny.reRoot( phylogeny.getNode( child0_name ) );
-        final Map<Long, ArrayList<String>> phylogeny_external_names_per_node = SupportCount
-                .extractExternalNamesPerNode( phylogeny );
+        final Map<String, Integer> leaf_index = SplitIndex.createLeafIndex( phylogeny );
+        final SplitIndex phylogeny_splits = new SplitIndex( phylogeny, leaf_index, false, false );
         if ( verbose ) {
             System.out.println();
             System.out.println( "evaluator phylogeny #: similarity score (max is 1.0)" );
@@ -208,9 +200,9 @@ public final class SupportCount {
                 evaluator_phylogeny.clearHashIdToNodeMap();
                 evaluator_phylogeny.recalculateNumberOfExternalDescendants( true );
             }
-            final double s = SupportCount.compare( phylogeny,
+            final double s = SupportCount.compare( phylogeny_splits,
                                                    evaluator_phylogenies[ i ],
-                                                   phylogeny_external_names_per_node,
+                                                   leaf_index,
                                                    true,
                                                    similarity_threshold );
             if ( ( similarity_threshold < 0.0 ) || ( s >= similarity_threshold ) ) {
@@ -239,21 +231,6 @@ public final class SupportCount {
         return evaluator_phylogenies_above_threshold;
     }
 
-    private static Map<Long, ArrayList<String>> extractExternalNamesPerNode( final Phylogeny phylogeny )
-            throws NoSuchElementException {
-        final HashMap<Long, ArrayList<String>> phylogeny_external_names_per_node = new HashMap<Long, ArrayList<String>>();
-        for( final PhylogenyNodeIterator it = phylogeny.iteratorPostorder(); it.hasNext(); ) {
-            final PhylogenyNode n = it.next();
-            final List<PhylogenyNode> l = n.getAllExternalDescendants();
-            final ArrayList<String> c = new ArrayList<String>();
-            phylogeny_external_names_per_node.put( Long.valueOf( n.getId() ), c );
-            for( final PhylogenyNode phylogenyNode : l ) {
-                c.add( phylogenyNode.getName() );
-            }
-        }
-        return phylogeny_external_names_per_node;
-    }
-
     private static void strip( final String[] to_keep, final Phylogeny to_be_stripped ) {
         PhylogenyMethods.deleteExternalNodesPositiveSelection( to_keep, to_be_stripped );
     }